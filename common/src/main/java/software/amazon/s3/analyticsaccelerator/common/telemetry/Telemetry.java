@@ -18,6 +18,10 @@ package software.amazon.s3.analyticsaccelerator.common.telemetry;
 import java.io.Closeable;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import lombok.NonNull;
@@ -93,6 +97,45 @@ public interface Telemetry extends Closeable {
     }
   }
 
+  /**
+   * Like {@link #measureJoin(TelemetryLevel, OperationSupplier, CompletableFuture)}, but waits for
+   * the future for {@code timeoutMillis} at most. Once the deadline has passed, a {@link
+   * CompletionException} caused by a {@link TimeoutException} is thrown, leaving the future to
+   * complete on its own. A {@code timeoutMillis} of 0 waits without a deadline.
+   *
+   * @param <T> - return type of the {@link CompletableFuture<T>}.
+   * @param level telemetry level.
+   * @param operationSupplier operation to record this execution as.
+   * @param operationCode the future to measure the execution of.
+   * @param timeoutMillis how long to wait for the future, in milliseconds; 0 for no deadline.
+   * @return an instance of {@link T} that returns the same result as the one passed in.
+   */
+  default <T> T measureJoin(
+      @NonNull TelemetryLevel level,
+      @NonNull OperationSupplier operationSupplier,
+      @NonNull CompletableFuture<T> operationCode,
+      long timeoutMillis) {
+    if (timeoutMillis <= 0 || operationCode.isDone()) {
+      return measureJoin(level, operationSupplier, operationCode);
+    }
+    return this.measure(
+        level,
+        operationSupplier,
+        () -> {
+          try {
+            return operationCode.get(timeoutMillis, TimeUnit.MILLISECONDS);
+          } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+          } catch (TimeoutException e) {
+            throw new CompletionException(
+                new TimeoutException("Not completed within " + timeoutMillis + " ms"));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+          }
+        });
+  }
+
   /**
    * Measures a given {@link Runnable} and record the telemetry as {@link Operation}. This is done
    * at {@link TelemetryLevel#CRITICAL}.
@@ -153,6 +196,24 @@ public interface Telemetry extends Closeable {
     return measureJoin(TelemetryLevel.CRITICAL, operationSupplier, operationCode);
   }
 
+  /**
+   * This is a helper method to reduce verbosity on completed futures. Blocks on the execution of
+   * the future for {@code timeoutMillis} at most and records the telemetry as {@link Operation}.
+   * This is done at {@link TelemetryLevel#CRITICAL}.
+   *
+   * @param <T> - return type of the {@link CompletableFuture<T>}.
+   * @param operationSupplier operation to record this execution as.
+   * @param operationCode the future to measure the execution of.
+   * @param timeoutMillis how long to wait for the future, in milliseconds; 0 for no deadline.
+   * @return an instance of {@link T} that returns the same result as the one passed in.
+   */
+  default <T> T measureJoinCritical(
+      OperationSupplier operationSupplier,
+      CompletableFuture<T> operationCode,
+      long timeoutMillis) {
+    return measureJoin(TelemetryLevel.CRITICAL, operationSupplier, operationCode, timeoutMillis);
+  }
+
   /**
    * Measures a given {@link Runnable} and record the telemetry as {@link Operation}. This is done
    * at {@link TelemetryLevel#STANDARD}.
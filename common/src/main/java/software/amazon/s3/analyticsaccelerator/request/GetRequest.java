@@ -30,4 +30,10 @@ public class GetRequest {
   @NonNull S3URI s3Uri;
   @NonNull Range range;
   @NonNull Referrer referrer;
+
+  /**
+   * The entity tag the object must still have, sent as {@code If-Match}, so that bytes of another
+   * version of the object are never returned. May be null to fetch whatever version is current.
+   */
+  String etag;
 }
@@ -16,6 +16,7 @@
 package software.amazon.s3.analyticsaccelerator.request;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
 import java.util.concurrent.CompletableFuture;
 
 /** Represents APIs of an Amazon S3 compatible object store */
@@ -36,4 +37,61 @@ public interface ObjectClient extends Closeable {
    * @return ResponseInputStream<GetObjectResponse>
    */
   CompletableFuture<ObjectContent> getObject(GetRequest getRequest);
+
+  /**
+   * Make a getObject request to the object store, writing the returned bytes straight into {@code
+   * destination}, starting at its position, until the response ends or the buffer is full.
+   *
+   * <p>Bytes are only written while holding the monitor of {@code destination}, and none are
+   * written once the returned future is done, including when it is cancelled. Cancelling the
+   * returned future aborts the request. The position of {@code destination} tracks the bytes
+   * written so far, and {@code notifyAll} is called on it after each write, so that its owner can
+   * use bytes before the whole response has arrived. A retried request may rewind the position
+   * and write the same bytes again.
+   *
+   * <p>The default implementation copies the stream returned by {@link #getObject(GetRequest)};
+   * implementations should override it to avoid parking a thread on each request.
+   *
+   * @param getRequest The GET request to be sent
+   * @param destination the buffer to write the object bytes to
+   * @return the number of bytes written
+   */
+  default CompletableFuture<Integer> getObject(GetRequest getRequest, ByteBuffer destination) {
+    return ObjectContentCopier.copy(getObject(getRequest), destination);
+  }
+
+  /**
+   * Make a getObject request for the first or last bytes of an object whose length is not known
+   * yet, writing them into {@code destination} as {@link #getObject(GetRequest, ByteBuffer)} does,
+   * and return the metadata of the object learnt from the response. This saves the HeadObject
+   * request that would otherwise have to be made before the first GET of the object.
+   *
+   * <p>If the object is shorter than requested, all of it is written. Nothing is written for an
+   * empty object. The returned future completes once all bytes have been written.
+   *
+   * <p>The default implementation makes a headObject request, then a getObject request pinned to
+   * the returned ETag; implementations should override it to make a single request.
+   *
+   * @param openRequest The request to be sent
+   * @param destination the buffer to write the object bytes to
+   * @return the metadata of the object
+   */
+  default CompletableFuture<ObjectMetadata> getObjectAndMetadata(
+      OpenRequest openRequest, ByteBuffer destination) {
+    return headObject(HeadRequest.builder().s3Uri(openRequest.getS3Uri()).build())
+        .thenCompose(
+            metadata -> {
+              if (metadata.getContentLength() == 0) {
+                return CompletableFuture.completedFuture(metadata);
+              }
+              GetRequest getRequest =
+                  GetRequest.builder()
+                      .s3Uri(openRequest.getS3Uri())
+                      .range(openRequest.toRange(metadata.getContentLength()))
+                      .referrer(openRequest.getReferrer())
+                      .etag(metadata.getEtag())
+                      .build();
+              return getObject(getRequest, destination).thenApply(bytesRead -> metadata);
+            });
+  }
 }
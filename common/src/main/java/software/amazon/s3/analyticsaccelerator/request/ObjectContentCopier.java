@@ -0,0 +1,86 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.request;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/** Copies {@link ObjectContent} into a buffer, for clients that only return streams. */
+final class ObjectContentCopier {
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  private ObjectContentCopier() {}
+
+  /**
+   * Copies the content into the destination once it arrives, following the contract of {@link
+   * ObjectClient#getObject(GetRequest, ByteBuffer)}.
+   *
+   * @param source the pending content
+   * @param destination the buffer to write to
+   * @return the number of bytes written
+   */
+  static CompletableFuture<Integer> copy(
+      CompletableFuture<ObjectContent> source, ByteBuffer destination) {
+    CompletableFuture<Integer> result = new CompletableFuture<>();
+    result.whenComplete(
+        (bytesRead, error) -> {
+          if (result.isCancelled()) {
+            source.cancel(false);
+          }
+        });
+    source.whenComplete(
+        (content, error) -> {
+          if (error != null) {
+            result.completeExceptionally(error);
+            return;
+          }
+          try {
+            result.complete(copy(content.getStream(), destination, result));
+          } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+          }
+        });
+    return result;
+  }
+
+  private static int copy(
+      InputStream stream, ByteBuffer destination, CompletableFuture<Integer> result) {
+    byte[] chunk = new byte[BUFFER_SIZE];
+    int total = 0;
+    try (InputStream inStream = stream) {
+      while (true) {
+        // Read outside of the monitor, so that a slow read does not block whoever owns the buffer
+        int numBytesRead = inStream.read(chunk, 0, chunk.length);
+        if (numBytesRead == -1) {
+          return total;
+        }
+        synchronized (destination) {
+          if (result.isDone() || !destination.hasRemaining()) {
+            return total;
+          }
+          int numBytesCopied = Math.min(numBytesRead, destination.remaining());
+          destination.put(chunk, 0, numBytesCopied);
+          total += numBytesCopied;
+          destination.notifyAll();
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
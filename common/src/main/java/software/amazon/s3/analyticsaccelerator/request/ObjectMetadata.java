@@ -23,4 +23,10 @@ import lombok.Data;
 @Builder
 public class ObjectMetadata {
   long contentLength;
+
+  /** The entity tag of the object, identifying its version. May be null if unknown. */
+  String etag;
+
+  /** The version ID of the object, in a versioned bucket. May be null if unknown or unversioned. */
+  String versionId;
 }
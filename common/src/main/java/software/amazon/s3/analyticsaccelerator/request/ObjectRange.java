@@ -0,0 +1,72 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.request;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import lombok.Getter;
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+
+/**
+ * A range of an object requested as part of a vectored read, together with the future its data is
+ * delivered through. Each range completes on its own, as soon as its bytes are available.
+ */
+@Getter
+public class ObjectRange {
+  private final CompletableFuture<ByteBuffer> byteBuffer;
+  private final long offset;
+  private final int length;
+
+  private static final String TO_STRING_FORMAT = "%d-%d";
+
+  /**
+   * Construct an object range.
+   *
+   * @param byteBuffer the future completed with the data of the range, once read
+   * @param offset the position of the first byte of the range
+   * @param length the number of bytes in the range
+   */
+  public ObjectRange(@NonNull CompletableFuture<ByteBuffer> byteBuffer, long offset, int length) {
+    Preconditions.checkArgument(offset >= 0, "`offset` must not be negative");
+    Preconditions.checkArgument(length >= 0, "`length` must not be negative");
+
+    this.byteBuffer = byteBuffer;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Returns the {@link Range} of bytes covered by this object range. Must not be called on empty
+   * ranges.
+   *
+   * @return the {@link Range} of bytes covered by this object range
+   */
+  public Range toRange() {
+    Preconditions.checkState(length > 0, "an empty object range does not cover any bytes");
+    return new Range(offset, offset + length - 1);
+  }
+
+  /**
+   * Returns the textual representation of {@link ObjectRange}.
+   *
+   * @return the textual representation of {@link ObjectRange}.
+   */
+  @Override
+  public String toString() {
+    return String.format(TO_STRING_FORMAT, offset, offset + length - 1);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.request;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+/**
+ * Object representing arguments to a GetObject call for the first or last bytes of an object whose
+ * length is not known yet, so that the object can be opened without a HeadObject call. This class
+ * helps us abstract away from S3 SDK constructs.
+ */
+@Value
+public class OpenRequest {
+  @NonNull S3URI s3Uri;
+  long length;
+  boolean fromEnd;
+  @NonNull Referrer referrer;
+
+  private static final String TO_HTTP_STRING_SUFFIX_FORMAT = "bytes=-%d";
+  private static final String TO_HTTP_STRING_PREFIX_FORMAT = "bytes=0-%d";
+
+  /**
+   * Construct an open request.
+   *
+   * @param s3Uri the object to open
+   * @param length the number of bytes to fetch; fewer are returned if the object is shorter
+   * @param fromEnd fetch the last bytes of the object rather than its first ones
+   * @param referrer the referrer of the request
+   */
+  @Builder
+  public OpenRequest(
+      @NonNull S3URI s3Uri, long length, boolean fromEnd, @NonNull Referrer referrer) {
+    Preconditions.checkArgument(length > 0, "`length` must be positive");
+
+    this.s3Uri = s3Uri;
+    this.length = length;
+    this.fromEnd = fromEnd;
+    this.referrer = referrer;
+  }
+
+  /**
+   * Returns the range of the object the request fetches, once its length is known.
+   *
+   * @param contentLength the length of the object, which must not be 0
+   * @return the range of bytes the response holds
+   */
+  public Range toRange(long contentLength) {
+    Preconditions.checkArgument(contentLength > 0, "`contentLength` must be positive");
+
+    long fetched = Math.min(length, contentLength);
+    return fromEnd
+        ? new Range(contentLength - fetched, contentLength - 1)
+        : new Range(0, fetched - 1);
+  }
+
+  /**
+   * Returns the string representation of the requested range used in S3 requests, as defined by
+   * the Http RFC: a suffix range when fetching the last bytes of the object.
+   *
+   * @return the HTTP RFC compatible representation of the requested range
+   */
+  public String toHttpString() {
+    return toHttpString(length, fromEnd);
+  }
+
+  /**
+   * Returns the string representation of a range of the first or last bytes of an object used in
+   * S3 requests, for example to describe the range in a {@link Referrer} before the request exists.
+   *
+   * @param length the number of bytes
+   * @param fromEnd whether the range is of the last bytes of the object
+   * @return the HTTP RFC compatible representation of the range
+   */
+  public static String toHttpString(long length, boolean fromEnd) {
+    return fromEnd
+        ? String.format(TO_HTTP_STRING_SUFFIX_FORMAT, length)
+        : String.format(TO_HTTP_STRING_PREFIX_FORMAT, length - 1);
+  }
+}
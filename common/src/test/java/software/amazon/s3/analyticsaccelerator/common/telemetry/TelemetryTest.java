@@ -20,6 +20,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 import org.junit.jupiter.api.Test;
 import software.amazon.s3.analyticsaccelerator.SpotBugsLambdaWorkaround;
 
@@ -101,6 +103,39 @@ public class TelemetryTest {
     }
   }
 
+  @Test
+  void testMeasureJoinWithDeadline() {
+    CollectingTelemetryReporter reporter = new CollectingTelemetryReporter();
+    try (DefaultTelemetry defaultTelemetry =
+        new DefaultTelemetry(
+            new TickingClock(0L),
+            new TickingClock(0L),
+            reporter,
+            Optional.empty(),
+            TelemetryLevel.CRITICAL)) {
+      Operation operation = Operation.builder().name("name").build();
+      CompletableFuture<Long> pending = new CompletableFuture<>();
+
+      // When: the future does not complete before the deadline
+      CompletionException e =
+          assertThrows(
+              CompletionException.class,
+              () -> defaultTelemetry.measureJoinCritical(() -> operation, pending, 10));
+
+      // Then: the wait is abandoned, leaving the future be, and recorded as failed
+      assertInstanceOf(TimeoutException.class, e.getCause());
+      assertFalse(pending.isDone());
+      assertEquals(1, reporter.getOperationCompletions().size());
+      assertTrue(reporter.getOperationCompletions().iterator().next().getError().isPresent());
+
+      // When: the future has completed
+      pending.complete(42L);
+
+      // Then: its value is returned
+      assertEquals(42, defaultTelemetry.measureJoinCritical(() -> operation, pending, 10));
+    }
+  }
+
   @Test
   void testMeasureJoinStandard() throws Exception {
     TickingClock wallClock = new TickingClock(0L);
@@ -0,0 +1,116 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.request;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+public class ObjectContentCopierTest {
+  private static final byte[] TEST_DATA = "Hello World".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  void testCopiesContentIntoBuffer() {
+    // Given: content arriving after the copy is set up
+    CompletableFuture<ObjectContent> source = new CompletableFuture<>();
+    ByteBuffer destination = ByteBuffer.allocateDirect(20);
+    CompletableFuture<Integer> result = ObjectContentCopier.copy(source, destination);
+
+    // When: the content arrives
+    source.complete(content(new ByteArrayInputStream(TEST_DATA)));
+
+    // Then: the whole stream is written
+    assertEquals(TEST_DATA.length, result.join());
+    assertEquals(TEST_DATA.length, destination.position());
+  }
+
+  @Test
+  void testStopsWhenBufferIsFull() {
+    // Given: a buffer smaller than the content
+    ByteBuffer destination = ByteBuffer.allocate(5);
+
+    // When: the content is copied
+    int bytesWritten =
+        ObjectContentCopier.copy(
+                CompletableFuture.completedFuture(content(new ByteArrayInputStream(TEST_DATA))),
+                destination)
+            .join();
+
+    // Then: the buffer is filled up
+    assertEquals(5, bytesWritten);
+    assertEquals("Hello", new String(destination.array(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testFailurePropagates() {
+    // Given: a failed request
+    CompletableFuture<ObjectContent> source = new CompletableFuture<>();
+    source.completeExceptionally(new IllegalStateException("failed"));
+
+    // When & Then: the copy fails with it
+    CompletableFuture<Integer> result = ObjectContentCopier.copy(source, ByteBuffer.allocate(5));
+    CompletionException e = assertThrows(CompletionException.class, result::join);
+    assertInstanceOf(IllegalStateException.class, e.getCause());
+  }
+
+  @Test
+  void testCancelAbortsRequest() {
+    // Given: a pending request
+    CompletableFuture<ObjectContent> source = new CompletableFuture<>();
+    CompletableFuture<Integer> result = ObjectContentCopier.copy(source, ByteBuffer.allocate(5));
+
+    // When: the copy is cancelled
+    result.cancel(false);
+
+    // Then: the request is cancelled too
+    assertTrue(source.isCancelled());
+  }
+
+  @Test
+  void testNoBytesAreWrittenAfterCancel() {
+    // Given: a stream cancelling the copy after its first read
+    AtomicReference<CompletableFuture<Integer>> result = new AtomicReference<>();
+    CompletableFuture<ObjectContent> source = new CompletableFuture<>();
+    InputStream stream =
+        new ByteArrayInputStream(TEST_DATA) {
+          @Override
+          public synchronized int read(byte[] b, int off, int len) {
+            result.get().cancel(false);
+            return super.read(b, off, len);
+          }
+        };
+    ByteBuffer destination = ByteBuffer.allocate(20);
+    result.set(ObjectContentCopier.copy(source, destination));
+
+    // When: the content arrives
+    source.complete(content(stream));
+
+    // Then: nothing is written to the buffer
+    assertTrue(result.get().isCancelled());
+    assertEquals(0, destination.position());
+  }
+
+  private static ObjectContent content(InputStream stream) {
+    return ObjectContent.builder().stream(stream).build();
+  }
+}
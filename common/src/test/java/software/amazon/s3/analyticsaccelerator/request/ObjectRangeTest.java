@@ -0,0 +1,53 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class ObjectRangeTest {
+
+  @Test
+  void testInvalidRangesThrow() {
+    CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+    assertThrows(NullPointerException.class, () -> new ObjectRange(null, 0, 1));
+    assertThrows(IllegalArgumentException.class, () -> new ObjectRange(future, -1, 1));
+    assertThrows(IllegalArgumentException.class, () -> new ObjectRange(future, 0, -1));
+  }
+
+  @Test
+  void testToRange() {
+    ObjectRange objectRange = new ObjectRange(new CompletableFuture<>(), 100, 50);
+
+    assertEquals(new Range(100, 149), objectRange.toRange());
+    assertEquals("100-149", objectRange.toString());
+  }
+
+  @Test
+  void testEmptyRangeHasNoRange() {
+    ObjectRange objectRange = new ObjectRange(new CompletableFuture<>(), 100, 0);
+
+    assertThrows(IllegalStateException.class, objectRange::toRange);
+  }
+}
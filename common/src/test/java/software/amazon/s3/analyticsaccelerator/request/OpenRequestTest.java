@@ -0,0 +1,60 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+public class OpenRequestTest {
+  private static final S3URI TEST_URI = S3URI.of("bucket", "key");
+  private static final Referrer TEST_REFERRER = new Referrer("bytes=-100", ReadMode.SYNC);
+
+  @Test
+  void testSuffixRequest() {
+    OpenRequest openRequest = request(100, true);
+
+    assertEquals("bytes=-100", openRequest.toHttpString());
+    assertEquals(new Range(900, 999), openRequest.toRange(1000));
+    assertEquals(new Range(0, 49), openRequest.toRange(50));
+  }
+
+  @Test
+  void testPrefixRequest() {
+    OpenRequest openRequest = request(100, false);
+
+    assertEquals("bytes=0-99", openRequest.toHttpString());
+    assertEquals(new Range(0, 99), openRequest.toRange(1000));
+    assertEquals(new Range(0, 49), openRequest.toRange(50));
+  }
+
+  @Test
+  void testInvalidArgumentsThrow() {
+    assertThrows(IllegalArgumentException.class, () -> request(0, true));
+    assertThrows(IllegalArgumentException.class, () -> request(100, true).toRange(0));
+  }
+
+  private static OpenRequest request(long length, boolean fromEnd) {
+    return OpenRequest.builder()
+        .s3Uri(TEST_URI)
+        .length(length)
+        .fromEnd(fromEnd)
+        .referrer(TEST_REFERRER)
+        .build();
+  }
+}
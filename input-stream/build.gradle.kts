@@ -45,6 +45,14 @@ sourceSets {
     }
 }
 
+// Java 22+ replacements of main classes, packaged into the multi-release jar
+sourceSets {
+    create("java22") {
+        java.srcDir("src/main/java22")
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    }
+}
+
 val referenceTestImplementation by configurations.getting {
     extendsFrom(configurations.testImplementation.get())
 }
@@ -102,6 +110,12 @@ tasks.compileJava {
     }
 }
 
+tasks.named("compileJava22Java", JavaCompile::class) {
+    javaCompiler = javaToolchains.compilerFor {
+        languageVersion = JavaLanguageVersion.of(22)
+    }
+}
+
 tasks.named("compileReferenceTestJava", JavaCompile::class) {
     javaCompiler = javaToolchains.compilerFor {
         languageVersion = JavaLanguageVersion.of(17)
@@ -139,6 +153,13 @@ val shadowJar = tasks.withType<ShadowJar> {
 
     relocate("org.apache.parquet.format", "software.amazon.s3.shaded.apache.parquet.format")
     relocate("shaded.parquet.org.apache.thrift", "software.amazon.s3.shaded.parquet.org.apache.thrift")
+
+    into("META-INF/versions/22") {
+        from(sourceSets["java22"].output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
 }
 
 val refTest = task<Test>("referenceTest") {
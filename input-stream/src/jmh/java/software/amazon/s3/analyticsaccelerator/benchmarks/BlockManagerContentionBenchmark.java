@@ -0,0 +1,235 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.HeapBufferAllocator;
+import software.amazon.s3.analyticsaccelerator.io.physical.data.BlockCache;
+import software.amazon.s3.analyticsaccelerator.io.physical.data.BlockManager;
+import software.amazon.s3.analyticsaccelerator.io.physical.data.MetadataStore;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+/**
+ * Measures how a single {@link BlockManager} scales with the number of threads reading the object
+ * concurrently, as when many tasks read row groups of the same file. Each invocation runs a fixed
+ * amount of work per thread, so on a machine with enough cores a BlockManager that does not
+ * serialize its readers keeps the time per invocation flat as threads are added. Requests complete
+ * immediately without any data, so only the bookkeeping is measured. The blocks are accounted in a
+ * {@link BlockCache} shared with other objects, as in a BlobStore, so that recording accesses and
+ * evicting blocks are measured too.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BlockManagerContentionBenchmark {
+  private static final S3URI S3_URI = S3URI.of("bucket", "key");
+  private static final S3URI OTHER_S3_URI = S3URI.of("bucket", "other-key");
+  private static final int BLOCK_SIZE = 64 * 1024;
+  private static final int BLOCKS_PER_THREAD = 64;
+  private static final int LOOKUPS_PER_THREAD = 1024;
+  private static final int LOOKUPS_PER_FETCH = LOOKUPS_PER_THREAD / BLOCKS_PER_THREAD;
+
+  @Param({"1", "2", "4", "8", "16", "32", "64"})
+  public int threads;
+
+  private ExecutorService executor;
+  private ObjectClient objectClient;
+  private MetadataStore metadataStore;
+  private PhysicalIOConfiguration configuration;
+  private BlockCache blockCache;
+  private BlockManager presentBlocks;
+  private BlockManager emptyBlocks;
+  private BlockManager otherBlocks;
+  private long[][] positions;
+
+  /** Creates the thread pool, and a BlockManager holding every block of the object */
+  @Setup(Level.Trial)
+  public void setUp() {
+    long objectSize = (long) threads * BLOCKS_PER_THREAD * BLOCK_SIZE;
+    executor = Executors.newFixedThreadPool(threads);
+    objectClient = new NoOpObjectClient(objectSize);
+    metadataStore =
+        new MetadataStore(objectClient, Telemetry.NOOP, PhysicalIOConfiguration.DEFAULT);
+    // The cache fits exactly the object, so that blocks of other objects evict some of its blocks
+    configuration =
+        PhysicalIOConfiguration.builder()
+            .readAheadBytes(BLOCK_SIZE)
+            .cacheMaxBytes(objectSize)
+            .build();
+    blockCache = new BlockCache(Telemetry.NOOP, configuration);
+
+    presentBlocks = createBlockManager(S3_URI, blockCache);
+    presentBlocks.makeRangeAvailable(0, objectSize, ReadMode.SYNC);
+
+    Random random = new Random(42);
+    positions = new long[threads][LOOKUPS_PER_THREAD];
+    for (long[] threadPositions : positions) {
+      for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+        threadPositions[i] = (long) (random.nextDouble() * (objectSize - 1));
+      }
+    }
+  }
+
+  /** Creates the empty BlockManagers for the fetching benchmarks */
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    emptyBlocks = createBlockManager(S3_URI, new BlockCache(Telemetry.NOOP, configuration));
+    otherBlocks = createBlockManager(OTHER_S3_URI, blockCache);
+  }
+
+  /** Releases the blocks fetched by an invocation */
+  @TearDown(Level.Invocation)
+  public void tearDownInvocation() {
+    emptyBlocks.close();
+    otherBlocks.close();
+  }
+
+  /** Closes the BlockManager and the thread pool */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    presentBlocks.close();
+    executor.shutdown();
+  }
+
+  /**
+   * Every thread pins and unpins blocks that are already present, at random positions.
+   *
+   * @throws Exception if any of the threads fails
+   */
+  @Benchmark
+  public void pinPresentBlocks() throws Exception {
+    runOnAllThreads(
+        thread -> {
+          for (long pos : positions[thread]) {
+            presentBlocks.pinBlock(pos, 1, ReadMode.SYNC).unpin();
+          }
+        });
+  }
+
+  /**
+   * Every thread pins and unpins blocks that are already present, at random positions, and now and
+   * then fetches a block of another object into the same cache, evicting a block.
+   *
+   * @throws Exception if any of the threads fails
+   */
+  @Benchmark
+  public void pinPresentBlocksWhileEvicting() throws Exception {
+    runOnAllThreads(
+        thread -> {
+          long block = (long) thread * BLOCKS_PER_THREAD;
+          for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+            presentBlocks.pinBlock(positions[thread][i], 1, ReadMode.SYNC).unpin();
+            if (i % LOOKUPS_PER_FETCH == 0) {
+              otherBlocks.makeRangeAvailable(block++ * BLOCK_SIZE, BLOCK_SIZE, ReadMode.SYNC);
+            }
+          }
+        });
+  }
+
+  /**
+   * Every thread fetches its own disjoint part of the object, one block at a time. Blocks are
+   * fetched backwards, so that they are not detected as sequential and prefetched ahead.
+   *
+   * @throws Exception if any of the threads fails
+   */
+  @Benchmark
+  public void fetchDisjointRanges() throws Exception {
+    runOnAllThreads(
+        thread -> {
+          long first = (long) thread * BLOCKS_PER_THREAD;
+          for (long block = first + BLOCKS_PER_THREAD - 1; block >= first; block--) {
+            emptyBlocks.makeRangeAvailable(block * BLOCK_SIZE, BLOCK_SIZE, ReadMode.SYNC);
+          }
+        });
+  }
+
+  private BlockManager createBlockManager(S3URI s3URI, BlockCache blockCache) {
+    return new BlockManager(
+        s3URI,
+        objectClient,
+        metadataStore,
+        blockCache,
+        HeapBufferAllocator.INSTANCE,
+        Telemetry.NOOP,
+        configuration);
+  }
+
+  private void runOnAllThreads(ThreadTask task) throws Exception {
+    List<Future<?>> futures = new ArrayList<>(threads);
+    for (int thread = 0; thread < threads; thread++) {
+      int current = thread;
+      futures.add(executor.submit(() -> task.run(current)));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+  }
+
+  /** Work done by one of the threads of an invocation */
+  private interface ThreadTask {
+    void run(int thread);
+  }
+
+  /** {@link ObjectClient} that answers every request immediately, without any data */
+  private static class NoOpObjectClient implements ObjectClient {
+    private final long contentLength;
+
+    NoOpObjectClient(long contentLength) {
+      this.contentLength = contentLength;
+    }
+
+    @Override
+    public CompletableFuture<ObjectMetadata> headObject(HeadRequest headRequest) {
+      return CompletableFuture.completedFuture(
+          ObjectMetadata.builder().contentLength(contentLength).build());
+    }
+
+    @Override
+    public CompletableFuture<ObjectContent> getObject(GetRequest getRequest) {
+      return CompletableFuture.completedFuture(
+          ObjectContent.builder().stream(new ByteArrayInputStream(new byte[0])).build());
+    }
+
+    @Override
+    public CompletableFuture<Integer> getObject(GetRequest getRequest, ByteBuffer destination) {
+      return CompletableFuture.completedFuture(0);
+    }
+
+    @Override
+    public void close() {}
+  }
+}
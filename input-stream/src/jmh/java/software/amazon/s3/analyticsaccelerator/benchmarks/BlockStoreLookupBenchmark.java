@@ -0,0 +1,162 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.HeapBufferAllocator;
+import software.amazon.s3.analyticsaccelerator.io.physical.data.Block;
+import software.amazon.s3.analyticsaccelerator.io.physical.data.BlockStore;
+import software.amazon.s3.analyticsaccelerator.io.physical.data.MetadataStore;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+/**
+ * Measures the cost of {@link BlockStore} lookups as the number of blocks grows. Blocks are laid
+ * out in runs of {@link #RUN_LENGTH} adjacent blocks separated by gaps, which is what sequential
+ * readahead interleaved with random reads produces. No data is transferred.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class BlockStoreLookupBenchmark {
+  private static final S3URI S3_URI = S3URI.of("bucket", "key");
+  private static final long BLOCK_SIZE = 8 * 1024 * 1024;
+  private static final int RUN_LENGTH = 8;
+  private static final int POSITIONS = 1024;
+
+  @Param({"16", "256", "4096", "16384"})
+  public int blockCount;
+
+  private BlockStore blockStore;
+  private long[] positions;
+  private int next;
+
+  /** Populates the BlockStore and precomputes the positions to look up */
+  @Setup(Level.Trial)
+  public void setUp() {
+    // Every run of blocks is followed by a gap of one block
+    long objectSize = (blockCount + blockCount / RUN_LENGTH + 1) * BLOCK_SIZE;
+    ObjectClient objectClient = new NoOpObjectClient(objectSize);
+    MetadataStore metadataStore =
+        new MetadataStore(objectClient, Telemetry.NOOP, PhysicalIOConfiguration.DEFAULT);
+    blockStore = new BlockStore(S3_URI, metadataStore);
+
+    long start = 0;
+    for (int i = 0; i < blockCount; i++) {
+      blockStore.add(
+          new Block(
+              S3_URI,
+              objectClient,
+              Telemetry.NOOP,
+              start,
+              start + BLOCK_SIZE - 1,
+              0,
+              ReadMode.ASYNC,
+              HeapBufferAllocator.INSTANCE));
+      start += BLOCK_SIZE;
+      if ((i + 1) % RUN_LENGTH == 0) {
+        start += BLOCK_SIZE;
+      }
+    }
+
+    Random random = new Random(42);
+    positions = new long[POSITIONS];
+    for (int i = 0; i < POSITIONS; i++) {
+      positions[i] = (long) (random.nextDouble() * (objectSize - 1));
+    }
+  }
+
+  /** Closes the BlockStore */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    blockStore.close();
+  }
+
+  /**
+   * Looks up the block holding a random position
+   *
+   * @return the lookup result
+   */
+  @Benchmark
+  public Optional<Block> getBlock() {
+    return blockStore.getBlock(nextPosition());
+  }
+
+  /**
+   * Finds the next loaded byte from a random position
+   *
+   * @return the lookup result
+   */
+  @Benchmark
+  public OptionalLong findNextLoadedByte() {
+    return blockStore.findNextLoadedByte(nextPosition());
+  }
+
+  /**
+   * Finds the next missing byte from a random position
+   *
+   * @return the lookup result
+   */
+  @Benchmark
+  public OptionalLong findNextMissingByte() {
+    return blockStore.findNextMissingByte(nextPosition());
+  }
+
+  private long nextPosition() {
+    next = (next + 1) % POSITIONS;
+    return positions[next];
+  }
+
+  /** {@link ObjectClient} that answers every request immediately, without any data */
+  private static class NoOpObjectClient implements ObjectClient {
+    private final long contentLength;
+
+    NoOpObjectClient(long contentLength) {
+      this.contentLength = contentLength;
+    }
+
+    @Override
+    public CompletableFuture<ObjectMetadata> headObject(HeadRequest headRequest) {
+      return CompletableFuture.completedFuture(
+          ObjectMetadata.builder().contentLength(contentLength).build());
+    }
+
+    @Override
+    public CompletableFuture<ObjectContent> getObject(GetRequest getRequest) {
+      return CompletableFuture.completedFuture(
+          ObjectContent.builder().stream(new ByteArrayInputStream(new byte[0])).build());
+    }
+
+    @Override
+    public void close() {}
+  }
+}
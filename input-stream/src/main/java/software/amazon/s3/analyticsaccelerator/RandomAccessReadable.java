@@ -17,7 +17,11 @@ package software.amazon.s3.analyticsaccelerator;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntFunction;
 import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ObjectRange;
 
 /** An InputStream-like entity implementing blocking random-access reads. */
 public interface RandomAccessReadable extends Closeable {
@@ -49,6 +53,27 @@ public interface RandomAccessReadable extends Closeable {
    */
   int read(byte[] buf, int off, int len, long pos) throws IOException;
 
+  /**
+   * Reads request data into the provided buffer, starting at its current position and advancing it
+   * by the number of bytes read. Both heap and direct buffers are supported.
+   *
+   * @param dst buffer to read data into; up to {@code dst.remaining()} bytes are read
+   * @param pos the position to begin reading from
+   * @return the total number of bytes read into the buffer
+   * @throws IOException if an error occurs while reading the file
+   */
+  int read(ByteBuffer dst, long pos) throws IOException;
+
+  /**
+   * Reads a set of ranges asynchronously. Returns once the reads are issued; the future of each
+   * range is completed with a buffer holding its data as soon as that data is available.
+   *
+   * @param ranges the ranges to read
+   * @param allocate the function allocating the buffer each range is delivered in
+   * @throws IOException if an error occurs while issuing the reads
+   */
+  void readVectored(List<ObjectRange> ranges, IntFunction<ByteBuffer> allocate) throws IOException;
+
   /**
    * Reads the last n bytes from the stream into a byte buffer. Blocks until end of stream is
    * reached. Leaves the position of the stream unaltered.
@@ -17,11 +17,15 @@ package software.amazon.s3.analyticsaccelerator;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntFunction;
 import lombok.NonNull;
 import software.amazon.s3.analyticsaccelerator.common.Preconditions;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Operation;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIO;
+import software.amazon.s3.analyticsaccelerator.request.ObjectRange;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
 
@@ -43,7 +47,9 @@ public class S3SeekableInputStream extends SeekableInputStream {
   private static final String OPERATION_READ = "stream.read";
   private static final String FLAVOR_TAIL = "tail";
   private static final String FLAVOR_BYTE = "byte";
+  private static final String FLAVOR_BUFFER = "buffer";
 
+  private static final String OPERATION_READ_VECTORED = "stream.read.vectored";
   private static final String OPERATION_STREAM_CLOSE = "seekablestream.close";
   private final long streamBirth = System.nanoTime();
 
@@ -148,6 +154,88 @@ public class S3SeekableInputStream extends SeekableInputStream {
         });
   }
 
+  /**
+   * Reads up to {@code dst.remaining()} bytes from the current position of the stream into the
+   * buffer, advancing both the stream and the buffer by the number of bytes read. Heap and direct
+   * buffers are filled straight from the underlying blocks without an intermediate array.
+   *
+   * @param dst the buffer into which the data is read
+   * @return the total number of bytes read into the buffer, or <code>-1</code> if there is no more
+   *     data because the end of the stream has been reached.
+   * @exception IOException if an I/O error occurs.
+   */
+  @Override
+  public int read(@NonNull ByteBuffer dst) throws IOException {
+    if (this.position >= getContentLength()) {
+      return EOF;
+    }
+
+    return this.telemetry.measureVerbose(
+        () ->
+            Operation.builder()
+                .name(OPERATION_READ)
+                .attribute(StreamAttributes.variant(FLAVOR_BUFFER))
+                .attribute(StreamAttributes.uri(this.s3URI))
+                .attribute(StreamAttributes.range(position, position + dst.remaining() - 1))
+                .build(),
+        () -> {
+          // Delegate to the LogicalIO and advance the position accordingly
+          int bytesRead = this.logicalIO.read(dst, position);
+          return advancePosition(bytesRead);
+        });
+  }
+
+  /**
+   * Reads up to {@code dst.remaining()} bytes starting at the given position into the buffer,
+   * advancing the buffer by the number of bytes read. Leaves the position of the stream unaltered.
+   *
+   * @param pos the position in the stream to begin reading from
+   * @param dst the buffer into which the data is read
+   * @return the total number of bytes read into the buffer, or <code>-1</code> if {@code pos} is at
+   *     or past the end of the stream.
+   * @exception IOException if an I/O error occurs.
+   */
+  @Override
+  public int read(long pos, @NonNull ByteBuffer dst) throws IOException {
+    Preconditions.checkArgument(pos >= 0, "position must be non-negative");
+    if (pos >= getContentLength()) {
+      return EOF;
+    }
+
+    return this.telemetry.measureVerbose(
+        () ->
+            Operation.builder()
+                .name(OPERATION_READ)
+                .attribute(StreamAttributes.variant(FLAVOR_BUFFER))
+                .attribute(StreamAttributes.uri(this.s3URI))
+                .attribute(StreamAttributes.range(pos, pos + dst.remaining() - 1))
+                .build(),
+        () -> this.logicalIO.read(dst, pos));
+  }
+
+  /**
+   * Reads a set of ranges of the object asynchronously. All ranges are planned together, so that
+   * nearby ranges are fetched with a single request, and fetched concurrently. The future of each
+   * range is completed with a buffer holding its data as soon as that data is available, without
+   * waiting for the other ranges. Leaves the position of the stream unaltered.
+   *
+   * @param ranges the ranges to read; each must lie within the object
+   * @param allocate the function allocating the buffer each range is delivered in, given the length
+   *     of the range
+   * @exception IOException if an I/O error occurs while issuing the reads.
+   */
+  public void readVectored(
+      @NonNull List<ObjectRange> ranges, @NonNull IntFunction<ByteBuffer> allocate)
+      throws IOException {
+    this.telemetry.measureVerbose(
+        () ->
+            Operation.builder()
+                .name(OPERATION_READ_VECTORED)
+                .attribute(StreamAttributes.uri(this.s3URI))
+                .build(),
+        () -> this.logicalIO.readVectored(ranges, allocate));
+  }
+
   /**
    * Sets the offset, measured from the beginning of this stream, at which the next read occurs. The
    * offset may be set beyond the end of the file. Setting the offset beyond the end of the file
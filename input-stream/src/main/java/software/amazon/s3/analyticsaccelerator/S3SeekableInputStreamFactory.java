@@ -21,12 +21,15 @@ import lombok.NonNull;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIO;
 import software.amazon.s3.analyticsaccelerator.io.logical.impl.DefaultLogicalIOImpl;
+import software.amazon.s3.analyticsaccelerator.io.logical.impl.MarkovModelStore;
 import software.amazon.s3.analyticsaccelerator.io.logical.impl.ParquetColumnPrefetchStore;
 import software.amazon.s3.analyticsaccelerator.io.logical.impl.ParquetLogicalIOImpl;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIO;
 import software.amazon.s3.analyticsaccelerator.io.physical.data.BlobStore;
 import software.amazon.s3.analyticsaccelerator.io.physical.data.MetadataStore;
 import software.amazon.s3.analyticsaccelerator.io.physical.impl.PhysicalIOImpl;
 import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
 import software.amazon.s3.analyticsaccelerator.util.ObjectFormatSelector;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
@@ -45,6 +48,7 @@ public class S3SeekableInputStreamFactory implements AutoCloseable {
   private final ObjectClient objectClient;
   private final S3SeekableInputStreamConfiguration configuration;
   private final ParquetColumnPrefetchStore parquetColumnPrefetchStore;
+  private final MarkovModelStore markovModelStore;
 
   private final MetadataStore objectMetadataStore;
   private final BlobStore objectBlobStore;
@@ -67,6 +71,7 @@ public class S3SeekableInputStreamFactory implements AutoCloseable {
     this.telemetry = Telemetry.createTelemetry(configuration.getTelemetryConfiguration());
     this.parquetColumnPrefetchStore =
         new ParquetColumnPrefetchStore(configuration.getLogicalIOConfiguration());
+    this.markovModelStore = new MarkovModelStore(configuration.getLogicalIOConfiguration());
     this.objectMetadataStore =
         new MetadataStore(objectClient, telemetry, configuration.getPhysicalIOConfiguration());
     this.objectFormatSelector = new ObjectFormatSelector(configuration.getLogicalIOConfiguration());
@@ -88,12 +93,35 @@ public class S3SeekableInputStreamFactory implements AutoCloseable {
     return new S3SeekableInputStream(s3URI, createLogicalIO(s3URI), telemetry);
   }
 
+  /**
+   * Create an instance of S3SeekableInputStream for an object whose metadata the caller already
+   * knows, for example from listing it or from a table manifest. The stream reads the version of
+   * the object the metadata describes, so opening it does not issue a HEAD request, and its ETag
+   * pins the GETs of the stream for as long as the stream lives. The metadata is also cached for
+   * other streams of the object.
+   *
+   * @param s3URI the object's S3 URI
+   * @param metadata the metadata of the object
+   * @return An instance of the input stream.
+   */
+  public S3SeekableInputStream createStream(
+      @NonNull S3URI s3URI, @NonNull ObjectMetadata metadata) {
+    objectMetadataStore.storeObjectMetadata(s3URI, metadata);
+    return new S3SeekableInputStream(s3URI, createLogicalIO(s3URI, metadata), telemetry);
+  }
+
   LogicalIO createLogicalIO(S3URI s3URI) {
+    return createLogicalIO(s3URI, null);
+  }
+
+  private LogicalIO createLogicalIO(S3URI s3URI, ObjectMetadata metadata) {
+    PhysicalIO physicalIO =
+        new PhysicalIOImpl(s3URI, objectMetadataStore, objectBlobStore, telemetry, metadata);
     switch (objectFormatSelector.getObjectFormat(s3URI)) {
       case PARQUET:
         return new ParquetLogicalIOImpl(
             s3URI,
-            new PhysicalIOImpl(s3URI, objectMetadataStore, objectBlobStore, telemetry),
+            physicalIO,
             telemetry,
             configuration.getLogicalIOConfiguration(),
             parquetColumnPrefetchStore);
@@ -101,8 +129,10 @@ public class S3SeekableInputStreamFactory implements AutoCloseable {
       default:
         return new DefaultLogicalIOImpl(
             s3URI,
-            new PhysicalIOImpl(s3URI, objectMetadataStore, objectBlobStore, telemetry),
-            telemetry);
+            physicalIO,
+            telemetry,
+            configuration.getLogicalIOConfiguration(),
+            markovModelStore);
     }
   }
 
@@ -15,8 +15,10 @@
  */
 package software.amazon.s3.analyticsaccelerator;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A SeekableInputStream is like a conventional InputStream but equipped with two additional
@@ -57,4 +59,64 @@ public abstract class SeekableInputStream extends InputStream {
    * @throws IOException if an error occurs while reading the file
    */
   public abstract int readTail(byte[] buf, int off, int n) throws IOException;
+
+  /**
+   * Reads up to {@code dst.remaining()} bytes from the current position of the stream into the
+   * buffer, advancing both the stream and the buffer by the number of bytes read. Works with both
+   * heap and direct buffers.
+   *
+   * <p>The default implementation goes through {@link #read(byte[], int, int)}, staging the bytes
+   * in a temporary array when the buffer is not backed by one. Implementations able to write into
+   * the buffer directly should override it.
+   *
+   * @param dst the buffer into which the data is read
+   * @return the total number of bytes read into the buffer, or {@code -1} if there is no more data
+   *     because the end of the stream has been reached.
+   * @throws IOException if an error occurs while reading the file
+   */
+  public int read(ByteBuffer dst) throws IOException {
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+
+    if (dst.hasArray()) {
+      int bytesRead = read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+      if (bytesRead > 0) {
+        dst.position(dst.position() + bytesRead);
+      }
+      return bytesRead;
+    }
+
+    byte[] staging = new byte[dst.remaining()];
+    int bytesRead = read(staging, 0, staging.length);
+    if (bytesRead > 0) {
+      dst.put(staging, 0, bytesRead);
+    }
+    return bytesRead;
+  }
+
+  /**
+   * Reads up to {@code dst.remaining()} bytes starting at the given position into the buffer,
+   * advancing the buffer by the number of bytes read. Leaves the position of the stream unaltered.
+   *
+   * <p>The default implementation seeks to {@code pos}, delegates to {@link #read(ByteBuffer)} and
+   * seeks back. Implementations able to read without moving the stream should override it.
+   *
+   * @param pos the position in the stream to begin reading from
+   * @param dst the buffer into which the data is read
+   * @return the total number of bytes read into the buffer, or {@code -1} if {@code pos} is at or
+   *     past the end of the stream.
+   * @throws IOException if an error occurs while reading the file
+   */
+  public int read(long pos, ByteBuffer dst) throws IOException {
+    long previousPosition = getPos();
+    try {
+      seek(pos);
+      return read(dst);
+    } catch (EOFException e) {
+      return -1;
+    } finally {
+      seek(previousPosition);
+    }
+  }
 }
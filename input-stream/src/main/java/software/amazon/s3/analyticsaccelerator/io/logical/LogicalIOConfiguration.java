@@ -15,6 +15,7 @@
  */
 package software.amazon.s3.analyticsaccelerator.io.logical;
 
+import static software.amazon.s3.analyticsaccelerator.util.Constants.ONE_KB;
 import static software.amazon.s3.analyticsaccelerator.util.Constants.ONE_MB;
 
 import lombok.Builder;
@@ -36,6 +37,12 @@ public class LogicalIOConfiguration {
   private static final int DEFAULT_MAX_COLUMN_ACCESS_STORE_SIZE = 15;
   private static final String DEFAULT_PARQUET_FORMAT_SELECTOR_REGEX = "^.*.(parquet|par)$";
   private static final PrefetchMode DEFAULT_PREFETCHING_MODE = PrefetchMode.ROW_GROUP;
+  private static final boolean DEFAULT_MARKOV_PREFETCHING_ENABLED = false;
+  private static final int DEFAULT_MARKOV_PREFETCH_DEPTH = 3;
+  private static final double DEFAULT_MARKOV_CONFIDENCE_THRESHOLD = 0.6;
+  private static final int DEFAULT_MARKOV_MODEL_STORE_SIZE = 128;
+  private static final boolean DEFAULT_HEADLESS_OPEN_ENABLED = true;
+  private static final long DEFAULT_HEADLESS_OPEN_SIZE = 64 * ONE_KB;
 
   @Builder.Default private boolean footerCachingEnabled = DEFAULT_FOOTER_CACHING_ENABLED;
 
@@ -75,6 +82,31 @@ public class LogicalIOConfiguration {
 
   private static final String PARQUET_FORMAT_SELECTOR_REGEX = "parquet.format.selector.regex";
 
+  @Builder.Default private boolean markovPrefetchingEnabled = DEFAULT_MARKOV_PREFETCHING_ENABLED;
+
+  private static final String MARKOV_PREFETCHING_ENABLED_KEY = "markov.prefetching.enabled";
+
+  @Builder.Default private int markovPrefetchDepth = DEFAULT_MARKOV_PREFETCH_DEPTH;
+
+  private static final String MARKOV_PREFETCH_DEPTH_KEY = "markov.prefetch.depth";
+
+  @Builder.Default
+  private double markovConfidenceThreshold = DEFAULT_MARKOV_CONFIDENCE_THRESHOLD;
+
+  private static final String MARKOV_CONFIDENCE_THRESHOLD_KEY = "markov.confidence.threshold";
+
+  @Builder.Default private int markovModelStoreSize = DEFAULT_MARKOV_MODEL_STORE_SIZE;
+
+  private static final String MARKOV_MODEL_STORE_SIZE_KEY = "markov.model.store.size";
+
+  @Builder.Default private boolean headlessOpenEnabled = DEFAULT_HEADLESS_OPEN_ENABLED;
+
+  private static final String HEADLESS_OPEN_ENABLED_KEY = "headless.open.enabled";
+
+  @Builder.Default private long headlessOpenSize = DEFAULT_HEADLESS_OPEN_SIZE;
+
+  private static final String HEADLESS_OPEN_SIZE_KEY = "headless.open.size";
+
   public static final LogicalIOConfiguration DEFAULT = LogicalIOConfiguration.builder().build();
 
   /**
@@ -107,6 +139,19 @@ public class LogicalIOConfiguration {
         .prefetchingMode(
             PrefetchMode.fromString(
                 configuration.getString(PREFETCHING_MODE_KEY, DEFAULT_PREFETCHING_MODE.toString())))
+        .markovPrefetchingEnabled(
+            configuration.getBoolean(
+                MARKOV_PREFETCHING_ENABLED_KEY, DEFAULT_MARKOV_PREFETCHING_ENABLED))
+        .markovPrefetchDepth(
+            configuration.getInt(MARKOV_PREFETCH_DEPTH_KEY, DEFAULT_MARKOV_PREFETCH_DEPTH))
+        .markovConfidenceThreshold(
+            configuration.getDouble(
+                MARKOV_CONFIDENCE_THRESHOLD_KEY, DEFAULT_MARKOV_CONFIDENCE_THRESHOLD))
+        .markovModelStoreSize(
+            configuration.getInt(MARKOV_MODEL_STORE_SIZE_KEY, DEFAULT_MARKOV_MODEL_STORE_SIZE))
+        .headlessOpenEnabled(
+            configuration.getBoolean(HEADLESS_OPEN_ENABLED_KEY, DEFAULT_HEADLESS_OPEN_ENABLED))
+        .headlessOpenSize(configuration.getLong(HEADLESS_OPEN_SIZE_KEY, DEFAULT_HEADLESS_OPEN_SIZE))
         .build();
   }
 }
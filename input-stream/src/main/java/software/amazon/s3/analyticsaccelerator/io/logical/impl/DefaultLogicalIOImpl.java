@@ -16,13 +16,20 @@
 package software.amazon.s3.analyticsaccelerator.io.logical.impl;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntFunction;
 import lombok.NonNull;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Operation;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.TelemetryLevel;
 import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIO;
+import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIOConfiguration;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIO;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanExecution;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanState;
 import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ObjectRange;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
 
@@ -35,6 +42,8 @@ public class DefaultLogicalIOImpl implements LogicalIO {
   private final S3URI s3URI;
   private final PhysicalIO physicalIO;
   private final Telemetry telemetry;
+  // Null unless predictive prefetching from the models of key prefixes is enabled
+  private final MarkovPredictivePrefetchingTask markovPredictivePrefetchingTask;
 
   // When is the LogicalIO instance created?
   private final long birthTimestamp = System.nanoTime();
@@ -51,6 +60,52 @@ public class DefaultLogicalIOImpl implements LogicalIO {
     this.s3URI = s3URI;
     this.physicalIO = physicalIO;
     this.telemetry = telemetry;
+    this.markovPredictivePrefetchingTask = null;
+  }
+
+  /**
+   * Constructs an instance of LogicalIOImpl that, if enabled in the configuration, opens the object
+   * with a GET of its first bytes rather than a HEAD, fetches small objects whole, and otherwise
+   * prefetches the reads predicted from how objects under the same key prefix were read.
+   *
+   * @param s3URI the S3 URI of the object fetched
+   * @param physicalIO underlying physical IO that knows how to fetch bytes
+   * @param telemetry an instance of telemetry
+   * @param logicalIOConfiguration configuration for this logical IO implementation
+   * @param markovModelStore object where the models of how objects are read are kept
+   */
+  public DefaultLogicalIOImpl(
+      @NonNull S3URI s3URI,
+      @NonNull PhysicalIO physicalIO,
+      @NonNull Telemetry telemetry,
+      @NonNull LogicalIOConfiguration logicalIOConfiguration,
+      @NonNull MarkovModelStore markovModelStore) {
+    this.s3URI = s3URI;
+    this.physicalIO = physicalIO;
+    this.telemetry = telemetry;
+    if (logicalIOConfiguration.isHeadlessOpenEnabled()
+        && logicalIOConfiguration.getHeadlessOpenSize() > 0) {
+      // Most objects are read from the start, so their first bytes are fetched instead of a HEAD
+      physicalIO.prefetchOnOpen(logicalIOConfiguration.getHeadlessOpenSize(), false);
+    }
+    boolean fetchedWhole = false;
+    if (logicalIOConfiguration.isSmallObjectsPrefetchingEnabled()) {
+      IOPlanExecution execution =
+          new SmallObjectPrefetchingTask(s3URI, telemetry, logicalIOConfiguration, physicalIO)
+              .prefetchSmallObject();
+      fetchedWhole = execution.getState() == IOPlanState.SUBMITTED;
+    }
+    if (logicalIOConfiguration.isMarkovPrefetchingEnabled()) {
+      this.markovPredictivePrefetchingTask =
+          new MarkovPredictivePrefetchingTask(
+              s3URI, telemetry, logicalIOConfiguration, physicalIO, markovModelStore);
+      // Reads are still recorded, but there is nothing left to prefetch in a small object
+      if (!fetchedWhole) {
+        this.markovPredictivePrefetchingTask.prefetchPredictedRanges();
+      }
+    } else {
+      this.markovPredictivePrefetchingTask = null;
+    }
   }
 
   /**
@@ -62,6 +117,7 @@ public class DefaultLogicalIOImpl implements LogicalIO {
    */
   @Override
   public int read(long position) throws IOException {
+    recordRead(position, 1);
     return physicalIO.read(position);
   }
 
@@ -77,6 +133,8 @@ public class DefaultLogicalIOImpl implements LogicalIO {
    */
   @Override
   public int read(byte[] buf, int off, int len, long position) throws IOException {
+    recordRead(position, len);
+
     // Perform read
     return telemetry.measureConditionally(
         TelemetryLevel.VERBOSE,
@@ -93,6 +151,51 @@ public class DefaultLogicalIOImpl implements LogicalIO {
         bytesRead -> bytesRead > 1);
   }
 
+  /**
+   * Reads data into the provided buffer, starting at its current position and advancing it by the
+   * number of bytes read
+   *
+   * @param dst buffer to read data into
+   * @param position the position to begin reading from
+   * @return the total number of bytes read into the buffer
+   * @throws IOException IO error, if incurred.
+   */
+  @Override
+  public int read(ByteBuffer dst, long position) throws IOException {
+    int len = dst.remaining();
+    recordRead(position, len);
+    return telemetry.measureConditionally(
+        TelemetryLevel.VERBOSE,
+        () ->
+            Operation.builder()
+                .name(OPERATION_LOGICAL_READ)
+                .attribute(StreamAttributes.logicalReadPosition(position))
+                .attribute(StreamAttributes.logicalReadLength(len))
+                .attribute(StreamAttributes.uri(s3URI))
+                .attribute(
+                    StreamAttributes.logicalIORelativeTimestamp(System.nanoTime() - birthTimestamp))
+                .build(),
+        () -> physicalIO.read(dst, position),
+        bytesRead -> bytesRead > 1);
+  }
+
+  /**
+   * Reads a set of ranges asynchronously, completing the future of each range as soon as its data
+   * is available.
+   *
+   * @param ranges the ranges to read
+   * @param allocate the function allocating the buffer each range is delivered in
+   * @throws IOException IO error, if incurred.
+   */
+  @Override
+  public void readVectored(List<ObjectRange> ranges, IntFunction<ByteBuffer> allocate)
+      throws IOException {
+    for (ObjectRange range : ranges) {
+      recordRead(range.getOffset(), range.getLength());
+    }
+    physicalIO.readVectored(ranges, allocate);
+  }
+
   @Override
   public int readTail(byte[] buf, int off, int len) throws IOException {
     long contentLength = metadata().getContentLength();
@@ -110,6 +213,12 @@ public class DefaultLogicalIOImpl implements LogicalIO {
         () -> physicalIO.readTail(buf, off, len));
   }
 
+  private void recordRead(long position, long len) {
+    if (markovPredictivePrefetchingTask != null) {
+      markovPredictivePrefetchingTask.recordRead(position, len);
+    }
+  }
+
   /**
    * Returns object metadata.
    *
@@ -0,0 +1,264 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.logical.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.NonNull;
+import lombok.Value;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+/**
+ * This class maintains models of how the objects under a key prefix are read, shared across
+ * streams. Jobs read many objects of the same table with the same pattern relative to the size of
+ * each object, for example the footer, then an index, then a few regions of the data. Each model
+ * learns the probabilities of moving from one region of an object to another, so that a newly
+ * opened object of the same table can have the regions it will most likely read prefetched.
+ *
+ * <p>An object is split into {@link #STATE_COUNT} regions of equal relative size, which are the
+ * states of the model, plus a start state standing for the opening of an object. Objects share a
+ * model when they have the same bucket, key prefix and extension, where the parts of the prefix
+ * naming a partition, such as {@code date=2024-01-01}, are ignored.
+ *
+ * <p>Memory is bounded: a model has a fixed number of states, each state keeps at most {@link
+ * #MAX_SUCCESSORS} successors, and the least recently used models are forgotten beyond {@link
+ * LogicalIOConfiguration#getMarkovModelStoreSize()} of them.
+ */
+public class MarkovModelStore {
+  /** The number of regions an object is split into. */
+  public static final int STATE_COUNT = 64;
+  /** The state of an object that was just opened. */
+  public static final int START_STATE = STATE_COUNT;
+
+  private static final int MAX_SUCCESSORS = 8;
+  private static final long MIN_OBSERVATIONS = 2;
+  // Counts are halved beyond this, so that models follow workloads that change
+  private static final long MAX_OBSERVATIONS = 1024;
+
+  private final Map<String, Model> models;
+
+  /**
+   * Creates a new instance of {@link MarkovModelStore}.
+   *
+   * @param configuration object containing the number of models to keep
+   */
+  public MarkovModelStore(@NonNull LogicalIOConfiguration configuration) {
+    this.models =
+        new LinkedHashMap<String, Model>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<String, Model> eldest) {
+            return this.size() > configuration.getMarkovModelStoreSize();
+          }
+        };
+  }
+
+  /**
+   * Returns the key of the model an object belongs to.
+   *
+   * @param s3URI the object's S3 URI
+   * @return the bucket, key prefix without partitions, and extension of the object
+   */
+  public static String getModelKey(@NonNull S3URI s3URI) {
+    String key = s3URI.getKey();
+    int nameStart = key.lastIndexOf('/') + 1;
+    StringBuilder modelKey = new StringBuilder(s3URI.getBucket()).append('/');
+    for (String part : key.substring(0, nameStart).split("/")) {
+      if (!part.isEmpty() && part.indexOf('=') < 0) {
+        modelKey.append(part).append('/');
+      }
+    }
+
+    String name = key.substring(nameStart);
+    int extensionStart = name.lastIndexOf('.');
+    return modelKey
+        .append('*')
+        .append(extensionStart < 0 ? "" : name.substring(extensionStart))
+        .toString();
+  }
+
+  /**
+   * Returns the state of a read.
+   *
+   * @param position the position of the read
+   * @param contentLength the length of the object
+   * @return the region of the object the read starts in
+   */
+  public static int getState(long position, long contentLength) {
+    Preconditions.checkArgument(0 <= position, "`position` must not be negative");
+    Preconditions.checkArgument(0 < contentLength, "`contentLength` must be positive");
+
+    return (int) Math.min(STATE_COUNT - 1, (double) position / contentLength * STATE_COUNT);
+  }
+
+  /**
+   * Records that a stream moved from one state to another.
+   *
+   * @param modelKey the key of the model of the object read
+   * @param from the state of the previous read of the stream
+   * @param to the state of the read
+   * @param relativeStart the position of the read, relative to the length of the object
+   * @param length the length of the read
+   */
+  public synchronized void recordTransition(
+      @NonNull String modelKey, int from, int to, double relativeStart, long length) {
+    Preconditions.checkArgument(0 <= from && from <= START_STATE, "`from` must be a state");
+    Preconditions.checkArgument(0 <= to && to < STATE_COUNT, "`to` must be a region");
+
+    models.computeIfAbsent(modelKey, k -> new Model()).record(from, to, relativeStart, length);
+  }
+
+  /**
+   * Predicts the reads of a newly opened object, following the most likely successor of each state
+   * from the start state while the probability of the whole path stays above a threshold.
+   *
+   * @param modelKey the key of the model of the object opened
+   * @param depth the most reads to predict
+   * @param minConfidence the lowest probability of the path to the last predicted read
+   * @return the predicted reads, in the order they are expected
+   */
+  public synchronized List<Prediction> predict(
+      @NonNull String modelKey, int depth, double minConfidence) {
+    List<Prediction> predictions = new ArrayList<>();
+    Model model = models.get(modelKey);
+    if (model == null) {
+      return predictions;
+    }
+
+    boolean[] visited = new boolean[STATE_COUNT];
+    int state = START_STATE;
+    double confidence = 1;
+    while (predictions.size() < depth) {
+      Successors successors = model.states[state];
+      if (successors == null || successors.total < MIN_OBSERVATIONS) {
+        break;
+      }
+      Successor best = successors.getMostLikely();
+      confidence *= (double) best.count / successors.total;
+      if (confidence < minConfidence || visited[best.state]) {
+        break;
+      }
+
+      visited[best.state] = true;
+      predictions.add(new Prediction(best.relativeStart, best.maxLength, confidence));
+      state = best.state;
+    }
+    return predictions;
+  }
+
+  /**
+   * Returns the number of models kept.
+   *
+   * @return the number of models
+   */
+  synchronized int size() {
+    return models.size();
+  }
+
+  /** A read predicted by a model. */
+  @Value
+  public static class Prediction {
+    /** The position of the read, relative to the length of the object. */
+    double relativeStart;
+    /** The length of the read. */
+    long length;
+    /** The probability of the read. */
+    double confidence;
+  }
+
+  /** The transitions of the objects sharing a model. */
+  private static class Model {
+    private final Successors[] states = new Successors[STATE_COUNT + 1];
+
+    private void record(int from, int to, double relativeStart, long length) {
+      if (states[from] == null) {
+        states[from] = new Successors();
+      }
+      states[from].record(to, relativeStart, length);
+    }
+  }
+
+  /** The states observed after a state, with how often each was. */
+  private static class Successors {
+    private final List<Successor> successors = new ArrayList<>(MAX_SUCCESSORS);
+    private long total;
+
+    private void record(int state, double relativeStart, long length) {
+      Successor successor = find(state);
+      if (successor == null) {
+        if (successors.size() == MAX_SUCCESSORS) {
+          Successor leastLikely = successors.get(0);
+          for (Successor candidate : successors) {
+            if (candidate.count < leastLikely.count) {
+              leastLikely = candidate;
+            }
+          }
+          successors.remove(leastLikely);
+          total -= leastLikely.count;
+        }
+        successor = new Successor(state);
+        successors.add(successor);
+      }
+
+      successor.count++;
+      successor.relativeStart += (relativeStart - successor.relativeStart) / successor.count;
+      successor.maxLength = Math.max(successor.maxLength, length);
+      total++;
+
+      if (total > MAX_OBSERVATIONS) {
+        total = 0;
+        for (Successor candidate : successors) {
+          candidate.count = (candidate.count + 1) / 2;
+          total += candidate.count;
+        }
+      }
+    }
+
+    private Successor find(int state) {
+      for (Successor successor : successors) {
+        if (successor.state == state) {
+          return successor;
+        }
+      }
+      return null;
+    }
+
+    private Successor getMostLikely() {
+      Successor best = successors.get(0);
+      for (Successor successor : successors) {
+        if (successor.count > best.count) {
+          best = successor;
+        }
+      }
+      return best;
+    }
+  }
+
+  /** A state observed after another. */
+  private static class Successor {
+    private final int state;
+    private long count;
+    private double relativeStart;
+    private long maxLength;
+
+    private Successor(int state) {
+      this.state = state;
+    }
+  }
+}
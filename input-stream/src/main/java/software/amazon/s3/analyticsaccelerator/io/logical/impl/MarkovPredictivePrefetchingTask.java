@@ -0,0 +1,152 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.logical.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Operation;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIO;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanExecution;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanState;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
+
+/**
+ * Task for predictively prefetching the regions of an object that objects under the same key
+ * prefix were read at, whatever their format.
+ *
+ * <p>When a stream is opened, the reads the {@link MarkovModelStore} predicts with enough
+ * confidence are prefetched as a single {@link IOPlan}. As the stream reads, the regions it moves
+ * between are recorded in the model, so that later streams benefit from them. Only the first
+ * reads of a stream are recorded, as they are the ones worth predicting.
+ */
+public class MarkovPredictivePrefetchingTask {
+  private static final int MAX_RECORDED_TRANSITIONS = 32;
+  private static final String OPERATION_MARKOV_PREFETCH = "markov.task.prefetch";
+  private static final Logger LOG = LoggerFactory.getLogger(MarkovPredictivePrefetchingTask.class);
+
+  private final S3URI s3Uri;
+  private final String modelKey;
+  private final Telemetry telemetry;
+  private final LogicalIOConfiguration logicalIOConfiguration;
+  private final PhysicalIO physicalIO;
+  private final MarkovModelStore markovModelStore;
+
+  // Only touched by the reads of the stream
+  private int state = MarkovModelStore.START_STATE;
+  private int recordedTransitions;
+
+  /**
+   * Creates a new instance of {@link MarkovPredictivePrefetchingTask}
+   *
+   * @param s3Uri the object's S3URI
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param logicalIOConfiguration logical io configuration
+   * @param physicalIO PhysicalIO instance
+   * @param markovModelStore object containing the models of how objects are read
+   */
+  public MarkovPredictivePrefetchingTask(
+      @NonNull S3URI s3Uri,
+      @NonNull Telemetry telemetry,
+      @NonNull LogicalIOConfiguration logicalIOConfiguration,
+      @NonNull PhysicalIO physicalIO,
+      @NonNull MarkovModelStore markovModelStore) {
+    this.s3Uri = s3Uri;
+    this.modelKey = MarkovModelStore.getModelKey(s3Uri);
+    this.telemetry = telemetry;
+    this.logicalIOConfiguration = logicalIOConfiguration;
+    this.physicalIO = physicalIO;
+    this.markovModelStore = markovModelStore;
+  }
+
+  /**
+   * Prefetches the reads predicted for the object.
+   *
+   * @return the execution of the prefetch, skipped if nothing is predicted
+   */
+  public IOPlanExecution prefetchPredictedRanges() {
+    List<MarkovModelStore.Prediction> predictions =
+        markovModelStore.predict(
+            modelKey,
+            logicalIOConfiguration.getMarkovPrefetchDepth(),
+            logicalIOConfiguration.getMarkovConfidenceThreshold());
+    if (predictions.isEmpty()) {
+      return IOPlanExecution.builder().state(IOPlanState.SKIPPED).build();
+    }
+
+    return telemetry.measureStandard(
+        () ->
+            Operation.builder()
+                .name(OPERATION_MARKOV_PREFETCH)
+                .attribute(StreamAttributes.uri(this.s3Uri))
+                .build(),
+        () -> {
+          try {
+            long contentLength = physicalIO.metadata().getContentLength();
+            List<Range> prefetchRanges = new ArrayList<>();
+            for (MarkovModelStore.Prediction prediction : predictions) {
+              long start = (long) (prediction.getRelativeStart() * contentLength);
+              long end = Math.min(contentLength, start + prediction.getLength()) - 1;
+              if (start <= end) {
+                prefetchRanges.add(new Range(start, end));
+              }
+            }
+
+            IOPlan ioPlan =
+                (prefetchRanges.isEmpty()) ? IOPlan.EMPTY_PLAN : new IOPlan(prefetchRanges);
+            return physicalIO.execute(ioPlan);
+          } catch (Exception e) {
+            LOG.warn("Unable to prefetch predicted ranges for {}.", this.s3Uri.getKey(), e);
+            return IOPlanExecution.builder().state(IOPlanState.SKIPPED).build();
+          }
+        });
+  }
+
+  /**
+   * Records a read of the stream in the model, if it moves the stream to another region.
+   *
+   * @param position the position of the read
+   * @param len the length of the read
+   */
+  public void recordRead(long position, long len) {
+    if (recordedTransitions >= MAX_RECORDED_TRANSITIONS || len <= 0) {
+      return;
+    }
+
+    try {
+      long contentLength = physicalIO.metadata().getContentLength();
+      if (contentLength == 0) {
+        return;
+      }
+      int next = MarkovModelStore.getState(position, contentLength);
+      if (next != state) {
+        markovModelStore.recordTransition(
+            modelKey, state, next, (double) position / contentLength, len);
+        state = next;
+        recordedTransitions++;
+      }
+    } catch (Exception e) {
+      LOG.debug("Unable to record read of {}.", this.s3Uri.getKey(), e);
+    }
+  }
+}
@@ -16,6 +16,7 @@
 package software.amazon.s3.analyticsaccelerator.io.logical.impl;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import lombok.NonNull;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIOConfiguration;
@@ -72,4 +73,22 @@ public class ParquetLogicalIOImpl extends DefaultLogicalIOImpl {
 
     return super.read(buf, off, len, position);
   }
+
+  /**
+   * Reads data into the provided buffer, starting at its current position and advancing it by the
+   * number of bytes read
+   *
+   * @param dst buffer to read data into
+   * @param position the position to begin reading from
+   * @return the total number of bytes read into the buffer
+   * @throws IOException IO error, if incurred.
+   */
+  @Override
+  public int read(ByteBuffer dst, long position) throws IOException {
+    // Perform async prefetching before doing the blocking read
+    this.parquetPrefetcher.prefetchRemainingColumnChunk(position, dst.remaining());
+    this.parquetPrefetcher.addToRecentColumnList(position, dst.remaining());
+
+    return super.read(dst, position);
+  }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.logical.impl;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Operation;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIO;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanExecution;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanState;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
+
+/**
+ * Task for fetching small objects whole when they are opened, whatever their format.
+ *
+ * <p>Objects no larger than the small object size threshold are fetched with a single {@link
+ * IOPlan} covering all of their bytes, so that every read of the stream is served from memory
+ * rather than growing a sequential readahead over several requests. Bytes held already, like those
+ * fetched by a HEAD-less open, are not fetched again.
+ */
+public class SmallObjectPrefetchingTask {
+  private static final String OPERATION_SMALL_OBJECT_PREFETCH = "small.object.task.prefetch";
+  private static final Logger LOG = LoggerFactory.getLogger(SmallObjectPrefetchingTask.class);
+
+  private final S3URI s3Uri;
+  private final Telemetry telemetry;
+  private final LogicalIOConfiguration logicalIOConfiguration;
+  private final PhysicalIO physicalIO;
+
+  /**
+   * Creates a new instance of {@link SmallObjectPrefetchingTask}
+   *
+   * @param s3Uri the object's S3URI
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param logicalIOConfiguration logical io configuration
+   * @param physicalIO PhysicalIO instance
+   */
+  public SmallObjectPrefetchingTask(
+      @NonNull S3URI s3Uri,
+      @NonNull Telemetry telemetry,
+      @NonNull LogicalIOConfiguration logicalIOConfiguration,
+      @NonNull PhysicalIO physicalIO) {
+    this.s3Uri = s3Uri;
+    this.telemetry = telemetry;
+    this.logicalIOConfiguration = logicalIOConfiguration;
+    this.physicalIO = physicalIO;
+  }
+
+  /**
+   * Prefetches the whole object if it is small enough.
+   *
+   * @return the execution of the prefetch, skipped if the object is empty or too large
+   */
+  public IOPlanExecution prefetchSmallObject() {
+    return telemetry.measureStandard(
+        () ->
+            Operation.builder()
+                .name(OPERATION_SMALL_OBJECT_PREFETCH)
+                .attribute(StreamAttributes.uri(this.s3Uri))
+                .build(),
+        () -> {
+          try {
+            long contentLength = physicalIO.metadata().getContentLength();
+            if (contentLength == 0
+                || contentLength > logicalIOConfiguration.getSmallObjectSizeThreshold()) {
+              return IOPlanExecution.builder().state(IOPlanState.SKIPPED).build();
+            }
+            return physicalIO.execute(new IOPlan(new Range(0, contentLength - 1)));
+          } catch (Exception e) {
+            LOG.warn("Unable to prefetch small object {}.", this.s3Uri.getKey(), e);
+            return IOPlanExecution.builder().state(IOPlanState.SKIPPED).build();
+          }
+        });
+  }
+}
@@ -72,6 +72,11 @@ public class ParquetPrefetchTailTask {
                 .build(),
         () -> {
           try {
+            if (logicalIOConfiguration.isHeadlessOpenEnabled()
+                && logicalIOConfiguration.getFooterCachingSize() > 0) {
+              // The length of the object is learnt from the GET of its footer, without a HEAD
+              physicalIO.prefetchOnOpen(logicalIOConfiguration.getFooterCachingSize(), true);
+            }
             long contentLength = physicalIO.metadata().getContentLength();
             Optional<Range> tailRangeOptional =
                 ParquetUtils.getFileTailRange(logicalIOConfiguration, 0, contentLength);
@@ -30,4 +30,14 @@ public interface PhysicalIO extends RandomAccessReadable {
    * @return an IOPlanExecution object tracking the execution of the submitted plan
    */
   IOPlanExecution execute(IOPlan ioPlan) throws IOException;
+
+  /**
+   * Starts fetching the first or last bytes of the object before its metadata is known, learning
+   * the metadata from the response rather than with a HEAD request, and keeps the bytes for later
+   * reads. Does nothing if the metadata of the object is known, or being fetched, already.
+   *
+   * @param length the number of bytes to fetch; fewer are fetched if the object is shorter
+   * @param fromEnd whether to fetch the last bytes of the object rather than its first ones
+   */
+  void prefetchOnOpen(long length, boolean fromEnd);
 }
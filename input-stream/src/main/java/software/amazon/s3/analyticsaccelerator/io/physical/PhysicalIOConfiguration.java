@@ -15,14 +15,18 @@
  */
 package software.amazon.s3.analyticsaccelerator.io.physical;
 
+import static software.amazon.s3.analyticsaccelerator.util.Constants.ONE_GB;
 import static software.amazon.s3.analyticsaccelerator.util.Constants.ONE_KB;
 import static software.amazon.s3.analyticsaccelerator.util.Constants.ONE_MB;
 
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NonNull;
 import software.amazon.s3.analyticsaccelerator.common.ConnectorConfiguration;
 import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BlockStorage;
+import software.amazon.s3.analyticsaccelerator.io.physical.cache.CacheEvictionPolicy;
 import software.amazon.s3.analyticsaccelerator.io.physical.prefetcher.SequentialReadProgression;
 
 /** Configuration for {@link PhysicalIO} */
@@ -39,6 +43,29 @@ public class PhysicalIOConfiguration {
   private static final long DEFAULT_PART_SIZE = 8 * ONE_MB;
   private static final double DEFAULT_SEQUENTIAL_PREFETCH_BASE = 2.0;
   private static final double DEFAULT_SEQUENTIAL_PREFETCH_SPEED = 1.0;
+  private static final long DEFAULT_CACHE_MAX_BYTES = 2L * ONE_GB;
+  private static final CacheEvictionPolicy DEFAULT_CACHE_EVICTION_POLICY = CacheEvictionPolicy.LRU;
+  private static final BlockStorage DEFAULT_BLOCK_STORAGE = BlockStorage.HEAP;
+  private static final long DEFAULT_BUFFER_POOL_MAX_BYTES = 256 * ONE_MB;
+  private static final long DEFAULT_COALESCE_MAX_GAP_BYTES = 128 * ONE_KB;
+  private static final long DEFAULT_COALESCE_MAX_BYTES = 8 * ONE_MB;
+  private static final String DEFAULT_DISK_CACHE_DIRECTORY = "";
+  private static final long DEFAULT_DISK_CACHE_MAX_BYTES = 10L * ONE_GB;
+  private static final int DEFAULT_SCHEDULER_MAX_IN_FLIGHT_REQUESTS = 64;
+  private static final long DEFAULT_SCHEDULER_MAX_IN_FLIGHT_BYTES = 512 * ONE_MB;
+  private static final long DEFAULT_PREFETCH_CANCEL_DISTANCE_BYTES = 8 * ONE_MB;
+  private static final boolean DEFAULT_ADAPTIVE_READAHEAD = true;
+  private static final long DEFAULT_READAHEAD_MAX_BYTES = 64 * ONE_MB;
+  private static final int DEFAULT_PATTERN_PREFETCH_DEPTH = 4;
+  private static final double DEFAULT_PATTERN_CONFIDENCE_THRESHOLD = 0.75;
+  private static final boolean DEFAULT_HEDGING_ENABLED = false;
+  private static final double DEFAULT_HEDGING_BUDGET_RATIO = 0.05;
+  private static final double DEFAULT_HEDGING_LATENCY_PERCENTILE = 0.95;
+  private static final int DEFAULT_BLOCK_RETRY_MAX_ATTEMPTS = 3;
+  private static final long DEFAULT_BLOCK_RETRY_BACKOFF_MILLIS = 100;
+  private static final long DEFAULT_READ_TIMEOUT_MILLIS = 120_000;
+  private static final double DEFAULT_STRAGGLER_THROUGHPUT_RATIO = 0.1;
+  private static final long DEFAULT_METADATA_STORE_TTL_MILLIS = 300_000;
 
   /** Capacity, in blobs. {@link PhysicalIOConfiguration#DEFAULT_CAPACITY_BLOB_STORE} by default. */
   @Builder.Default private int blobStoreCapacity = DEFAULT_CAPACITY_BLOB_STORE;
@@ -93,6 +120,210 @@ public class PhysicalIOConfiguration {
 
   private static final String SEQUENTIAL_PREFETCH_SPEED_KEY = "sequentialprefetch.speed";
 
+  /**
+   * Maximum number of bytes held by blocks across all blobs. Blocks that are being read are never
+   * evicted, so the budget can be exceeded temporarily. {@link
+   * PhysicalIOConfiguration#DEFAULT_CACHE_MAX_BYTES} by default.
+   */
+  @Builder.Default private long cacheMaxBytes = DEFAULT_CACHE_MAX_BYTES;
+
+  private static final String CACHE_MAX_BYTES_KEY = "cache.max.bytes";
+
+  /**
+   * Policy used to pick the blocks evicted when the cache is over budget. {@link
+   * PhysicalIOConfiguration#DEFAULT_CACHE_EVICTION_POLICY} by default.
+   */
+  @Builder.Default private CacheEvictionPolicy cacheEvictionPolicy = DEFAULT_CACHE_EVICTION_POLICY;
+
+  private static final String CACHE_EVICTION_POLICY_KEY = "cache.eviction.policy";
+
+  /**
+   * Where block data is stored: on the Java heap or off-heap, in direct memory freed as soon as the
+   * block is evicted or closed. {@link PhysicalIOConfiguration#DEFAULT_BLOCK_STORAGE} by default.
+   */
+  @Builder.Default private BlockStorage blockStorage = DEFAULT_BLOCK_STORAGE;
+
+  private static final String BLOCK_STORAGE_KEY = "block.storage";
+
+  /**
+   * Maximum number of bytes kept in idle block buffers for reuse by later blocks. Pooling is
+   * disabled when 0. {@link PhysicalIOConfiguration#DEFAULT_BUFFER_POOL_MAX_BYTES} by default.
+   */
+  @Builder.Default private long bufferPoolMaxBytes = DEFAULT_BUFFER_POOL_MAX_BYTES;
+
+  private static final String BUFFER_POOL_MAX_BYTES_KEY = "buffer.pool.max.bytes";
+
+  /**
+   * Largest gap, in bytes, between two ranges for them to be fetched with a single request. This
+   * should be about the number of bytes that can be transferred in the time of a request round
+   * trip: reading a smaller gap is cheaper than issuing another request. {@link
+   * PhysicalIOConfiguration#DEFAULT_COALESCE_MAX_GAP_BYTES} by default.
+   */
+  @Builder.Default private long coalesceMaxGapBytes = DEFAULT_COALESCE_MAX_GAP_BYTES;
+
+  private static final String COALESCE_MAX_GAP_BYTES_KEY = "coalesce.max.gap.bytes";
+
+  /**
+   * Largest range, in bytes, that coalescing nearby ranges can produce. {@link
+   * PhysicalIOConfiguration#DEFAULT_COALESCE_MAX_BYTES} by default.
+   */
+  @Builder.Default private long coalesceMaxBytes = DEFAULT_COALESCE_MAX_BYTES;
+
+  private static final String COALESCE_MAX_BYTES_KEY = "coalesce.max.bytes";
+
+  /**
+   * Local directory blocks evicted from memory are spilled to, ideally on NVMe. The disk tier is
+   * disabled when empty. {@link PhysicalIOConfiguration#DEFAULT_DISK_CACHE_DIRECTORY} by default.
+   */
+  @Builder.Default private String diskCacheDirectory = DEFAULT_DISK_CACHE_DIRECTORY;
+
+  private static final String DISK_CACHE_DIRECTORY_KEY = "disk.cache.directory";
+
+  /**
+   * Maximum number of bytes held by the disk tier. {@link
+   * PhysicalIOConfiguration#DEFAULT_DISK_CACHE_MAX_BYTES} by default.
+   */
+  @Builder.Default private long diskCacheMaxBytes = DEFAULT_DISK_CACHE_MAX_BYTES;
+
+  private static final String DISK_CACHE_MAX_BYTES_KEY = "disk.cache.max.bytes";
+
+  /**
+   * Maximum number of block GETs in flight at once, across all streams of a factory. Further GETs
+   * are queued, reads before prefetches. {@link
+   * PhysicalIOConfiguration#DEFAULT_SCHEDULER_MAX_IN_FLIGHT_REQUESTS} by default.
+   */
+  @Builder.Default
+  private int schedulerMaxInFlightRequests = DEFAULT_SCHEDULER_MAX_IN_FLIGHT_REQUESTS;
+
+  private static final String SCHEDULER_MAX_IN_FLIGHT_REQUESTS_KEY =
+      "scheduler.max.inflight.requests";
+
+  /**
+   * Maximum number of bytes requested by the block GETs in flight at once, across all streams of a
+   * factory. A single GET larger than this is still issued on its own. {@link
+   * PhysicalIOConfiguration#DEFAULT_SCHEDULER_MAX_IN_FLIGHT_BYTES} by default.
+   */
+  @Builder.Default private long schedulerMaxInFlightBytes = DEFAULT_SCHEDULER_MAX_IN_FLIGHT_BYTES;
+
+  private static final String SCHEDULER_MAX_IN_FLIGHT_BYTES_KEY = "scheduler.max.inflight.bytes";
+
+  /**
+   * Distance from the position of a stream within which the stream still wants a prefetched block.
+   * Prefetches no live stream is this close to are cancelled once the stream that issued them seeks
+   * away or closes. A stream jumping further than this counts as seeking. {@link
+   * PhysicalIOConfiguration#DEFAULT_PREFETCH_CANCEL_DISTANCE_BYTES} by default.
+   */
+  @Builder.Default
+  private long prefetchCancelDistanceBytes = DEFAULT_PREFETCH_CANCEL_DISTANCE_BYTES;
+
+  private static final String PREFETCH_CANCEL_DISTANCE_BYTES_KEY = "prefetch.cancel.distance.bytes";
+
+  /**
+   * Whether to size the readahead of sequential reads from the observed GET latency and throughput
+   * and from how fast the stream consumes data, rather than growing it geometrically with every
+   * generation. {@link PhysicalIOConfiguration#DEFAULT_ADAPTIVE_READAHEAD} by default.
+   */
+  @Builder.Default private boolean adaptiveReadahead = DEFAULT_ADAPTIVE_READAHEAD;
+
+  private static final String ADAPTIVE_READAHEAD_KEY = "readahead.adaptive";
+
+  /**
+   * Largest readahead window of an adaptive sequential read. {@link
+   * PhysicalIOConfiguration#DEFAULT_READAHEAD_MAX_BYTES} by default.
+   */
+  @Builder.Default private long readaheadMaxBytes = DEFAULT_READAHEAD_MAX_BYTES;
+
+  private static final String READAHEAD_MAX_BYTES_KEY = "readahead.max.bytes";
+
+  /**
+   * Number of reads predicted and prefetched ahead of a stream reading backwards or with a constant
+   * stride, 0 to disable. {@link PhysicalIOConfiguration#DEFAULT_PATTERN_PREFETCH_DEPTH} by
+   * default.
+   */
+  @Builder.Default private int patternPrefetchDepth = DEFAULT_PATTERN_PREFETCH_DEPTH;
+
+  private static final String PATTERN_PREFETCH_DEPTH_KEY = "pattern.prefetch.depth";
+
+  /**
+   * Share of the recent reads of a stream that must follow a pattern for the next reads to be
+   * predicted from it. {@link PhysicalIOConfiguration#DEFAULT_PATTERN_CONFIDENCE_THRESHOLD} by
+   * default.
+   */
+  @Builder.Default private double patternConfidenceThreshold = DEFAULT_PATTERN_CONFIDENCE_THRESHOLD;
+
+  private static final String PATTERN_CONFIDENCE_THRESHOLD_KEY = "pattern.confidence.threshold";
+
+  /**
+   * Whether a GET a read waits on is duplicated when it is much slower than usual, the first
+   * response to complete winning. {@link PhysicalIOConfiguration#DEFAULT_HEDGING_ENABLED} by
+   * default.
+   */
+  @Builder.Default private boolean hedgingEnabled = DEFAULT_HEDGING_ENABLED;
+
+  private static final String HEDGING_ENABLED_KEY = "hedging.enabled";
+
+  /**
+   * The most hedged GETs per GET a read waits on. {@link
+   * PhysicalIOConfiguration#DEFAULT_HEDGING_BUDGET_RATIO} by default.
+   */
+  @Builder.Default private double hedgingBudgetRatio = DEFAULT_HEDGING_BUDGET_RATIO;
+
+  private static final String HEDGING_BUDGET_RATIO_KEY = "hedging.budget.ratio";
+
+  /**
+   * The percentile of recent GET latencies a GET a read waits on has to exceed, without having
+   * received any byte, to be hedged. {@link
+   * PhysicalIOConfiguration#DEFAULT_HEDGING_LATENCY_PERCENTILE} by default.
+   */
+  @Builder.Default private double hedgingLatencyPercentile = DEFAULT_HEDGING_LATENCY_PERCENTILE;
+
+  private static final String HEDGING_LATENCY_PERCENTILE_KEY = "hedging.latency.percentile";
+
+  /**
+   * How many times a failed GET of a block is resumed from the first byte it did not receive, 0 to
+   * never resume. {@link PhysicalIOConfiguration#DEFAULT_BLOCK_RETRY_MAX_ATTEMPTS} by default.
+   */
+  @Builder.Default private int blockRetryMaxAttempts = DEFAULT_BLOCK_RETRY_MAX_ATTEMPTS;
+
+  private static final String BLOCK_RETRY_MAX_ATTEMPTS_KEY = "block.retry.max.attempts";
+
+  /**
+   * The delay before resuming a failed GET of a block the first time, in milliseconds, doubling
+   * with every attempt. {@link PhysicalIOConfiguration#DEFAULT_BLOCK_RETRY_BACKOFF_MILLIS} by
+   * default.
+   */
+  @Builder.Default private long blockRetryBackoffMillis = DEFAULT_BLOCK_RETRY_BACKOFF_MILLIS;
+
+  private static final String BLOCK_RETRY_BACKOFF_MILLIS_KEY = "block.retry.backoff.ms";
+
+  /**
+   * How long a read waits for the data or metadata it needs before failing, in milliseconds; 0
+   * waits without a deadline. {@link PhysicalIOConfiguration#DEFAULT_READ_TIMEOUT_MILLIS} by
+   * default.
+   */
+  @Builder.Default private long readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+
+  private static final String READ_TIMEOUT_MILLIS_KEY = "read.timeout.ms";
+
+  /**
+   * The fraction of the median throughput of GETs below which an in-flight GET is a straggler, and
+   * has the rest of its range requested again; 0 disables the detection of stragglers. {@link
+   * PhysicalIOConfiguration#DEFAULT_STRAGGLER_THROUGHPUT_RATIO} by default.
+   */
+  @Builder.Default private double stragglerThroughputRatio = DEFAULT_STRAGGLER_THROUGHPUT_RATIO;
+
+  private static final String STRAGGLER_THROUGHPUT_RATIO_KEY = "straggler.throughput.ratio";
+
+  /**
+   * How long the metadata of an object is reused for, in milliseconds, after which it is fetched
+   * again, and the blocks of the object are only reused if its ETag has not changed; 0 reuses it
+   * for as long as it is cached. {@link PhysicalIOConfiguration#DEFAULT_METADATA_STORE_TTL_MILLIS}
+   * by default.
+   */
+  @Builder.Default private long metadataStoreTtlMillis = DEFAULT_METADATA_STORE_TTL_MILLIS;
+
+  private static final String METADATA_STORE_TTL_MILLIS_KEY = "metadatastore.ttl.ms";
+
   /** Default set of settings for {@link PhysicalIO} */
   public static final PhysicalIOConfiguration DEFAULT = PhysicalIOConfiguration.builder().build();
 
@@ -117,6 +348,59 @@ public class PhysicalIOConfiguration {
         .sequentialPrefetchSpeed(
             configuration.getDouble(
                 SEQUENTIAL_PREFETCH_SPEED_KEY, DEFAULT_SEQUENTIAL_PREFETCH_SPEED))
+        .cacheMaxBytes(configuration.getLong(CACHE_MAX_BYTES_KEY, DEFAULT_CACHE_MAX_BYTES))
+        .cacheEvictionPolicy(
+            CacheEvictionPolicy.fromString(
+                configuration.getString(
+                    CACHE_EVICTION_POLICY_KEY, DEFAULT_CACHE_EVICTION_POLICY.toString())))
+        .blockStorage(
+            BlockStorage.fromString(
+                configuration.getString(BLOCK_STORAGE_KEY, DEFAULT_BLOCK_STORAGE.toString())))
+        .bufferPoolMaxBytes(
+            configuration.getLong(BUFFER_POOL_MAX_BYTES_KEY, DEFAULT_BUFFER_POOL_MAX_BYTES))
+        .coalesceMaxGapBytes(
+            configuration.getLong(COALESCE_MAX_GAP_BYTES_KEY, DEFAULT_COALESCE_MAX_GAP_BYTES))
+        .coalesceMaxBytes(configuration.getLong(COALESCE_MAX_BYTES_KEY, DEFAULT_COALESCE_MAX_BYTES))
+        .diskCacheDirectory(
+            configuration.getString(DISK_CACHE_DIRECTORY_KEY, DEFAULT_DISK_CACHE_DIRECTORY))
+        .diskCacheMaxBytes(
+            configuration.getLong(DISK_CACHE_MAX_BYTES_KEY, DEFAULT_DISK_CACHE_MAX_BYTES))
+        .schedulerMaxInFlightRequests(
+            configuration.getInt(
+                SCHEDULER_MAX_IN_FLIGHT_REQUESTS_KEY, DEFAULT_SCHEDULER_MAX_IN_FLIGHT_REQUESTS))
+        .schedulerMaxInFlightBytes(
+            configuration.getLong(
+                SCHEDULER_MAX_IN_FLIGHT_BYTES_KEY, DEFAULT_SCHEDULER_MAX_IN_FLIGHT_BYTES))
+        .prefetchCancelDistanceBytes(
+            configuration.getLong(
+                PREFETCH_CANCEL_DISTANCE_BYTES_KEY, DEFAULT_PREFETCH_CANCEL_DISTANCE_BYTES))
+        .adaptiveReadahead(
+            configuration.getBoolean(ADAPTIVE_READAHEAD_KEY, DEFAULT_ADAPTIVE_READAHEAD))
+        .readaheadMaxBytes(
+            configuration.getLong(READAHEAD_MAX_BYTES_KEY, DEFAULT_READAHEAD_MAX_BYTES))
+        .patternPrefetchDepth(
+            configuration.getInt(PATTERN_PREFETCH_DEPTH_KEY, DEFAULT_PATTERN_PREFETCH_DEPTH))
+        .patternConfidenceThreshold(
+            configuration.getDouble(
+                PATTERN_CONFIDENCE_THRESHOLD_KEY, DEFAULT_PATTERN_CONFIDENCE_THRESHOLD))
+        .hedgingEnabled(configuration.getBoolean(HEDGING_ENABLED_KEY, DEFAULT_HEDGING_ENABLED))
+        .hedgingBudgetRatio(
+            configuration.getDouble(HEDGING_BUDGET_RATIO_KEY, DEFAULT_HEDGING_BUDGET_RATIO))
+        .hedgingLatencyPercentile(
+            configuration.getDouble(
+                HEDGING_LATENCY_PERCENTILE_KEY, DEFAULT_HEDGING_LATENCY_PERCENTILE))
+        .blockRetryMaxAttempts(
+            configuration.getInt(BLOCK_RETRY_MAX_ATTEMPTS_KEY, DEFAULT_BLOCK_RETRY_MAX_ATTEMPTS))
+        .blockRetryBackoffMillis(
+            configuration.getLong(
+                BLOCK_RETRY_BACKOFF_MILLIS_KEY, DEFAULT_BLOCK_RETRY_BACKOFF_MILLIS))
+        .readTimeoutMillis(
+            configuration.getLong(READ_TIMEOUT_MILLIS_KEY, DEFAULT_READ_TIMEOUT_MILLIS))
+        .stragglerThroughputRatio(
+            configuration.getDouble(
+                STRAGGLER_THROUGHPUT_RATIO_KEY, DEFAULT_STRAGGLER_THROUGHPUT_RATIO))
+        .metadataStoreTtlMillis(
+            configuration.getLong(METADATA_STORE_TTL_MILLIS_KEY, DEFAULT_METADATA_STORE_TTL_MILLIS))
         .build();
   }
 
@@ -133,6 +417,36 @@ public class PhysicalIOConfiguration {
    *     physical blocks. Example: A constant of 2.0 means doubling the block sizes.
    * @param sequentialPrefetchSpeed Constant controlling the rate of growth of sequentially
    *     prefetched physical blocks.
+   * @param cacheMaxBytes Maximum number of bytes held by blocks across all blobs
+   * @param cacheEvictionPolicy Policy used to pick the blocks evicted when over budget
+   * @param blockStorage Where block data is stored
+   * @param bufferPoolMaxBytes Maximum number of bytes kept in idle block buffers
+   * @param coalesceMaxGapBytes Largest gap between two ranges fetched with a single request
+   * @param coalesceMaxBytes Largest range that coalescing nearby ranges can produce
+   * @param diskCacheDirectory Local directory backing the disk tier, disabled when empty
+   * @param diskCacheMaxBytes Maximum number of bytes held by the disk tier
+   * @param schedulerMaxInFlightRequests Maximum number of block GETs in flight at once
+   * @param schedulerMaxInFlightBytes Maximum number of bytes requested by the block GETs in flight
+   *     at once
+   * @param prefetchCancelDistanceBytes Distance within which a stream still wants a prefetched
+   *     block
+   * @param adaptiveReadahead Whether to size the readahead of sequential reads adaptively
+   * @param readaheadMaxBytes Largest readahead window of an adaptive sequential read
+   * @param patternPrefetchDepth Number of reads prefetched ahead of a backward or strided stream
+   * @param patternConfidenceThreshold Share of recent reads that must follow a pattern for it to be
+   *     used
+   * @param hedgingEnabled whether slow GETs of reads are hedged
+   * @param hedgingBudgetRatio the most hedged GETs per GET of a read
+   * @param hedgingLatencyPercentile the percentile of GET latencies beyond which GETs of reads are
+   *     hedged
+   * @param blockRetryMaxAttempts how many times a failed GET of a block is resumed
+   * @param blockRetryBackoffMillis the delay before resuming a failed GET of a block the first time
+   * @param readTimeoutMillis how long a read waits for the data or metadata it needs; 0 for no
+   *     deadline
+   * @param stragglerThroughputRatio the fraction of the median GET throughput below which a GET is
+   *     a straggler
+   * @param metadataStoreTtlMillis how long the metadata of an object is reused for; 0 for as long
+   *     as it is cached
    */
   @Builder
   private PhysicalIOConfiguration(
@@ -143,7 +457,30 @@ public class PhysicalIOConfiguration {
       long maxRangeSizeBytes,
       long partSizeBytes,
       double sequentialPrefetchBase,
-      double sequentialPrefetchSpeed) {
+      double sequentialPrefetchSpeed,
+      long cacheMaxBytes,
+      @NonNull CacheEvictionPolicy cacheEvictionPolicy,
+      @NonNull BlockStorage blockStorage,
+      long bufferPoolMaxBytes,
+      long coalesceMaxGapBytes,
+      long coalesceMaxBytes,
+      @NonNull String diskCacheDirectory,
+      long diskCacheMaxBytes,
+      int schedulerMaxInFlightRequests,
+      long schedulerMaxInFlightBytes,
+      long prefetchCancelDistanceBytes,
+      boolean adaptiveReadahead,
+      long readaheadMaxBytes,
+      int patternPrefetchDepth,
+      double patternConfidenceThreshold,
+      boolean hedgingEnabled,
+      double hedgingBudgetRatio,
+      double hedgingLatencyPercentile,
+      int blockRetryMaxAttempts,
+      long blockRetryBackoffMillis,
+      long readTimeoutMillis,
+      double stragglerThroughputRatio,
+      long metadataStoreTtlMillis) {
     Preconditions.checkArgument(blobStoreCapacity > 0, "`blobStoreCapacity` must be positive");
     Preconditions.checkArgument(
         metadataStoreCapacity > 0, "`metadataStoreCapacity` must be positive");
@@ -155,6 +492,41 @@ public class PhysicalIOConfiguration {
         sequentialPrefetchBase > 0, "`sequentialPrefetchBase` must be positive");
     Preconditions.checkArgument(
         sequentialPrefetchSpeed > 0, "`sequentialPrefetchSpeed` must be positive");
+    Preconditions.checkArgument(cacheMaxBytes > 0, "`cacheMaxBytes` must be positive");
+    Preconditions.checkArgument(
+        bufferPoolMaxBytes >= 0, "`bufferPoolMaxBytes` must not be negative");
+    Preconditions.checkArgument(
+        coalesceMaxGapBytes >= 0, "`coalesceMaxGapBytes` must not be negative");
+    Preconditions.checkArgument(coalesceMaxBytes > 0, "`coalesceMaxBytes` must be positive");
+    Preconditions.checkArgument(diskCacheMaxBytes > 0, "`diskCacheMaxBytes` must be positive");
+    Preconditions.checkArgument(
+        schedulerMaxInFlightRequests > 0, "`schedulerMaxInFlightRequests` must be positive");
+    Preconditions.checkArgument(
+        schedulerMaxInFlightBytes > 0, "`schedulerMaxInFlightBytes` must be positive");
+    Preconditions.checkArgument(
+        prefetchCancelDistanceBytes >= 0, "`prefetchCancelDistanceBytes` must not be negative");
+    Preconditions.checkArgument(readaheadMaxBytes > 0, "`readaheadMaxBytes` must be positive");
+    Preconditions.checkArgument(
+        patternPrefetchDepth >= 0, "`patternPrefetchDepth` must not be negative");
+    Preconditions.checkArgument(
+        0 < patternConfidenceThreshold && patternConfidenceThreshold <= 1,
+        "`patternConfidenceThreshold` must be in (0, 1]");
+    Preconditions.checkArgument(
+        0 <= hedgingBudgetRatio && hedgingBudgetRatio <= 1,
+        "`hedgingBudgetRatio` must be in [0, 1]");
+    Preconditions.checkArgument(
+        0 < hedgingLatencyPercentile && hedgingLatencyPercentile < 1,
+        "`hedgingLatencyPercentile` must be in (0, 1)");
+    Preconditions.checkArgument(
+        blockRetryMaxAttempts >= 0, "`blockRetryMaxAttempts` must not be negative");
+    Preconditions.checkArgument(
+        blockRetryBackoffMillis >= 0, "`blockRetryBackoffMillis` must not be negative");
+    Preconditions.checkArgument(readTimeoutMillis >= 0, "`readTimeoutMillis` must not be negative");
+    Preconditions.checkArgument(
+        0 <= stragglerThroughputRatio && stragglerThroughputRatio < 1,
+        "`stragglerThroughputRatio` must be in [0, 1)");
+    Preconditions.checkArgument(
+        metadataStoreTtlMillis >= 0, "`metadataStoreTtlMillis` must not be negative");
 
     this.blobStoreCapacity = blobStoreCapacity;
     this.metadataStoreCapacity = metadataStoreCapacity;
@@ -164,5 +536,28 @@ public class PhysicalIOConfiguration {
     this.partSizeBytes = partSizeBytes;
     this.sequentialPrefetchBase = sequentialPrefetchBase;
     this.sequentialPrefetchSpeed = sequentialPrefetchSpeed;
+    this.cacheMaxBytes = cacheMaxBytes;
+    this.cacheEvictionPolicy = cacheEvictionPolicy;
+    this.blockStorage = blockStorage;
+    this.bufferPoolMaxBytes = bufferPoolMaxBytes;
+    this.coalesceMaxGapBytes = coalesceMaxGapBytes;
+    this.coalesceMaxBytes = coalesceMaxBytes;
+    this.diskCacheDirectory = diskCacheDirectory;
+    this.diskCacheMaxBytes = diskCacheMaxBytes;
+    this.schedulerMaxInFlightRequests = schedulerMaxInFlightRequests;
+    this.schedulerMaxInFlightBytes = schedulerMaxInFlightBytes;
+    this.prefetchCancelDistanceBytes = prefetchCancelDistanceBytes;
+    this.adaptiveReadahead = adaptiveReadahead;
+    this.readaheadMaxBytes = readaheadMaxBytes;
+    this.patternPrefetchDepth = patternPrefetchDepth;
+    this.patternConfidenceThreshold = patternConfidenceThreshold;
+    this.hedgingEnabled = hedgingEnabled;
+    this.hedgingBudgetRatio = hedgingBudgetRatio;
+    this.hedgingLatencyPercentile = hedgingLatencyPercentile;
+    this.blockRetryMaxAttempts = blockRetryMaxAttempts;
+    this.blockRetryBackoffMillis = blockRetryBackoffMillis;
+    this.readTimeoutMillis = readTimeoutMillis;
+    this.stragglerThroughputRatio = stragglerThroughputRatio;
+    this.metadataStoreTtlMillis = metadataStoreTtlMillis;
   }
 }
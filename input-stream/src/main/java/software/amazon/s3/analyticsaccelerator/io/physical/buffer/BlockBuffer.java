@@ -0,0 +1,78 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.NonNull;
+
+/**
+ * Memory handed out by a {@link BufferAllocator}. The memory is given back to the allocator when
+ * the buffer is closed, after which the underlying {@link ByteBuffer} must no longer be touched.
+ */
+public final class BlockBuffer implements Closeable {
+  private final ByteBuffer byteBuffer;
+  private final Runnable release;
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  /**
+   * Creates a new BlockBuffer.
+   *
+   * @param byteBuffer the memory
+   * @param release action giving the memory back, run exactly once on close
+   */
+  BlockBuffer(@NonNull ByteBuffer byteBuffer, @NonNull Runnable release) {
+    this.byteBuffer = byteBuffer;
+    this.release = release;
+  }
+
+  /**
+   * Returns the memory held by this buffer. The position and limit of the returned buffer are owned
+   * by the caller that filled it.
+   *
+   * @return the underlying {@link ByteBuffer}
+   */
+  public ByteBuffer getByteBuffer() {
+    return byteBuffer;
+  }
+
+  /**
+   * Returns the number of bytes this buffer can hold.
+   *
+   * @return the capacity of the buffer
+   */
+  public int capacity() {
+    return byteBuffer.capacity();
+  }
+
+  /**
+   * Is the buffer backed by memory outside of the Java heap?
+   *
+   * @return true if the buffer is direct
+   */
+  public boolean isDirect() {
+    return byteBuffer.isDirect();
+  }
+
+  /** Gives the memory back to the allocator. Subsequent calls have no effect. */
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      release.run();
+    }
+  }
+}
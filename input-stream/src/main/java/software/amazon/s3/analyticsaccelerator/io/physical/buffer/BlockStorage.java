@@ -0,0 +1,67 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+
+/** Where block data is stored. */
+public enum BlockStorage {
+  HEAP("heap"),
+  DIRECT("direct");
+
+  private final String name;
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlockStorage.class);
+
+  BlockStorage(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Converts user supplied configuration to enum. Defaults to HEAP if user input is not recognised.
+   *
+   * @param blockStorage user supplied block storage
+   * @return BlockStorage enum to use
+   */
+  public static BlockStorage fromString(String blockStorage) {
+    for (BlockStorage value : values()) {
+      if (value.name.equalsIgnoreCase(blockStorage)) {
+        return value;
+      }
+    }
+    LOG.warn("Unknown block storage {}, using default heap storage.", blockStorage);
+
+    return HEAP;
+  }
+
+  /**
+   * Creates the allocator for this kind of storage.
+   *
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @return a new {@link BufferAllocator}
+   */
+  public BufferAllocator createAllocator(Telemetry telemetry) {
+    switch (this) {
+      case DIRECT:
+        return new DirectBufferAllocator(telemetry);
+      case HEAP:
+      default:
+        return HeapBufferAllocator.INSTANCE;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import java.io.Closeable;
+
+/** Allocates the memory blocks store their data in. Implementations must be thread safe. */
+public interface BufferAllocator extends Closeable {
+  /**
+   * Allocates a buffer. The returned buffer has its position set to 0 and its limit set to its
+   * capacity. The caller owns the buffer and must close it once done with it.
+   *
+   * @param capacity the number of bytes the buffer must be able to hold
+   * @return a new {@link BlockBuffer}
+   */
+  BlockBuffer allocate(int capacity);
+
+  /**
+   * Frees the memory the allocator holds on to. Buffers handed out before remain valid until they
+   * are closed.
+   */
+  @Override
+  default void close() {}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+
+/**
+ * Allocates buffers outside of the Java heap. The memory of a buffer is freed as soon as it is
+ * closed rather than when it is garbage collected. The number of off-heap bytes in use is reported
+ * through {@link Telemetry} whenever it changes.
+ */
+public class DirectBufferAllocator implements BufferAllocator {
+  private static final String METRIC_DIRECT_MEMORY_USED = "buffer.direct.used.bytes";
+  private static final Metric DIRECT_MEMORY_USED =
+      Metric.builder().name(METRIC_DIRECT_MEMORY_USED).build();
+
+  private final Telemetry telemetry;
+  private final AtomicLong usedBytes = new AtomicLong();
+
+  /**
+   * Creates a new allocator.
+   *
+   * @param telemetry an instance of {@link Telemetry} to report memory usage to
+   */
+  public DirectBufferAllocator(@NonNull Telemetry telemetry) {
+    this.telemetry = telemetry;
+  }
+
+  @Override
+  public BlockBuffer allocate(int capacity) {
+    Preconditions.checkArgument(capacity >= 0, "`capacity` must not be negative");
+
+    BlockBuffer buffer = DirectMemory.allocate(capacity);
+    telemetry.measure(DIRECT_MEMORY_USED, usedBytes.addAndGet(capacity));
+    return new BlockBuffer(
+        buffer.getByteBuffer(),
+        () -> {
+          buffer.close();
+          telemetry.measure(DIRECT_MEMORY_USED, usedBytes.addAndGet(-capacity));
+        });
+  }
+
+  /**
+   * Returns the number of off-heap bytes allocated and not freed yet.
+   *
+   * @return the number of bytes in use
+   */
+  public long getUsedBytes() {
+    return usedBytes.get();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Allocates and frees off-heap memory. Direct {@link ByteBuffer}s are normally only freed once the
+ * garbage collector notices they are unreachable; here their cleaner is invoked as soon as the
+ * buffer is closed. The JDK internals needed for that are looked up reflectively, falling back to
+ * the garbage collector if they cannot be found.
+ *
+ * <p>This is the Java 8 implementation. The multi-release jar carries a replacement for newer Java
+ * versions, based on the Foreign Memory API.
+ */
+final class DirectMemory {
+  private static final Logger LOG = LoggerFactory.getLogger(DirectMemory.class);
+  private static final Consumer<ByteBuffer> CLEANER = findCleaner();
+
+  private DirectMemory() {}
+
+  /**
+   * Allocates off-heap memory.
+   *
+   * @param capacity the size of the memory, in bytes
+   * @return a buffer freeing the memory when closed
+   */
+  static BlockBuffer allocate(int capacity) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+    return new BlockBuffer(buffer, () -> CLEANER.accept(buffer));
+  }
+
+  @SuppressFBWarnings(
+      value = "DP_DO_INSIDE_DO_PRIVILEGED",
+      justification = "The cleaner lookup runs once, with the permissions of the library")
+  private static Consumer<ByteBuffer> findCleaner() {
+    // Java 9+: sun.misc.Unsafe#invokeCleaner
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      Object unsafe = theUnsafe.get(null);
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      return buffer -> invoke(invokeCleaner, unsafe, buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.debug("sun.misc.Unsafe#invokeCleaner is not available", e);
+    }
+
+    // Java 8: ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()
+    try {
+      Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+      Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+      return buffer -> invoke(clean, invoke(cleaner, buffer));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.debug("sun.nio.ch.DirectBuffer#cleaner is not available", e);
+    }
+
+    LOG.warn("Direct buffers cannot be freed eagerly, they will be freed by the garbage collector");
+    return buffer -> {};
+  }
+
+  private static Object invoke(Method method, Object target, Object... args) {
+    try {
+      return method.invoke(target, args);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Failed to free direct buffer", e);
+    }
+  }
+}
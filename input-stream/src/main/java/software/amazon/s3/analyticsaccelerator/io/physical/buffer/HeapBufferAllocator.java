@@ -0,0 +1,34 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import java.nio.ByteBuffer;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+
+/** Allocates buffers on the Java heap. Closing a buffer leaves it to the garbage collector. */
+public class HeapBufferAllocator implements BufferAllocator {
+  /** Shared instance, the allocator is stateless. */
+  public static final HeapBufferAllocator INSTANCE = new HeapBufferAllocator();
+
+  private static final Runnable NO_OP = () -> {};
+
+  @Override
+  public BlockBuffer allocate(int capacity) {
+    Preconditions.checkArgument(capacity >= 0, "`capacity` must not be negative");
+
+    return new BlockBuffer(ByteBuffer.allocate(capacity), NO_OP);
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+
+/**
+ * Leases buffers out of a pool instead of allocating new ones every time. Buffers are grouped in
+ * size classes: powers of two, each split in four steps, so that a lease wastes less than a quarter
+ * of the buffer it gets. A closed lease goes back to the pool of its class, as long as the idle
+ * buffers stay within the configured number of bytes; otherwise it is freed.
+ *
+ * <p>Requests larger than the largest class are not pooled and go straight to the underlying
+ * allocator.
+ */
+public class PooledBufferAllocator implements BufferAllocator {
+  private static final int MIN_SIZE_CLASS = 4 * 1024;
+  private static final int STEPS_PER_SIZE_CLASS = 4;
+
+  private static final String METRIC_HIT_RATE = "buffer.pool.hit.rate";
+  private static final String METRIC_OUTSTANDING_LEASES = "buffer.pool.outstanding.leases";
+  private static final Metric HIT_RATE = Metric.builder().name(METRIC_HIT_RATE).build();
+  private static final Metric OUTSTANDING_LEASES =
+      Metric.builder().name(METRIC_OUTSTANDING_LEASES).build();
+
+  private final BufferAllocator allocator;
+  private final Telemetry telemetry;
+  private final long maxIdleBytes;
+  private final int maxPooledCapacity;
+  private final Map<Integer, Deque<BlockBuffer>> pools = new ConcurrentHashMap<>();
+  private final AtomicLong idleBytes = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong outstandingLeases = new AtomicLong();
+  private volatile boolean closed;
+
+  /**
+   * Creates a new pool.
+   *
+   * @param allocator the allocator providing the memory that is pooled
+   * @param telemetry an instance of {@link Telemetry} to report pool statistics to
+   * @param maxIdleBytes the maximum number of bytes kept in idle buffers
+   * @param maxPooledCapacity the largest request served from the pool
+   */
+  public PooledBufferAllocator(
+      @NonNull BufferAllocator allocator,
+      @NonNull Telemetry telemetry,
+      long maxIdleBytes,
+      int maxPooledCapacity) {
+    Preconditions.checkArgument(maxIdleBytes >= 0, "`maxIdleBytes` must not be negative");
+    Preconditions.checkArgument(maxPooledCapacity >= 0, "`maxPooledCapacity` must not be negative");
+
+    this.allocator = allocator;
+    this.telemetry = telemetry;
+    this.maxIdleBytes = maxIdleBytes;
+    this.maxPooledCapacity = maxPooledCapacity;
+  }
+
+  @Override
+  public BlockBuffer allocate(int capacity) {
+    Preconditions.checkArgument(capacity >= 0, "`capacity` must not be negative");
+
+    int sizeClass = sizeClass(capacity);
+    if (sizeClass > maxPooledCapacity) {
+      misses.incrementAndGet();
+      reportHitRate();
+      return allocator.allocate(capacity);
+    }
+
+    Deque<BlockBuffer> pool = pools.computeIfAbsent(sizeClass, c -> new ConcurrentLinkedDeque<>());
+    BlockBuffer pooled = pool.poll();
+    if (pooled != null) {
+      idleBytes.addAndGet(-sizeClass);
+      hits.incrementAndGet();
+    } else {
+      pooled = allocator.allocate(sizeClass);
+      misses.incrementAndGet();
+    }
+    reportHitRate();
+
+    ByteBuffer lease = pooled.getByteBuffer().duplicate();
+    lease.clear();
+    lease.limit(capacity);
+    telemetry.measure(OUTSTANDING_LEASES, outstandingLeases.incrementAndGet());
+    BlockBuffer buffer = pooled;
+    return new BlockBuffer(lease.slice(), () -> release(buffer, sizeClass));
+  }
+
+  private void release(BlockBuffer buffer, int sizeClass) {
+    telemetry.measure(OUTSTANDING_LEASES, outstandingLeases.decrementAndGet());
+
+    if (closed) {
+      buffer.close();
+      return;
+    }
+
+    // Reserve room for the buffer first, so that concurrent releases cannot overshoot the limit
+    if (idleBytes.addAndGet(sizeClass) <= maxIdleBytes) {
+      pools.get(sizeClass).push(buffer);
+      // The pool may have been closed while the buffer was being returned
+      if (closed) {
+        drain();
+      }
+    } else {
+      idleBytes.addAndGet(-sizeClass);
+      buffer.close();
+    }
+  }
+
+  /**
+   * Rounds a capacity up to the size class serving it.
+   *
+   * @param capacity the requested capacity
+   * @return the capacity of the buffers in the class
+   */
+  static int sizeClass(int capacity) {
+    if (capacity <= MIN_SIZE_CLASS) {
+      return MIN_SIZE_CLASS;
+    }
+    int step = Integer.highestOneBit(capacity - 1) / STEPS_PER_SIZE_CLASS;
+    long rounded = ((long) capacity + step - 1) / step * step;
+    return (int) Math.min(rounded, Integer.MAX_VALUE);
+  }
+
+  private void reportHitRate() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    telemetry.measure(HIT_RATE, total == 0 ? 0 : (double) hitCount / total);
+  }
+
+  private void drain() {
+    pools.forEach(
+        (sizeClass, pool) -> {
+          BlockBuffer buffer;
+          while ((buffer = pool.poll()) != null) {
+            idleBytes.addAndGet(-sizeClass);
+            buffer.close();
+          }
+        });
+  }
+
+  /**
+   * Returns the number of leases served from the pool.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of leases that needed a new buffer.
+   *
+   * @return the number of misses
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of leases that are not closed yet.
+   *
+   * @return the number of outstanding leases
+   */
+  public long getOutstandingLeases() {
+    return outstandingLeases.get();
+  }
+
+  /**
+   * Returns the number of bytes held by idle buffers in the pool.
+   *
+   * @return the number of idle bytes
+   */
+  public long getIdleBytes() {
+    return idleBytes.get();
+  }
+
+  /** Frees all idle buffers. Leases closed after this are freed rather than pooled. */
+  @Override
+  public void close() {
+    closed = true;
+    drain();
+  }
+}
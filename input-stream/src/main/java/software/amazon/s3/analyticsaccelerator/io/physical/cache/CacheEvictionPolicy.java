@@ -0,0 +1,71 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.cache;
+
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Eviction policies available to the block cache. */
+public enum CacheEvictionPolicy {
+  LRU("lru"),
+  W_TINY_LFU("w-tinylfu");
+
+  private final String name;
+
+  private static final Logger LOG = LoggerFactory.getLogger(CacheEvictionPolicy.class);
+
+  CacheEvictionPolicy(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Converts user supplied configuration to enum. Defaults to LRU if user input is not recognised.
+   *
+   * @param evictionPolicy user supplied eviction policy
+   * @return CacheEvictionPolicy enum to use
+   */
+  public static CacheEvictionPolicy fromString(String evictionPolicy) {
+    for (CacheEvictionPolicy value : values()) {
+      if (value.name.equalsIgnoreCase(evictionPolicy)) {
+        return value;
+      }
+    }
+    LOG.warn("Unknown cache eviction policy {}, using default lru policy.", evictionPolicy);
+
+    return LRU;
+  }
+
+  /**
+   * Creates a new instance of the policy.
+   *
+   * @param maxWeight the weight budget of the cache, in bytes
+   * @param expectedEntries the expected number of entries in the cache
+   * @param frequencyKey maps an entry to the key its access history is recorded under
+   * @param <K> type of the cache entries
+   * @return a new {@link EvictionPolicy}
+   */
+  public <K> EvictionPolicy<K> create(
+      long maxWeight, int expectedEntries, Function<K, ?> frequencyKey) {
+    switch (this) {
+      case W_TINY_LFU:
+        return new WTinyLfuEvictionPolicy<>(maxWeight, expectedEntries, frequencyKey);
+      case LRU:
+      default:
+        return new LruEvictionPolicy<>();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.cache;
+
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Decides which entry of a weighted cache should be evicted next. Implementations only keep
+ * bookkeeping and are not thread safe: the owning cache is expected to serialise all calls.
+ *
+ * @param <K> type of the cache entries tracked by the policy
+ */
+public interface EvictionPolicy<K> {
+  /**
+   * Records that an entry was added to the cache.
+   *
+   * @param key the entry
+   * @param weight the weight of the entry, in bytes
+   */
+  void onAdd(K key, long weight);
+
+  /**
+   * Records that an entry was accessed.
+   *
+   * @param key the entry
+   */
+  void onAccess(K key);
+
+  /**
+   * Records that an entry was removed from the cache. Unknown entries are ignored.
+   *
+   * @param key the entry
+   */
+  void onRemove(K key);
+
+  /**
+   * Chooses the next entry to evict. The returned entry is still tracked by the policy until {@link
+   * #onRemove(Object)} is called for it.
+   *
+   * @param canEvict predicate telling whether an entry is currently allowed to be evicted
+   * @return the entry to evict or empty if no entry can be evicted
+   */
+  Optional<K> nextVictim(Predicate<K> canEvict);
+}
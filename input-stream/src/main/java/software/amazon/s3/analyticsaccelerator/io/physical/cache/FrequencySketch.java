@@ -0,0 +1,109 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.cache;
+
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+
+/**
+ * Approximate, aging frequency counter (a Count-Min sketch with small saturating counters). Every
+ * {@code sampleSize} increments all counters are halved, so that the popularity of entries decays
+ * over time. Not thread safe.
+ */
+class FrequencySketch {
+  private static final int DEPTH = 4;
+  private static final int MAX_COUNT = 15;
+  private static final int SAMPLE_FACTOR = 10;
+  private static final int COUNTERS_PER_ENTRY = 16;
+  private static final int MAX_ENTRIES = 1 << 14;
+  private static final int[] SEEDS = {0x97cb3127, 0xb0df6c5b, 0x7a646e19, 0xe0fe3ad1};
+
+  private final byte[][] table;
+  private final int mask;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * Creates a new sketch.
+   *
+   * @param expectedEntries the expected number of distinct entries tracked at the same time
+   */
+  FrequencySketch(int expectedEntries) {
+    Preconditions.checkArgument(expectedEntries > 0, "`expectedEntries` must be positive");
+
+    // Plenty of counters per entry keep collisions from making one-off entries look popular
+    int entries = Math.min(expectedEntries, MAX_ENTRIES);
+    int width = Integer.highestOneBit(Math.max(1, entries - 1) << 1) * COUNTERS_PER_ENTRY;
+    this.table = new byte[DEPTH][width];
+    this.mask = width - 1;
+    this.sampleSize = SAMPLE_FACTOR * entries;
+  }
+
+  /**
+   * Returns the estimated number of occurrences of a key, capped at 15.
+   *
+   * @param key the key
+   * @return the estimated frequency
+   */
+  int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < DEPTH; i++) {
+      frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+    }
+    return frequency;
+  }
+
+  /**
+   * Records an occurrence of a key.
+   *
+   * @param key the key
+   */
+  void increment(Object key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < DEPTH; i++) {
+      int index = indexOf(hash, i);
+      if (table[i][index] < MAX_COUNT) {
+        table[i][index]++;
+        added = true;
+      }
+    }
+
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  private void reset() {
+    for (byte[] row : table) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] = (byte) (row[i] >> 1);
+      }
+    }
+    additions >>>= 1;
+  }
+
+  private int indexOf(int hash, int row) {
+    int h = hash * SEEDS[row];
+    h ^= h >>> 16;
+    return h & mask;
+  }
+
+  private static int spread(int hash) {
+    int h = hash * 0x9e3779b9;
+    return h ^ (h >>> 15);
+  }
+}
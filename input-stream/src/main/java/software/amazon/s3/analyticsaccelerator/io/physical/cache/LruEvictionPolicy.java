@@ -0,0 +1,53 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import lombok.NonNull;
+
+/**
+ * Least recently used eviction: the entry that has gone the longest without being added or
+ * accessed is evicted first.
+ *
+ * @param <K> type of the cache entries tracked by the policy
+ */
+public class LruEvictionPolicy<K> implements EvictionPolicy<K> {
+  private final Map<K, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  @Override
+  public void onAdd(@NonNull K key, long weight) {
+    entries.put(key, weight);
+  }
+
+  @Override
+  public void onAccess(@NonNull K key) {
+    // Access-ordered map: a lookup moves the entry to the most recently used end
+    entries.get(key);
+  }
+
+  @Override
+  public void onRemove(@NonNull K key) {
+    entries.remove(key);
+  }
+
+  @Override
+  public Optional<K> nextVictim(@NonNull Predicate<K> canEvict) {
+    return entries.keySet().stream().filter(canEvict).findFirst();
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+
+/**
+ * Scan resistant Window TinyLFU eviction.
+ *
+ * <p>New entries land in a small LRU admission window. Once the window overflows, its oldest entry
+ * competes with the oldest entry of the main space and only the one that was historically accessed
+ * more often (according to a {@link FrequencySketch}) is kept. The main space is a segmented LRU:
+ * entries enter on probation and are promoted to the protected segment when they are accessed
+ * again. A one-off scan therefore churns through the window without flushing the hot working set.
+ *
+ * @param <K> type of the cache entries tracked by the policy
+ */
+public class WTinyLfuEvictionPolicy<K> implements EvictionPolicy<K> {
+  private static final double WINDOW_RATIO = 0.01;
+  private static final double PROTECTED_RATIO = 0.8;
+
+  private final Map<K, Long> window = new LinkedHashMap<>();
+  private final Map<K, Long> probation = new LinkedHashMap<>();
+  private final Map<K, Long> protectedSegment = new LinkedHashMap<>();
+  private final FrequencySketch sketch;
+  private final Function<K, ?> frequencyKey;
+  private final long maxWindowWeight;
+  private final long maxMainWeight;
+  private final long maxProtectedWeight;
+
+  private long windowWeight;
+  private long probationWeight;
+  private long protectedWeight;
+
+  /**
+   * Creates a new policy.
+   *
+   * @param maxWeight the weight budget of the cache, in bytes
+   * @param expectedEntries the expected number of entries in the cache, used to size the sketch
+   * @param frequencyKey maps an entry to the key its access history is recorded under. This allows
+   *     the history to survive the entry being evicted and brought back.
+   */
+  public WTinyLfuEvictionPolicy(
+      long maxWeight, int expectedEntries, @NonNull Function<K, ?> frequencyKey) {
+    Preconditions.checkArgument(maxWeight > 0, "`maxWeight` must be positive");
+
+    this.sketch = new FrequencySketch(expectedEntries);
+    this.frequencyKey = frequencyKey;
+    this.maxWindowWeight = Math.max(1, (long) (maxWeight * WINDOW_RATIO));
+    this.maxMainWeight = maxWeight - maxWindowWeight;
+    this.maxProtectedWeight = (long) (maxMainWeight * PROTECTED_RATIO);
+  }
+
+  @Override
+  public void onAdd(@NonNull K key, long weight) {
+    sketch.increment(frequencyKey.apply(key));
+    onRemove(key);
+    window.put(key, weight);
+    windowWeight += weight;
+  }
+
+  @Override
+  public void onAccess(@NonNull K key) {
+    sketch.increment(frequencyKey.apply(key));
+
+    Long weight = window.remove(key);
+    if (weight != null) {
+      window.put(key, weight);
+      return;
+    }
+
+    weight = protectedSegment.remove(key);
+    if (weight != null) {
+      protectedSegment.put(key, weight);
+      return;
+    }
+
+    weight = probation.remove(key);
+    if (weight != null) {
+      probationWeight -= weight;
+      protectedSegment.put(key, weight);
+      protectedWeight += weight;
+      demoteProtectedOverflow();
+    }
+  }
+
+  @Override
+  public void onRemove(@NonNull K key) {
+    Long weight = window.remove(key);
+    if (weight != null) {
+      windowWeight -= weight;
+      return;
+    }
+
+    weight = protectedSegment.remove(key);
+    if (weight != null) {
+      protectedWeight -= weight;
+      return;
+    }
+
+    weight = probation.remove(key);
+    if (weight != null) {
+      probationWeight -= weight;
+    }
+  }
+
+  @Override
+  public Optional<K> nextVictim(@NonNull Predicate<K> canEvict) {
+    // Entries overflowing the window enter the main space for free while it has room
+    while (windowWeight > maxWindowWeight) {
+      Optional<K> candidate = firstEvictable(window, canEvict);
+      if (!candidate.isPresent()
+          || probationWeight + protectedWeight + window.get(candidate.get()) > maxMainWeight) {
+        break;
+      }
+      admit(candidate.get());
+    }
+
+    // Otherwise the oldest entry of the window competes with the oldest entry of the main space
+    Optional<K> candidate = firstEvictable(window, canEvict);
+    Optional<K> victim = firstEvictable(probation, canEvict);
+    if (!victim.isPresent()) {
+      victim = firstEvictable(protectedSegment, canEvict);
+    }
+    if (!candidate.isPresent() || !victim.isPresent()) {
+      return victim.isPresent() ? victim : candidate;
+    }
+
+    if (sketch.frequency(frequencyKey.apply(candidate.get()))
+        > sketch.frequency(frequencyKey.apply(victim.get()))) {
+      if (windowWeight > maxWindowWeight) {
+        admit(candidate.get());
+      }
+      return victim;
+    }
+    return candidate;
+  }
+
+  private void admit(K key) {
+    long weight = window.remove(key);
+    windowWeight -= weight;
+    probation.put(key, weight);
+    probationWeight += weight;
+  }
+
+  private void demoteProtectedOverflow() {
+    Iterator<Map.Entry<K, Long>> it = protectedSegment.entrySet().iterator();
+    while (protectedWeight > maxProtectedWeight && it.hasNext()) {
+      Map.Entry<K, Long> eldest = it.next();
+      it.remove();
+      protectedWeight -= eldest.getValue();
+      probation.put(eldest.getKey(), eldest.getValue());
+      probationWeight += eldest.getValue();
+    }
+  }
+
+  private static <K> Optional<K> firstEvictable(Map<K, Long> segment, Predicate<K> canEvict) {
+    return segment.keySet().stream().filter(canEvict).findFirst();
+  }
+}
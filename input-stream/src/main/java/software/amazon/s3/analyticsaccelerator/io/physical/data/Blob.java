@@ -16,6 +16,14 @@
 package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +33,9 @@ import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan;
 import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanExecution;
 import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanState;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ObjectRange;
+import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.request.ReadMode;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
@@ -33,30 +44,35 @@ import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
 public class Blob implements Closeable {
   private static final Logger LOG = LoggerFactory.getLogger(Blob.class);
   private static final String OPERATION_EXECUTE = "blob.execute";
+  private static final String OPERATION_READ_VECTORED = "blob.read.vectored";
 
   private final S3URI s3URI;
   private final BlockManager blockManager;
-  private final MetadataStore metadataStore;
+  private final ObjectMetadata metadata;
   private final Telemetry telemetry;
+  private final Executor executor;
 
   /**
    * Construct a new Blob.
    *
    * @param s3URI the S3 URI of the object
-   * @param metadataStore the MetadataStore in the stream
+   * @param metadata the metadata of the version of the object the blob is of
    * @param blockManager the BlockManager for this object
    * @param telemetry an instance of {@link Telemetry} to use
+   * @param executor the executor the ranges of vectored reads wait for their bytes on
    */
   public Blob(
       @NonNull S3URI s3URI,
-      @NonNull MetadataStore metadataStore,
+      @NonNull ObjectMetadata metadata,
       @NonNull BlockManager blockManager,
-      @NonNull Telemetry telemetry) {
+      @NonNull Telemetry telemetry,
+      @NonNull Executor executor) {
 
     this.s3URI = s3URI;
-    this.metadataStore = metadataStore;
+    this.metadata = metadata;
     this.blockManager = blockManager;
     this.telemetry = telemetry;
+    this.executor = executor;
   }
 
   /**
@@ -67,8 +83,31 @@ public class Blob implements Closeable {
    */
   public int read(long pos) {
     Preconditions.checkArgument(pos >= 0, "`pos` must be non-negative");
-    blockManager.makePositionAvailable(pos, ReadMode.SYNC);
-    return blockManager.getBlock(pos).get().read(pos);
+    Block block = blockManager.pinBlock(pos, 1, ReadMode.SYNC);
+    try {
+      return block.read(pos);
+    } finally {
+      block.unpin();
+    }
+  }
+
+  /**
+   * Reads a byte from the underlying object on behalf of a stream.
+   *
+   * @param pos The position to read
+   * @param stream the stream making the read
+   * @return an unsigned int representing the byte that was read
+   */
+  public int read(long pos, @NonNull StreamContext stream) {
+    Preconditions.checkArgument(pos >= 0, "`pos` must be non-negative");
+    blockManager.recordRead(stream, pos, 1);
+    try {
+      int result = read(pos);
+      blockManager.prefetchPredictedReads(stream);
+      return result;
+    } finally {
+      stream.recordReadEnd();
+    }
   }
 
   /**
@@ -81,30 +120,52 @@ public class Blob implements Closeable {
    * @return the total number of bytes read into the buffer
    */
   public int read(byte[] buf, int off, int len, long pos) {
+    return readBytes(buf, off, len, pos, null);
+  }
+
+  /**
+   * Reads data into the provided buffer on behalf of a stream, which owns the blocks prefetched
+   * beyond the read.
+   *
+   * @param buf buffer to read data into
+   * @param off start position in buffer at which data is written
+   * @param len length of data to be read
+   * @param pos the position to begin reading from
+   * @param stream the stream making the read
+   * @return the total number of bytes read into the buffer
+   */
+  public int read(byte[] buf, int off, int len, long pos, @NonNull StreamContext stream) {
+    try {
+      int bytesRead = readBytes(buf, off, len, pos, stream);
+      blockManager.prefetchPredictedReads(stream);
+      return bytesRead;
+    } finally {
+      stream.recordReadEnd();
+    }
+  }
+
+  private int readBytes(byte[] buf, int off, int len, long pos, StreamContext stream) {
     Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
     Preconditions.checkArgument(pos < contentLength(), "`pos` must be less than content length");
     Preconditions.checkArgument(0 <= off, "`off` must not be negative");
     Preconditions.checkArgument(0 <= len, "`len` must not be negative");
     Preconditions.checkArgument(off < buf.length, "`off` must be less than size of buffer");
 
-    blockManager.makeRangeAvailable(pos, len, ReadMode.SYNC);
+    makeReadAvailable(pos, len, stream);
 
     long nextPosition = pos;
     int numBytesRead = 0;
 
     while (numBytesRead < len && nextPosition < contentLength()) {
-      final long nextPositionFinal = nextPosition;
-      Block nextBlock =
-          blockManager
-              .getBlock(nextPosition)
-              .orElseThrow(
-                  () ->
-                      new IllegalStateException(
-                          String.format(
-                              "This block (for position %s) should have been available.",
-                              nextPositionFinal)));
-
-      int bytesRead = nextBlock.read(buf, off + numBytesRead, len - numBytesRead, nextPosition);
+      // Pinning keeps the block from being evicted while we copy out of it
+      Block nextBlock = blockManager.pinBlock(nextPosition, len - numBytesRead, ReadMode.SYNC);
+
+      int bytesRead;
+      try {
+        bytesRead = nextBlock.read(buf, off + numBytesRead, len - numBytesRead, nextPosition);
+      } finally {
+        nextBlock.unpin();
+      }
 
       if (bytesRead == -1) {
         return numBytesRead;
@@ -117,6 +178,195 @@ public class Blob implements Closeable {
     return numBytesRead;
   }
 
+  /**
+   * Reads data into the provided buffer, starting at its current position and advancing it by the
+   * number of bytes read. Each block touched by the read is copied with a single bulk transfer.
+   *
+   * @param dst buffer to read data into
+   * @param pos the position to begin reading from
+   * @return the total number of bytes read into the buffer
+   */
+  public int read(@NonNull ByteBuffer dst, long pos) {
+    return readBuffer(dst, pos, null);
+  }
+
+  /**
+   * Reads data into the provided buffer on behalf of a stream, which owns the blocks prefetched
+   * beyond the read.
+   *
+   * @param dst buffer to read data into
+   * @param pos the position to begin reading from
+   * @param stream the stream making the read
+   * @return the total number of bytes read into the buffer
+   */
+  public int read(@NonNull ByteBuffer dst, long pos, @NonNull StreamContext stream) {
+    try {
+      int bytesRead = readBuffer(dst, pos, stream);
+      blockManager.prefetchPredictedReads(stream);
+      return bytesRead;
+    } finally {
+      stream.recordReadEnd();
+    }
+  }
+
+  private int readBuffer(ByteBuffer dst, long pos, StreamContext stream) {
+    Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
+    Preconditions.checkArgument(pos < contentLength(), "`pos` must be less than content length");
+
+    int len = dst.remaining();
+    makeReadAvailable(pos, len, stream);
+
+    long nextPosition = pos;
+    int numBytesRead = 0;
+
+    while (numBytesRead < len && nextPosition < contentLength()) {
+      // Pinning keeps the block from being evicted while we copy out of it
+      Block nextBlock = blockManager.pinBlock(nextPosition, len - numBytesRead, ReadMode.SYNC);
+
+      int bytesRead;
+      try {
+        bytesRead = nextBlock.read(dst, nextPosition);
+      } finally {
+        nextBlock.unpin();
+      }
+
+      if (bytesRead <= 0) {
+        return numBytesRead;
+      }
+
+      numBytesRead = numBytesRead + bytesRead;
+      nextPosition += bytesRead;
+    }
+
+    return numBytesRead;
+  }
+
+  private void makeReadAvailable(long pos, long len, StreamContext stream) {
+    if (stream == null) {
+      blockManager.makeRangeAvailable(pos, len, ReadMode.SYNC);
+      return;
+    }
+
+    blockManager.recordRead(stream, pos, len);
+    blockManager.makeRangeAvailable(pos, len, ReadMode.SYNC, stream);
+  }
+
+  /**
+   * Reads a set of ranges asynchronously. All ranges are planned together, so that nearby ones are
+   * fetched with a single request, and all requests are issued before this method returns. The
+   * future of each range is completed as soon as the bytes of that range are written, even when the
+   * rest of the request they were coalesced into is still arriving, and independently of the other
+   * ranges. Nothing is read ahead of the ranges.
+   *
+   * @param objectRanges the ranges to read, which must not overlap
+   * @param allocate the function allocating the buffer each range is delivered in
+   * @throws IllegalArgumentException if ranges overlap, or extend past the end of the object
+   */
+  public void readVectored(
+      @NonNull List<ObjectRange> objectRanges, @NonNull IntFunction<ByteBuffer> allocate) {
+    long contentLength = contentLength();
+    List<Range> ranges = new ArrayList<>(objectRanges.size());
+    for (ObjectRange objectRange : objectRanges) {
+      Preconditions.checkArgument(
+          objectRange.getOffset() + objectRange.getLength() <= contentLength,
+          "range %s must not extend past the end of the object",
+          objectRange);
+      if (objectRange.getLength() > 0) {
+        ranges.add(objectRange.toRange());
+      }
+    }
+    ranges.sort(Comparator.comparingLong(Range::getStart));
+    for (int i = 1; i < ranges.size(); i++) {
+      Preconditions.checkArgument(
+          ranges.get(i - 1).getEnd() < ranges.get(i).getStart(),
+          "ranges %s and %s must not overlap",
+          ranges.get(i - 1),
+          ranges.get(i));
+    }
+
+    IOPlan plan = new IOPlan(ranges);
+    telemetry.measureStandard(
+        () ->
+            Operation.builder()
+                .name(OPERATION_READ_VECTORED)
+                .attribute(StreamAttributes.uri(this.s3URI))
+                .attribute(StreamAttributes.ioPlan(plan))
+                .build(),
+        () -> {
+          // The ranges are all the caller wants, there is nothing to read ahead of
+          blockManager.makeRangesAvailableWithoutReadahead(plan.getPrefetchRanges(), ReadMode.SYNC);
+          objectRanges.forEach(objectRange -> completeWhenWritten(objectRange, allocate));
+        });
+  }
+
+  /**
+   * Pins the blocks holding an object range and completes the future of the range once the bytes
+   * of the range have been written into all of them. The pins keep the blocks from being evicted
+   * before their data is copied out.
+   *
+   * @param objectRange the range to complete
+   * @param allocate the function allocating the buffer the range is delivered in
+   */
+  private void completeWhenWritten(ObjectRange objectRange, IntFunction<ByteBuffer> allocate) {
+    CompletableFuture<ByteBuffer> result = objectRange.getByteBuffer();
+    if (objectRange.getLength() == 0) {
+      result.complete(allocate.apply(0));
+      return;
+    }
+
+    long start = objectRange.getOffset();
+    long end = start + objectRange.getLength() - 1;
+    List<Block> blocks = new ArrayList<>();
+    try {
+      long nextPosition = start;
+      while (nextPosition <= end) {
+        Block block =
+            blockManager.pinBlockWithoutReadahead(
+                nextPosition, end - nextPosition + 1, ReadMode.SYNC);
+        blocks.add(block);
+        nextPosition = block.getEnd() + 1;
+      }
+    } catch (Throwable t) {
+      blocks.forEach(Block::unpin);
+      result.completeExceptionally(t);
+      return;
+    }
+
+    // Blocks are often coalesced from many ranges, so each range only waits for its own bytes
+    CompletableFuture<?>[] written =
+        blocks.stream()
+            .map(
+                block -> {
+                  long from = Math.max(start, block.getStart());
+                  int length = (int) (Math.min(end, block.getEnd()) - from + 1);
+                  return block.whenWritten(from, length, executor);
+                })
+            .toArray(CompletableFuture[]::new);
+    CompletableFuture.allOf(written)
+        .whenComplete(
+            (ignored, error) -> {
+              try {
+                if (error != null) {
+                  result.completeExceptionally(
+                      error instanceof CompletionException ? error.getCause() : error);
+                  return;
+                }
+
+                ByteBuffer dst = allocate.apply(objectRange.getLength());
+                long nextPosition = start;
+                for (Block block : blocks) {
+                  nextPosition += block.read(dst, nextPosition);
+                }
+                dst.flip();
+                result.complete(dst);
+              } catch (Throwable t) {
+                result.completeExceptionally(t);
+              } finally {
+                blocks.forEach(Block::unpin);
+              }
+            });
+  }
+
   /**
    * Execute an IOPlan.
    *
@@ -124,6 +374,21 @@ public class Blob implements Closeable {
    * @return the status of execution
    */
   public IOPlanExecution execute(IOPlan plan) {
+    return executePlan(plan, null);
+  }
+
+  /**
+   * Execute an IOPlan on behalf of a stream, which owns the prefetched blocks until it is closed.
+   *
+   * @param plan the IOPlan to execute
+   * @param stream the stream executing the plan
+   * @return the status of execution
+   */
+  public IOPlanExecution execute(IOPlan plan, @NonNull StreamContext stream) {
+    return executePlan(plan, stream);
+  }
+
+  private IOPlanExecution executePlan(IOPlan plan, StreamContext stream) {
     return telemetry.measureStandard(
         () ->
             Operation.builder()
@@ -133,12 +398,12 @@ public class Blob implements Closeable {
                 .build(),
         () -> {
           try {
-            plan.getPrefetchRanges()
-                .forEach(
-                    range -> {
-                      this.blockManager.makeRangeAvailable(
-                          range.getStart(), range.getLength(), ReadMode.ASYNC);
-                    });
+            if (stream == null) {
+              this.blockManager.makeRangesAvailable(plan.getPrefetchRanges(), ReadMode.ASYNC);
+            } else {
+              this.blockManager.makeRangesAvailable(
+                  plan.getPrefetchRanges(), ReadMode.ASYNC, stream);
+            }
 
             return IOPlanExecution.builder().state(IOPlanState.SUBMITTED).build();
           } catch (Exception e) {
@@ -148,8 +413,28 @@ public class Blob implements Closeable {
         });
   }
 
+  /**
+   * Keeps bytes of the object that were fetched already, like those of the GET made when the object
+   * was opened, so that reads of them need no GET.
+   *
+   * @param range the range of the object the bytes are of
+   * @param bytes the bytes of the range, between the position and the limit of the buffer
+   */
+  public void addFetchedRange(@NonNull Range range, @NonNull ByteBuffer bytes) {
+    blockManager.addFetchedRange(range, bytes);
+  }
+
+  /**
+   * Closes a stream reading the object, cancelling the prefetches no live stream wants any more.
+   *
+   * @param stream the closed stream
+   */
+  public void closeStream(@NonNull StreamContext stream) {
+    blockManager.closeStream(stream);
+  }
+
   private long contentLength() {
-    return metadataStore.get(s3URI).getContentLength();
+    return metadata.getContentLength();
   }
 
   @Override
@@ -17,26 +17,57 @@ package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BlockBuffer;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BufferAllocator;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.PooledBufferAllocator;
+import software.amazon.s3.analyticsaccelerator.io.physical.prefetcher.ReadaheadController;
 import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.OpenRequest;
+import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
-/** A BlobStore is a container for Blobs and functions as a data cache. */
+/**
+ * A BlobStore is a container for Blobs and functions as a data cache. The memory held by the blocks
+ * of all its blobs is bounded by a shared {@link BlockCache}, optionally backed by a {@link
+ * DiskCache} on local disk.
+ */
 @SuppressFBWarnings(
     value = "SIC_INNER_SHOULD_BE_STATIC_ANON",
     justification =
         "Inner class is created very infrequently, and fluency justifies the extra pointer")
 public class BlobStore implements Closeable {
-  private final Map<S3URI, Blob> blobMap;
+  private static final Logger LOG = LoggerFactory.getLogger(BlobStore.class);
+
+  private final Map<ObjectVersion, Blob> blobMap;
   private final MetadataStore metadataStore;
   private final ObjectClient objectClient;
   private final Telemetry telemetry;
   private final PhysicalIOConfiguration configuration;
+  private final BlockCache blockCache;
+  private final BufferAllocator bufferAllocator;
+  private final DiskCache diskCache;
+  private final ReadaheadController readaheadController;
+  private final ExecutorService vectoredReadExecutor;
+  // Null unless slow GETs of reads are hedged
+  private final HedgingObjectClient hedgingObjectClient;
+  // Null unless failed GETs of blocks are resumed
+  private final ResumableObjectClient resumableObjectClient;
 
   /**
    * Construct an instance of BlobStore.
@@ -52,17 +83,84 @@ public class BlobStore implements Closeable {
       @NonNull Telemetry telemetry,
       @NonNull PhysicalIOConfiguration configuration) {
     this.metadataStore = metadataStore;
-    this.objectClient = objectClient;
+    this.diskCache = createDiskCache(metadataStore, telemetry, configuration);
+    this.bufferAllocator = createBufferAllocator(telemetry, configuration);
+    // Hedges are issued as soon as a GET stalls, so they bypass the scheduler
+    this.hedgingObjectClient =
+        configuration.isHedgingEnabled()
+            ? new HedgingObjectClient(objectClient, bufferAllocator, telemetry, configuration)
+            : null;
+    ObjectClient fetching = hedgingObjectClient == null ? objectClient : hedgingObjectClient;
+    // A GET keeps its place in flight while it is resumed or reissued after straggling, so these
+    // bypass the scheduler too
+    this.resumableObjectClient =
+        configuration.getBlockRetryMaxAttempts() > 0
+                || configuration.getStragglerThroughputRatio() > 0
+            ? new ResumableObjectClient(fetching, telemetry, configuration)
+            : null;
+    if (resumableObjectClient != null) {
+      fetching = resumableObjectClient;
+    }
+    // Disk hits are served without going through the scheduler
+    ObjectClient scheduler = new RequestScheduler(fetching, telemetry, configuration);
+    this.objectClient =
+        diskCache == null ? scheduler : new DiskCachingObjectClient(scheduler, diskCache);
     this.telemetry = telemetry;
     this.blobMap =
         Collections.synchronizedMap(
-            new LinkedHashMap<S3URI, Blob>() {
+            new LinkedHashMap<ObjectVersion, Blob>() {
               @Override
-              protected boolean removeEldestEntry(final Map.Entry<S3URI, Blob> eldest) {
+              protected boolean removeEldestEntry(final Map.Entry<ObjectVersion, Blob> eldest) {
                 return this.size() > configuration.getBlobStoreCapacity();
               }
             });
     this.configuration = configuration;
+    this.blockCache = new BlockCache(telemetry, configuration, diskCache);
+    // All objects are read over the same link, so they share what is learnt about it
+    this.readaheadController = new ReadaheadController(configuration);
+    // Ranges of vectored reads wait for their bytes while the GETs they were coalesced into go on
+    this.vectoredReadExecutor =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, "s3-vectored-read");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  private static DiskCache createDiskCache(
+      MetadataStore metadataStore, Telemetry telemetry, PhysicalIOConfiguration configuration) {
+    if (configuration.getDiskCacheDirectory().isEmpty()) {
+      return null;
+    }
+
+    try {
+      return new DiskCache(metadataStore, telemetry, configuration);
+    } catch (IOException e) {
+      // The disk tier is an optimisation, so carry on with memory only
+      LOG.warn(
+          "Failed to create disk cache in {}, disabling it",
+          configuration.getDiskCacheDirectory(),
+          e);
+      return null;
+    }
+  }
+
+  private static BufferAllocator createBufferAllocator(
+      Telemetry telemetry, PhysicalIOConfiguration configuration) {
+    BufferAllocator allocator = configuration.getBlockStorage().createAllocator(telemetry);
+    if (configuration.getBufferPoolMaxBytes() == 0) {
+      return allocator;
+    }
+
+    // Blocks are never larger than the largest range, or the part size when ranges are split
+    long largestBlock =
+        Math.max(configuration.getMaxRangeSizeBytes(), configuration.getPartSizeBytes());
+    return new PooledBufferAllocator(
+        allocator,
+        telemetry,
+        configuration.getBufferPoolMaxBytes(),
+        (int) Math.min(largestBlock, Integer.MAX_VALUE));
   }
 
   /**
@@ -72,19 +170,114 @@ public class BlobStore implements Closeable {
    * @return the blob representing the object from the BlobStore
    */
   public Blob get(S3URI s3URI) {
+    return get(s3URI, metadataStore.get(s3URI));
+  }
+
+  /**
+   * Opens a new blob for a version of an object if one does not exist or returns the handle to one
+   * that exists already. The GETs of the blob are pinned to the ETag of the version, so its blocks
+   * can be shared by all streams reading the same version.
+   *
+   * @param s3URI the S3 URI of the object
+   * @param metadata the metadata of the version of the object to read
+   * @return the blob representing the version of the object from the BlobStore
+   */
+  public Blob get(@NonNull S3URI s3URI, @NonNull ObjectMetadata metadata) {
     return blobMap.computeIfAbsent(
-        s3URI,
-        uri ->
+        new ObjectVersion(s3URI, metadata.getEtag()),
+        version ->
             new Blob(
-                uri,
-                metadataStore,
-                new BlockManager(uri, objectClient, metadataStore, telemetry, configuration),
-                telemetry));
+                s3URI,
+                metadata,
+                new BlockManager(
+                    s3URI,
+                    objectClient,
+                    metadata,
+                    blockCache,
+                    bufferAllocator,
+                    telemetry,
+                    configuration,
+                    readaheadController),
+                telemetry,
+                vectoredReadExecutor));
+  }
+
+  /**
+   * Returns the blob of a version of an object if it is open, without opening one otherwise.
+   *
+   * @param s3URI the S3 URI of the object
+   * @param metadata the metadata of the version of the object
+   * @return the blob of the version of the object, or empty if the BlobStore holds none
+   */
+  public Optional<Blob> getIfPresent(@NonNull S3URI s3URI, @NonNull ObjectMetadata metadata) {
+    return Optional.ofNullable(blobMap.get(new ObjectVersion(s3URI, metadata.getEtag())));
+  }
+
+  /**
+   * Opens an object with a GET of its first or last bytes, learning its metadata from the response
+   * rather than with a HEAD request, and keeps the bytes as a block of the object. Does nothing if
+   * the metadata of the object is cached, or being fetched, already.
+   *
+   * @param openRequest the GET to open the object with
+   */
+  public void open(@NonNull OpenRequest openRequest) {
+    Preconditions.checkArgument(
+        openRequest.getLength() <= Integer.MAX_VALUE,
+        "`length` must fit in a buffer; was: %s",
+        openRequest.getLength());
+
+    BlockBuffer lease = bufferAllocator.allocate((int) openRequest.getLength());
+    ByteBuffer destination = lease.getByteBuffer();
+    Optional<CompletableFuture<Void>> written =
+        metadataStore.asyncGet(
+            openRequest,
+            destination,
+            metadata -> {
+              if (metadata.getContentLength() == 0) {
+                return;
+              }
+              Range range = openRequest.toRange(metadata.getContentLength());
+              ByteBuffer bytes;
+              synchronized (destination) {
+                bytes = destination.duplicate();
+              }
+              bytes.flip();
+              // The bytes are only kept if the response held the whole range
+              if (bytes.remaining() == range.getLength()) {
+                get(openRequest.getS3Uri(), metadata).addFetchedRange(range, bytes);
+              }
+            });
+
+    // The block copies the bytes out of the lease, which goes back once the GET stops writing
+    if (!written.isPresent()) {
+      lease.close();
+      return;
+    }
+    written
+        .get()
+        .whenComplete(
+            (done, error) -> {
+              synchronized (destination) {
+                lease.close();
+              }
+            });
   }
 
   /** Closes the {@link BlobStore} and frees up all resources it holds. */
   @Override
   public void close() {
     blobMap.forEach((k, v) -> v.close());
+    // Pending spills still hold blocks, so the disk cache has to finish before memory is released
+    if (diskCache != null) {
+      diskCache.close();
+    }
+    bufferAllocator.close();
+    if (resumableObjectClient != null) {
+      resumableObjectClient.close();
+    }
+    if (hedgingObjectClient != null) {
+      hedgingObjectClient.close();
+    }
+    vectoredReadExecutor.shutdownNow();
   }
 }
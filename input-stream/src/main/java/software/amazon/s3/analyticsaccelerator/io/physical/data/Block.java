@@ -16,39 +16,74 @@
 package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Operation;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BlockBuffer;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BufferAllocator;
 import software.amazon.s3.analyticsaccelerator.request.GetRequest;
 import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
-import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
 import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.request.ReadMode;
 import software.amazon.s3.analyticsaccelerator.request.Referrer;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
-import software.amazon.s3.analyticsaccelerator.util.StreamUtils;
 
 /**
  * A Block holding part of an object's data and owning its own async process for fetching part of
  * the object.
+ *
+ * <p>The data lives in a {@link BlockBuffer}, which may be off-heap memory that is freed as soon as
+ * the block is closed. To make this safe, the memory is only freed once nobody holds a pin on the
+ * block; the fetch itself holds a pin until the data is fully written.
+ *
+ * <p>The response is written into the buffer as it arrives, and the position of the buffer is the
+ * watermark of the bytes written so far. Reads wait only for the bytes they need, rather than for
+ * the whole block, so that large blocks do not add to the time to first byte.
  */
 public class Block implements Closeable {
-  private CompletableFuture<ObjectContent> source;
-  private CompletableFuture<byte[]> data;
+  private CompletableFuture<Integer> source;
+  private CompletableFuture<BlockBuffer> data;
+  private final BlockBuffer buffer;
   private final S3URI s3URI;
   private final Range range;
   private final Telemetry telemetry;
+  private final long readTimeoutMillis;
+  // Starts at 1: the pin of the fetch filling the buffer
+  private final AtomicInteger pins = new AtomicInteger(1);
+  private volatile boolean closed;
+  // Guarded by the monitor of the byte buffer, set once the fetch completes or fails
+  private boolean fetchDone;
+  // The stream whose read issued the fetch, null if the read was not made on behalf of a stream
+  @Getter(AccessLevel.PACKAGE)
+  @Setter(AccessLevel.PACKAGE)
+  private volatile StreamContext issuer;
 
+  @Getter private final BlockKey blockKey;
   @Getter private final long start;
   @Getter private final long end;
   @Getter private final long generation;
 
   private static final String OPERATION_BLOCK_GET_ASYNC = "block.get.async";
   private static final String OPERATION_BLOCK_GET_JOIN = "block.get.join";
+  private static final int EVICTED = -1;
+  private static final String METRIC_PARTIAL_READS = "block.partial.reads";
+  private static final Metric PARTIAL_READS = Metric.builder().name(METRIC_PARTIAL_READS).build();
 
   /**
    * Constructs a Block. data.
@@ -60,6 +95,7 @@ public class Block implements Closeable {
    * @param end end of the block
    * @param generation generation of the block in a sequential read pattern (should be 0 by default)
    * @param readMode read mode describing whether this is a sync or async fetch
+   * @param bufferAllocator the allocator providing the memory the data is stored in
    */
   public Block(
       @NonNull S3URI s3URI,
@@ -68,37 +104,159 @@ public class Block implements Closeable {
       long start,
       long end,
       long generation,
-      @NonNull ReadMode readMode) {
+      @NonNull ReadMode readMode,
+      @NonNull BufferAllocator bufferAllocator) {
+    this(
+        s3URI,
+        objectClient,
+        telemetry,
+        start,
+        end,
+        generation,
+        readMode,
+        bufferAllocator,
+        PhysicalIOConfiguration.DEFAULT.getReadTimeoutMillis(),
+        null);
+  }
+
+  /**
+   * Constructs a Block whose reads wait for its data for a bounded time, and whose data is fetched
+   * from the given version of the object.
+   *
+   * @param s3URI the S3 URI of the object
+   * @param objectClient the object client to use to interact with the object store
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param start start of the block
+   * @param end end of the block
+   * @param generation generation of the block in a sequential read pattern (should be 0 by default)
+   * @param readMode read mode describing whether this is a sync or async fetch
+   * @param bufferAllocator the allocator providing the memory the data is stored in
+   * @param readTimeoutMillis how long a read waits for the data it needs; 0 for no deadline
+   * @param etag the ETag the fetch is pinned to, or null to fetch the current version
+   */
+  public Block(
+      @NonNull S3URI s3URI,
+      @NonNull ObjectClient objectClient,
+      @NonNull Telemetry telemetry,
+      long start,
+      long end,
+      long generation,
+      @NonNull ReadMode readMode,
+      @NonNull BufferAllocator bufferAllocator,
+      long readTimeoutMillis,
+      String etag) {
     Preconditions.checkArgument(
         0 <= generation, "`generation` must be non-negative; was: %s", generation);
     Preconditions.checkArgument(0 <= start, "`start` must be non-negative; was: %s", start);
     Preconditions.checkArgument(0 <= end, "`end` must be non-negative; was: %s", end);
     Preconditions.checkArgument(
         start <= end, "`start` must be less than `end`; %s is not less than %s", start, end);
+    Preconditions.checkArgument(
+        0 <= readTimeoutMillis,
+        "`readTimeoutMillis` must not be negative; was: %s",
+        readTimeoutMillis);
 
     this.start = start;
     this.end = end;
     this.generation = generation;
     this.telemetry = telemetry;
+    this.readTimeoutMillis = readTimeoutMillis;
     this.s3URI = s3URI;
     this.range = new Range(start, end);
+    this.blockKey = new BlockKey(s3URI, range, etag);
 
-    this.source =
-        this.telemetry.measureCritical(
-            () ->
-                Operation.builder()
-                    .name(OPERATION_BLOCK_GET_ASYNC)
-                    .attribute(StreamAttributes.uri(this.s3URI))
-                    .attribute(StreamAttributes.range(this.range))
-                    .attribute(StreamAttributes.generation(generation))
-                    .build(),
-            objectClient.getObject(
-                GetRequest.builder()
-                    .s3Uri(this.s3URI)
-                    .range(this.range)
-                    .referrer(new Referrer(range.toHttpString(), readMode))
-                    .build()));
-    this.data = this.source.thenApply(StreamUtils::toByteArray);
+    // The response is written straight into the buffer, as it arrives
+    this.buffer = bufferAllocator.allocate((int) range.getLength());
+    try {
+      this.source =
+          this.telemetry.measureCritical(
+              () ->
+                  Operation.builder()
+                      .name(OPERATION_BLOCK_GET_ASYNC)
+                      .attribute(StreamAttributes.uri(this.s3URI))
+                      .attribute(StreamAttributes.range(this.range))
+                      .attribute(StreamAttributes.generation(generation))
+                      .build(),
+              objectClient.getObject(
+                  GetRequest.builder()
+                      .s3Uri(this.s3URI)
+                      .range(this.range)
+                      .etag(etag)
+                      .referrer(new Referrer(range.toHttpString(), readMode))
+                      .build(),
+                  this.buffer.getByteBuffer()));
+    } catch (RuntimeException e) {
+      this.buffer.close();
+      throw e;
+    }
+    awaitSource();
+  }
+
+  /**
+   * Constructs a Block holding bytes of the object that were fetched already, like those of the GET
+   * made when the object was opened. The bytes are copied into a buffer of the block's own.
+   *
+   * @param s3URI the S3 URI of the object
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param range the range of the object the bytes are of
+   * @param bytes the bytes of the range, between the position and the limit of the buffer
+   * @param bufferAllocator the allocator providing the memory the data is stored in
+   * @param readTimeoutMillis how long a read waits for the data it needs; 0 for no deadline
+   * @param etag the ETag of the version of the object the bytes are of, or null if unknown
+   */
+  Block(
+      @NonNull S3URI s3URI,
+      @NonNull Telemetry telemetry,
+      @NonNull Range range,
+      @NonNull ByteBuffer bytes,
+      @NonNull BufferAllocator bufferAllocator,
+      long readTimeoutMillis,
+      String etag) {
+    Preconditions.checkArgument(
+        bytes.remaining() == range.getLength(),
+        "`bytes` must hold the %s bytes of the range; has %s",
+        range.getLength(),
+        bytes.remaining());
+
+    this.start = range.getStart();
+    this.end = range.getEnd();
+    this.generation = 0;
+    this.telemetry = telemetry;
+    this.readTimeoutMillis = readTimeoutMillis;
+    this.s3URI = s3URI;
+    this.range = range;
+    this.blockKey = new BlockKey(s3URI, range, etag);
+
+    this.buffer = bufferAllocator.allocate((int) range.getLength());
+    ByteBuffer target = this.buffer.getByteBuffer();
+    synchronized (target) {
+      target.put(bytes.duplicate());
+    }
+    this.source = CompletableFuture.completedFuture((int) range.getLength());
+    awaitSource();
+  }
+
+  private void awaitSource() {
+    this.data =
+        this.source.handle(
+            (bytesRead, error) -> {
+              ByteBuffer target = this.buffer.getByteBuffer();
+              // Readers of the partially written buffer wait on its monitor
+              synchronized (target) {
+                if (error == null) {
+                  target.flip();
+                }
+                this.fetchDone = true;
+                target.notifyAll();
+              }
+              if (error != null) {
+                throw error instanceof CompletionException
+                    ? (CompletionException) error
+                    : new CompletionException(error);
+              }
+              return this.buffer;
+            });
+    this.data.whenComplete((result, error) -> releaseFetchPin());
   }
 
   /**
@@ -110,8 +268,15 @@ public class Block implements Closeable {
   public int read(long pos) {
     Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
 
-    byte[] content = this.getData();
-    return Byte.toUnsignedInt(content[posToOffset(pos)]);
+    if (!isLoaded()) {
+      byte[] single = new byte[1];
+      if (tryReadPartial(posToOffset(pos), 1, content -> content.get(single))) {
+        return Byte.toUnsignedInt(single[0]);
+      }
+    }
+
+    ByteBuffer content = this.getData();
+    return Byte.toUnsignedInt(content.get(posToOffset(pos)));
   }
 
   /**
@@ -129,17 +294,138 @@ public class Block implements Closeable {
     Preconditions.checkArgument(0 <= len, "`len` must not be negative");
     Preconditions.checkArgument(off < buf.length, "`off` must be less than size of buffer");
 
-    byte[] content = this.getData();
-    int available = content.length - posToOffset(pos);
+    int partial = (int) Math.min(len, getLength() - posToOffset(pos));
+    if (partial > 0
+        && !isLoaded()
+        && tryReadPartial(posToOffset(pos), partial, content -> content.get(buf, off, partial))) {
+      return partial;
+    }
+
+    ByteBuffer content = this.getData().duplicate();
+    int available = content.limit() - posToOffset(pos);
     int bytesToCopy = Math.min(len, available);
 
-    for (int i = 0; i < bytesToCopy; ++i) {
-      buf[off + i] = content[posToOffset(pos) + i];
+    if (bytesToCopy > 0) {
+      content.position(posToOffset(pos));
+      content.get(buf, off, bytesToCopy);
     }
 
     return bytesToCopy;
   }
 
+  /**
+   * Reads data into the provided buffer, starting at its current position and advancing it by the
+   * number of bytes read. The copy is a single bulk transfer regardless of whether either buffer
+   * is direct; callers that do not need bytes of their own can use {@link #readView} to skip it.
+   *
+   * @param dst buffer to read data into
+   * @param pos the position to begin reading from
+   * @return the total number of bytes read into the buffer
+   */
+  public int read(@NonNull ByteBuffer dst, long pos) {
+    Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
+
+    if (!dst.hasRemaining() || posToOffset(pos) >= getLength()) {
+      return 0;
+    }
+    ByteBuffer content = readView(pos, dst.remaining());
+    int bytesToCopy = content.remaining();
+    dst.put(content);
+    return bytesToCopy;
+  }
+
+  /**
+   * Returns a read-only view of bytes of this block without copying them, as soon as they have
+   * been written. The view shares the buffer of the block, so it is only valid for as long as the
+   * caller holds a pin on the block.
+   *
+   * @param pos the position to begin reading from
+   * @param len the maximum number of bytes to view
+   * @return a view of at most len bytes from the position, ending at the end of the block
+   */
+  public ByteBuffer readView(long pos, int len) {
+    Preconditions.checkArgument(contains(pos), "`pos` must be in the block");
+    Preconditions.checkArgument(0 <= len, "`len` must not be negative");
+
+    int offset = posToOffset(pos);
+    int length = (int) Math.min(len, getLength() - offset);
+    ByteBuffer[] partial = new ByteBuffer[1];
+    if (length > 0
+        && !isLoaded()
+        && tryReadPartial(offset, length, content -> partial[0] = content.slice())) {
+      return partial[0].asReadOnlyBuffer();
+    }
+
+    ByteBuffer content = this.getData().duplicate();
+    content.limit(offset + length);
+    content.position(offset);
+    return content.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns a future that completes once the data of this block is fully available, or
+   * exceptionally if it could not be fetched. Lets callers act on the data without blocking a
+   * thread until it lands.
+   *
+   * @return a future completing when the data of this block is available
+   */
+  public CompletableFuture<Void> whenLoaded() {
+    return this.data.thenRun(() -> {});
+  }
+
+  /**
+   * Returns a future that completes once the bytes of a range of this block have been written,
+   * which is often well before the rest of the block lands, or once the data of the block is fully
+   * available. Completes exceptionally if the fetch fails before the bytes are written. Waiting for
+   * the bytes takes a thread of the executor until they arrive.
+   *
+   * @param pos the position of the first byte of the range
+   * @param len the number of bytes of the range
+   * @param executor the executor to wait for the bytes on
+   * @return a future completing when the bytes of the range can be read without waiting
+   */
+  public CompletableFuture<Void> whenWritten(long pos, int len, @NonNull Executor executor) {
+    Preconditions.checkArgument(contains(pos), "`pos` must be in the block");
+    Preconditions.checkArgument(
+        0 < len && pos + len - 1 <= end, "the range must be non-empty and in the block");
+
+    if (isLoaded()) {
+      return whenLoaded();
+    }
+    ByteBuffer target = this.buffer.getByteBuffer();
+    return CompletableFuture.supplyAsync(
+            () -> {
+              synchronized (target) {
+                return awaitWritten(target, posToOffset(pos), len);
+              }
+            },
+            executor)
+        .thenCompose(
+            written -> written ? CompletableFuture.<Void>completedFuture(null) : whenLoaded());
+  }
+
+  /**
+   * Has the fetch of this block finished, successfully or not?
+   *
+   * @return true if the data of this block is no longer being fetched
+   */
+  public boolean isLoaded() {
+    return this.data.isDone();
+  }
+
+  /**
+   * Returns the data of this block without waiting for it, if it has been fully loaded. The
+   * returned buffer is a read-only view that stays valid until the block is closed.
+   *
+   * @return the data of this block, or empty if it is not loaded or failed to load
+   */
+  public Optional<ByteBuffer> getLoadedData() {
+    if (!this.data.isDone() || this.data.isCompletedExceptionally() || this.closed) {
+      return Optional.empty();
+    }
+    return Optional.of(this.data.join().getByteBuffer().asReadOnlyBuffer());
+  }
+
   /**
    * Does this block contain the position?
    *
@@ -152,6 +438,84 @@ public class Block implements Closeable {
     return start <= pos && pos <= end;
   }
 
+  /**
+   * Returns the number of bytes held by this block.
+   *
+   * @return the length of the block, in bytes
+   */
+  public long getLength() {
+    return this.range.getLength();
+  }
+
+  /**
+   * Pins the block, preventing it from being evicted until {@link #unpin()} is called. Pins are
+   * counted, so every successful call must be matched by exactly one {@link #unpin()}.
+   *
+   * @return true if the block was pinned, false if it has already been evicted
+   */
+  public boolean tryPin() {
+    while (true) {
+      int current = pins.get();
+      if (current == EVICTED) {
+        return false;
+      }
+      if (pins.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /** Releases a pin taken by {@link #tryPin()}. */
+  public void unpin() {
+    int remaining = pins.decrementAndGet();
+    Preconditions.checkState(remaining >= 0, "`unpin` called on a block that is not pinned");
+
+    // The last reader of a closed block frees its memory
+    if (remaining == 0 && closed && pins.compareAndSet(0, EVICTED)) {
+      releaseBuffer();
+    }
+  }
+
+  /**
+   * Is the block pinned by at least one reader?
+   *
+   * @return true if the block is pinned
+   */
+  public boolean isPinned() {
+    return pins.get() > 0;
+  }
+
+  /**
+   * Marks the block as evicted, provided nobody is holding a pin on it. Once evicted, a block can
+   * no longer be pinned.
+   *
+   * @return true if the block was not pinned and is now evicted
+   */
+  public boolean tryEvict() {
+    return pins.compareAndSet(0, EVICTED);
+  }
+
+  /**
+   * Marks a block whose data is still being fetched as evicted, provided nobody but the fetch is
+   * holding a pin on it. The caller is expected to close the block, which aborts the fetch.
+   *
+   * @return true if the block was still being fetched, was not pinned by a reader and is now
+   *     evicted
+   */
+  public boolean tryCancel() {
+    // The fetch gives up its pin only once it is done, which is recorded under the monitor
+    synchronized (this.buffer.getByteBuffer()) {
+      return !fetchDone && pins.compareAndSet(1, EVICTED);
+    }
+  }
+
+  private void releaseFetchPin() {
+    // A cancelled block has taken over the pin of its fetch
+    if (pins.get() != EVICTED) {
+      unpin();
+    }
+  }
+
   /**
    * Determines the offset in the Block corresponding to a position in an object.
    *
@@ -162,28 +526,108 @@ public class Block implements Closeable {
     return (int) (pos - start);
   }
 
+  /**
+   * Copies bytes out of the buffer as soon as they have been written, while the rest of the block
+   * is still arriving. Gives up without copying anything if the fetch completes or fails first, in
+   * which case the caller reads the complete data instead. Fails with a {@link TimeoutException} if
+   * the bytes have not arrived within the read timeout.
+   *
+   * @param offset the offset of the first byte to copy
+   * @param length the number of bytes to copy
+   * @param copy copies the bytes out of a view of the buffer limited to them
+   * @return true if the bytes were copied
+   */
+  private boolean tryReadPartial(int offset, int length, Consumer<ByteBuffer> copy) {
+    ByteBuffer target = this.buffer.getByteBuffer();
+    synchronized (target) {
+      if (!awaitWritten(target, offset, length)) {
+        return false;
+      }
+
+      ByteBuffer content = target.duplicate();
+      content.limit(offset + length);
+      content.position(offset);
+      copy.accept(content);
+    }
+
+    telemetry.measure(PARTIAL_READS, 1);
+    return true;
+  }
+
+  /**
+   * Waits, holding the monitor of the buffer, until bytes have been written, the fetch completes or
+   * fails, or the thread is interrupted. Fails with a {@link TimeoutException} if none of these
+   * happens within the read timeout.
+   *
+   * @param target the buffer of the block, whose monitor the caller holds
+   * @param offset the offset of the first byte
+   * @param length the number of bytes
+   * @return true if the bytes were written while the fetch is still running
+   */
+  private boolean awaitWritten(ByteBuffer target, int offset, int length) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+    try {
+      while (!fetchDone && target.position() < offset + length) {
+        if (readTimeoutMillis == 0) {
+          target.wait();
+          continue;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+          throw new CompletionException(
+              new TimeoutException("Not completed within " + readTimeoutMillis + " ms"));
+        }
+        target.wait(remaining);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return !fetchDone;
+  }
+
   /**
    * Returns the bytes fetched by the issued {@link GetRequest}. This method will block until the
-   * data is fully available.
+   * data is fully available, failing with a {@link TimeoutException} if it is not within the read
+   * timeout. The returned buffer must not be modified.
    *
    * @return the bytes fetched by the issued {@link GetRequest}.
    */
-  private byte[] getData() {
-    return this.telemetry.measureJoinCritical(
-        () ->
-            Operation.builder()
-                .name(OPERATION_BLOCK_GET_JOIN)
-                .attribute(StreamAttributes.uri(this.s3URI))
-                .attribute(StreamAttributes.range(this.range))
-                .attribute(StreamAttributes.rangeLength(this.range.getLength()))
-                .build(),
-        this.data);
+  private ByteBuffer getData() {
+    BlockBuffer buffer =
+        this.telemetry.measureJoinCritical(
+            () ->
+                Operation.builder()
+                    .name(OPERATION_BLOCK_GET_JOIN)
+                    .attribute(StreamAttributes.uri(this.s3URI))
+                    .attribute(StreamAttributes.range(this.range))
+                    .attribute(StreamAttributes.rangeLength(this.range.getLength()))
+                    .build(),
+            this.data,
+            this.readTimeoutMillis);
+    return buffer.getByteBuffer();
+  }
+
+  private void releaseBuffer() {
+    // The request is done by now, so the client stops writing once it releases the monitor
+    synchronized (this.buffer.getByteBuffer()) {
+      this.buffer.close();
+    }
   }
 
-  /** Closes the {@link Block} and frees up all resources it holds */
+  /**
+   * Closes the {@link Block} and frees up all resources it holds. If the block is pinned, its
+   * memory is freed when the last pin is released.
+   */
   @Override
   public void close() {
+    this.closed = true;
     // Only the source needs to be canceled, the continuation will cancel on its own
     this.source.cancel(false);
+
+    // An evicted block is unused, so its memory can be freed right away
+    if (pins.get() == EVICTED || pins.compareAndSet(0, EVICTED)) {
+      releaseBuffer();
+    }
   }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.cache.EvictionPolicy;
+
+/**
+ * A byte-bounded cache of {@link Block}s shared by all blobs of a {@link BlobStore}. Blocks stay
+ * owned by the {@link BlockStore} of their object; the cache only tracks how many bytes they hold
+ * and evicts individual blocks, across all objects, once {@link
+ * PhysicalIOConfiguration#getCacheMaxBytes()} is exceeded. Pinned blocks are never evicted.
+ * When a {@link DiskCache} is configured, evicted blocks are spilled to it instead of being
+ * dropped.
+ */
+public class BlockCache {
+  private static final Logger LOG = LoggerFactory.getLogger(BlockCache.class);
+  private static final String METRIC_EVICTED_BYTES = "block.cache.evicted.bytes";
+  // Accesses are buffered per thread stripe, and the eldest are dropped once a stripe is full
+  private static final int ACCESS_STRIPES = 16;
+  private static final int ACCESSES_PER_STRIPE = 64;
+
+  private final long maxBytes;
+  private final Telemetry telemetry;
+  private final EvictionPolicy<Block> evictionPolicy;
+  private final Map<Block, BlockStore> owners = new HashMap<>();
+  private final DiskCache diskCache;
+  private final AtomicReferenceArray<Block> accesses =
+      new AtomicReferenceArray<>(ACCESS_STRIPES * ACCESSES_PER_STRIPE);
+  private final AtomicLongArray accessCounts = new AtomicLongArray(ACCESS_STRIPES);
+  private long usedBytes;
+
+  /**
+   * Constructs a new BlockCache.
+   *
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param configuration the PhysicalIO configuration
+   */
+  public BlockCache(@NonNull Telemetry telemetry, @NonNull PhysicalIOConfiguration configuration) {
+    this(telemetry, configuration, null);
+  }
+
+  /**
+   * Constructs a new BlockCache spilling evicted blocks to a disk cache.
+   *
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param configuration the PhysicalIO configuration
+   * @param diskCache the disk cache evicted blocks are spilled to, or null to drop them
+   */
+  public BlockCache(
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration,
+      DiskCache diskCache) {
+    this.diskCache = diskCache;
+    this.maxBytes = configuration.getCacheMaxBytes();
+    this.telemetry = telemetry;
+    this.evictionPolicy =
+        configuration
+            .getCacheEvictionPolicy()
+            .create(
+                maxBytes,
+                (int)
+                    Math.min(
+                        Integer.MAX_VALUE,
+                        Math.max(1, maxBytes / configuration.getBlockSizeBytes())),
+                Block::getBlockKey);
+  }
+
+  /**
+   * Adds blocks to the cache, evicting other blocks if the cache goes over budget. The blocks being
+   * added are never evicted by this call.
+   *
+   * @param blocks the blocks to add
+   * @param owner the BlockStore holding the blocks
+   */
+  public void add(@NonNull List<Block> blocks, @NonNull BlockStore owner) {
+    List<Block> evicted;
+    synchronized (this) {
+      drainAccesses();
+      for (Block block : blocks) {
+        if (owners.put(block, owner) == null) {
+          usedBytes += block.getLength();
+          evictionPolicy.onAdd(block, block.getLength());
+        }
+      }
+      evicted = evictOverBudget(blocks);
+    }
+
+    evicted.forEach(this::retire);
+  }
+
+  /**
+   * Records an access to a block, so the eviction policy can take it into account. Reads hit blocks
+   * far more often than blocks are added, so the access is only buffered without taking the lock of
+   * the cache, and handed to the eviction policy the next time blocks are added.
+   *
+   * @param block the accessed block
+   */
+  public void recordAccess(@NonNull Block block) {
+    int stripe = (int) (Thread.currentThread().getId() & (ACCESS_STRIPES - 1));
+    long count = accessCounts.getAndIncrement(stripe);
+    int slot = (int) (count & (ACCESSES_PER_STRIPE - 1));
+    accesses.lazySet(stripe * ACCESSES_PER_STRIPE + slot, block);
+  }
+
+  /**
+   * Stops tracking a block that was removed from its BlockStore other than by the cache.
+   *
+   * @param block the removed block
+   */
+  public synchronized void remove(@NonNull Block block) {
+    if (owners.remove(block) != null) {
+      usedBytes -= block.getLength();
+      evictionPolicy.onRemove(block);
+    }
+  }
+
+  /**
+   * Stops tracking all blocks belonging to a BlockStore. Called when the BlockStore is closed.
+   *
+   * @param owner the BlockStore
+   */
+  public synchronized void invalidate(@NonNull BlockStore owner) {
+    Iterator<Map.Entry<Block, BlockStore>> it = owners.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Block, BlockStore> entry = it.next();
+      if (entry.getValue() == owner) {
+        it.remove();
+        usedBytes -= entry.getKey().getLength();
+        evictionPolicy.onRemove(entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes held by the blocks in the cache.
+   *
+   * @return the number of bytes currently accounted for
+   */
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  private void drainAccesses() {
+    for (int stripe = 0; stripe < ACCESS_STRIPES; stripe++) {
+      // Start at the slot written next, which holds the eldest access of the stripe
+      long count = accessCounts.get(stripe);
+      for (int i = 0; i < ACCESSES_PER_STRIPE; i++) {
+        int slot = (int) ((count + i) & (ACCESSES_PER_STRIPE - 1));
+        Block block = accesses.getAndSet(stripe * ACCESSES_PER_STRIPE + slot, null);
+        if (block != null && owners.containsKey(block)) {
+          evictionPolicy.onAccess(block);
+        }
+      }
+    }
+  }
+
+  private List<Block> evictOverBudget(List<Block> added) {
+    List<Block> evicted = new ArrayList<>();
+    long evictedBytes = 0;
+    // Every failed attempt touches an entry, so bound the loop by the number of entries
+    int attempts = owners.size();
+
+    while (usedBytes > maxBytes && attempts-- > 0) {
+      Optional<Block> victim =
+          evictionPolicy.nextVictim(block -> !block.isPinned() && !added.contains(block));
+      if (!victim.isPresent()) {
+        break;
+      }
+
+      Block block = victim.get();
+      if (owners.get(block).evict(block)) {
+        owners.remove(block);
+        evictionPolicy.onRemove(block);
+        usedBytes -= block.getLength();
+        evictedBytes += block.getLength();
+        evicted.add(block);
+      } else {
+        // The block got pinned in the meantime, so it is in use
+        evictionPolicy.onAccess(block);
+      }
+    }
+
+    if (evictedBytes > 0) {
+      telemetry.measure(Metric.builder().name(METRIC_EVICTED_BYTES).build(), evictedBytes);
+    }
+    return evicted;
+  }
+
+  private void retire(Block block) {
+    // Once accepted, the disk cache closes the block when it is done writing it out
+    if (diskCache != null && diskCache.spill(block)) {
+      return;
+    }
+    safeClose(block);
+  }
+
+  private void safeClose(Block block) {
+    try {
+      block.close();
+    } catch (Exception e) {
+      LOG.error("Exception when closing an evicted Block", e);
+    }
+  }
+}
@@ -16,27 +16,56 @@
 package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.NonNull;
+import lombok.Value;
 import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Operation;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BufferAllocator;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan;
+import software.amazon.s3.analyticsaccelerator.io.physical.prefetcher.ReadaheadController;
 import software.amazon.s3.analyticsaccelerator.io.physical.prefetcher.SequentialPatternDetector;
 import software.amazon.s3.analyticsaccelerator.io.physical.prefetcher.SequentialReadProgression;
 import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
 import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.request.ReadMode;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
 
-/** Implements a Block Manager responsible for planning and scheduling reads on a key. */
+/**
+ * Implements a Block Manager responsible for planning and scheduling reads on a key.
+ *
+ * <p>A BlockManager is shared by all streams reading the object. Lookups of blocks that are
+ * already present do not take any lock. Planning which ranges to fetch is serialized, but only
+ * covers deciding on and reserving the ranges in the {@link BlockStore}: blocks, and the requests
+ * filling them, are created outside of the lock, so reads of disjoint ranges proceed in parallel
+ * and only reads racing for the same range coordinate, through its reservation.
+ *
+ * <p>Streams report their reads through a {@link StreamContext}. Blocks prefetched beyond what a
+ * read asked for, or by an {@link software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan},
+ * are cancelled while still in flight once no live stream wants them any more: a readahead is
+ * wanted by its stream until the stream seeks, a planned prefetch until the stream closes or seeks
+ * further than {@link PhysicalIOConfiguration#getPrefetchCancelDistanceBytes()} past it, and either
+ * by any live stream within that distance of it.
+ */
 public class BlockManager implements Closeable {
   private final S3URI s3URI;
-  private final MetadataStore metadataStore;
   private final BlockStore blockStore;
+  private final BlockCache blockCache;
+  private final BufferAllocator bufferAllocator;
   private final ObjectClient objectClient;
   private final Telemetry telemetry;
   private final SequentialPatternDetector patternDetector;
@@ -44,8 +73,37 @@ public class BlockManager implements Closeable {
   private final IOPlanner ioPlanner;
   private final PhysicalIOConfiguration configuration;
   private final RangeOptimiser rangeOptimiser;
+  private final ReadaheadController readaheadController;
+  // Null unless GETs are pinned to one version of the object
+  private final String etag;
+  private final Set<StreamContext> streams = ConcurrentHashMap.newKeySet();
+  // Prefetched blocks that are still being fetched
+  private final Set<Prefetch> prefetches = ConcurrentHashMap.newKeySet();
 
   private static final String OPERATION_MAKE_RANGE_AVAILABLE = "block.manager.make.range.available";
+  private static final String METRIC_COALESCED_RANGES = "block.manager.coalesced.ranges";
+  private static final Metric COALESCED_RANGES =
+      Metric.builder().name(METRIC_COALESCED_RANGES).build();
+  private static final String METRIC_DEDUPLICATED_REQUESTS = "block.manager.deduplicated.requests";
+  private static final Metric DEDUPLICATED_REQUESTS =
+      Metric.builder().name(METRIC_DEDUPLICATED_REQUESTS).build();
+  private static final String METRIC_DEDUPLICATED_BYTES = "block.manager.deduplicated.bytes";
+  private static final Metric DEDUPLICATED_BYTES =
+      Metric.builder().name(METRIC_DEDUPLICATED_BYTES).build();
+  private static final String METRIC_CANCELLED_PREFETCHES = "block.manager.cancelled.prefetches";
+  private static final Metric CANCELLED_PREFETCHES =
+      Metric.builder().name(METRIC_CANCELLED_PREFETCHES).build();
+  private static final String METRIC_CANCELLED_BYTES = "block.manager.cancelled.bytes";
+  private static final Metric CANCELLED_BYTES =
+      Metric.builder().name(METRIC_CANCELLED_BYTES).build();
+  private static final String METRIC_PREDICTED_RANGES = "block.manager.predicted.ranges";
+  private static final Metric PREDICTED_RANGES =
+      Metric.builder().name(METRIC_PREDICTED_RANGES).build();
+  private static final String METRIC_READAHEAD_WINDOW = "block.manager.readahead.window.bytes";
+  private static final Metric READAHEAD_WINDOW =
+      Metric.builder().name(METRIC_READAHEAD_WINDOW).build();
+  private static final String METRIC_FAILED_BLOCKS = "block.manager.failed.blocks";
+  private static final Metric FAILED_BLOCKS = Metric.builder().name(METRIC_FAILED_BLOCKS).build();
 
   /**
    * Constructs a new BlockManager.
@@ -54,24 +112,120 @@ public class BlockManager implements Closeable {
    * @param objectClient object client capable of interacting with the underlying object store
    * @param telemetry an instance of {@link Telemetry} to use
    * @param metadataStore the metadata cache
+   * @param blockCache the cache bounding the memory held by blocks
+   * @param bufferAllocator the allocator providing the memory blocks store their data in
    * @param configuration the physicalIO configuration
    */
   public BlockManager(
       @NonNull S3URI s3URI,
       @NonNull ObjectClient objectClient,
       @NonNull MetadataStore metadataStore,
+      @NonNull BlockCache blockCache,
+      @NonNull BufferAllocator bufferAllocator,
       @NonNull Telemetry telemetry,
       @NonNull PhysicalIOConfiguration configuration) {
+    this(
+        s3URI,
+        objectClient,
+        metadataStore,
+        blockCache,
+        bufferAllocator,
+        telemetry,
+        configuration,
+        new ReadaheadController(configuration));
+  }
+
+  /**
+   * Constructs a new BlockManager sizing the readahead of sequential reads with a shared
+   * controller.
+   *
+   * @param s3URI the S3 URI of the object
+   * @param objectClient object client capable of interacting with the underlying object store
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param metadataStore the metadata cache
+   * @param blockCache the cache bounding the memory held by blocks
+   * @param bufferAllocator the allocator providing the memory blocks store their data in
+   * @param configuration the physicalIO configuration
+   * @param readaheadController the controller sizing the readahead, shared by all objects
+   */
+  public BlockManager(
+      @NonNull S3URI s3URI,
+      @NonNull ObjectClient objectClient,
+      @NonNull MetadataStore metadataStore,
+      @NonNull BlockCache blockCache,
+      @NonNull BufferAllocator bufferAllocator,
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration,
+      @NonNull ReadaheadController readaheadController) {
+    this(
+        s3URI,
+        objectClient,
+        new BlockStore(s3URI, metadataStore),
+        blockCache,
+        bufferAllocator,
+        telemetry,
+        configuration,
+        readaheadController,
+        null);
+  }
+
+  /**
+   * Constructs a new BlockManager whose blocks are fetched from one version of the object. The
+   * length of the object is that of the version, however long the BlockManager lives.
+   *
+   * @param s3URI the S3 URI of the object
+   * @param objectClient object client capable of interacting with the underlying object store
+   * @param metadata the metadata of the version, whose ETag all GETs are pinned to if it has one
+   * @param blockCache the cache bounding the memory held by blocks
+   * @param bufferAllocator the allocator providing the memory blocks store their data in
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param configuration the physicalIO configuration
+   * @param readaheadController the controller sizing the readahead, shared by all objects
+   */
+  public BlockManager(
+      @NonNull S3URI s3URI,
+      @NonNull ObjectClient objectClient,
+      @NonNull ObjectMetadata metadata,
+      @NonNull BlockCache blockCache,
+      @NonNull BufferAllocator bufferAllocator,
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration,
+      @NonNull ReadaheadController readaheadController) {
+    this(
+        s3URI,
+        objectClient,
+        new BlockStore(s3URI, metadata),
+        blockCache,
+        bufferAllocator,
+        telemetry,
+        configuration,
+        readaheadController,
+        metadata.getEtag());
+  }
+
+  private BlockManager(
+      @NonNull S3URI s3URI,
+      @NonNull ObjectClient objectClient,
+      @NonNull BlockStore blockStore,
+      @NonNull BlockCache blockCache,
+      @NonNull BufferAllocator bufferAllocator,
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration,
+      @NonNull ReadaheadController readaheadController,
+      String etag) {
+    this.etag = etag;
     this.s3URI = s3URI;
     this.objectClient = objectClient;
-    this.metadataStore = metadataStore;
+    this.blockCache = blockCache;
+    this.bufferAllocator = bufferAllocator;
     this.telemetry = telemetry;
     this.configuration = configuration;
-    this.blockStore = new BlockStore(s3URI, metadataStore);
+    this.blockStore = blockStore;
     this.patternDetector = new SequentialPatternDetector(blockStore);
     this.sequentialReadProgression = new SequentialReadProgression(configuration);
     this.ioPlanner = new IOPlanner(blockStore);
     this.rangeOptimiser = new RangeOptimiser(configuration);
+    this.readaheadController = readaheadController;
   }
 
   /**
@@ -80,7 +234,7 @@ public class BlockManager implements Closeable {
    * @param pos the position of a byte
    * @return the Block holding the byte or empty if the byte is not in the BlockStore
    */
-  public synchronized Optional<Block> getBlock(long pos) {
+  public Optional<Block> getBlock(long pos) {
     return this.blockStore.getBlock(pos);
   }
 
@@ -90,7 +244,7 @@ public class BlockManager implements Closeable {
    * @param pos the position of the byte
    * @param readMode whether this ask corresponds to a sync or async read
    */
-  public synchronized void makePositionAvailable(long pos, ReadMode readMode) {
+  public void makePositionAvailable(long pos, ReadMode readMode) {
     Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
 
     // Position is already available --> return corresponding block
@@ -101,6 +255,49 @@ public class BlockManager implements Closeable {
     makeRangeAvailable(pos, 1, readMode);
   }
 
+  /**
+   * Make sure that the byte at a given position is in the BlockStore and pin the block holding it,
+   * so that it cannot be evicted while it is being read. The caller must call {@link
+   * Block#unpin()} once done with the block.
+   *
+   * @param pos the position of the byte
+   * @param len length of the read the byte belongs to, used when the block has to be fetched
+   * @param readMode whether this ask corresponds to a sync or async read
+   * @return the pinned block holding the byte
+   */
+  public Block pinBlock(long pos, long len, ReadMode readMode) {
+    return pinBlock(pos, len, readMode, true);
+  }
+
+  /**
+   * Pins the block holding a byte like {@link #pinBlock(long, long, ReadMode)}, but fetches no more
+   * than the read the byte belongs to if the block has to be fetched.
+   *
+   * @param pos the position of the byte
+   * @param len length of the read the byte belongs to, used when the block has to be fetched
+   * @param readMode whether this ask corresponds to a sync or async read
+   * @return the pinned block holding the byte
+   */
+  public Block pinBlockWithoutReadahead(long pos, long len, ReadMode readMode) {
+    return pinBlock(pos, len, readMode, false);
+  }
+
+  private Block pinBlock(long pos, long len, ReadMode readMode, boolean readahead) {
+    Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
+    Preconditions.checkArgument(0 < len, "`len` must be positive");
+
+    Optional<Block> block = blockStore.pinBlock(pos);
+    // The block can be evicted by reads on other objects between being fetched and being pinned,
+    // or still be being created by another reader that reserved its range
+    while (!block.isPresent()) {
+      blockStore.awaitReservation(pos);
+      block = fetchRange(pos, len, readMode, null, true, readahead);
+    }
+
+    blockCache.recordAccess(block.get());
+    return block.get();
+  }
+
   private boolean isRangeAvailable(long pos, long len) {
     Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
     Preconditions.checkArgument(0 <= len, "`len` must not be negative");
@@ -125,64 +322,471 @@ public class BlockManager implements Closeable {
    * @param len length of the read
    * @param readMode whether this ask corresponds to a sync or async read
    */
-  public synchronized void makeRangeAvailable(long pos, long len, ReadMode readMode) {
+  public void makeRangeAvailable(long pos, long len, ReadMode readMode) {
     Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
     Preconditions.checkArgument(0 <= len, "`len` must not be negative");
 
-    if (isRangeAvailable(pos, len)) {
+    fetchRange(pos, len, readMode, null, false, true);
+  }
+
+  /**
+   * Makes sure that a range is fully available, on behalf of a stream. Blocks fetched beyond the
+   * range are owned by the stream, and cancelled if it seeks away before they are loaded.
+   *
+   * @param pos start of a read
+   * @param len length of the read
+   * @param readMode whether this ask corresponds to a sync or async read
+   * @param stream the stream making the read
+   */
+  public void makeRangeAvailable(
+      long pos, long len, ReadMode readMode, @NonNull StreamContext stream) {
+    Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
+    Preconditions.checkArgument(0 <= len, "`len` must not be negative");
+
+    fetchRange(pos, len, readMode, stream, false, true);
+  }
+
+  /**
+   * Adds bytes of the object that were fetched already, like those of the GET made when the object
+   * was opened, as a block, so that reads of them need no GET. The bytes are dropped if part of
+   * their range is held, or being fetched, already.
+   *
+   * @param range the range of the object the bytes are of
+   * @param bytes the bytes of the range, between the position and the limit of the buffer
+   */
+  public void addFetchedRange(@NonNull Range range, @NonNull ByteBuffer bytes) {
+    synchronized (this) {
+      OptionalLong nextHeldByte = blockStore.findNextLoadedByte(range.getStart());
+      if (nextHeldByte.isPresent() && nextHeldByte.getAsLong() <= range.getEnd()) {
+        return;
+      }
+      blockStore.reserve(range);
+    }
+
+    Block block;
+    try {
+      block =
+          new Block(
+              s3URI,
+              telemetry,
+              range,
+              bytes,
+              bufferAllocator,
+              configuration.getReadTimeoutMillis(),
+              etag);
+      blockStore.add(block);
+    } catch (RuntimeException e) {
+      blockStore.release(range);
+      throw e;
+    }
+    blockCache.add(Collections.singletonList(block), blockStore);
+  }
+
+  /**
+   * Makes sure that a set of ranges is fully available in the object store. Nearby ranges are
+   * coalesced first, so that they are fetched with as few requests as possible. All requests are
+   * issued before this method returns, without waiting for any of them to complete.
+   *
+   * @param ranges the ranges to fetch, in any order
+   * @param readMode whether this ask corresponds to a sync or async read
+   */
+  public void makeRangesAvailable(@NonNull List<Range> ranges, ReadMode readMode) {
+    fetchRanges(ranges, readMode, null, true);
+  }
+
+  /**
+   * Makes sure that a set of ranges is fully available like {@link #makeRangesAvailable(List,
+   * ReadMode)}, but fetches no more than the ranges themselves: there is no readahead, and the
+   * ranges do not count towards sequential reading.
+   *
+   * @param ranges the ranges to fetch, in any order
+   * @param readMode whether this ask corresponds to a sync or async read
+   */
+  public void makeRangesAvailableWithoutReadahead(@NonNull List<Range> ranges, ReadMode readMode) {
+    fetchRanges(ranges, readMode, null, false);
+  }
+
+  /**
+   * Makes sure that a set of ranges is fully available, on behalf of a stream. Blocks prefetched
+   * asynchronously are owned by the stream, and cancelled if it closes before they are loaded.
+   *
+   * @param ranges the ranges to fetch, in any order
+   * @param readMode whether this ask corresponds to a sync or async read
+   * @param stream the stream making the request
+   */
+  public void makeRangesAvailable(
+      @NonNull List<Range> ranges, ReadMode readMode, @NonNull StreamContext stream) {
+    fetchRanges(ranges, readMode, stream, true);
+  }
+
+  /**
+   * Records a read of a stream. If the read moves the stream away from where it was reading, the
+   * prefetches no live stream wants any more are cancelled.
+   *
+   * @param stream the stream making the read
+   * @param pos start of the read
+   * @param len length of the read
+   */
+  public void recordRead(@NonNull StreamContext stream, long pos, long len) {
+    Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
+    Preconditions.checkArgument(0 <= len, "`len` must not be negative");
+
+    streams.add(stream);
+    if (stream.recordRead(pos, len, configuration.getPrefetchCancelDistanceBytes())) {
+      cancelUnwantedPrefetches();
+    }
+  }
+
+  /**
+   * Prefetches the reads predicted to follow the last read of a stream, if the stream reads
+   * backwards or with a constant stride. The prefetches are owned by the stream.
+   *
+   * @param stream the stream that made a read
+   */
+  public void prefetchPredictedReads(@NonNull StreamContext stream) {
+    if (configuration.getPatternPrefetchDepth() == 0) {
       return;
     }
 
-    // In case of a sequential reading pattern, calculate the generation and adjust the requested
-    // effectiveEnd of the requested range
-    long effectiveEnd = pos + Math.max(len, configuration.getReadAheadBytes()) - 1;
+    IOPlan plan =
+        stream
+            .getAccessPatternDetector()
+            .planPrefetch(
+                getLastObjectByte() + 1,
+                configuration.getPatternPrefetchDepth(),
+                configuration.getPatternConfidenceThreshold());
+    if (!plan.getPrefetchRanges().isEmpty()) {
+      telemetry.measure(PREDICTED_RANGES, plan.getPrefetchRanges().size());
+      fetchRanges(plan.getPrefetchRanges(), ReadMode.ASYNC, stream, true);
+    }
+  }
+
+  /**
+   * Records that a stream is closed, cancelling the prefetches no live stream wants any more.
+   *
+   * @param stream the closed stream
+   */
+  public void closeStream(@NonNull StreamContext stream) {
+    stream.close();
+    if (streams.remove(stream)) {
+      cancelUnwantedPrefetches();
+    }
+  }
+
+  private void fetchRanges(
+      List<Range> ranges, ReadMode readMode, StreamContext stream, boolean readahead) {
+    List<Range> coalescedRanges = rangeOptimiser.coalesceRanges(ranges);
+    if (coalescedRanges.size() < ranges.size()) {
+      telemetry.measure(COALESCED_RANGES, ranges.size() - coalescedRanges.size());
+    }
+
+    for (Range range : coalescedRanges) {
+      fetchRange(range.getStart(), range.getLength(), readMode, stream, false, readahead);
+    }
+  }
+
+  /**
+   * Fetches the missing parts of a range and registers the new blocks with the cache.
+   *
+   * @param pos start of a read
+   * @param len length of the read
+   * @param readMode whether this ask corresponds to a sync or async read
+   * @param stream the stream making the read, or null if it is not made on behalf of a stream
+   * @param pin whether to pin the block holding {@code pos} before the cache gets a chance to
+   *     evict it
+   * @param readahead whether to fetch ahead of the read
+   * @return the pinned block holding {@code pos} if pinning was requested and succeeded
+   */
+  private Optional<Block> fetchRange(
+      long pos,
+      long len,
+      ReadMode readMode,
+      StreamContext stream,
+      boolean pin,
+      boolean readahead) {
+    // Most reads find their bytes present already, and need not wait for the planning lock
+    if (isRangeAvailable(pos, len)) {
+      return pin ? blockStore.pinBlock(pos) : Optional.empty();
+    }
 
-    // Check sequential prefetching
-    final long generation;
-    if (patternDetector.isSequentialRead(pos)) {
-      generation = patternDetector.getGeneration(pos);
-      effectiveEnd =
-          Math.max(
-              effectiveEnd,
-              truncatePos(pos + sequentialReadProgression.getSizeForGeneration(generation)));
-    } else {
-      generation = 0;
+    ReadPlan plan = reserveMissingRanges(pos, len, stream, readahead);
+    if (plan.getRanges().isEmpty()) {
+      return pin ? blockStore.pinBlock(pos) : Optional.empty();
     }
 
-    // Fix "effectiveEnd", so we can pass it into the lambda
-    final long effectiveEndFinal = effectiveEnd;
-    this.telemetry.measureStandard(
+    return this.telemetry.measureStandard(
         () ->
             Operation.builder()
                 .name(OPERATION_MAKE_RANGE_AVAILABLE)
                 .attribute(StreamAttributes.uri(this.s3URI))
                 .attribute(StreamAttributes.range(pos, pos + len - 1))
-                .attribute(StreamAttributes.effectiveRange(pos, effectiveEndFinal))
-                .attribute(StreamAttributes.generation(generation))
+                .attribute(StreamAttributes.effectiveRange(pos, plan.getEffectiveEnd()))
+                .attribute(StreamAttributes.generation(plan.getGeneration()))
                 .build(),
         () -> {
-          // Determine the missing ranges and fetch them
-          List<Range> missingRanges =
-              ioPlanner.planRead(pos, effectiveEndFinal, getLastObjectByte());
-          List<Range> splits = rangeOptimiser.splitRanges(missingRanges);
-          splits.forEach(
-              r -> {
-                Block block =
-                    new Block(
-                        s3URI,
-                        objectClient,
-                        telemetry,
-                        r.getStart(),
-                        r.getEnd(),
-                        generation,
-                        readMode);
-                blockStore.add(block);
-              });
+          List<Block> blocks = new ArrayList<>(plan.getRanges().size());
+          int created = 0;
+          try {
+            for (Range r : plan.getRanges()) {
+              long issuedAt = System.nanoTime();
+              Block block =
+                  new Block(
+                      s3URI,
+                      objectClient,
+                      telemetry,
+                      r.getStart(),
+                      r.getEnd(),
+                      plan.getGeneration(),
+                      readMode,
+                      bufferAllocator,
+                      configuration.getReadTimeoutMillis(),
+                      etag);
+              block.setIssuer(stream);
+              blockStore.add(block);
+              blocks.add(block);
+              created++;
+              recordFetchWhenLoaded(block, issuedAt);
+              // Blocks holding bytes the read asked for are never cancelled
+              if (readMode == ReadMode.ASYNC || r.getStart() >= pos + len) {
+                trackPrefetch(block, stream, readMode == ReadMode.ASYNC);
+              }
+            }
+          } finally {
+            // Let readers waiting on the ranges that did not get a block fetch them themselves
+            plan.getRanges().subList(created, plan.getRanges().size()).forEach(blockStore::release);
+          }
+
+          // Pin before registering with the cache, the new blocks may push it over budget
+          Optional<Block> pinned = pin ? blockStore.pinBlock(pos) : Optional.empty();
+          blockCache.add(blocks, blockStore);
+          blocks.forEach(this::removeWhenFailed);
+          return pinned;
         });
   }
 
+  /**
+   * Decides which ranges to fetch for a read and reserves them in the {@link BlockStore}. This is
+   * the only part of fetching that is serialized, so it does no I/O and creates no blocks.
+   *
+   * @param pos start of a read
+   * @param len length of the read
+   * @param stream the stream making the read, or null if it is not made on behalf of a stream
+   * @param readahead whether to fetch ahead of the read
+   * @return the reserved ranges, empty if another reader reserved or fetched the bytes meanwhile
+   */
+  private synchronized ReadPlan reserveMissingRanges(
+      long pos, long len, StreamContext stream, boolean readahead) {
+    if (isRangeAvailable(pos, len)) {
+      return new ReadPlan(Collections.emptyList(), pos, 0);
+    }
+
+    long effectiveEnd = pos + len - 1;
+    long generation = 0;
+    if (readahead) {
+      // In case of a sequential reading pattern, calculate the generation and adjust the requested
+      // effectiveEnd of the requested range
+      effectiveEnd = pos + Math.max(len, configuration.getReadAheadBytes()) - 1;
+
+      // Check sequential prefetching
+      generation = getSequentialGeneration(pos, stream);
+      if (generation > 0) {
+        effectiveEnd =
+            Math.max(
+                effectiveEnd,
+                truncatePos(
+                    pos
+                        + Math.min(
+                            getSequentialReadahead(pos, generation, stream),
+                            configuration.getCacheMaxBytes() / 2)));
+      }
+    }
+
+    // Determine the missing ranges and reserve them
+    List<Range> missingRanges = ioPlanner.planRead(pos, effectiveEnd, getLastObjectByte());
+    recordDeduplication(pos, Math.min(pos + len - 1, getLastObjectByte()), missingRanges, stream);
+    List<Range> splits = rangeOptimiser.splitRanges(missingRanges);
+    splits.forEach(blockStore::reserve);
+    return new ReadPlan(splits, effectiveEnd, generation);
+  }
+
+  private void trackPrefetch(Block block, StreamContext owner, boolean planned) {
+    Prefetch prefetch =
+        new Prefetch(block, owner, owner == null ? 0 : owner.getSeeks(), planned);
+    prefetches.add(prefetch);
+    block.whenLoaded().whenComplete((ignored, error) -> prefetches.remove(prefetch));
+  }
+
+  /** Cancels the prefetches that are still in flight and no live stream wants. */
+  private void cancelUnwantedPrefetches() {
+    long cancelledBlocks = 0;
+    long cancelledBytes = 0;
+    for (Prefetch prefetch : prefetches) {
+      Block block = prefetch.getBlock();
+      // A block pinned by a reader, or loaded meanwhile, fails to cancel
+      if (!isWanted(prefetch) && blockStore.cancel(block)) {
+        prefetches.remove(prefetch);
+        blockCache.remove(block);
+        block.close();
+        cancelledBlocks++;
+        cancelledBytes += block.getLength();
+      }
+    }
+
+    if (cancelledBlocks > 0) {
+      telemetry.measure(CANCELLED_PREFETCHES, cancelledBlocks);
+      telemetry.measure(CANCELLED_BYTES, cancelledBytes);
+    }
+  }
+
+  private boolean isWanted(Prefetch prefetch) {
+    StreamContext owner = prefetch.getOwner();
+    Block block = prefetch.getBlock();
+    long distance = configuration.getPrefetchCancelDistanceBytes();
+    if (owner != null && !owner.isClosed()) {
+      if (owner.getSeeks() == prefetch.getOwnerSeeks()) {
+        return true;
+      }
+      // A plan covers reads still ahead of the stream, until the stream seeks past them
+      if (prefetch.isPlanned() && !owner.isPast(block.getEnd(), distance)) {
+        return true;
+      }
+    }
+
+    for (StreamContext stream : streams) {
+      if (stream.isNear(block.getStart(), block.getEnd(), distance)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the generation of a read. Reads of a stream are sequential when they continue one of
+   * the runs of reads the stream follows; reads not made on behalf of a stream are sequential when
+   * they start right after a block already present.
+   *
+   * @param pos start of a read
+   * @param stream the stream making the read, or null if it is not made on behalf of a stream
+   * @return the generation of the read, 0 if it is not sequential
+   */
+  private long getSequentialGeneration(long pos, StreamContext stream) {
+    if (stream != null) {
+      return stream.nextSequentialGeneration(pos);
+    }
+    return patternDetector.isSequentialRead(pos) ? patternDetector.getGeneration(pos) : 0;
+  }
+
+  /**
+   * Returns how far ahead of a sequential read to fetch. The adaptive window of a run of reads of a
+   * stream grows towards what the link and the stream can take; reads not made on behalf of a
+   * stream grow geometrically with the generation.
+   *
+   * @param pos start of the read
+   * @param generation the generation of the read
+   * @param stream the stream making the read, or null if it is not made on behalf of a stream
+   * @return the number of bytes to fetch from the position of the read
+   */
+  private long getSequentialReadahead(long pos, long generation, StreamContext stream) {
+    if (stream == null || !configuration.isAdaptiveReadahead()) {
+      return sequentialReadProgression.getSizeForGeneration(generation);
+    }
+
+    long window =
+        stream.nextReadaheadWindow(
+            pos,
+            // The window starts where the geometric progression does, unless that is too much
+            sequentialReadProgression.getSizeForGeneration(0),
+            readaheadController.getWindowBytes(stream.getConsumerBytesPerSecond()));
+    telemetry.measure(READAHEAD_WINDOW, window);
+    return window;
+  }
+
+  /**
+   * Removes a block once its fetch fails for good, so that the next read of its range fetches it
+   * again rather than failing on the same block forever.
+   *
+   * @param block the block to watch
+   */
+  private void removeWhenFailed(Block block) {
+    block
+        .whenLoaded()
+        .whenComplete(
+            (ignored, error) -> {
+              // Cancelled blocks are removed by whoever cancelled or evicted them
+              Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+              if (error != null
+                  && !(cause instanceof CancellationException)
+                  && blockStore.removeFailed(block)) {
+                blockCache.remove(block);
+                block.close();
+                telemetry.measure(FAILED_BLOCKS, 1);
+              }
+            });
+  }
+
+  private void recordFetchWhenLoaded(Block block, long issuedAt) {
+    block
+        .whenLoaded()
+        .thenRun(
+            () -> readaheadController.recordFetch(block.getLength(), System.nanoTime() - issuedAt));
+  }
+
+  /**
+   * Records how much of a read attaches to GETs that other reads issued and that are still in
+   * flight, rather than issuing requests of its own. The parts of the read that planning left out
+   * are covered already; of these, only the unloaded blocks issued by another stream are counted,
+   * so that a stream waiting on its own readahead is not.
+   *
+   * @param start first byte of the read
+   * @param end last byte of the read
+   * @param missingRanges the ranges planning found missing, in order
+   * @param stream the stream making the read, or null if it is not made on behalf of a stream
+   */
+  private void recordDeduplication(
+      long start, long end, List<Range> missingRanges, StreamContext stream) {
+    List<Block> attached = new ArrayList<>();
+    long next = start;
+    for (Range missing : missingRanges) {
+      if (next > end) {
+        break;
+      }
+      if (missing.getStart() > next) {
+        collectAttached(next, Math.min(missing.getStart() - 1, end), stream, attached);
+      }
+      next = Math.max(next, missing.getEnd() + 1);
+    }
+    if (next <= end) {
+      collectAttached(next, end, stream, attached);
+    }
+    if (attached.isEmpty()) {
+      return;
+    }
+
+    long bytes = 0;
+    for (Block block : attached) {
+      bytes += Math.min(end, block.getEnd()) - Math.max(start, block.getStart()) + 1;
+    }
+    telemetry.measure(DEDUPLICATED_REQUESTS, attached.size());
+    telemetry.measure(DEDUPLICATED_BYTES, bytes);
+  }
+
+  private void collectAttached(long start, long end, StreamContext stream, List<Block> attached) {
+    long pos = start;
+    while (pos <= end) {
+      // A reserved range has no block yet, and its fetch is not issued
+      Optional<Block> block = blockStore.getBlock(pos);
+      if (!block.isPresent()) {
+        return;
+      }
+      if (!block.get().isLoaded() && (stream == null || block.get().getIssuer() != stream)) {
+        attached.add(block.get());
+      }
+      pos = block.get().getEnd() + 1;
+    }
+  }
+
   private long getLastObjectByte() {
-    return this.metadataStore.get(s3URI).getContentLength() - 1;
+    return blockStore.getLastObjectByte();
   }
 
   private long truncatePos(long pos) {
@@ -194,6 +798,30 @@ public class BlockManager implements Closeable {
   /** Closes the {@link BlockManager} and frees up all resources it holds */
   @Override
   public void close() {
+    prefetches.clear();
+    streams.clear();
+    blockCache.invalidate(blockStore);
     blockStore.close();
   }
+
+  /** The ranges reserved for a read, with the parameters the read was planned with. */
+  @Value
+  private static class ReadPlan {
+    List<Range> ranges;
+    long effectiveEnd;
+    long generation;
+  }
+
+  /**
+   * A prefetched block, with the stream it was prefetched for, if any, and the number of seeks of
+   * the stream at the time. Planned prefetches are wanted by their stream until it closes, or seeks
+   * past them.
+   */
+  @Value
+  private static class Prefetch {
+    Block block;
+    StreamContext owner;
+    long ownerSeeks;
+    boolean planned;
+  }
 }
@@ -16,23 +16,48 @@
 package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import java.io.Closeable;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import lombok.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
-/** A BlockStore, which is a collection of Blocks. */
+/**
+ * A BlockStore, which is a collection of non-overlapping Blocks. Blocks are indexed by their start
+ * position, and the union of their ranges is additionally kept as a set of disjoint intervals, so
+ * that all lookups are O(log n) in the number of blocks.
+ *
+ * <p>Lookups are lock-free, so that concurrent readers of an object do not serialize on the store.
+ * Updates are synchronized, and ordered so that a concurrent lookup may see bytes that are being
+ * removed as still present, but never sees present bytes as missing. Blocks may be evicted by the
+ * {@link BlockCache} at any time, so a block found by a lookup may fail to pin.
+ *
+ * <p>A range can be reserved before its block is created, so that the expensive part of creating a
+ * block happens outside of any lock while other readers already see the range as taken.
+ */
 public class BlockStore implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(BlockStore.class);
 
   private final S3URI s3URI;
+  // Null when the store is pinned to the metadata of a version of the object
   private final MetadataStore metadataStore;
-  private final List<Block> blocks;
+  // The metadata of the version the blocks are of, looked up once if not given
+  private volatile ObjectMetadata metadata;
+  // Blocks, keyed by their start position
+  private final ConcurrentNavigableMap<Long, Block> blocks;
+  // Reserved ranges whose blocks are being created, keyed by their start position
+  private final ConcurrentNavigableMap<Long, Reservation> reservations;
+  // Maximal runs of adjacent blocks and reservations, as start position -> end position (inclusive)
+  private final ConcurrentNavigableMap<Long, Long> coverage;
 
   /**
    * Constructs a new instance of a BlockStore.
@@ -46,7 +71,27 @@ public class BlockStore implements Closeable {
 
     this.s3URI = s3URI;
     this.metadataStore = metadataStore;
-    this.blocks = new LinkedList<>();
+    this.blocks = new ConcurrentSkipListMap<>();
+    this.reservations = new ConcurrentSkipListMap<>();
+    this.coverage = new ConcurrentSkipListMap<>();
+  }
+
+  /**
+   * Constructs a new instance of a BlockStore holding the blocks of one version of an object.
+   *
+   * @param s3URI the object's S3 URI
+   * @param metadata the metadata of the version of the object
+   */
+  public BlockStore(S3URI s3URI, ObjectMetadata metadata) {
+    Preconditions.checkNotNull(s3URI, "`s3URI` must not be null");
+    Preconditions.checkNotNull(metadata, "`metadata` must not be null");
+
+    this.s3URI = s3URI;
+    this.metadataStore = null;
+    this.metadata = metadata;
+    this.blocks = new ConcurrentSkipListMap<>();
+    this.reservations = new ConcurrentSkipListMap<>();
+    this.coverage = new ConcurrentSkipListMap<>();
   }
 
   /**
@@ -59,7 +104,11 @@ public class BlockStore implements Closeable {
   public Optional<Block> getBlock(long pos) {
     Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
 
-    return blocks.stream().filter(b -> b.contains(pos)).findFirst();
+    Map.Entry<Long, Block> candidate = blocks.floorEntry(pos);
+    if (candidate == null || !candidate.getValue().contains(pos)) {
+      return Optional.empty();
+    }
+    return Optional.of(candidate.getValue());
   }
 
   /**
@@ -73,11 +122,12 @@ public class BlockStore implements Closeable {
   public OptionalLong findNextLoadedByte(long pos) {
     Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
 
-    if (getBlock(pos).isPresent()) {
+    if (isCovered(pos)) {
       return OptionalLong.of(pos);
     }
 
-    return blocks.stream().mapToLong(Block::getStart).filter(startPos -> pos < startPos).min();
+    Long nextStart = coverage.higherKey(pos);
+    return nextStart == null ? OptionalLong.empty() : OptionalLong.of(nextStart);
   }
 
   /**
@@ -92,9 +142,9 @@ public class BlockStore implements Closeable {
     Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
 
     long nextMissingByte = pos;
-
-    while (getBlock(nextMissingByte).isPresent()) {
-      nextMissingByte = getBlock(nextMissingByte).get().getEnd() + 1;
+    Map.Entry<Long, Long> run = coverage.floorEntry(pos);
+    if (run != null && pos <= run.getValue()) {
+      nextMissingByte = run.getValue() + 1;
     }
 
     return nextMissingByte <= getLastObjectByte()
@@ -103,18 +153,213 @@ public class BlockStore implements Closeable {
   }
 
   /**
-   * Add a Block to the BlockStore.
+   * Add a Block to the BlockStore. The block must either fulfil a reservation of exactly its range,
+   * or not overlap any block or reservation already in the store.
    *
    * @param block the block to add to the BlockStore
    */
-  public void add(Block block) {
+  public synchronized void add(Block block) {
     Preconditions.checkNotNull(block, "`block` must not be null");
 
-    this.blocks.add(block);
+    long start = block.getStart();
+    long end = block.getEnd();
+    Reservation reservation = reservations.get(start);
+    if (reservation != null && reservation.getEnd() == end) {
+      // The range is covered already, so the block only has to become visible
+      this.blocks.put(start, block);
+      reservations.remove(start);
+      reservation.getCreated().complete(null);
+      return;
+    }
+
+    checkDisjoint(start, end);
+    this.blocks.put(start, block);
+    addCoverage(start, end);
+  }
+
+  /**
+   * Reserves a range for a block that is about to be created. Until the block is added with {@link
+   * #add(Block)}, or the reservation is released with {@link #release(Range)}, the range counts as
+   * present, so no other block is planned over it.
+   *
+   * @param range the range to reserve, which must not overlap any block or reservation
+   */
+  public synchronized void reserve(Range range) {
+    Preconditions.checkNotNull(range, "`range` must not be null");
+
+    checkDisjoint(range.getStart(), range.getEnd());
+    reservations.put(range.getStart(), new Reservation(range.getEnd(), new CompletableFuture<>()));
+    addCoverage(range.getStart(), range.getEnd());
+  }
+
+  /**
+   * Releases a reservation whose block could not be created, making the range missing again.
+   *
+   * @param range the reserved range
+   */
+  public synchronized void release(Range range) {
+    Preconditions.checkNotNull(range, "`range` must not be null");
+
+    Reservation reservation = reservations.get(range.getStart());
+    if (reservation != null && reservation.getEnd() == range.getEnd()) {
+      removeCoverage(range.getStart(), range.getEnd());
+      reservations.remove(range.getStart());
+      reservation.getCreated().complete(null);
+    }
   }
 
-  private long getLastObjectByte() {
-    return this.metadataStore.get(s3URI).getContentLength() - 1;
+  /**
+   * Waits until the block of a reservation holding a position is added or the reservation is
+   * released. Returns immediately if the position is not reserved.
+   *
+   * @param pos the position of a byte
+   */
+  public void awaitReservation(long pos) {
+    Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
+
+    Map.Entry<Long, Reservation> candidate = reservations.floorEntry(pos);
+    if (candidate != null && pos <= candidate.getValue().getEnd()) {
+      candidate.getValue().getCreated().join();
+    }
+  }
+
+  /**
+   * Given a position, pin and return the Block holding the byte at that position. The caller is
+   * responsible for unpinning the block once done with it.
+   *
+   * @param pos the position of the byte
+   * @return the pinned Block containing the byte or empty if the byte is not present in the
+   *     BlockStore
+   */
+  public Optional<Block> pinBlock(long pos) {
+    // A block evicted concurrently with the lookup fails to pin
+    return getBlock(pos).filter(Block::tryPin);
+  }
+
+  /**
+   * Evicts a Block and removes it from the BlockStore, unless the block is currently pinned.
+   *
+   * @param block the block to evict
+   * @return true if the block was evicted and removed
+   */
+  public synchronized boolean evict(Block block) {
+    Preconditions.checkNotNull(block, "`block` must not be null");
+
+    if (!block.tryEvict()) {
+      return false;
+    }
+
+    if (blocks.remove(block.getStart(), block)) {
+      removeCoverage(block.getStart(), block.getEnd());
+    }
+    return true;
+  }
+
+  /**
+   * Cancels a Block whose data is still being fetched and removes it from the BlockStore, unless
+   * the block is pinned by a reader. The caller is responsible for closing a cancelled block.
+   *
+   * @param block the block to cancel
+   * @return true if the block was cancelled and removed
+   */
+  public synchronized boolean cancel(Block block) {
+    Preconditions.checkNotNull(block, "`block` must not be null");
+
+    if (!block.tryCancel()) {
+      return false;
+    }
+
+    if (blocks.remove(block.getStart(), block)) {
+      removeCoverage(block.getStart(), block.getEnd());
+    }
+    return true;
+  }
+
+  /**
+   * Removes a Block whose data failed to be fetched, so that a later read fetches its range again.
+   * Readers holding a pin on the block see the failure. The caller is responsible for closing a
+   * removed block.
+   *
+   * @param block the failed block
+   * @return true if the block was removed, false if it was no longer in the BlockStore
+   */
+  public synchronized boolean removeFailed(Block block) {
+    Preconditions.checkNotNull(block, "`block` must not be null");
+
+    if (!blocks.remove(block.getStart(), block)) {
+      return false;
+    }
+    removeCoverage(block.getStart(), block.getEnd());
+    return true;
+  }
+
+  private void checkDisjoint(long start, long end) {
+    Map.Entry<Long, Block> previous = blocks.floorEntry(end);
+    Preconditions.checkArgument(
+        previous == null || previous.getValue().getEnd() < start,
+        "`block` [%s-%s] overlaps a block already in the BlockStore",
+        start,
+        end);
+    Map.Entry<Long, Reservation> reserved = reservations.floorEntry(end);
+    Preconditions.checkArgument(
+        reserved == null || reserved.getValue().getEnd() < start,
+        "`block` [%s-%s] overlaps a range reserved in the BlockStore",
+        start,
+        end);
+  }
+
+  private void addCoverage(long start, long end) {
+    // Merge with the runs directly to the left and right of the range
+    long runStart = start;
+    long runEnd = end;
+    Map.Entry<Long, Long> left = coverage.floorEntry(start);
+    if (left != null && left.getValue() + 1 == start) {
+      runStart = left.getKey();
+    }
+    Long right = coverage.get(end + 1);
+    if (right != null) {
+      runEnd = right;
+    }
+
+    // Extend first and drop the right run after, so lookups never see a hole
+    coverage.put(runStart, runEnd);
+    if (right != null) {
+      coverage.remove(end + 1);
+    }
+  }
+
+  private void removeCoverage(long start, long end) {
+    // Split the run the range belonged to around it, shrinking the run last, so that lookups never
+    // see a hole outside of the removed range
+    Map.Entry<Long, Long> run = coverage.floorEntry(start);
+    if (end < run.getValue()) {
+      coverage.put(end + 1, run.getValue());
+    }
+    if (run.getKey() < start) {
+      coverage.put(run.getKey(), start - 1);
+    } else {
+      coverage.remove(run.getKey());
+    }
+  }
+
+  private boolean isCovered(long pos) {
+    Map.Entry<Long, Long> run = coverage.floorEntry(pos);
+    return run != null && pos <= run.getValue();
+  }
+
+  /**
+   * Returns the position of the last byte of the version of the object the blocks are of. It does
+   * not change once known, even after the metadata cached for the object has expired.
+   *
+   * @return the position of the last byte of the object
+   */
+  long getLastObjectByte() {
+    ObjectMetadata current = metadata;
+    if (current == null) {
+      current = metadataStore.get(s3URI);
+      metadata = current;
+    }
+    return current.getContentLength() - 1;
   }
 
   private void safeClose(Block block) {
@@ -126,7 +371,14 @@ public class BlockStore implements Closeable {
   }
 
   @Override
-  public void close() {
-    blocks.forEach(this::safeClose);
+  public synchronized void close() {
+    blocks.values().forEach(this::safeClose);
+  }
+
+  /** A reserved range, with a future completing once its block is added or it is released. */
+  @Value
+  private static class Reservation {
+    long end;
+    CompletableFuture<Void> created;
   }
 }
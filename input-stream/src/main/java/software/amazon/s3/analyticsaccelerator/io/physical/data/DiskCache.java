@@ -0,0 +1,489 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.NonNull;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.cache.EvictionPolicy;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+/**
+ * A second cache tier below the in-memory blocks, backed by files on a local disk. Blocks evicted
+ * from the {@link BlockCache} are spilled to disk, and fetches that miss in memory are served from
+ * disk before going to the object store (see {@link DiskCachingObjectClient}).
+ *
+ * <p>Entries are keyed by object, ETag and range, so a new version of an object never hits stale
+ * data. Every chunk of an entry is checksummed when written and verified when read back, so a
+ * corrupted file is reported as a failed read instead of returning bad bytes. The disk tier has its
+ * own byte budget and eviction policy. Its index lives in memory: files are written to a fresh
+ * subdirectory of the configured directory, which is removed on close.
+ */
+public class DiskCache implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(DiskCache.class);
+  private static final String METRIC_HIT_BYTES = "disk.cache.hit.bytes";
+  private static final String METRIC_SPILLED_BYTES = "disk.cache.spilled.bytes";
+  private static final String METRIC_EVICTED_BYTES = "disk.cache.evicted.bytes";
+  private static final String METRIC_CHECKSUM_FAILURES = "disk.cache.checksum.failures";
+  private static final String DIRECTORY_PREFIX = "s3-blocks-";
+  private static final String FILE_SUFFIX = ".blk";
+  private static final String THREAD_NAME = "disk-cache-io";
+  private static final int IO_THREADS = 4;
+  private static final long CLOSE_TIMEOUT_SECONDS = 10;
+  // Unit of checksumming: reads only verify the chunks overlapping the requested range
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  private final Path directory;
+  private final long maxBytes;
+  private final MetadataStore metadataStore;
+  private final Telemetry telemetry;
+  private final ExecutorService executor;
+  private final EvictionPolicy<DiskCacheKey> evictionPolicy;
+  private final Map<DiskCacheKey, Entry> entries = new HashMap<>();
+  private final Map<ObjectVersion, NavigableMap<Long, DiskCacheKey>> index = new HashMap<>();
+  private final AtomicLong nextFileId = new AtomicLong();
+  private long usedBytes;
+  private boolean closed;
+
+  /**
+   * Constructs a new DiskCache, creating its directory.
+   *
+   * @param metadataStore the MetadataStore providing the current ETag of objects
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param configuration the PhysicalIO configuration, with a non-empty disk cache directory
+   * @throws IOException if the directory cannot be created
+   */
+  public DiskCache(
+      @NonNull MetadataStore metadataStore,
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration)
+      throws IOException {
+    this(
+        metadataStore,
+        telemetry,
+        configuration,
+        Executors.newFixedThreadPool(
+            IO_THREADS,
+            runnable -> {
+              Thread thread = new Thread(runnable, THREAD_NAME);
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  /**
+   * Constructs a new DiskCache doing its disk I/O on the given executor. The executor is shut down
+   * when the cache is closed.
+   *
+   * @param metadataStore the MetadataStore providing the current ETag of objects
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param configuration the PhysicalIO configuration, with a non-empty disk cache directory
+   * @param executor the executor reading and writing the files
+   * @throws IOException if the directory cannot be created
+   */
+  DiskCache(
+      @NonNull MetadataStore metadataStore,
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration,
+      @NonNull ExecutorService executor)
+      throws IOException {
+    Path root = Paths.get(configuration.getDiskCacheDirectory());
+    Files.createDirectories(root);
+    this.directory = Files.createTempDirectory(root, DIRECTORY_PREFIX);
+    this.maxBytes = configuration.getDiskCacheMaxBytes();
+    this.metadataStore = metadataStore;
+    this.telemetry = telemetry;
+    this.evictionPolicy =
+        configuration
+            .getCacheEvictionPolicy()
+            .create(
+                maxBytes,
+                (int)
+                    Math.min(
+                        Integer.MAX_VALUE,
+                        Math.max(1, maxBytes / configuration.getBlockSizeBytes())),
+                key -> key);
+    this.executor = executor;
+  }
+
+  /**
+   * Reads a range of an object from disk, if an entry for the current version of the object covers
+   * it. The bytes are written into the destination asynchronously, following the contract of
+   * {@link software.amazon.s3.analyticsaccelerator.request.ObjectClient#getObject}: while holding
+   * the monitor of the destination, and never once the returned future is done. The future fails
+   * if the data on disk does not match its checksum.
+   *
+   * @param s3URI the object
+   * @param range the range to read
+   * @param destination the buffer to write the bytes into, at its current position
+   * @return a future completing with the number of bytes read, or empty if the range is not on disk
+   */
+  public Optional<CompletableFuture<Integer>> read(
+      @NonNull S3URI s3URI, @NonNull Range range, @NonNull ByteBuffer destination) {
+    return read(s3URI, null, range, destination);
+  }
+
+  /**
+   * Reads a range of a version of an object from disk, like {@link #read(S3URI, Range,
+   * ByteBuffer)}, for a read that is pinned to the given ETag.
+   *
+   * @param s3URI the object
+   * @param etag the ETag of the version to read, or null to read the current version
+   * @param range the range to read
+   * @param destination the buffer to write the bytes into, at its current position
+   * @return a future completing with the number of bytes read, or empty if the range is not on disk
+   */
+  public Optional<CompletableFuture<Integer>> read(
+      @NonNull S3URI s3URI, String etag, @NonNull Range range, @NonNull ByteBuffer destination) {
+    return read(s3URI, etag == null ? currentEtag(s3URI) : Optional.of(etag), range, destination);
+  }
+
+  private Optional<CompletableFuture<Integer>> read(
+      S3URI s3URI, Optional<String> etag, Range range, ByteBuffer destination) {
+    if (!etag.isPresent()) {
+      return Optional.empty();
+    }
+
+    DiskCacheKey key;
+    Entry entry;
+    synchronized (this) {
+      Optional<DiskCacheKey> covering = findCovering(new ObjectVersion(s3URI, etag.get()), range);
+      if (closed || !covering.isPresent()) {
+        return Optional.empty();
+      }
+      key = covering.get();
+      entry = entries.get(key);
+      evictionPolicy.onAccess(key);
+    }
+
+    CompletableFuture<Integer> result = new CompletableFuture<>();
+    try {
+      executor.execute(
+          () -> {
+            try {
+              result.complete(readEntry(key, entry, range, destination, result));
+            } catch (Throwable t) {
+              result.completeExceptionally(t);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      // The cache is closing
+      return Optional.empty();
+    }
+    return Optional.of(result);
+  }
+
+  /**
+   * Spills a block evicted from memory to disk, asynchronously. If the block is accepted, the disk
+   * cache takes it over and closes it, freeing its memory, once its data is written. Blocks that
+   * are not fully loaded, whose object version is unknown, or that overlap bytes already on disk
+   * are not accepted.
+   *
+   * @param block the evicted block
+   * @return true if the block was accepted, false if the caller still has to close it
+   */
+  public boolean spill(@NonNull Block block) {
+    Optional<ByteBuffer> data = block.getLoadedData();
+    S3URI s3URI = block.getBlockKey().getS3URI();
+    Range range = block.getBlockKey().getRange();
+    Optional<String> etag =
+        block.getBlockKey().getEtag() == null
+            ? currentEtag(s3URI)
+            : Optional.of(block.getBlockKey().getEtag());
+    if (!data.isPresent() || !etag.isPresent() || range.getLength() > maxBytes) {
+      return false;
+    }
+
+    DiskCacheKey key = new DiskCacheKey(s3URI, etag.get(), range);
+    synchronized (this) {
+      // Blocks overlapping what is on disk already are not kept, so entries never overlap
+      if (closed || overlapsEntry(new ObjectVersion(s3URI, etag.get()), range)) {
+        return false;
+      }
+    }
+
+    try {
+      executor.execute(
+          () -> {
+            try {
+              write(key, data.get());
+            } catch (Throwable t) {
+              LOG.warn("Failed to spill block {} to disk", key, t);
+            } finally {
+              block.close();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      // The cache is closing
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of bytes held by the entries of the disk cache.
+   *
+   * @return the number of bytes currently on disk
+   */
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * Returns the directory the entries of this disk cache are written to.
+   *
+   * @return the directory holding the entries
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  private Optional<String> currentEtag(S3URI s3URI) {
+    // Only use metadata that is already known, spills and reads must never wait for a HEAD
+    return metadataStore.getIfPresent(s3URI).map(ObjectMetadata::getEtag);
+  }
+
+  private Optional<DiskCacheKey> findCovering(ObjectVersion version, Range range) {
+    // The entries of a version never overlap, so only the last one starting at or before the range
+    // can cover it
+    return findLastStartingAtOrBefore(version, range.getStart())
+        .filter(key -> key.getRange().getEnd() >= range.getEnd());
+  }
+
+  private boolean overlapsEntry(ObjectVersion version, Range range) {
+    return findLastStartingAtOrBefore(version, range.getEnd())
+        .filter(key -> key.getRange().getEnd() >= range.getStart())
+        .isPresent();
+  }
+
+  private Optional<DiskCacheKey> findLastStartingAtOrBefore(ObjectVersion version, long pos) {
+    NavigableMap<Long, DiskCacheKey> ranges = index.get(version);
+    if (ranges == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(ranges.floorEntry(pos)).map(Map.Entry::getValue);
+  }
+
+  private int readEntry(
+      DiskCacheKey key,
+      Entry entry,
+      Range range,
+      ByteBuffer destination,
+      CompletableFuture<Integer> result)
+      throws IOException {
+    long offset = range.getStart() - key.getRange().getStart();
+    long end = offset + range.getLength();
+    ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    CRC32 crc = new CRC32();
+    int bytesRead = 0;
+
+    try (FileChannel channel = FileChannel.open(entry.getFile(), StandardOpenOption.READ)) {
+      for (int i = (int) (offset / CHUNK_SIZE); (long) i * CHUNK_SIZE < end; i++) {
+        long chunkStart = (long) i * CHUNK_SIZE;
+        chunk.clear();
+        chunk.limit((int) Math.min(CHUNK_SIZE, key.getRange().getLength() - chunkStart));
+        while (chunk.hasRemaining()) {
+          if (channel.read(chunk, chunkStart + chunk.position()) < 0) {
+            throw new IOException("Disk cache entry " + key + " is truncated");
+          }
+        }
+
+        chunk.flip();
+        crc.reset();
+        crc.update(chunk.duplicate());
+        if (crc.getValue() != entry.getChecksums()[i]) {
+          telemetry.measure(Metric.builder().name(METRIC_CHECKSUM_FAILURES).build(), 1);
+          remove(key);
+          throw new IOException("Checksum mismatch in disk cache entry " + key);
+        }
+
+        chunk.position((int) (Math.max(offset, chunkStart) - chunkStart));
+        chunk.limit((int) (Math.min(end, chunkStart + chunk.limit()) - chunkStart));
+        synchronized (destination) {
+          if (result.isDone()) {
+            return bytesRead;
+          }
+          bytesRead += chunk.remaining();
+          destination.put(chunk);
+          destination.notifyAll();
+        }
+      }
+    }
+
+    telemetry.measure(Metric.builder().name(METRIC_HIT_BYTES).build(), bytesRead);
+    return bytesRead;
+  }
+
+  private void write(DiskCacheKey key, ByteBuffer data) throws IOException {
+    Path file = directory.resolve(nextFileId.incrementAndGet() + FILE_SUFFIX);
+    long[] checksums = new long[(data.remaining() + CHUNK_SIZE - 1) / CHUNK_SIZE];
+    CRC32 crc = new CRC32();
+
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      for (int i = 0; i < checksums.length; i++) {
+        ByteBuffer chunk = data.duplicate();
+        chunk.position(data.position() + i * CHUNK_SIZE);
+        chunk.limit(Math.min(data.limit(), chunk.position() + CHUNK_SIZE));
+
+        crc.reset();
+        crc.update(chunk.duplicate());
+        checksums[i] = crc.getValue();
+        while (chunk.hasRemaining()) {
+          channel.write(chunk);
+        }
+      }
+    } catch (IOException e) {
+      deleteQuietly(file);
+      throw e;
+    }
+
+    ObjectVersion version = new ObjectVersion(key.getS3URI(), key.getEtag());
+    List<Path> evicted = new ArrayList<>();
+    synchronized (this) {
+      // Another spill of an overlapping block may have been written meanwhile
+      if (closed || overlapsEntry(version, key.getRange())) {
+        evicted.add(file);
+      } else {
+        entries.put(key, new Entry(file, checksums));
+        index.computeIfAbsent(version, k -> new TreeMap<>()).put(key.getRange().getStart(), key);
+        usedBytes += key.getRange().getLength();
+        evictionPolicy.onAdd(key, key.getRange().getLength());
+        evicted.addAll(evictOverBudget(key));
+      }
+    }
+
+    telemetry.measure(Metric.builder().name(METRIC_SPILLED_BYTES).build(), data.remaining());
+    evicted.forEach(this::deleteQuietly);
+  }
+
+  private List<Path> evictOverBudget(DiskCacheKey added) {
+    List<Path> evicted = new ArrayList<>();
+    long evictedBytes = 0;
+
+    while (usedBytes > maxBytes) {
+      Optional<DiskCacheKey> victim = evictionPolicy.nextVictim(key -> !key.equals(added));
+      if (!victim.isPresent()) {
+        break;
+      }
+      evictedBytes += victim.get().getRange().getLength();
+      evicted.add(removeEntry(victim.get()));
+    }
+
+    if (evictedBytes > 0) {
+      telemetry.measure(Metric.builder().name(METRIC_EVICTED_BYTES).build(), evictedBytes);
+    }
+    return evicted;
+  }
+
+  private void remove(DiskCacheKey key) {
+    Path file;
+    synchronized (this) {
+      if (!entries.containsKey(key)) {
+        return;
+      }
+      file = removeEntry(key);
+    }
+    deleteQuietly(file);
+  }
+
+  private Path removeEntry(DiskCacheKey key) {
+    Entry entry = entries.remove(key);
+    ObjectVersion version = new ObjectVersion(key.getS3URI(), key.getEtag());
+    NavigableMap<Long, DiskCacheKey> ranges = index.get(version);
+    ranges.remove(key.getRange().getStart(), key);
+    if (ranges.isEmpty()) {
+      index.remove(version);
+    }
+    usedBytes -= key.getRange().getLength();
+    evictionPolicy.onRemove(key);
+    return entry.getFile();
+  }
+
+  private void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOG.warn("Failed to delete disk cache file {}", file, e);
+    }
+  }
+
+  /**
+   * Closes the disk cache, waiting for pending spills to finish, and removes its directory with all
+   * entries.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("Timed out waiting for disk cache spills to finish");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    synchronized (this) {
+      new ArrayList<>(entries.keySet()).forEach(this::removeEntry);
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      files.forEach(this::deleteQuietly);
+    } catch (IOException e) {
+      LOG.warn("Failed to list disk cache directory {}", directory, e);
+    }
+    deleteQuietly(directory);
+  }
+
+  /** The file holding an entry, with the checksum of each of its chunks. */
+  @Value
+  private static class Entry {
+    Path file;
+    long[] checksums;
+  }
+}
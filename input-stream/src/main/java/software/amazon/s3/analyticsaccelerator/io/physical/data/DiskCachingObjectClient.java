@@ -0,0 +1,118 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+
+/**
+ * An {@link ObjectClient} serving block fetches from a {@link DiskCache} when it holds the range,
+ * and from the wrapped client otherwise. If the data on disk turns out to be unusable, the fetch
+ * transparently falls back to the wrapped client.
+ */
+public class DiskCachingObjectClient implements ObjectClient {
+  private final ObjectClient objectClient;
+  private final DiskCache diskCache;
+
+  /**
+   * Constructs a new DiskCachingObjectClient.
+   *
+   * @param objectClient the client to fetch data missing from disk with
+   * @param diskCache the disk cache to serve data from
+   */
+  public DiskCachingObjectClient(
+      @NonNull ObjectClient objectClient, @NonNull DiskCache diskCache) {
+    this.objectClient = objectClient;
+    this.diskCache = diskCache;
+  }
+
+  @Override
+  public CompletableFuture<ObjectMetadata> headObject(HeadRequest headRequest) {
+    return objectClient.headObject(headRequest);
+  }
+
+  @Override
+  public CompletableFuture<ObjectContent> getObject(GetRequest getRequest) {
+    return objectClient.getObject(getRequest);
+  }
+
+  @Override
+  public CompletableFuture<Integer> getObject(
+      @NonNull GetRequest getRequest, @NonNull ByteBuffer destination) {
+    int start = destination.position();
+    Optional<CompletableFuture<Integer>> fromDisk =
+        diskCache.read(
+            getRequest.getS3Uri(), getRequest.getEtag(), getRequest.getRange(), destination);
+    if (!fromDisk.isPresent()) {
+      return objectClient.getObject(getRequest, destination);
+    }
+
+    CompletableFuture<Integer> result = new CompletableFuture<>();
+    AtomicReference<CompletableFuture<Integer>> current = new AtomicReference<>(fromDisk.get());
+    fromDisk
+        .get()
+        .whenComplete(
+            (bytesRead, error) -> {
+              if (error == null) {
+                result.complete(bytesRead);
+                return;
+              }
+
+              // Discard whatever the disk read wrote, unless the caller already gave up
+              synchronized (destination) {
+                if (result.isDone()) {
+                  return;
+                }
+                destination.position(start);
+              }
+              CompletableFuture<Integer> fallback =
+                  objectClient.getObject(getRequest, destination);
+              current.set(fallback);
+              fallback.whenComplete(
+                  (fallbackBytesRead, fallbackError) -> {
+                    if (fallbackError == null) {
+                      result.complete(fallbackBytesRead);
+                    } else {
+                      result.completeExceptionally(fallbackError);
+                    }
+                  });
+              if (result.isCancelled()) {
+                fallback.cancel(false);
+              }
+            });
+
+    // Cancelling the result aborts whichever read is in flight
+    result.whenComplete(
+        (bytesRead, error) -> {
+          if (result.isCancelled()) {
+            current.get().cancel(false);
+          }
+        });
+    return result;
+  }
+
+  /** The wrapped client and the disk cache are owned by the caller, so they are left open. */
+  @Override
+  public void close() {}
+}
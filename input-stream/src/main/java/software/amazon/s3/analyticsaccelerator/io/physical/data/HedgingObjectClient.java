@@ -0,0 +1,328 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BlockBuffer;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BufferAllocator;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+
+/**
+ * An {@link ObjectClient} hedging the GETs of reads against stragglers. A small share of range GETs
+ * take many times as long as the others, and as a read blocks on its blocks, a single one of them
+ * stalls the read.
+ *
+ * <p>When a GET of a read ({@link ReadMode#SYNC}) has not written any byte after {@link
+ * PhysicalIOConfiguration#getHedgingLatencyPercentile()} of the latencies of recent GETs, the same
+ * range is requested again into a buffer of its own, leased from the {@link BufferAllocator} of the
+ * blocks. The first of the two requests to complete wins and the other one is cancelled; the bytes
+ * of the hedge, when it wins, are copied into the destination of the original request, and the
+ * lease is given back once the hedge is done.
+ *
+ * <p>Hedges are budgeted: each GET of a read earns {@link
+ * PhysicalIOConfiguration#getHedgingBudgetRatio()} of a hedge, up to a small burst, and each hedge
+ * spends one. Prefetches are never hedged.
+ */
+public class HedgingObjectClient implements ObjectClient {
+  private static final String METRIC_HEDGES = "hedging.client.hedges";
+  private static final String METRIC_WINS = "hedging.client.wins";
+  private static final String METRIC_THRESHOLD = "hedging.client.threshold.ms";
+  private static final Metric HEDGES = Metric.builder().name(METRIC_HEDGES).build();
+  private static final Metric WINS = Metric.builder().name(METRIC_WINS).build();
+  private static final Metric THRESHOLD = Metric.builder().name(METRIC_THRESHOLD).build();
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  // The latencies of the last GETs are kept, and their percentile refreshed every few of them
+  private static final int SAMPLE_COUNT = 256;
+  private static final int MIN_SAMPLES = 32;
+  private static final int SAMPLES_PER_REFRESH = 16;
+  // Never hedge sooner than this, as a duplicate this early is almost never worth it
+  private static final long MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final double MAX_BUDGET = 10;
+
+  private final ObjectClient objectClient;
+  private final BufferAllocator bufferAllocator;
+  private final Telemetry telemetry;
+  private final double budgetRatio;
+  private final double latencyPercentile;
+  private final ScheduledExecutorService timer;
+
+  // Guarded by this
+  private final long[] samples = new long[SAMPLE_COUNT];
+  private long sampleTotal;
+  private long delayNanos = Long.MAX_VALUE;
+  private double budget;
+
+  /**
+   * Constructs a new HedgingObjectClient.
+   *
+   * @param objectClient the client issuing the requests and their hedges
+   * @param bufferAllocator the allocator providing the memory hedges are written into
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param configuration the PhysicalIO configuration, with the hedging budget and threshold
+   */
+  public HedgingObjectClient(
+      @NonNull ObjectClient objectClient,
+      @NonNull BufferAllocator bufferAllocator,
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration) {
+    this.objectClient = objectClient;
+    this.bufferAllocator = bufferAllocator;
+    this.telemetry = telemetry;
+    this.budgetRatio = configuration.getHedgingBudgetRatio();
+    this.latencyPercentile = configuration.getHedgingLatencyPercentile();
+    this.timer =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "s3-hedging-timer");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @Override
+  public CompletableFuture<ObjectMetadata> headObject(HeadRequest headRequest) {
+    return objectClient.headObject(headRequest);
+  }
+
+  @Override
+  public CompletableFuture<ObjectContent> getObject(GetRequest getRequest) {
+    return objectClient.getObject(getRequest);
+  }
+
+  @Override
+  public CompletableFuture<Integer> getObject(
+      @NonNull GetRequest getRequest, @NonNull ByteBuffer destination) {
+    int start;
+    synchronized (destination) {
+      start = destination.position();
+    }
+    long issuedAt = System.nanoTime();
+    CompletableFuture<Integer> primary = objectClient.getObject(getRequest, destination);
+    primary.thenRun(() -> recordLatency(System.nanoTime() - issuedAt));
+    if (getRequest.getReferrer().getReadMode() != ReadMode.SYNC) {
+      return primary;
+    }
+
+    long delay = earnBudget();
+    if (delay == Long.MAX_VALUE) {
+      // Not enough GETs have completed yet to tell a straggler
+      return primary;
+    }
+
+    Race race = new Race(getRequest, destination, start, primary);
+    ScheduledFuture<?> check = timer.schedule(race::hedgeIfStalled, delay, TimeUnit.NANOSECONDS);
+    primary.whenComplete((bytesRead, error) -> check.cancel(false));
+    return race.result;
+  }
+
+  /** Stops the timer; the wrapped client is owned by the caller, so it is left open. */
+  @Override
+  public void close() {
+    timer.shutdownNow();
+  }
+
+  private synchronized long earnBudget() {
+    budget = Math.min(MAX_BUDGET, budget + budgetRatio);
+    return delayNanos;
+  }
+
+  private synchronized boolean trySpendBudget() {
+    if (budget < 1) {
+      return false;
+    }
+    budget -= 1;
+    return true;
+  }
+
+  private void recordLatency(long latencyNanos) {
+    long threshold;
+    synchronized (this) {
+      samples[(int) (sampleTotal % SAMPLE_COUNT)] = latencyNanos;
+      sampleTotal++;
+      if (sampleTotal < MIN_SAMPLES || sampleTotal % SAMPLES_PER_REFRESH != 0) {
+        return;
+      }
+
+      long[] sorted = Arrays.copyOf(samples, (int) Math.min(sampleTotal, SAMPLE_COUNT));
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(latencyPercentile * sorted.length) - 1;
+      delayNanos = Math.max(MIN_DELAY_NANOS, sorted[Math.max(0, index)]);
+      threshold = delayNanos;
+    }
+    telemetry.measure(THRESHOLD, threshold / NANOS_PER_MILLI);
+  }
+
+  /** A GET of a read, and its hedge once issued, racing to complete the read. */
+  private class Race {
+    private final GetRequest getRequest;
+    private final ByteBuffer destination;
+    private final int start;
+    private final CompletableFuture<Integer> primary;
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+    // Guarded by this
+    private CompletableFuture<Integer> hedge;
+    private Throwable primaryError;
+    private boolean hedgeFailed;
+    private boolean settled;
+
+    private Race(
+        GetRequest getRequest,
+        ByteBuffer destination,
+        int start,
+        CompletableFuture<Integer> primary) {
+      this.getRequest = getRequest;
+      this.destination = destination;
+      this.start = start;
+      this.primary = primary;
+      primary.whenComplete(this::onPrimaryComplete);
+      result.whenComplete(
+          (bytesRead, error) -> {
+            if (result.isCancelled()) {
+              primary.cancel(true);
+              cancelHedge();
+            }
+          });
+    }
+
+    private void hedgeIfStalled() {
+      synchronized (destination) {
+        if (destination.position() != start) {
+          // Bytes are arriving, so the request is merely slow
+          return;
+        }
+      }
+
+      BlockBuffer buffer;
+      CompletableFuture<Integer> issued;
+      synchronized (this) {
+        if (settled || primary.isDone() || !trySpendBudget()) {
+          return;
+        }
+        buffer = bufferAllocator.allocate(destination.limit() - start);
+        try {
+          issued = objectClient.getObject(getRequest, buffer.getByteBuffer());
+        } catch (RuntimeException e) {
+          buffer.close();
+          throw e;
+        }
+        hedge = issued;
+      }
+      telemetry.measure(HEDGES, 1);
+      issued.whenComplete(
+          (bytesRead, error) -> {
+            try {
+              onHedgeComplete(buffer.getByteBuffer(), bytesRead, error);
+            } finally {
+              release(buffer);
+            }
+          });
+    }
+
+    private void release(BlockBuffer buffer) {
+      // The hedge is done by now, so the client stops writing once it releases the monitor
+      synchronized (buffer.getByteBuffer()) {
+        buffer.close();
+      }
+    }
+
+    private void onPrimaryComplete(Integer bytesRead, Throwable error) {
+      CompletableFuture<Integer> loser;
+      synchronized (this) {
+        if (settled) {
+          return;
+        }
+        if (error != null && hedge != null && !hedgeFailed) {
+          // The hedge may still succeed
+          primaryError = error;
+          return;
+        }
+        settled = true;
+        loser = hedge;
+      }
+
+      if (error == null) {
+        result.complete(bytesRead);
+      } else {
+        result.completeExceptionally(error);
+      }
+      if (loser != null) {
+        loser.cancel(true);
+      }
+    }
+
+    private void onHedgeComplete(ByteBuffer buffer, Integer bytesRead, Throwable error) {
+      Throwable failure;
+      synchronized (this) {
+        if (settled) {
+          return;
+        }
+        if (error != null) {
+          hedgeFailed = true;
+          if (primaryError == null) {
+            // The original request is still running, and settles the race
+            return;
+          }
+        }
+        settled = true;
+        failure = primaryError;
+      }
+
+      if (error != null) {
+        result.completeExceptionally(failure);
+        return;
+      }
+
+      // Once done, the original request writes no more bytes, and it only ever writes them under
+      // the monitor of the destination
+      primary.cancel(true);
+      synchronized (destination) {
+        buffer.flip();
+        destination.position(start);
+        destination.put(buffer);
+        destination.notifyAll();
+      }
+      telemetry.measure(WINS, 1);
+      result.complete(bytesRead);
+    }
+
+    private void cancelHedge() {
+      CompletableFuture<Integer> issued;
+      synchronized (this) {
+        issued = hedge;
+      }
+      if (issued != null) {
+        issued.cancel(true);
+      }
+    }
+  }
+}
@@ -17,11 +17,20 @@ package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import lombok.NonNull;
+import lombok.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Operation;
@@ -30,10 +39,15 @@ import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfigurati
 import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
 import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
 import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.OpenRequest;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
 
-/** Class responsible for fetching and potentially caching object metadata. */
+/**
+ * Class responsible for fetching and potentially caching object metadata. Cached metadata is reused
+ * for {@link PhysicalIOConfiguration#getMetadataStoreTtlMillis()}, after which it is fetched again
+ * on its next use; HEAD requests that fail are not cached.
+ */
 @SuppressFBWarnings(
     value = "SIC_INNER_SHOULD_BE_STATIC_ANON",
     justification =
@@ -41,11 +55,14 @@ import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
 public class MetadataStore implements Closeable {
   private final ObjectClient objectClient;
   private final Telemetry telemetry;
-  private final Map<S3URI, CompletableFuture<ObjectMetadata>> cache;
+  private final long readTimeoutMillis;
+  private final long ttlNanos;
+  private final Map<S3URI, Entry> cache;
 
   private static final Logger LOG = LoggerFactory.getLogger(MetadataStore.class);
   private static final String OPERATION_METADATA_HEAD_ASYNC = "metadata.store.head.async";
   private static final String OPERATION_METADATA_HEAD_JOIN = "metadata.store.head.join";
+  private static final String OPERATION_METADATA_GET_ASYNC = "metadata.store.get.async";
 
   /**
    * Constructs a new MetadataStore.
@@ -60,12 +77,13 @@ public class MetadataStore implements Closeable {
       @NonNull PhysicalIOConfiguration configuration) {
     this.objectClient = objectClient;
     this.telemetry = telemetry;
+    this.readTimeoutMillis = configuration.getReadTimeoutMillis();
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getMetadataStoreTtlMillis());
     this.cache =
         Collections.synchronizedMap(
-            new LinkedHashMap<S3URI, CompletableFuture<ObjectMetadata>>() {
+            new LinkedHashMap<S3URI, Entry>() {
               @Override
-              protected boolean removeEldestEntry(
-                  final Map.Entry<S3URI, CompletableFuture<ObjectMetadata>> eldest) {
+              protected boolean removeEldestEntry(final Map.Entry<S3URI, Entry> eldest) {
                 return this.size() > configuration.getMetadataStoreCapacity();
               }
             });
@@ -73,19 +91,30 @@ public class MetadataStore implements Closeable {
 
   /**
    * Get the metadata for an object synchronously (either from cache or the underlying object
-   * store).
+   * store). Fails with a {@link TimeoutException} if the metadata has not arrived within the read
+   * timeout, in which case the pending request is dropped from the cache so that the next call
+   * issues a new one.
    *
    * @param s3URI the object to fetch the metadata for
    * @return returns the {@link ObjectMetadata}.
    */
   public ObjectMetadata get(S3URI s3URI) {
-    return telemetry.measureJoinCritical(
-        () ->
-            Operation.builder()
-                .name(OPERATION_METADATA_HEAD_JOIN)
-                .attribute(StreamAttributes.uri(s3URI))
-                .build(),
-        this.asyncGet(s3URI));
+    CompletableFuture<ObjectMetadata> metadata = this.asyncGet(s3URI);
+    try {
+      return telemetry.measureJoinCritical(
+          () ->
+              Operation.builder()
+                  .name(OPERATION_METADATA_HEAD_JOIN)
+                  .attribute(StreamAttributes.uri(s3URI))
+                  .build(),
+          metadata,
+          readTimeoutMillis);
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof TimeoutException) {
+        this.evict(s3URI, metadata);
+      }
+      throw e;
+    }
   }
 
   /**
@@ -96,16 +125,146 @@ public class MetadataStore implements Closeable {
    * @return returns the {@link CompletableFuture} that holds object's metadata.
    */
   public synchronized CompletableFuture<ObjectMetadata> asyncGet(S3URI s3URI) {
-    return this.cache.computeIfAbsent(
-        s3URI,
-        uri ->
-            telemetry.measureCritical(
-                () ->
-                    Operation.builder()
-                        .name(OPERATION_METADATA_HEAD_ASYNC)
-                        .attribute(StreamAttributes.uri(s3URI))
-                        .build(),
-                objectClient.headObject(HeadRequest.builder().s3Uri(s3URI).build())));
+    Entry entry = this.cache.get(s3URI);
+    if (entry != null && !isStale(entry)) {
+      return entry.getMetadata();
+    }
+
+    CompletableFuture<ObjectMetadata> metadata =
+        telemetry.measureCritical(
+            () ->
+                Operation.builder()
+                    .name(OPERATION_METADATA_HEAD_ASYNC)
+                    .attribute(StreamAttributes.uri(s3URI))
+                    .build(),
+            objectClient.headObject(HeadRequest.builder().s3Uri(s3URI).build()));
+    store(s3URI, metadata);
+    return metadata;
+  }
+
+  /**
+   * Get the metadata for an object if it is cached and fetched already, without fetching it
+   * otherwise.
+   *
+   * @param s3URI the object to look up the metadata for
+   * @return the cached metadata of the object, or empty if it is not known yet
+   */
+  public synchronized Optional<ObjectMetadata> getIfPresent(S3URI s3URI) {
+    Entry entry = this.cache.get(s3URI);
+    if (entry == null || isStale(entry) || !entry.getMetadata().isDone()) {
+      return Optional.empty();
+    }
+    return Optional.of(entry.getMetadata().join());
+  }
+
+  /**
+   * Get the metadata for an object with a GET of its first or last bytes rather than with a HEAD,
+   * learning it from the response, unless it is cached already. The bytes are written into the
+   * destination. The cached metadata completes only once {@code onFetched} has run, so that the
+   * bytes can be put to use before anyone waiting for the metadata goes on to read them.
+   *
+   * @param openRequest the GET to make
+   * @param destination the buffer to write the bytes into
+   * @param onFetched called with the metadata once the bytes have been written
+   * @return a future completing once the GET no longer writes into the destination, which can then
+   *     be reused, or empty if the metadata is cached, or being fetched, already
+   */
+  public synchronized Optional<CompletableFuture<Void>> asyncGet(
+      @NonNull OpenRequest openRequest,
+      @NonNull ByteBuffer destination,
+      @NonNull Consumer<ObjectMetadata> onFetched) {
+    S3URI s3URI = openRequest.getS3Uri();
+    Entry entry = this.cache.get(s3URI);
+    if (entry != null && !isStale(entry)) {
+      return Optional.empty();
+    }
+
+    // Stored before the GET is made, so that nobody issues a HEAD for the object meanwhile
+    CompletableFuture<ObjectMetadata> metadata = new CompletableFuture<>();
+    store(s3URI, metadata);
+    CompletableFuture<ObjectMetadata> request;
+    try {
+      request =
+          telemetry.measureCritical(
+              () ->
+                  Operation.builder()
+                      .name(OPERATION_METADATA_GET_ASYNC)
+                      .attribute(StreamAttributes.uri(s3URI))
+                      .build(),
+              objectClient.getObjectAndMetadata(openRequest, destination));
+    } catch (RuntimeException e) {
+      metadata.completeExceptionally(e);
+      return Optional.of(CompletableFuture.completedFuture(null));
+    }
+
+    CompletableFuture<Void> written = new CompletableFuture<>();
+    request.whenComplete(
+        (objectMetadata, error) -> {
+          if (error != null) {
+            metadata.completeExceptionally(error);
+          } else {
+            try {
+              onFetched.accept(objectMetadata);
+            } catch (RuntimeException e) {
+              // Only the bytes are lost, the metadata is still good
+              LOG.warn("Failed to use the bytes fetched when opening {}", s3URI, e);
+            }
+            metadata.complete(objectMetadata);
+          }
+          // A cancelled GET is only known to have stopped writing once its cancellation returns
+          if (!request.isCancelled()) {
+            written.complete(null);
+          }
+        });
+    // Closing the store cancels the metadata, which has to abort the GET
+    metadata.whenComplete(
+        (objectMetadata, error) -> {
+          if (metadata.isCancelled()) {
+            request.cancel(false);
+            written.complete(null);
+          }
+        });
+    return Optional.of(written);
+  }
+
+  /**
+   * Caches metadata the caller already knows, for example from listing the object, so that opening
+   * the object does not need a HEAD request. The metadata replaces what is cached for the object.
+   *
+   * @param s3URI the object the metadata is for
+   * @param objectMetadata the metadata of the object
+   */
+  public synchronized void storeObjectMetadata(
+      @NonNull S3URI s3URI, @NonNull ObjectMetadata objectMetadata) {
+    this.cache.put(
+        s3URI, new Entry(CompletableFuture.completedFuture(objectMetadata), System.nanoTime()));
+  }
+
+  private void store(S3URI s3URI, CompletableFuture<ObjectMetadata> metadata) {
+    this.cache.put(s3URI, new Entry(metadata, System.nanoTime()));
+    // A failed request is not cached, so that the next call tries again
+    metadata.whenComplete(
+        (objectMetadata, error) -> {
+          if (error != null) {
+            evict(s3URI, metadata);
+          }
+        });
+  }
+
+  private boolean isStale(Entry entry) {
+    // Metadata still being fetched is never stale: its HEAD was just issued
+    CompletableFuture<ObjectMetadata> metadata = entry.getMetadata();
+    return metadata.isCompletedExceptionally()
+        || (ttlNanos > 0
+            && metadata.isDone()
+            && System.nanoTime() - entry.getStoredAt() > ttlNanos);
+  }
+
+  private synchronized void evict(S3URI s3URI, CompletableFuture<ObjectMetadata> metadata) {
+    Entry entry = this.cache.get(s3URI);
+    if (entry != null && entry.getMetadata() == metadata) {
+      this.cache.remove(s3URI);
+    }
   }
 
   /**
@@ -126,6 +285,17 @@ public class MetadataStore implements Closeable {
   /** Closes the {@link MetadataStore} and frees up all resources it holds. */
   @Override
   public void close() {
-    this.cache.values().forEach(this::safeCancel);
+    List<Entry> entries;
+    synchronized (this.cache) {
+      entries = new ArrayList<>(this.cache.values());
+    }
+    entries.forEach(entry -> safeCancel(entry.getMetadata()));
+  }
+
+  /** The metadata of an object, with the time it was cached at, from {@link System#nanoTime()}. */
+  @Value
+  private static class Entry {
+    CompletableFuture<ObjectMetadata> metadata;
+    long storedAt;
   }
 }
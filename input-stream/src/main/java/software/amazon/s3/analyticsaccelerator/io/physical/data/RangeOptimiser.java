@@ -15,6 +15,8 @@
  */
 package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import lombok.Value;
@@ -53,6 +55,48 @@ public class RangeOptimiser {
     return splits;
   }
 
+  /**
+   * Given a list of ranges, return a list of disjoint ranges covering all of them, sorted by
+   * position. Ranges that overlap, or that are at most {@link
+   * PhysicalIOConfiguration#getCoalesceMaxGapBytes()} bytes apart, are merged into one, provided
+   * the merged range is no larger than {@link PhysicalIOConfiguration#getCoalesceMaxBytes()}.
+   * Fetching the bytes of a small gap is cheaper than issuing another request for the range that
+   * follows it.
+   *
+   * @param ranges a list of ranges, in any order
+   * @return a sorted list of disjoint ranges, with nearby ranges merged
+   */
+  public List<Range> coalesceRanges(List<Range> ranges) {
+    List<Range> sorted = new ArrayList<>(ranges);
+    sorted.sort(Comparator.comparingLong(Range::getStart));
+
+    List<Range> coalesced = new LinkedList<>();
+    Range current = null;
+    for (Range range : sorted) {
+      if (current == null) {
+        current = range;
+        continue;
+      }
+
+      long gap = range.getStart() - current.getEnd() - 1;
+      long mergedEnd = Math.max(current.getEnd(), range.getEnd());
+      boolean overlaps = gap < 0;
+      boolean fits = mergedEnd - current.getStart() + 1 <= configuration.getCoalesceMaxBytes();
+      if (overlaps || (gap <= configuration.getCoalesceMaxGapBytes() && fits)) {
+        current = new Range(current.getStart(), mergedEnd);
+      } else {
+        coalesced.add(current);
+        current = range;
+      }
+    }
+
+    if (current != null) {
+      coalesced.add(current);
+    }
+
+    return coalesced;
+  }
+
   private List<Range> splitRange(long start, long end) {
     long nextRangeStart = start;
     List<Range> generatedRanges = new LinkedList<>();
@@ -0,0 +1,336 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import lombok.Getter;
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+/**
+ * An {@link ObjectClient} that schedules the block GETs of all streams of a factory, bounding the
+ * number of requests and bytes in flight at once. GETs over the bounds are queued:
+ *
+ * <ul>
+ *   <li>GETs of reads a thread is blocked on ({@link ReadMode#SYNC}) always go before prefetches,
+ *       so that a burst of prefetches never delays them.
+ *   <li>Within a priority, objects take turns, so that one stream prefetching a lot does not starve
+ *       the others. Blocks are shared by all streams of an object, so the object is the unit of
+ *       fairness.
+ *   <li>A queued GET whose future is cancelled, as happens when its block is evicted or its stream
+ *       is closed, is dropped without ever being issued. A GET being handed to the client when it
+ *       is cancelled is cancelled as soon as it has been, before the cancellation returns, so that
+ *       nothing is written into a destination that was handed back to its owner.
+ * </ul>
+ *
+ * <p>HEAD requests and GETs returning streams are not scheduled.
+ */
+public class RequestScheduler implements ObjectClient {
+  private static final String METRIC_QUEUE_DEPTH = "request.scheduler.queue.depth";
+  private static final String METRIC_SYNC_WAIT = "request.scheduler.sync.wait.ms";
+  private static final String METRIC_ASYNC_WAIT = "request.scheduler.async.wait.ms";
+  private static final String METRIC_DROPPED = "request.scheduler.dropped";
+  private static final Metric QUEUE_DEPTH = Metric.builder().name(METRIC_QUEUE_DEPTH).build();
+  private static final Metric SYNC_WAIT = Metric.builder().name(METRIC_SYNC_WAIT).build();
+  private static final Metric ASYNC_WAIT = Metric.builder().name(METRIC_ASYNC_WAIT).build();
+  private static final Metric DROPPED = Metric.builder().name(METRIC_DROPPED).build();
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  private final ObjectClient objectClient;
+  private final Telemetry telemetry;
+  private final int maxInFlightRequests;
+  private final long maxInFlightBytes;
+  private final Queue syncQueue = new Queue();
+  private final Queue asyncQueue = new Queue();
+  @Getter private int inFlightRequests;
+  @Getter private long inFlightBytes;
+
+  /**
+   * Constructs a new RequestScheduler.
+   *
+   * @param objectClient the client issuing the scheduled requests
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param configuration the PhysicalIO configuration, with the bounds on requests in flight
+   */
+  public RequestScheduler(
+      @NonNull ObjectClient objectClient,
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration) {
+    this.objectClient = objectClient;
+    this.telemetry = telemetry;
+    this.maxInFlightRequests = configuration.getSchedulerMaxInFlightRequests();
+    this.maxInFlightBytes = configuration.getSchedulerMaxInFlightBytes();
+  }
+
+  @Override
+  public CompletableFuture<ObjectMetadata> headObject(HeadRequest headRequest) {
+    return objectClient.headObject(headRequest);
+  }
+
+  @Override
+  public CompletableFuture<ObjectContent> getObject(GetRequest getRequest) {
+    return objectClient.getObject(getRequest);
+  }
+
+  @Override
+  public CompletableFuture<Integer> getObject(
+      @NonNull GetRequest getRequest, @NonNull ByteBuffer destination) {
+    Ticket ticket = new Ticket(getRequest, destination);
+    int queued;
+    synchronized (this) {
+      queueFor(ticket).add(ticket);
+      queued = syncQueue.size() + asyncQueue.size();
+    }
+    telemetry.measure(QUEUE_DEPTH, queued);
+
+    // Registered before dispatching, so a cancellation always finds the ticket in a known state
+    ticket.result.whenComplete(
+        (bytesRead, error) -> {
+          if (ticket.result.isCancelled()) {
+            cancel(ticket);
+          }
+        });
+    dispatch();
+    return ticket.result;
+  }
+
+  /**
+   * Returns the number of GETs waiting to be issued.
+   *
+   * @return the number of queued GETs
+   */
+  public synchronized int getQueuedRequests() {
+    return syncQueue.size() + asyncQueue.size();
+  }
+
+  /** The wrapped client is owned by the caller, so it is left open. */
+  @Override
+  public void close() {}
+
+  private Queue queueFor(Ticket ticket) {
+    return ticket.getRequest().getReferrer().getReadMode() == ReadMode.SYNC
+        ? syncQueue
+        : asyncQueue;
+  }
+
+  private void cancel(Ticket ticket) {
+    CompletableFuture<Integer> issued;
+    synchronized (this) {
+      if (queueFor(ticket).remove(ticket)) {
+        telemetry.measure(DROPPED, 1);
+        return;
+      }
+      // The destination goes back to its owner once this returns, so the GET being handed to the
+      // client has to be known, and cancelled, first
+      boolean interrupted = false;
+      while (ticket.issuing) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      issued = ticket.issued;
+    }
+    if (issued != null) {
+      issued.cancel(false);
+    }
+  }
+
+  /** Issues queued GETs for as long as the bounds allow, best priority first. */
+  private void dispatch() {
+    List<Ticket> ready = new ArrayList<>();
+    synchronized (this) {
+      while (inFlightRequests < maxInFlightRequests) {
+        Queue queue = syncQueue.isEmpty() ? asyncQueue : syncQueue;
+        Ticket next = queue.peek();
+        // A GET larger than the byte bound goes on its own, or it would never go
+        if (next == null
+            || (inFlightRequests > 0 && inFlightBytes + next.length() > maxInFlightBytes)) {
+          break;
+        }
+        queue.poll();
+        inFlightRequests++;
+        inFlightBytes += next.length();
+        ready.add(next);
+      }
+    }
+
+    boolean dropped = false;
+    for (Ticket ticket : ready) {
+      dropped |= !issue(ticket);
+    }
+    // The slots of GETs cancelled before they were issued are free for others
+    if (dropped) {
+      dispatch();
+    }
+  }
+
+  /**
+   * Hands a GET to the wrapped client, unless it was cancelled since it was dequeued.
+   *
+   * @param ticket the GET
+   * @return false if the GET was cancelled, and its slot released, rather than issued
+   */
+  private boolean issue(Ticket ticket) {
+    synchronized (this) {
+      if (ticket.result.isDone()) {
+        inFlightRequests--;
+        inFlightBytes -= ticket.length();
+        telemetry.measure(DROPPED, 1);
+        return false;
+      }
+      ticket.issuing = true;
+    }
+
+    long waitNanos = System.nanoTime() - ticket.queuedAtNanos;
+    telemetry.measure(
+        queueFor(ticket) == syncQueue ? SYNC_WAIT : ASYNC_WAIT, waitNanos / NANOS_PER_MILLI);
+
+    CompletableFuture<Integer> issued;
+    try {
+      issued = objectClient.getObject(ticket.getRequest(), ticket.getDestination());
+    } catch (Throwable t) {
+      issued = new CompletableFuture<>();
+      issued.completeExceptionally(t);
+    }
+
+    synchronized (this) {
+      ticket.issued = issued;
+      ticket.issuing = false;
+      notifyAll();
+    }
+    // A cancellation that came while the request was being issued left it to be cancelled here
+    if (ticket.result.isCancelled()) {
+      issued.cancel(false);
+    }
+
+    issued.whenComplete(
+        (bytesRead, error) -> {
+          synchronized (this) {
+            inFlightRequests--;
+            inFlightBytes -= ticket.length();
+          }
+          if (error == null) {
+            ticket.result.complete(bytesRead);
+          } else {
+            ticket.result.completeExceptionally(error);
+          }
+          dispatch();
+        });
+    return true;
+  }
+
+  /** A GET waiting to be issued, or in flight. */
+  @Getter
+  private static class Ticket {
+    private final GetRequest request;
+    private final ByteBuffer destination;
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+    private final long queuedAtNanos = System.nanoTime();
+    // Guarded by the scheduler
+    private CompletableFuture<Integer> issued;
+    private boolean issuing;
+
+    Ticket(GetRequest request, ByteBuffer destination) {
+      this.request = request;
+      this.destination = destination;
+    }
+
+    long length() {
+      return request.getRange().getLength();
+    }
+  }
+
+  /** Queued GETs of one priority, served in turns across objects and in order within an object. */
+  private static class Queue {
+    private final Map<S3URI, ArrayDeque<Ticket>> byObject = new HashMap<>();
+    // Objects with queued GETs, in the order they get their next turn
+    private final ArrayDeque<S3URI> turns = new ArrayDeque<>();
+    private int size;
+
+    void add(Ticket ticket) {
+      S3URI s3URI = ticket.getRequest().getS3Uri();
+      ArrayDeque<Ticket> tickets = byObject.get(s3URI);
+      if (tickets == null) {
+        tickets = new ArrayDeque<>();
+        byObject.put(s3URI, tickets);
+        turns.addLast(s3URI);
+      }
+      tickets.addLast(ticket);
+      size++;
+    }
+
+    Ticket peek() {
+      S3URI next = turns.peekFirst();
+      return next == null ? null : byObject.get(next).peekFirst();
+    }
+
+    void poll() {
+      S3URI s3URI = turns.pollFirst();
+      Preconditions.checkState(s3URI != null, "`poll` called on an empty queue");
+      ArrayDeque<Ticket> tickets = byObject.get(s3URI);
+      tickets.pollFirst();
+      size--;
+      if (tickets.isEmpty()) {
+        byObject.remove(s3URI);
+      } else {
+        turns.addLast(s3URI);
+      }
+    }
+
+    boolean remove(Ticket ticket) {
+      S3URI s3URI = ticket.getRequest().getS3Uri();
+      ArrayDeque<Ticket> tickets = byObject.get(s3URI);
+      if (tickets == null || !tickets.remove(ticket)) {
+        return false;
+      }
+      size--;
+      if (tickets.isEmpty()) {
+        byObject.remove(s3URI);
+        turns.remove(s3URI);
+      }
+      return true;
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    int size() {
+      return size;
+    }
+  }
+}
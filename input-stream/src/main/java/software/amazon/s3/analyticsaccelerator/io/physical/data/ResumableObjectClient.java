@@ -0,0 +1,421 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.ObjectClientErrors;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+
+/**
+ * An {@link ObjectClient} resuming the GETs of blocks that fail part-way. The bytes received before
+ * the failure are kept in the destination, whose position tracks them, so only the rest of the
+ * range is requested again. Over flaky links, this spares a scan of large blocks from fetching
+ * each of them from its start again.
+ *
+ * <p>A failed GET is resumed up to {@link PhysicalIOConfiguration#getBlockRetryMaxAttempts()}
+ * times, after an exponential backoff starting at {@link
+ * PhysicalIOConfiguration#getBlockRetryBackoffMillis()}, with jitter so that the GETs failing
+ * together are not all resumed at once. Only transient failures are resumed: errors of the
+ * transport, bodies that end early, and server errors other than throttling. GETs that are
+ * cancelled, rejected by S3 (4xx, such as a 412 from an ETag that no longer matches) or throttled
+ * fail at once.
+ *
+ * <p>GETs can also stall without failing, on a connection that has gone bad. A watchdog compares
+ * the throughput of each GET in flight with the median throughput of the GETs completed lately,
+ * and once a GET has fallen below {@link PhysicalIOConfiguration#getStragglerThroughputRatio()} of
+ * it, aborts the GET and requests the rest of its range again, on a new connection.
+ */
+public class ResumableObjectClient implements ObjectClient {
+  private static final String METRIC_RETRIES = "resumable.client.retries";
+  private static final String METRIC_RESUMED_BYTES = "resumable.client.resumed.bytes";
+  private static final Metric RETRIES = Metric.builder().name(METRIC_RETRIES).build();
+  private static final Metric RESUMED_BYTES = Metric.builder().name(METRIC_RESUMED_BYTES).build();
+  private static final String METRIC_STRAGGLERS = "resumable.client.stragglers";
+  private static final String METRIC_STRAGGLER_SAVED_MS = "resumable.client.straggler.saved.ms";
+  private static final Metric STRAGGLERS = Metric.builder().name(METRIC_STRAGGLERS).build();
+  private static final Metric STRAGGLER_SAVED_MS =
+      Metric.builder().name(METRIC_STRAGGLER_SAVED_MS).build();
+
+  private static final long STRAGGLER_CHECK_INTERVAL_MILLIS = 250;
+  // Below this, the time to the first byte dominates, and throughput says little about the link
+  private static final long MIN_THROUGHPUT_BYTES = 256 * 1024;
+  private static final int THROUGHPUT_SAMPLES = 64;
+  private static final int MIN_THROUGHPUT_SAMPLES = 8;
+  private static final int MAX_STRAGGLER_REISSUES = 2;
+
+  private final ObjectClient objectClient;
+  private final Telemetry telemetry;
+  private final int maxAttempts;
+  private final long backoffNanos;
+  private final double stragglerThroughputRatio;
+  private final long minStragglerAgeNanos;
+  private final ScheduledExecutorService timer;
+  private final Set<Attempts> inFlight = ConcurrentHashMap.newKeySet();
+
+  // Guarded by throughputs
+  private final double[] throughputs = new double[THROUGHPUT_SAMPLES];
+  private long throughputCount;
+
+  /**
+   * Constructs a new ResumableObjectClient.
+   *
+   * @param objectClient the client issuing the requests
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param configuration the PhysicalIO configuration, with the number of attempts and the backoff
+   */
+  public ResumableObjectClient(
+      @NonNull ObjectClient objectClient,
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration) {
+    this(objectClient, telemetry, configuration, STRAGGLER_CHECK_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Constructs a new ResumableObjectClient looking for stragglers at the given interval. GETs are
+   * only taken for stragglers once they have been in flight for four intervals.
+   *
+   * @param objectClient the client issuing the requests
+   * @param telemetry an instance of {@link Telemetry} to use
+   * @param configuration the PhysicalIO configuration, with the number of attempts and the backoff
+   * @param stragglerCheckIntervalMillis how often GETs in flight are checked, in milliseconds
+   */
+  ResumableObjectClient(
+      @NonNull ObjectClient objectClient,
+      @NonNull Telemetry telemetry,
+      @NonNull PhysicalIOConfiguration configuration,
+      long stragglerCheckIntervalMillis) {
+    this.objectClient = objectClient;
+    this.telemetry = telemetry;
+    this.maxAttempts = configuration.getBlockRetryMaxAttempts();
+    this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getBlockRetryBackoffMillis());
+    this.stragglerThroughputRatio = configuration.getStragglerThroughputRatio();
+    this.minStragglerAgeNanos = TimeUnit.MILLISECONDS.toNanos(4 * stragglerCheckIntervalMillis);
+    this.timer =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "s3-resume-timer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    if (stragglerThroughputRatio > 0) {
+      timer.scheduleWithFixedDelay(
+          this::abortStragglers,
+          stragglerCheckIntervalMillis,
+          stragglerCheckIntervalMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public CompletableFuture<ObjectMetadata> headObject(HeadRequest headRequest) {
+    return objectClient.headObject(headRequest);
+  }
+
+  @Override
+  public CompletableFuture<ObjectContent> getObject(GetRequest getRequest) {
+    return objectClient.getObject(getRequest);
+  }
+
+  @Override
+  public CompletableFuture<Integer> getObject(
+      @NonNull GetRequest getRequest, @NonNull ByteBuffer destination) {
+    if (maxAttempts == 0 && stragglerThroughputRatio == 0) {
+      return objectClient.getObject(getRequest, destination);
+    }
+
+    Attempts attempts = new Attempts(getRequest, destination);
+    inFlight.add(attempts);
+    attempts.result.whenComplete((bytesRead, error) -> inFlight.remove(attempts));
+    attempts.issue();
+    return attempts.result;
+  }
+
+  /** Stops the timer; the wrapped client is owned by the caller, so it is left open. */
+  @Override
+  public void close() {
+    timer.shutdownNow();
+  }
+
+  /** Aborts the GETs in flight far slower than the median, issuing the rest of them again. */
+  private void abortStragglers() {
+    double median = getMedianThroughput();
+    if (Double.isNaN(median)) {
+      return;
+    }
+    long now = System.nanoTime();
+    for (Attempts attempts : inFlight) {
+      attempts.abortIfStraggling(median, now);
+    }
+  }
+
+  private void recordThroughput(double bytesPerSecond) {
+    synchronized (throughputs) {
+      throughputs[(int) (throughputCount++ % THROUGHPUT_SAMPLES)] = bytesPerSecond;
+    }
+  }
+
+  private double getMedianThroughput() {
+    double[] samples;
+    synchronized (throughputs) {
+      if (throughputCount < MIN_THROUGHPUT_SAMPLES) {
+        return Double.NaN;
+      }
+      samples = Arrays.copyOf(throughputs, (int) Math.min(throughputCount, THROUGHPUT_SAMPLES));
+    }
+    Arrays.sort(samples);
+    return samples[samples.length / 2];
+  }
+
+  private static boolean isRetryable(Throwable error) {
+    boolean cancelled =
+        error instanceof CancellationException
+            || (error instanceof CompletionException
+                && error.getCause() instanceof CancellationException);
+    // Rejected requests fail the same way again, and throttled ones were retried by the SDK
+    return !cancelled && ObjectClientErrors.isRetryable(error);
+  }
+
+  /** The attempts at completing a GET, each requesting the bytes the previous ones did not get. */
+  private class Attempts {
+    private final GetRequest getRequest;
+    private final ByteBuffer destination;
+    private final int start;
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+    // Guarded by this
+    private CompletableFuture<Integer> current;
+    private ScheduledFuture<?> pendingRetry;
+    private int retries;
+    private int reissues;
+    private long issuedAtNanos;
+    private int receivedBeforeIssue;
+    private boolean issuing;
+
+    private Attempts(GetRequest getRequest, ByteBuffer destination) {
+      this.getRequest = getRequest;
+      this.destination = destination;
+      synchronized (destination) {
+        this.start = destination.position();
+      }
+      result.whenComplete(
+          (bytesRead, error) -> {
+            if (result.isCancelled()) {
+              cancelAttempt();
+            }
+          });
+    }
+
+    private void issue() {
+      int received = getReceived();
+      Range range = getRequest.getRange();
+      if (range.getStart() + received > range.getEnd()) {
+        result.complete(received);
+        return;
+      }
+
+      GetRequest attempt =
+          received == 0
+              ? getRequest
+              : GetRequest.builder()
+                  .s3Uri(getRequest.getS3Uri())
+                  .range(new Range(range.getStart() + received, range.getEnd()))
+                  .etag(getRequest.getEtag())
+                  .referrer(getRequest.getReferrer())
+                  .build();
+      synchronized (this) {
+        // Cancelled while the retry was due, or while the straggler was being aborted
+        if (result.isDone()) {
+          return;
+        }
+        issuing = true;
+      }
+      CompletableFuture<Integer> issued;
+      try {
+        issued = objectClient.getObject(attempt, destination);
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          issuing = false;
+          notifyAll();
+        }
+        result.completeExceptionally(e);
+        return;
+      }
+      synchronized (this) {
+        current = issued;
+        issuedAtNanos = System.nanoTime();
+        receivedBeforeIssue = received;
+        issuing = false;
+        notifyAll();
+      }
+      // A cancellation that came while the request was being issued left it to be cancelled here
+      if (result.isCancelled()) {
+        issued.cancel(true);
+        return;
+      }
+      issued.whenComplete((bytesRead, error) -> onComplete(issued, error));
+    }
+
+    private void onComplete(CompletableFuture<Integer> issued, Throwable error) {
+      int received = getReceived();
+      synchronized (this) {
+        // A straggler that was aborted has been replaced already
+        if (issued != current) {
+          return;
+        }
+        if (error == null) {
+          long bytes = received - receivedBeforeIssue;
+          long elapsedNanos = System.nanoTime() - issuedAtNanos;
+          if (bytes >= MIN_THROUGHPUT_BYTES && elapsedNanos > 0) {
+            recordThroughput(bytes * 1e9 / elapsedNanos);
+          }
+        }
+      }
+      Range range = getRequest.getRange();
+      if (error == null) {
+        if (range.getStart() + received > range.getEnd()) {
+          result.complete(received);
+          return;
+        }
+        // The body ended before the range did, on a connection closed early
+        error =
+            new IOException(
+                String.format(
+                    "Response for %s ended after %d of %d bytes",
+                    getRequest.getS3Uri(), received, range.getLength()));
+      }
+
+      synchronized (this) {
+        if (result.isDone() || !isRetryable(error) || retries >= maxAttempts) {
+          result.completeExceptionally(error);
+          return;
+        }
+        retries++;
+        // Jittered over the upper half of an exponentially growing window
+        long window = backoffNanos << Math.min(retries - 1, 20);
+        long delay = window == 0 ? 0 : ThreadLocalRandom.current().nextLong(window / 2, window + 1);
+        try {
+          pendingRetry = timer.schedule(this::issue, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+          // The client is closed
+          result.completeExceptionally(error);
+          return;
+        }
+      }
+
+      telemetry.measure(RETRIES, 1);
+      if (received > 0) {
+        telemetry.measure(RESUMED_BYTES, received);
+      }
+    }
+
+    /**
+     * Aborts the GET in flight if it has been slower than the given fraction of the median
+     * throughput for long enough to tell, and requests the rest of the range again.
+     *
+     * @param medianThroughput the median throughput of recent GETs, in bytes per second
+     * @param now the current time, from {@link System#nanoTime()}
+     */
+    private void abortIfStraggling(double medianThroughput, long now) {
+      CompletableFuture<Integer> straggler;
+      double throughput;
+      long remaining;
+      synchronized (this) {
+        long elapsedNanos = now - issuedAtNanos;
+        if (current == null
+            || current.isDone()
+            || reissues >= MAX_STRAGGLER_REISSUES
+            || elapsedNanos < minStragglerAgeNanos) {
+          return;
+        }
+        int received = getReceived();
+        remaining = getRequest.getRange().getLength() - received;
+        throughput = (received - receivedBeforeIssue) * 1e9 / elapsedNanos;
+        if (remaining < MIN_THROUGHPUT_BYTES
+            || throughput >= stragglerThroughputRatio * medianThroughput) {
+          return;
+        }
+        reissues++;
+        straggler = current;
+        current = null;
+      }
+
+      // Nothing is written once the straggler is done, so the destination holds what it got
+      straggler.cancel(true);
+      telemetry.measure(STRAGGLERS, 1);
+      // A stalled GET is taken to crawl at 1% of the median, keeping the estimate finite
+      double stragglerSeconds = remaining / Math.max(throughput, medianThroughput / 100);
+      double medianSeconds = remaining / medianThroughput;
+      telemetry.measure(STRAGGLER_SAVED_MS, (stragglerSeconds - medianSeconds) * 1000);
+      issue();
+    }
+
+    private int getReceived() {
+      synchronized (destination) {
+        return destination.position() - start;
+      }
+    }
+
+    private void cancelAttempt() {
+      CompletableFuture<Integer> issued;
+      ScheduledFuture<?> retry;
+      synchronized (this) {
+        // The destination goes back to its owner once this returns, so a GET being handed to the
+        // client has to be known, and cancelled, first
+        boolean interrupted = false;
+        while (issuing) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+        issued = current;
+        retry = pendingRetry;
+      }
+      if (retry != null) {
+        retry.cancel(false);
+      }
+      if (issued != null) {
+        issued.cancel(true);
+      }
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
+import software.amazon.s3.analyticsaccelerator.io.physical.prefetcher.AccessPatternDetector;
+
+/**
+ * What a stream tells the {@link BlockManager} of an object about its reads. The blocks of an
+ * object are shared by all streams reading it, so they cannot belong to a stream; instead, the
+ * manager uses the contexts of the live streams to tell which prefetched blocks some stream still
+ * wants.
+ *
+ * <p>A context is created by each stream, updated by the manager on every read made on behalf of
+ * the stream, and closed when the stream is. It also holds how fast the stream consumes the data
+ * it reads, and the state of its sequential reads.
+ *
+ * <p>Sequential reads are tracked with cursors, each following one run of reads that start where
+ * the previous read of the run ended. A stream can have several cursors, as a reader of a columnar
+ * format walks several column chunks in parallel, interleaving their reads. Each cursor has its own
+ * generation and readahead window, which only ever grow through reads of the stream itself, so
+ * that blocks brought in by other streams or by prefetches do not make a random read look
+ * sequential.
+ */
+public class StreamContext {
+  private static final long NO_POSITION = -1;
+  // Weight of past reads, per read
+  private static final double DECAY = 0.8;
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+  private static final int MAX_CURSORS = 8;
+
+  // Written by the reads of the stream, read by the reads of all streams of the object
+  private volatile long position = NO_POSITION;
+  private final AtomicLong seeks = new AtomicLong();
+  private volatile boolean closed;
+  private final AccessPatternDetector accessPatternDetector = new AccessPatternDetector();
+
+  // Only touched by the reads of the stream. Cursors are kept most recently used first
+  private final LinkedList<Cursor> cursors = new LinkedList<>();
+  private long lastReadLength;
+  private long lastReadEndNanos;
+  private double consumedBytes;
+  private double consumingNanos;
+
+  /**
+   * Returns the position following the last read of the stream.
+   *
+   * @return the position the stream is expected to read next, or -1 if it has not read yet
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Returns the number of times the stream jumped away from where it was reading.
+   *
+   * @return the number of seeks of the stream
+   */
+  public long getSeeks() {
+    return seeks.get();
+  }
+
+  /**
+   * Returns the detector of the access pattern of the stream.
+   *
+   * @return the access pattern detector fed with the reads of the stream
+   */
+  public AccessPatternDetector getAccessPatternDetector() {
+    return accessPatternDetector;
+  }
+
+  /**
+   * Is the stream closed?
+   *
+   * @return true if the stream is closed
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Is the position of the stream within a distance of a range?
+   *
+   * @param start the first byte of the range
+   * @param end the last byte of the range
+   * @param distance the distance, in bytes
+   * @return true if the stream is live, has read, and is at most {@code distance} bytes from the
+   *     range
+   */
+  public boolean isNear(long start, long end, long distance) {
+    long current = position;
+    return !closed
+        && current != NO_POSITION
+        && start - distance <= current
+        && current <= end + distance;
+  }
+
+  /**
+   * Has the stream moved on beyond a position by more than a distance?
+   *
+   * @param end the position
+   * @param distance the distance, in bytes
+   * @return true if the stream has read, and is more than {@code distance} bytes past {@code end}
+   */
+  public boolean isPast(long end, long distance) {
+    long current = position;
+    return current != NO_POSITION && current > end + distance;
+  }
+
+  /**
+   * Records a read of the stream.
+   *
+   * @param pos the position of the read
+   * @param len the length of the read
+   * @param seekDistance how far the read has to be from where the stream was for it to be a seek
+   * @return true if the read is a seek
+   */
+  synchronized boolean recordRead(long pos, long len, long seekDistance) {
+    long previous = position;
+    boolean seek = previous != NO_POSITION && Math.abs(pos - previous) > seekDistance;
+    if (seek) {
+      seeks.incrementAndGet();
+    }
+    position = pos + len;
+    if (len > 0) {
+      accessPatternDetector.recordRead(pos, len);
+      advanceCursor(pos, len);
+    }
+
+    // The stream consumed the bytes of its last read between that read and this one
+    if (lastReadEndNanos != 0) {
+      consumedBytes = consumedBytes * DECAY + lastReadLength;
+      consumingNanos = consumingNanos * DECAY + (System.nanoTime() - lastReadEndNanos);
+    }
+    lastReadLength = len;
+    return seek;
+  }
+
+  /** Records that the last read of the stream returned, and the stream got the data. */
+  synchronized void recordReadEnd() {
+    lastReadEndNanos = System.nanoTime();
+  }
+
+  /**
+   * Returns how fast the stream consumes the data it reads, not counting the time it spends
+   * waiting for reads.
+   *
+   * @return the consumption rate, in bytes per second, or infinity if not known yet
+   */
+  public synchronized double getConsumerBytesPerSecond() {
+    if (consumingNanos <= 0 || consumedBytes <= 0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return consumedBytes / (consumingNanos / NANOS_PER_SECOND);
+  }
+
+  /**
+   * Returns the generation of a fetch for the read of the stream starting at a position, and
+   * advances the generation of the cursor the read belongs to. Only reads continuing a run of reads
+   * of the stream are sequential.
+   *
+   * @param pos the position of the last read of the stream
+   * @return the generation of the fetch, 0 if the read is not sequential
+   */
+  synchronized long nextSequentialGeneration(long pos) {
+    Cursor cursor = findCursor(pos);
+    if (cursor == null || !cursor.sequential) {
+      return 0;
+    }
+    return ++cursor.generation;
+  }
+
+  /**
+   * Grows the readahead window of the cursor the read starting at a position belongs to towards a
+   * target, doubling it on every fetch. New cursors start at the smallest window.
+   *
+   * @param pos the position of the last read of the stream
+   * @param minBytes the smallest window
+   * @param targetBytes the window the cursor should reach
+   * @return the window of this fetch
+   */
+  synchronized long nextReadaheadWindow(long pos, long minBytes, long targetBytes) {
+    Cursor cursor = findCursor(pos);
+    long previous = cursor == null ? 0 : cursor.readaheadBytes;
+    long window = Math.min(targetBytes, Math.max(minBytes, 2 * previous));
+    if (cursor != null) {
+      cursor.readaheadBytes = window;
+    }
+    return window;
+  }
+
+  /**
+   * Returns the number of runs of sequential reads the stream follows.
+   *
+   * @return the number of cursors of the stream
+   */
+  synchronized int getCursorCount() {
+    return cursors.size();
+  }
+
+  private void advanceCursor(long pos, long len) {
+    Iterator<Cursor> it = cursors.iterator();
+    while (it.hasNext()) {
+      Cursor cursor = it.next();
+      if (cursor.next == pos) {
+        it.remove();
+        cursor.start = pos;
+        cursor.next = pos + len;
+        cursor.sequential = true;
+        cursors.addFirst(cursor);
+        return;
+      }
+    }
+
+    // A new run, taking the place of the least recently used one if there are too many
+    if (cursors.size() == MAX_CURSORS) {
+      cursors.removeLast();
+    }
+    Cursor cursor = new Cursor();
+    cursor.start = pos;
+    cursor.next = pos + len;
+    cursors.addFirst(cursor);
+  }
+
+  private Cursor findCursor(long pos) {
+    for (Cursor cursor : cursors) {
+      if (cursor.start == pos) {
+        return cursor;
+      }
+    }
+    return null;
+  }
+
+  /** Marks the stream as closed. */
+  void close() {
+    closed = true;
+  }
+
+  /** A run of reads, each starting where the previous one ended. */
+  private static class Cursor {
+    // Position of the last read of the run, and the position following it
+    private long start;
+    private long next;
+    // Whether the run has more than one read
+    private boolean sequential;
+    private long generation;
+    private long readaheadBytes;
+  }
+}
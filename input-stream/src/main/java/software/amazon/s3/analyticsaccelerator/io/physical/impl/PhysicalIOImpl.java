@@ -16,6 +16,9 @@
 package software.amazon.s3.analyticsaccelerator.io.physical.impl;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntFunction;
 import lombok.NonNull;
 import software.amazon.s3.analyticsaccelerator.common.Preconditions;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Operation;
@@ -23,9 +26,14 @@ import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIO;
 import software.amazon.s3.analyticsaccelerator.io.physical.data.BlobStore;
 import software.amazon.s3.analyticsaccelerator.io.physical.data.MetadataStore;
+import software.amazon.s3.analyticsaccelerator.io.physical.data.StreamContext;
 import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan;
 import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanExecution;
 import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ObjectRange;
+import software.amazon.s3.analyticsaccelerator.request.OpenRequest;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.request.Referrer;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 import software.amazon.s3.analyticsaccelerator.util.StreamAttributes;
 
@@ -35,13 +43,19 @@ public class PhysicalIOImpl implements PhysicalIO {
   private final MetadataStore metadataStore;
   private final BlobStore blobStore;
   private final Telemetry telemetry;
+  private final StreamContext streamContext = new StreamContext();
+  // The metadata of the version of the object this stream reads, known from its first use or
+  // given by the caller
+  private volatile ObjectMetadata pinnedMetadata;
 
   private final long physicalIOBirth = System.nanoTime();
 
   private static final String OPERATION_READ = "physical.io.read";
   private static final String OPERATION_EXECUTE = "physical.io.execute";
+  private static final String OPERATION_READ_VECTORED = "physical.io.read.vectored";
   private static final String FLAVOR_TAIL = "tail";
   private static final String FLAVOR_BYTE = "byte";
+  private static final String FLAVOR_BUFFER = "buffer";
 
   /**
    * Construct a new instance of PhysicalIOV2.
@@ -56,20 +70,46 @@ public class PhysicalIOImpl implements PhysicalIO {
       @NonNull MetadataStore metadataStore,
       @NonNull BlobStore blobStore,
       @NonNull Telemetry telemetry) {
+    this(s3URI, metadataStore, blobStore, telemetry, null);
+  }
+
+  /**
+   * Construct a new instance of PhysicalIOV2 reading the version of the object described by
+   * metadata the caller already knows, which is never looked up again.
+   *
+   * @param s3URI the S3 URI of the object
+   * @param metadataStore a metadata cache
+   * @param blobStore a data cache
+   * @param telemetry The {@link Telemetry} to use to report measurements.
+   * @param metadata the metadata of the object, or null to look it up on first use
+   */
+  public PhysicalIOImpl(
+      @NonNull S3URI s3URI,
+      @NonNull MetadataStore metadataStore,
+      @NonNull BlobStore blobStore,
+      @NonNull Telemetry telemetry,
+      ObjectMetadata metadata) {
     this.s3URI = s3URI;
     this.metadataStore = metadataStore;
     this.blobStore = blobStore;
     this.telemetry = telemetry;
+    this.pinnedMetadata = metadata;
   }
 
   /**
-   * Returns object metadata.
+   * Returns object metadata. The metadata is looked up once, so that the stream keeps reading the
+   * same version of the object even once the cached metadata expires.
    *
    * @return the metadata of the object.
    */
   @Override
   public ObjectMetadata metadata() {
-    return metadataStore.get(s3URI);
+    ObjectMetadata metadata = pinnedMetadata;
+    if (metadata == null) {
+      metadata = metadataStore.get(s3URI);
+      pinnedMetadata = metadata;
+    }
+    return metadata;
   }
 
   /**
@@ -94,7 +134,7 @@ public class PhysicalIOImpl implements PhysicalIO {
                     StreamAttributes.physicalIORelativeTimestamp(
                         System.nanoTime() - physicalIOBirth))
                 .build(),
-        () -> blobStore.get(s3URI).read(pos));
+        () -> blobStore.get(s3URI, metadata()).read(pos, streamContext));
   }
 
   /**
@@ -124,7 +164,57 @@ public class PhysicalIOImpl implements PhysicalIO {
                     StreamAttributes.physicalIORelativeTimestamp(
                         System.nanoTime() - physicalIOBirth))
                 .build(),
-        () -> blobStore.get(s3URI).read(buf, off, len, pos));
+        () -> blobStore.get(s3URI, metadata()).read(buf, off, len, pos, streamContext));
+  }
+
+  /**
+   * Reads request data into the provided buffer, starting at its current position and advancing it
+   * by the number of bytes read
+   *
+   * @param dst buffer to read data into
+   * @param pos the position to begin reading from
+   * @return the total number of bytes read into the buffer
+   */
+  @Override
+  public int read(@NonNull ByteBuffer dst, long pos) throws IOException {
+    Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
+    Preconditions.checkArgument(pos < contentLength(), "`pos` must be less than content length");
+
+    return this.telemetry.measureVerbose(
+        () ->
+            Operation.builder()
+                .name(OPERATION_READ)
+                .attribute(StreamAttributes.variant(FLAVOR_BUFFER))
+                .attribute(StreamAttributes.uri(this.s3URI))
+                .attribute(StreamAttributes.range(pos, pos + dst.remaining() - 1))
+                .attribute(
+                    StreamAttributes.physicalIORelativeTimestamp(
+                        System.nanoTime() - physicalIOBirth))
+                .build(),
+        () -> blobStore.get(s3URI, metadata()).read(dst, pos, streamContext));
+  }
+
+  /**
+   * Reads a set of ranges asynchronously, completing the future of each range as soon as its data
+   * is available.
+   *
+   * @param ranges the ranges to read
+   * @param allocate the function allocating the buffer each range is delivered in
+   */
+  @Override
+  public void readVectored(
+      @NonNull List<ObjectRange> ranges, @NonNull IntFunction<ByteBuffer> allocate)
+      throws IOException {
+    this.telemetry.measureVerbose(
+        () ->
+            Operation.builder()
+                .name(OPERATION_READ_VECTORED)
+                .attribute(StreamAttributes.uri(this.s3URI))
+                .attribute(
+                    StreamAttributes.physicalIORelativeTimestamp(
+                        System.nanoTime() - physicalIOBirth))
+                .build(),
+        () -> blobStore.get(s3URI, metadata()).readVectored(ranges, allocate));
   }
 
   /**
@@ -151,7 +241,10 @@ public class PhysicalIOImpl implements PhysicalIO {
                     StreamAttributes.physicalIORelativeTimestamp(
                         System.nanoTime() - physicalIOBirth))
                 .build(),
-        () -> blobStore.get(s3URI).read(buf, off, len, contentLength - len));
+        () ->
+            blobStore
+                .get(s3URI, metadata())
+                .read(buf, off, len, contentLength - len, streamContext));
   }
 
   /**
@@ -172,13 +265,45 @@ public class PhysicalIOImpl implements PhysicalIO {
                     StreamAttributes.physicalIORelativeTimestamp(
                         System.nanoTime() - physicalIOBirth))
                 .build(),
-        () -> blobStore.get(s3URI).execute(ioPlan));
+        () -> blobStore.get(s3URI, metadata()).execute(ioPlan, streamContext));
+  }
+
+  /**
+   * Starts fetching the first or last bytes of the object, learning its metadata from the response
+   * rather than with a HEAD request, unless the metadata is known already.
+   *
+   * @param length the number of bytes to fetch
+   * @param fromEnd whether to fetch the last bytes of the object rather than its first ones
+   */
+  @Override
+  public void prefetchOnOpen(long length, boolean fromEnd) {
+    Preconditions.checkArgument(0 < length, "`length` must be positive");
+
+    if (pinnedMetadata != null) {
+      return;
+    }
+    blobStore.open(
+        OpenRequest.builder()
+            .s3Uri(s3URI)
+            .length(length)
+            .fromEnd(fromEnd)
+            // The stream cannot do anything until the metadata arrives
+            .referrer(new Referrer(OpenRequest.toHttpString(length, fromEnd), ReadMode.SYNC))
+            .build());
   }
 
   private long contentLength() {
     return metadata().getContentLength();
   }
 
+  /** Closes the stream, cancelling the prefetches made for it that no other stream wants. */
   @Override
-  public void close() throws IOException {}
+  public void close() throws IOException {
+    ObjectMetadata metadata = pinnedMetadata;
+    // A stream that never looked up its metadata has not read anything, and an evicted blob has
+    // no prefetches left to cancel
+    if (metadata != null) {
+      blobStore.getIfPresent(s3URI, metadata).ifPresent(blob -> blob.closeStream(streamContext));
+    }
+  }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.prefetcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import lombok.Value;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+
+/**
+ * Recognizes the access pattern of a single stream from its recent reads, and predicts the reads
+ * that follow.
+ *
+ * <p>Three patterns are recognized, each with a confidence score that is the share of the recent
+ * transitions between consecutive reads following it:
+ *
+ * <ul>
+ *   <li>{@link Pattern#FORWARD_SEQUENTIAL}: every read starts where the previous one ended.
+ *   <li>{@link Pattern#BACKWARD_SEQUENTIAL}: every read ends where the previous one started, as in
+ *       formats read from the tail backwards.
+ *   <li>{@link Pattern#STRIDED}: every read starts a constant distance, forwards or backwards, from
+ *       where the previous one started, as in sampling fixed-size records.
+ * </ul>
+ *
+ * <p>Unlike the {@link SequentialPatternDetector}, which looks at the blocks shared by all streams,
+ * the detector only sees the reads of its own stream.
+ */
+public class AccessPatternDetector {
+  private static final int HISTORY_SIZE = 8;
+  // Transitions following a pattern before it is trusted at all
+  private static final int MIN_MATCHES = 2;
+
+  private final long[] starts = new long[HISTORY_SIZE];
+  private final long[] lengths = new long[HISTORY_SIZE];
+  private int reads;
+  // The pattern ranges were last planned for, and the start of the furthest of them
+  private Prediction planned;
+  private long plannedUntil;
+
+  /** The access patterns a stream can follow. */
+  public enum Pattern {
+    FORWARD_SEQUENTIAL,
+    BACKWARD_SEQUENTIAL,
+    STRIDED
+  }
+
+  /** A recognized access pattern. */
+  @Value
+  public static class Prediction {
+    Pattern pattern;
+    // Distance between the starts of consecutive reads
+    long stride;
+    double confidence;
+  }
+
+  /**
+   * Records a read of the stream.
+   *
+   * @param pos the position of the read
+   * @param len the length of the read
+   */
+  public synchronized void recordRead(long pos, long len) {
+    Preconditions.checkArgument(0 <= pos, "`pos` must not be negative");
+    Preconditions.checkArgument(0 < len, "`len` must be positive");
+
+    starts[reads % HISTORY_SIZE] = pos;
+    lengths[reads % HISTORY_SIZE] = len;
+    reads++;
+  }
+
+  /**
+   * Returns the pattern the recent reads follow best.
+   *
+   * @return the pattern with the highest confidence, or empty if the reads follow none
+   */
+  public synchronized Optional<Prediction> getPrediction() {
+    int transitions = Math.min(reads, HISTORY_SIZE) - 1;
+    if (transitions < MIN_MATCHES) {
+      return Optional.empty();
+    }
+
+    // The stride is the one of the last transition
+    long stride = start(0) - start(1);
+    int forward = 0;
+    int backward = 0;
+    int strided = 0;
+    for (int i = 0; i < transitions; i++) {
+      long previousStart = start(i + 1);
+      long previousLength = length(i + 1);
+      if (start(i) == previousStart + previousLength) {
+        forward++;
+      } else if (start(i) + length(i) == previousStart) {
+        backward++;
+      } else if (stride != 0 && start(i) - previousStart == stride) {
+        strided++;
+      }
+    }
+
+    Pattern pattern = Pattern.FORWARD_SEQUENTIAL;
+    int matches = forward;
+    if (backward > matches) {
+      pattern = Pattern.BACKWARD_SEQUENTIAL;
+      matches = backward;
+    }
+    if (strided > matches) {
+      pattern = Pattern.STRIDED;
+      matches = strided;
+    }
+    if (matches < MIN_MATCHES) {
+      return Optional.empty();
+    }
+    return Optional.of(new Prediction(pattern, stride, (double) matches / transitions));
+  }
+
+  /**
+   * Plans the prefetch of the reads predicted to follow, if the stream reads backwards or with a
+   * constant stride with enough confidence. Forward sequential reads are left to the readahead.
+   * Ranges planned by an earlier call for the same pattern are not planned again.
+   *
+   * @param contentLength the length of the object
+   * @param depth the number of reads to predict
+   * @param minConfidence the confidence the pattern needs
+   * @return the plan prefetching the predicted reads, empty if there is nothing to prefetch
+   */
+  public synchronized IOPlan planPrefetch(long contentLength, int depth, double minConfidence) {
+    Optional<Prediction> prediction = getPrediction();
+    if (!prediction.isPresent()
+        || prediction.get().getPattern() == Pattern.FORWARD_SEQUENTIAL
+        || prediction.get().getConfidence() < minConfidence) {
+      return IOPlan.EMPTY_PLAN;
+    }
+
+    Prediction current = prediction.get();
+    // A backward scan is a stride of minus the length of the reads
+    long length = length(0);
+    long stride =
+        current.getPattern() == Pattern.BACKWARD_SEQUENTIAL ? -length : current.getStride();
+    if (planned == null
+        || planned.getPattern() != current.getPattern()
+        || planned.getStride() != current.getStride()) {
+      planned = current;
+      plannedUntil = start(0);
+    }
+
+    List<Range> ranges = new ArrayList<>(depth);
+    for (int k = 1; k <= depth; k++) {
+      long start = start(0) + k * stride;
+      long end = Math.min(start + length, contentLength) - 1;
+      if (start < 0 || start >= contentLength) {
+        break;
+      }
+      boolean alreadyPlanned = stride > 0 ? start <= plannedUntil : start >= plannedUntil;
+      if (!alreadyPlanned) {
+        ranges.add(new Range(start, end));
+        plannedUntil = start;
+      }
+    }
+    return ranges.isEmpty() ? IOPlan.EMPTY_PLAN : new IOPlan(ranges);
+  }
+
+  private long start(int age) {
+    return starts[Math.floorMod(reads - 1 - age, HISTORY_SIZE)];
+  }
+
+  private long length(int age) {
+    return lengths[Math.floorMod(reads - 1 - age, HISTORY_SIZE)];
+  }
+}
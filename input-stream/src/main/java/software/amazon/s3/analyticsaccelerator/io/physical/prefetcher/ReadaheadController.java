@@ -0,0 +1,144 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.prefetcher;
+
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+
+/**
+ * Sizes the readahead window of sequential reads from what the link and the consumer can take.
+ *
+ * <p>The duration of completed GETs is modelled as {@code latency + size / throughput}, fitted over
+ * recent GETs with exponential forgetting. A sequential read stalls for one GET every window, so
+ * the window has to be large enough for the transfer time to dominate the latency: a window of
+ * {@code n} bandwidth-delay products keeps the link busy {@code n / (n + 1)} of the time. A
+ * consumer slower than the link needs less, only enough data to stay busy while the next window is
+ * fetched.
+ *
+ * <p>One controller is shared by all streams of a factory, as they share the link.
+ */
+public class ReadaheadController {
+  // Weight of past GETs, per GET
+  private static final double DECAY = 0.9;
+  // Bandwidth-delay products in a window of a consumer at least as fast as the link
+  private static final double LINK_BOUND_WINDOWS = 4;
+  // Headroom over what a consumer slower than the link strictly needs
+  private static final double CONSUMER_HEADROOM = 2;
+  // Assumed before the first GETs complete
+  private static final double INITIAL_LATENCY_SECONDS = 0.03;
+  private static final double INITIAL_THROUGHPUT_BYTES_PER_SECOND = 100 * 1024 * 1024;
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+  private final long minWindowBytes;
+  private final long maxWindowBytes;
+
+  // Exponentially weighted sums over recent GETs of size (x) and duration in seconds (y)
+  private double weight;
+  private double sumX;
+  private double sumY;
+  private double sumXX;
+  private double sumXY;
+  private double latencySeconds = INITIAL_LATENCY_SECONDS;
+  private double secondsPerByte = 1 / INITIAL_THROUGHPUT_BYTES_PER_SECOND;
+
+  /**
+   * Constructs a new ReadaheadController.
+   *
+   * @param configuration the PhysicalIO configuration, bounding the window
+   */
+  public ReadaheadController(@NonNull PhysicalIOConfiguration configuration) {
+    this.maxWindowBytes = configuration.getReadaheadMaxBytes();
+    this.minWindowBytes = Math.min(configuration.getReadAheadBytes(), maxWindowBytes);
+  }
+
+  /**
+   * Records a completed GET.
+   *
+   * @param bytes the number of bytes fetched
+   * @param durationNanos the time between issuing the GET and receiving its last byte
+   */
+  public synchronized void recordFetch(long bytes, long durationNanos) {
+    Preconditions.checkArgument(bytes > 0, "`bytes` must be positive");
+    Preconditions.checkArgument(durationNanos >= 0, "`durationNanos` must not be negative");
+
+    double x = bytes;
+    double y = durationNanos / NANOS_PER_SECOND;
+    weight = weight * DECAY + 1;
+    sumX = sumX * DECAY + x;
+    sumY = sumY * DECAY + y;
+    sumXX = sumXX * DECAY + x * x;
+    sumXY = sumXY * DECAY + x * y;
+
+    double meanX = sumX / weight;
+    double meanY = sumY / weight;
+    double varianceX = sumXX / weight - meanX * meanX;
+    double covarianceXY = sumXY / weight - meanX * meanY;
+    // Sizes spread enough to tell the latency from the transfer time
+    if (varianceX > 0.01 * meanX * meanX && covarianceXY > 0) {
+      secondsPerByte = covarianceXY / varianceX;
+      latencySeconds = Math.max(0, meanY - secondsPerByte * meanX);
+    } else {
+      // Otherwise keep the latency, and put the rest of the time down to the transfer
+      secondsPerByte = Math.max(meanY - latencySeconds, meanY / 2) / meanX;
+    }
+  }
+
+  /**
+   * Returns the estimated time to first byte of a GET.
+   *
+   * @return the latency, in seconds
+   */
+  public synchronized double getLatencySeconds() {
+    return latencySeconds;
+  }
+
+  /**
+   * Returns the estimated throughput of a single GET.
+   *
+   * @return the throughput, in bytes per second
+   */
+  public synchronized double getThroughputBytesPerSecond() {
+    return 1 / secondsPerByte;
+  }
+
+  /**
+   * Returns the readahead window a sequential reader consuming data at a given rate needs.
+   *
+   * @param consumerBytesPerSecond how fast the reader consumes data, infinite if unknown
+   * @return the size of the window, in bytes
+   */
+  public long getWindowBytes(double consumerBytesPerSecond) {
+    Preconditions.checkArgument(
+        consumerBytesPerSecond > 0, "`consumerBytesPerSecond` must be positive");
+
+    double latency;
+    double throughput;
+    synchronized (this) {
+      latency = latencySeconds;
+      throughput = 1 / secondsPerByte;
+    }
+
+    double window = LINK_BOUND_WINDOWS * throughput * latency;
+    if (consumerBytesPerSecond < throughput) {
+      // While a window of w bytes is fetched, in latency + w / throughput, the consumer needs
+      // consumerBytesPerSecond times that
+      double needed = consumerBytesPerSecond * latency / (1 - consumerBytesPerSecond / throughput);
+      window = Math.min(window, CONSUMER_HEADROOM * needed);
+    }
+    return Math.max(minWindowBytes, Math.min(maxWindowBytes, (long) window));
+  }
+}
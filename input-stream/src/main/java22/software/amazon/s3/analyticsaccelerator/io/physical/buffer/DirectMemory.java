@@ -0,0 +1,44 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates and frees off-heap memory using the Foreign Memory API. Every buffer gets its own shared
+ * {@link Arena}, which is closed, and the memory freed, when the buffer is closed. Accessing the
+ * buffer after that fails with an exception rather than reading freed memory.
+ *
+ * <p>This is the multi-release replacement of the Java 8 implementation, picked up on Java 22+.
+ */
+final class DirectMemory {
+  private DirectMemory() {}
+
+  /**
+   * Allocates off-heap memory.
+   *
+   * @param capacity the size of the memory, in bytes
+   * @return a buffer freeing the memory when closed
+   */
+  static BlockBuffer allocate(int capacity) {
+    Arena arena = Arena.ofShared();
+    MemorySegment segment = arena.allocate(capacity);
+    ByteBuffer buffer = segment.asByteBuffer();
+    return new BlockBuffer(buffer, arena::close);
+  }
+}
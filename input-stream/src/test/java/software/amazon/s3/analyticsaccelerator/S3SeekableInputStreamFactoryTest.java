@@ -16,7 +16,10 @@
 package software.amazon.s3.analyticsaccelerator;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.junit.jupiter.api.Test;
@@ -24,6 +27,7 @@ import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIOConfiguration
 import software.amazon.s3.analyticsaccelerator.io.logical.impl.DefaultLogicalIOImpl;
 import software.amazon.s3.analyticsaccelerator.io.logical.impl.ParquetLogicalIOImpl;
 import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
 @SuppressFBWarnings(
@@ -96,6 +100,26 @@ public class S3SeekableInputStreamFactoryTest {
         });
   }
 
+  @Test
+  void testCreateStreamWithKnownMetadataDoesNotIssueHead() {
+    // Given: a factory, and the metadata of an object, known from listing it
+    ObjectClient objectClient = mock(ObjectClient.class);
+    S3SeekableInputStreamFactory s3SeekableInputStreamFactory =
+        new S3SeekableInputStreamFactory(objectClient, S3SeekableInputStreamConfiguration.DEFAULT);
+    S3URI s3URI = S3URI.of("bucket", "key");
+    ObjectMetadata metadata = ObjectMetadata.builder().contentLength(100).etag("etag").build();
+
+    // When
+    S3SeekableInputStream inputStream = s3SeekableInputStreamFactory.createStream(s3URI, metadata);
+
+    // Then: the stream uses the metadata, and no HEAD is issued
+    assertNotNull(inputStream);
+    assertEquals(metadata, s3SeekableInputStreamFactory.getObjectMetadataStore().get(s3URI));
+    verify(objectClient, never()).headObject(any());
+    assertThrows(
+        NullPointerException.class, () -> s3SeekableInputStreamFactory.createStream(s3URI, null));
+  }
+
   @Test
   void testCreateLogicalIO() {
     S3SeekableInputStreamConfiguration configuration =
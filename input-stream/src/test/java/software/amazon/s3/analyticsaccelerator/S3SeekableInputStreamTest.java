@@ -26,6 +26,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
 import software.amazon.awssdk.utils.IoUtils;
@@ -40,6 +41,7 @@ import software.amazon.s3.analyticsaccelerator.io.physical.data.BlobStore;
 import software.amazon.s3.analyticsaccelerator.io.physical.data.MetadataStore;
 import software.amazon.s3.analyticsaccelerator.io.physical.impl.PhysicalIOImpl;
 import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ObjectRange;
 import software.amazon.s3.analyticsaccelerator.util.FakeObjectClient;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
@@ -264,6 +266,64 @@ public class S3SeekableInputStreamTest extends S3SeekableInputStreamTestBase {
     }
   }
 
+  @Test
+  void testReadWithByteBuffer() throws IOException {
+    try (S3SeekableInputStream stream = getTestStream()) {
+
+      // Read into a heap buffer, then a direct buffer, from the current position
+      ByteBuffer heap = ByteBuffer.allocate(8);
+      assertEquals(8, stream.read(heap));
+      assertEquals(8, stream.getPos());
+      ByteBuffer direct = ByteBuffer.allocateDirect(TEST_DATA.length());
+      assertEquals(12, stream.read(direct));
+      assertEquals(TEST_DATA.length(), stream.getPos());
+
+      heap.flip();
+      direct.flip();
+      assertEquals(TEST_DATA.substring(0, 8), StandardCharsets.UTF_8.decode(heap).toString());
+      assertEquals(TEST_DATA.substring(8), StandardCharsets.UTF_8.decode(direct).toString());
+
+      // All data has been read, and pos is current at EOF. Next read should return -1.
+      assertEquals(-1, stream.read(ByteBuffer.allocateDirect(1)));
+    }
+  }
+
+  @Test
+  void testPositionedReadWithByteBufferDoesNotAlterPosition() throws IOException {
+    try (S3SeekableInputStream stream = getTestStream()) {
+      stream.seek(3);
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(4);
+      assertEquals(4, stream.read(10, direct));
+      direct.flip();
+      assertEquals(TEST_DATA.substring(10, 14), StandardCharsets.UTF_8.decode(direct).toString());
+      assertEquals(3, stream.getPos());
+
+      assertEquals(-1, stream.read(TEST_DATA.length(), ByteBuffer.allocate(4)));
+      assertThrows(IllegalArgumentException.class, () -> stream.read(-1, ByteBuffer.allocate(4)));
+      assertThrows(NullPointerException.class, () -> stream.read(0, null));
+    }
+  }
+
+  @Test
+  void testReadVectored() throws Exception {
+    try (S3SeekableInputStream stream = getTestStream()) {
+      stream.seek(2);
+
+      ObjectRange head = new ObjectRange(new CompletableFuture<>(), 0, 4);
+      ObjectRange tail = new ObjectRange(new CompletableFuture<>(), 16, 4);
+      stream.readVectored(Arrays.asList(head, tail), ByteBuffer::allocateDirect);
+
+      assertEquals(
+          TEST_DATA.substring(0, 4),
+          StandardCharsets.UTF_8.decode(head.getByteBuffer().get()).toString());
+      assertEquals(
+          TEST_DATA.substring(16, 20),
+          StandardCharsets.UTF_8.decode(tail.getByteBuffer().get()).toString());
+      assertEquals(2, stream.getPos());
+    }
+  }
+
   @Test
   void testReadTailWithInvalidArgument() throws IOException {
     // Given: seekable stream
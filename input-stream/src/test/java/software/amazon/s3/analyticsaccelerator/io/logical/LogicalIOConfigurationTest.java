@@ -17,6 +17,8 @@ package software.amazon.s3.analyticsaccelerator.io.logical;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import software.amazon.s3.analyticsaccelerator.S3SeekableInputStreamConfiguration;
 import software.amazon.s3.analyticsaccelerator.S3SeekableInputStreamConfigurationTest;
@@ -56,4 +58,34 @@ public class LogicalIOConfigurationTest {
         logicalIOConfiguration.getPrefetchingMode());
     assertEquals(logicalIOConfiguration.getPrefetchingMode(), PrefetchMode.ROW_GROUP);
   }
+
+  @Test
+  void testMarkovPrefetchingFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("markov.prefetching.enabled", "true");
+    properties.put("markov.prefetch.depth", "5");
+    properties.put("markov.confidence.threshold", "0.8");
+    properties.put("markov.model.store.size", "10");
+    LogicalIOConfiguration configuration =
+        LogicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertFalse(LogicalIOConfiguration.DEFAULT.isMarkovPrefetchingEnabled());
+    assertTrue(configuration.isMarkovPrefetchingEnabled());
+    assertEquals(5, configuration.getMarkovPrefetchDepth());
+    assertEquals(0.8, configuration.getMarkovConfidenceThreshold());
+    assertEquals(10, configuration.getMarkovModelStoreSize());
+  }
+
+  @Test
+  void testHeadlessOpenFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("headless.open.enabled", "false");
+    properties.put("headless.open.size", "1024");
+    LogicalIOConfiguration configuration =
+        LogicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertTrue(LogicalIOConfiguration.DEFAULT.isHeadlessOpenEnabled());
+    assertFalse(configuration.isHeadlessOpenEnabled());
+    assertEquals(1024, configuration.getHeadlessOpenSize());
+  }
 }
@@ -15,19 +15,31 @@
  */
 package software.amazon.s3.analyticsaccelerator.io.logical.impl;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.IOException;
+import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIOConfiguration;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIO;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanExecution;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanState;
 import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
 @SuppressFBWarnings(
@@ -99,4 +111,141 @@ public class DefaultLogicalIOImplTest {
     logicalIO.readTail(buffer, 0, 5);
     verify(physicalIO).readTail(buffer, 0, 5);
   }
+
+  @Test
+  void testOpeningAnObjectPrefetchesTheReadsOfObjectsUnderTheSamePrefix() throws IOException {
+    // Given: two objects of a table read at their footer, then at their middle
+    LogicalIOConfiguration configuration =
+        LogicalIOConfiguration.builder()
+            .markovPrefetchingEnabled(true)
+            .smallObjectsPrefetchingEnabled(false)
+            .build();
+    MarkovModelStore markovModelStore = new MarkovModelStore(configuration);
+    for (String key : new String[] {"table/a.orc", "table/b.orc"}) {
+      PhysicalIO physicalIO = mock(PhysicalIO.class);
+      when(physicalIO.metadata()).thenReturn(ObjectMetadata.builder().contentLength(1000).build());
+      DefaultLogicalIOImpl logicalIO =
+          new DefaultLogicalIOImpl(
+              S3URI.of("bucket", key), physicalIO, Telemetry.NOOP, configuration, markovModelStore);
+      logicalIO.read(new byte[100], 0, 100, 900);
+      logicalIO.read(new byte[100], 0, 100, 500);
+    }
+
+    // When: a third object of the table is opened
+    PhysicalIO physicalIO = mock(PhysicalIO.class);
+    when(physicalIO.metadata()).thenReturn(ObjectMetadata.builder().contentLength(2000).build());
+    new DefaultLogicalIOImpl(
+        S3URI.of("bucket", "table/c.orc"),
+        physicalIO,
+        Telemetry.NOOP,
+        configuration,
+        markovModelStore);
+
+    // Then: its footer and middle are prefetched, relative to its length
+    ArgumentCaptor<IOPlan> planCaptor = ArgumentCaptor.forClass(IOPlan.class);
+    verify(physicalIO).execute(planCaptor.capture());
+    List<Range> ranges = planCaptor.getValue().getPrefetchRanges();
+    assertEquals(2, ranges.size());
+    assertEquals(new Range(1800, 1899), ranges.get(0));
+    assertEquals(new Range(1000, 1099), ranges.get(1));
+  }
+
+  @Test
+  void testNothingIsPrefetchedWhenDisabled() throws IOException {
+    // Given: a model that has learned how a table is read
+    MarkovModelStore markovModelStore = new MarkovModelStore(LogicalIOConfiguration.DEFAULT);
+    markovModelStore.recordTransition("bucket/table/*.orc", MarkovModelStore.START_STATE, 0, 0, 10);
+    markovModelStore.recordTransition("bucket/table/*.orc", MarkovModelStore.START_STATE, 0, 0, 10);
+
+    // When: an object of the table is opened
+    PhysicalIO physicalIO = mock(PhysicalIO.class);
+    new DefaultLogicalIOImpl(
+        S3URI.of("bucket", "table/c.orc"),
+        physicalIO,
+        Telemetry.NOOP,
+        LogicalIOConfiguration.DEFAULT,
+        markovModelStore);
+
+    // Then
+    verify(physicalIO, never()).execute(any());
+  }
+
+  @Test
+  void testOpeningAnObjectFetchesItsFirstBytesInsteadOfAHead() {
+    // When: an object is opened with the default configuration
+    PhysicalIO physicalIO = mock(PhysicalIO.class);
+    new DefaultLogicalIOImpl(
+        TEST_URI,
+        physicalIO,
+        Telemetry.NOOP,
+        LogicalIOConfiguration.DEFAULT,
+        new MarkovModelStore(LogicalIOConfiguration.DEFAULT));
+
+    // Then: its first bytes are fetched
+    verify(physicalIO)
+        .prefetchOnOpen(LogicalIOConfiguration.DEFAULT.getHeadlessOpenSize(), false);
+  }
+
+  @Test
+  void testOpeningAnObjectDoesNotFetchItsFirstBytesWhenDisabled() {
+    // When: an object is opened with HEAD-less opens disabled
+    LogicalIOConfiguration configuration =
+        LogicalIOConfiguration.builder().headlessOpenEnabled(false).build();
+    PhysicalIO physicalIO = mock(PhysicalIO.class);
+    new DefaultLogicalIOImpl(
+        TEST_URI, physicalIO, Telemetry.NOOP, configuration, new MarkovModelStore(configuration));
+
+    // Then
+    verify(physicalIO, never()).prefetchOnOpen(anyLong(), anyBoolean());
+  }
+
+  @Test
+  void testOpeningASmallObjectFetchesItWhole() throws IOException {
+    // Given: a model that has learned how a table is read
+    LogicalIOConfiguration configuration =
+        LogicalIOConfiguration.builder().markovPrefetchingEnabled(true).build();
+    MarkovModelStore markovModelStore = new MarkovModelStore(configuration);
+    String modelKey = "bucket/table/*.json";
+    markovModelStore.recordTransition(modelKey, MarkovModelStore.START_STATE, 0, 0, 10);
+    markovModelStore.recordTransition(modelKey, MarkovModelStore.START_STATE, 0, 0, 10);
+
+    // When: a small object of the table is opened
+    PhysicalIO physicalIO = mock(PhysicalIO.class);
+    when(physicalIO.metadata()).thenReturn(ObjectMetadata.builder().contentLength(2000).build());
+    when(physicalIO.execute(any()))
+        .thenReturn(IOPlanExecution.builder().state(IOPlanState.SUBMITTED).build());
+    new DefaultLogicalIOImpl(
+        S3URI.of("bucket", "table/c.json"),
+        physicalIO,
+        Telemetry.NOOP,
+        configuration,
+        markovModelStore);
+
+    // Then: the whole object is fetched with a single plan, and nothing else is predicted
+    ArgumentCaptor<IOPlan> planCaptor = ArgumentCaptor.forClass(IOPlan.class);
+    verify(physicalIO).execute(planCaptor.capture());
+    List<Range> ranges = planCaptor.getValue().getPrefetchRanges();
+    assertEquals(1, ranges.size());
+    assertEquals(new Range(0, 1999), ranges.get(0));
+  }
+
+  @Test
+  void testOpeningALargeObjectDoesNotFetchItWhole() throws IOException {
+    // When: an object larger than the small object threshold is opened
+    PhysicalIO physicalIO = mock(PhysicalIO.class);
+    when(physicalIO.metadata())
+        .thenReturn(
+            ObjectMetadata.builder()
+                .contentLength(LogicalIOConfiguration.DEFAULT.getSmallObjectSizeThreshold() + 1)
+                .build());
+    new DefaultLogicalIOImpl(
+        TEST_URI,
+        physicalIO,
+        Telemetry.NOOP,
+        LogicalIOConfiguration.DEFAULT,
+        new MarkovModelStore(LogicalIOConfiguration.DEFAULT));
+
+    // Then
+    verify(physicalIO, never()).execute(any());
+  }
 }
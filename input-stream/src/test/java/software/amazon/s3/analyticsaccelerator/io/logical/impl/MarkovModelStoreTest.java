@@ -0,0 +1,96 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.logical.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+public class MarkovModelStoreTest {
+  private static final String MODEL_KEY = "bucket/table/*.orc";
+
+  @Test
+  void testModelKeyIgnoresPartitionsAndFileName() {
+    assertEquals(
+        MODEL_KEY,
+        MarkovModelStore.getModelKey(S3URI.of("bucket", "table/date=2024-01-01/part-0001.orc")));
+    assertEquals(
+        MODEL_KEY, MarkovModelStore.getModelKey(S3URI.of("bucket", "table/part-0002.orc")));
+    assertEquals("bucket/*", MarkovModelStore.getModelKey(S3URI.of("bucket", "manifest")));
+  }
+
+  @Test
+  void testStateIsTheRegionOfTheRead() {
+    assertEquals(0, MarkovModelStore.getState(0, 6400));
+    assertEquals(1, MarkovModelStore.getState(100, 6400));
+    assertEquals(MarkovModelStore.STATE_COUNT - 1, MarkovModelStore.getState(6399, 6400));
+    assertThrows(IllegalArgumentException.class, () -> MarkovModelStore.getState(-1, 6400));
+    assertThrows(IllegalArgumentException.class, () -> MarkovModelStore.getState(0, 0));
+  }
+
+  @Test
+  void testPredictsTheMostLikelyPath() {
+    // Given: objects read at their footer and then at their start, but once at their middle
+    MarkovModelStore store = new MarkovModelStore(LogicalIOConfiguration.DEFAULT);
+    for (int i = 0; i < 3; i++) {
+      store.recordTransition(MODEL_KEY, MarkovModelStore.START_STATE, 63, 0.99, 100);
+    }
+    store.recordTransition(MODEL_KEY, 63, 0, 0, 50);
+    store.recordTransition(MODEL_KEY, 63, 0, 0, 80);
+    store.recordTransition(MODEL_KEY, 63, 32, 0.5, 80);
+
+    // When
+    List<MarkovModelStore.Prediction> predictions = store.predict(MODEL_KEY, 3, 0.6);
+
+    // Then: the footer is predicted, then the start, with the longest read seen
+    assertEquals(2, predictions.size());
+    assertEquals(new MarkovModelStore.Prediction(0.99, 100, 1), predictions.get(0));
+    assertEquals(80, predictions.get(1).getLength());
+    assertEquals(2.0 / 3, predictions.get(1).getConfidence(), 1e-9);
+  }
+
+  @Test
+  void testNothingIsPredictedWithoutConfidence() {
+    // Given: objects read in two different ways, and an object read once
+    MarkovModelStore store = new MarkovModelStore(LogicalIOConfiguration.DEFAULT);
+    store.recordTransition(MODEL_KEY, MarkovModelStore.START_STATE, 63, 0.99, 100);
+    store.recordTransition(MODEL_KEY, MarkovModelStore.START_STATE, 0, 0, 100);
+    store.recordTransition("bucket/other/*", MarkovModelStore.START_STATE, 0, 0, 100);
+
+    // When & Then
+    assertTrue(store.predict(MODEL_KEY, 3, 0.6).isEmpty());
+    assertTrue(store.predict("bucket/other/*", 3, 0.6).isEmpty());
+    assertTrue(store.predict("bucket/unknown/*", 3, 0.6).isEmpty());
+  }
+
+  @Test
+  void testLeastRecentlyUsedModelsAreForgotten() {
+    // Given
+    MarkovModelStore store =
+        new MarkovModelStore(LogicalIOConfiguration.builder().markovModelStoreSize(2).build());
+
+    // When
+    for (int i = 0; i < 3; i++) {
+      store.recordTransition("bucket/" + i + "/*", MarkovModelStore.START_STATE, 0, 0, 100);
+    }
+
+    // Then
+    assertEquals(2, store.size());
+  }
+}
@@ -18,9 +18,13 @@ package software.amazon.s3.analyticsaccelerator.io.logical.parquet;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -33,6 +37,7 @@ import java.util.Map;
 import java.util.concurrent.CompletionException;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.logical.LogicalIOConfiguration;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIO;
@@ -121,6 +126,47 @@ public class ParquetPrefetchTailTaskTest {
     assertThrows(CompletionException.class, () -> parquetPrefetchTailTask.prefetchTail());
   }
 
+  @Test
+  void testTailIsFetchedOnOpenBeforeTheMetadataIsNeeded() {
+    // Given: Parquet Tail Prefetching task
+    PhysicalIO mockedPhysicalIO = mock(PhysicalIO.class);
+    when(mockedPhysicalIO.metadata())
+        .thenReturn(ObjectMetadata.builder().contentLength(10_000_000).build());
+    ParquetPrefetchTailTask parquetPrefetchTailTask =
+        new ParquetPrefetchTailTask(
+            TEST_URI, Telemetry.NOOP, LogicalIOConfiguration.DEFAULT, mockedPhysicalIO);
+
+    // When: the tail is prefetched
+    parquetPrefetchTailTask.prefetchTail();
+
+    // Then: the footer is fetched with a suffix range, which also gives the length of the object
+    InOrder inOrder = inOrder(mockedPhysicalIO);
+    inOrder
+        .verify(mockedPhysicalIO)
+        .prefetchOnOpen(LogicalIOConfiguration.DEFAULT.getFooterCachingSize(), true);
+    inOrder.verify(mockedPhysicalIO).metadata();
+  }
+
+  @Test
+  void testTailIsNotFetchedOnOpenWhenDisabled() {
+    // Given: Parquet Tail Prefetching task with HEAD-less opens disabled
+    PhysicalIO mockedPhysicalIO = mock(PhysicalIO.class);
+    when(mockedPhysicalIO.metadata())
+        .thenReturn(ObjectMetadata.builder().contentLength(10_000_000).build());
+    ParquetPrefetchTailTask parquetPrefetchTailTask =
+        new ParquetPrefetchTailTask(
+            TEST_URI,
+            Telemetry.NOOP,
+            LogicalIOConfiguration.builder().headlessOpenEnabled(false).build(),
+            mockedPhysicalIO);
+
+    // When: the tail is prefetched
+    parquetPrefetchTailTask.prefetchTail();
+
+    // Then
+    verify(mockedPhysicalIO, never()).prefetchOnOpen(anyLong(), anyBoolean());
+  }
+
   private HashMap<Long, List<Range>> getPrefetchRangeList(long footerSize, long smallFileSize) {
     return new HashMap<Long, List<Range>>() {
       {
@@ -17,10 +17,14 @@ package software.amazon.s3.analyticsaccelerator.io.physical;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import software.amazon.s3.analyticsaccelerator.S3SeekableInputStreamConfiguration;
 import software.amazon.s3.analyticsaccelerator.S3SeekableInputStreamConfigurationTest;
 import software.amazon.s3.analyticsaccelerator.common.ConnectorConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BlockStorage;
+import software.amazon.s3.analyticsaccelerator.io.physical.cache.CacheEvictionPolicy;
 
 public class PhysicalIOConfigurationTest {
 
@@ -55,4 +59,245 @@ public class PhysicalIOConfigurationTest {
         PhysicalIOConfiguration.DEFAULT.getBlobStoreCapacity(),
         physicalIOConfiguration.getBlobStoreCapacity());
   }
+
+  @Test
+  void testCacheFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("cache.max.bytes", "1024");
+    properties.put("cache.eviction.policy", "w-tinylfu");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(1024, configuration.getCacheMaxBytes());
+    assertEquals(CacheEvictionPolicy.W_TINY_LFU, configuration.getCacheEvictionPolicy());
+  }
+
+  @Test
+  void testUnknownCacheEvictionPolicyFallsBackToLru() {
+    assertEquals(CacheEvictionPolicy.LRU, CacheEvictionPolicy.fromString("fifo"));
+  }
+
+  @Test
+  void testCacheMaxBytesMustBePositive() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().cacheMaxBytes(0).build());
+  }
+
+  @Test
+  void testBlockStorageFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("block.storage", "direct");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(BlockStorage.DIRECT, configuration.getBlockStorage());
+    assertEquals(BlockStorage.HEAP, PhysicalIOConfiguration.DEFAULT.getBlockStorage());
+  }
+
+  @Test
+  void testUnknownBlockStorageFallsBackToHeap() {
+    assertEquals(BlockStorage.HEAP, BlockStorage.fromString("disk"));
+  }
+
+  @Test
+  void testBufferPoolMaxBytesFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("buffer.pool.max.bytes", "0");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(0, configuration.getBufferPoolMaxBytes());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().bufferPoolMaxBytes(-1).build());
+  }
+
+  @Test
+  void testCoalesceMaxGapBytesFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("coalesce.max.gap.bytes", "4096");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(4096, configuration.getCoalesceMaxGapBytes());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().coalesceMaxGapBytes(-1).build());
+  }
+
+  @Test
+  void testCoalesceMaxBytesFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("coalesce.max.bytes", "1048576");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(1048576, configuration.getCoalesceMaxBytes());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().coalesceMaxBytes(0).build());
+  }
+
+  @Test
+  void testDiskCacheFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("disk.cache.directory", "/mnt/nvme/cache");
+    properties.put("disk.cache.max.bytes", "1048576");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals("/mnt/nvme/cache", configuration.getDiskCacheDirectory());
+    assertEquals(1048576, configuration.getDiskCacheMaxBytes());
+    assertEquals("", PhysicalIOConfiguration.DEFAULT.getDiskCacheDirectory());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().diskCacheMaxBytes(0).build());
+  }
+
+  @Test
+  void testSchedulerFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("scheduler.max.inflight.requests", "8");
+    properties.put("scheduler.max.inflight.bytes", "1048576");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(8, configuration.getSchedulerMaxInFlightRequests());
+    assertEquals(1048576, configuration.getSchedulerMaxInFlightBytes());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().schedulerMaxInFlightRequests(0).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().schedulerMaxInFlightBytes(0).build());
+  }
+
+  @Test
+  void testPrefetchCancelDistanceFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("prefetch.cancel.distance.bytes", "1024");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(1024, configuration.getPrefetchCancelDistanceBytes());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().prefetchCancelDistanceBytes(-1).build());
+  }
+
+  @Test
+  void testAdaptiveReadaheadFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("readahead.adaptive", "false");
+    properties.put("readahead.max.bytes", "1048576");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertFalse(configuration.isAdaptiveReadahead());
+    assertEquals(1048576, configuration.getReadaheadMaxBytes());
+    assertTrue(PhysicalIOConfiguration.DEFAULT.isAdaptiveReadahead());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().readaheadMaxBytes(0).build());
+  }
+
+  @Test
+  void testPatternPrefetchFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("pattern.prefetch.depth", "8");
+    properties.put("pattern.confidence.threshold", "0.5");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(8, configuration.getPatternPrefetchDepth());
+    assertEquals(0.5, configuration.getPatternConfidenceThreshold());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().patternPrefetchDepth(-1).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().patternConfidenceThreshold(0).build());
+  }
+
+  @Test
+  void testHedgingFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("hedging.enabled", "true");
+    properties.put("hedging.budget.ratio", "0.1");
+    properties.put("hedging.latency.percentile", "0.99");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertFalse(PhysicalIOConfiguration.DEFAULT.isHedgingEnabled());
+    assertTrue(configuration.isHedgingEnabled());
+    assertEquals(0.1, configuration.getHedgingBudgetRatio());
+    assertEquals(0.99, configuration.getHedgingLatencyPercentile());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().hedgingBudgetRatio(2).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().hedgingLatencyPercentile(1).build());
+  }
+
+  @Test
+  void testBlockRetryFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("block.retry.max.attempts", "5");
+    properties.put("block.retry.backoff.ms", "20");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(5, configuration.getBlockRetryMaxAttempts());
+    assertEquals(20, configuration.getBlockRetryBackoffMillis());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().blockRetryMaxAttempts(-1).build());
+  }
+
+  @Test
+  void testDeadlinesFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("read.timeout.ms", "5000");
+    properties.put("straggler.throughput.ratio", "0.25");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(5000, configuration.getReadTimeoutMillis());
+    assertEquals(0.25, configuration.getStragglerThroughputRatio());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().readTimeoutMillis(-1).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().stragglerThroughputRatio(1).build());
+  }
+
+  @Test
+  void testMetadataStoreTtlFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("metadatastore.ttl.ms", "60000");
+
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.fromConfiguration(new ConnectorConfiguration(properties));
+
+    assertEquals(60000, configuration.getMetadataStoreTtlMillis());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> PhysicalIOConfiguration.builder().metadataStoreTtlMillis(-1).build());
+  }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.junit.jupiter.api.Test;
+import software.amazon.s3.analyticsaccelerator.TestTelemetry;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class DirectBufferAllocatorTest {
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(NullPointerException.class, () -> new DirectBufferAllocator(null));
+  }
+
+  @Test
+  void testAllocateAndFreeTracksUsedBytes() {
+    // Given: a direct allocator
+    DirectBufferAllocator allocator = new DirectBufferAllocator(TestTelemetry.DEFAULT);
+
+    // When: buffers are allocated
+    BlockBuffer b1 = allocator.allocate(1024);
+    BlockBuffer b2 = allocator.allocate(512);
+
+    // Then: they are off-heap and accounted for
+    assertTrue(b1.isDirect());
+    assertEquals(1024, b1.capacity());
+    assertEquals(1536, allocator.getUsedBytes());
+
+    // When: they are closed, more than once
+    b1.close();
+    b1.close();
+    b2.close();
+
+    // Then: each one is only freed once
+    assertEquals(0, allocator.getUsedBytes());
+  }
+
+  @Test
+  void testFreedMemoryCanBeReallocated() {
+    // Given: an allocator handing out buffers much larger than the test heap
+    DirectBufferAllocator allocator = new DirectBufferAllocator(Telemetry.NOOP);
+
+    // When & Then: memory is returned eagerly, so repeated allocations do not pile up
+    for (int i = 0; i < 64; i++) {
+      BlockBuffer buffer = allocator.allocate(16 * 1024 * 1024);
+      buffer.getByteBuffer().put(0, (byte) i);
+      buffer.close();
+    }
+    assertEquals(0, allocator.getUsedBytes());
+  }
+
+  @Test
+  void testNegativeCapacityIsRejected() {
+    DirectBufferAllocator allocator = new DirectBufferAllocator(TestTelemetry.DEFAULT);
+    assertThrows(IllegalArgumentException.class, () -> allocator.allocate(-1));
+  }
+}
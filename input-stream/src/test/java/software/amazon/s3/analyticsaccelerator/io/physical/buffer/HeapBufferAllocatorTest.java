@@ -0,0 +1,39 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class HeapBufferAllocatorTest {
+  @Test
+  void testAllocatesHeapBuffer() {
+    // When: a buffer is allocated
+    BlockBuffer buffer = HeapBufferAllocator.INSTANCE.allocate(16);
+
+    // Then: it is on the heap and has the requested capacity
+    assertFalse(buffer.isDirect());
+    assertEquals(16, buffer.capacity());
+    assertEquals(16, buffer.getByteBuffer().remaining());
+    buffer.close();
+  }
+
+  @Test
+  void testNegativeCapacityIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> HeapBufferAllocator.INSTANCE.allocate(-1));
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.buffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+import software.amazon.s3.analyticsaccelerator.TestTelemetry;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class PooledBufferAllocatorTest {
+  private static final int ONE_MB = 1024 * 1024;
+
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(
+        NullPointerException.class,
+        () -> new PooledBufferAllocator(null, TestTelemetry.DEFAULT, ONE_MB, ONE_MB));
+    assertThrows(
+        NullPointerException.class,
+        () -> new PooledBufferAllocator(HeapBufferAllocator.INSTANCE, null, ONE_MB, ONE_MB));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new PooledBufferAllocator(
+                HeapBufferAllocator.INSTANCE, TestTelemetry.DEFAULT, -1, ONE_MB));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new PooledBufferAllocator(
+                HeapBufferAllocator.INSTANCE, TestTelemetry.DEFAULT, ONE_MB, -1));
+  }
+
+  @Test
+  void testSizeClasses() {
+    assertEquals(4096, PooledBufferAllocator.sizeClass(0));
+    assertEquals(4096, PooledBufferAllocator.sizeClass(4096));
+    assertEquals(5120, PooledBufferAllocator.sizeClass(4097));
+    assertEquals(7 * ONE_MB, PooledBufferAllocator.sizeClass(6 * ONE_MB + 1));
+    assertEquals(8 * ONE_MB, PooledBufferAllocator.sizeClass(8 * ONE_MB));
+  }
+
+  @Test
+  void testLeaseHasRequestedCapacity() {
+    // Given: a pool
+    PooledBufferAllocator pool = newPool(ONE_MB);
+
+    // When: a buffer smaller than its size class is leased
+    BlockBuffer buffer = pool.allocate(5000);
+
+    // Then: the lease exposes exactly the requested capacity
+    assertEquals(5000, buffer.capacity());
+    assertEquals(0, buffer.getByteBuffer().position());
+    assertEquals(5000, buffer.getByteBuffer().limit());
+    assertEquals(1, pool.getOutstandingLeases());
+  }
+
+  @Test
+  void testClosedLeaseIsReused() {
+    // Given: a pool with a returned lease
+    CountingAllocator allocator = new CountingAllocator();
+    PooledBufferAllocator pool =
+        new PooledBufferAllocator(allocator, TestTelemetry.DEFAULT, ONE_MB, ONE_MB);
+    BlockBuffer first = pool.allocate(5000);
+    first.getByteBuffer().put((byte) 1);
+    first.close();
+    assertEquals(5120, pool.getIdleBytes());
+
+    // When: a lease of the same size class is requested
+    BlockBuffer second = pool.allocate(4500);
+
+    // Then: the buffer is reused, reset to the start
+    assertEquals(1, allocator.allocations);
+    assertEquals(1, pool.getHits());
+    assertEquals(1, pool.getMisses());
+    assertEquals(0, pool.getIdleBytes());
+    assertEquals(0, second.getByteBuffer().position());
+    assertEquals(4500, second.getByteBuffer().limit());
+  }
+
+  @Test
+  void testIdleBytesAreBounded() {
+    // Given: a pool keeping at most one 4KB buffer
+    CountingAllocator allocator = new CountingAllocator();
+    PooledBufferAllocator pool =
+        new PooledBufferAllocator(allocator, TestTelemetry.DEFAULT, 4096, ONE_MB);
+    BlockBuffer b1 = pool.allocate(100);
+    BlockBuffer b2 = pool.allocate(100);
+
+    // When: both leases are closed
+    b1.close();
+    b2.close();
+
+    // Then: only one is kept, the other is freed
+    assertEquals(4096, pool.getIdleBytes());
+    assertEquals(1, allocator.frees);
+    assertEquals(0, pool.getOutstandingLeases());
+  }
+
+  @Test
+  void testLargeRequestsAreNotPooled() {
+    // Given: a pool serving requests up to 8KB
+    CountingAllocator allocator = new CountingAllocator();
+    PooledBufferAllocator pool =
+        new PooledBufferAllocator(allocator, TestTelemetry.DEFAULT, ONE_MB, 8192);
+
+    // When: a larger buffer is requested and closed
+    BlockBuffer buffer = pool.allocate(10000);
+    buffer.close();
+
+    // Then: it is freed right away
+    assertEquals(10000, allocator.lastCapacity);
+    assertEquals(1, allocator.frees);
+    assertEquals(0, pool.getIdleBytes());
+  }
+
+  @Test
+  void testCloseFreesIdleBuffers() {
+    // Given: a pool with an idle buffer and an outstanding lease
+    CountingAllocator allocator = new CountingAllocator();
+    PooledBufferAllocator pool =
+        new PooledBufferAllocator(allocator, TestTelemetry.DEFAULT, ONE_MB, ONE_MB);
+    pool.allocate(100).close();
+    BlockBuffer outstanding = pool.allocate(100);
+    pool.allocate(200).close();
+
+    // When: the pool is closed, and the outstanding lease after it
+    pool.close();
+    outstanding.close();
+
+    // Then: all memory is freed
+    assertEquals(0, pool.getIdleBytes());
+    assertEquals(allocator.allocations, allocator.frees);
+  }
+
+  private static PooledBufferAllocator newPool(long maxIdleBytes) {
+    return new PooledBufferAllocator(
+        HeapBufferAllocator.INSTANCE, TestTelemetry.DEFAULT, maxIdleBytes, ONE_MB);
+  }
+
+  /** Heap allocator counting allocations and frees. */
+  private static class CountingAllocator implements BufferAllocator {
+    private int allocations;
+    private int frees;
+    private int lastCapacity;
+
+    @Override
+    public BlockBuffer allocate(int capacity) {
+      allocations++;
+      lastCapacity = capacity;
+      return new BlockBuffer(ByteBuffer.allocate(capacity), () -> frees++);
+    }
+  }
+}
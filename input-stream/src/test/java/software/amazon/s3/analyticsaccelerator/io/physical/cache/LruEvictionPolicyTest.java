@@ -0,0 +1,70 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class LruEvictionPolicyTest {
+  @Test
+  void testEmptyPolicyHasNoVictim() {
+    assertFalse(new LruEvictionPolicy<String>().nextVictim(k -> true).isPresent());
+  }
+
+  @Test
+  void testEldestEntryIsEvictedFirst() {
+    // Given
+    EvictionPolicy<String> policy = new LruEvictionPolicy<>();
+    policy.onAdd("a", 1);
+    policy.onAdd("b", 1);
+    policy.onAdd("c", 1);
+
+    // When
+    policy.onAccess("a");
+
+    // Then
+    assertEquals(Optional.of("b"), policy.nextVictim(k -> true));
+  }
+
+  @Test
+  void testVictimRespectsPredicate() {
+    // Given
+    EvictionPolicy<String> policy = new LruEvictionPolicy<>();
+    policy.onAdd("a", 1);
+    policy.onAdd("b", 1);
+
+    // When / Then
+    assertEquals(Optional.of("b"), policy.nextVictim(k -> !k.equals("a")));
+    assertFalse(policy.nextVictim(k -> false).isPresent());
+  }
+
+  @Test
+  void testRemovedEntryIsNotAVictim() {
+    // Given
+    EvictionPolicy<String> policy = new LruEvictionPolicy<>();
+    policy.onAdd("a", 1);
+    policy.onAdd("b", 1);
+
+    // When
+    policy.onRemove("a");
+    policy.onRemove("unknown");
+
+    // Then
+    assertEquals(Optional.of("b"), policy.nextVictim(k -> true));
+  }
+}
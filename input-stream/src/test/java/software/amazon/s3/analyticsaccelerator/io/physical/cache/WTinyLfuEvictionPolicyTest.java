@@ -0,0 +1,113 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class WTinyLfuEvictionPolicyTest {
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new WTinyLfuEvictionPolicy<String>(0, 10, Function.identity()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new WTinyLfuEvictionPolicy<String>(100, 0, Function.identity()));
+    assertThrows(
+        NullPointerException.class, () -> new WTinyLfuEvictionPolicy<String>(100, 10, null));
+  }
+
+  @Test
+  void testEmptyPolicyHasNoVictim() {
+    assertFalse(
+        new WTinyLfuEvictionPolicy<String>(100, 10, Function.identity())
+            .nextVictim(k -> true)
+            .isPresent());
+  }
+
+  @Test
+  void testScanDoesNotFlushFrequentlyUsedEntries() {
+    // Given: a cache of 100 entries with a hot set of 50 entries that are accessed repeatedly
+    EvictionPolicy<String> policy = new WTinyLfuEvictionPolicy<>(100, 100, Function.identity());
+    Set<String> cached = new HashSet<>();
+    for (int i = 0; i < 50; i++) {
+      add(policy, cached, "hot-" + i);
+    }
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 50; i++) {
+        policy.onAccess("hot-" + i);
+      }
+    }
+
+    // When: a long scan of entries that are only seen once goes through the cache
+    for (int i = 0; i < 1000; i++) {
+      add(policy, cached, "scan-" + i);
+    }
+
+    // Then: the hot set survived
+    for (int i = 0; i < 50; i++) {
+      assertTrue(cached.contains("hot-" + i), "hot-" + i + " should still be cached");
+    }
+  }
+
+  @Test
+  void testVictimRespectsPredicate() {
+    // Given
+    EvictionPolicy<String> policy = new WTinyLfuEvictionPolicy<>(100, 10, Function.identity());
+    policy.onAdd("a", 1);
+    policy.onAdd("b", 1);
+
+    // When / Then
+    assertEquals(Optional.of("b"), policy.nextVictim(k -> !k.equals("a")));
+    assertFalse(policy.nextVictim(k -> false).isPresent());
+  }
+
+  @Test
+  void testRemovedEntryIsNotAVictim() {
+    // Given
+    EvictionPolicy<String> policy = new WTinyLfuEvictionPolicy<>(100, 10, Function.identity());
+    policy.onAdd("a", 1);
+    policy.onAdd("b", 1);
+    policy.onAccess("b");
+
+    // When
+    policy.onRemove("a");
+    policy.onRemove("unknown");
+
+    // Then
+    assertEquals(Optional.of("b"), policy.nextVictim(k -> true));
+  }
+
+  private static void add(EvictionPolicy<String> policy, Set<String> cached, String key) {
+    policy.onAdd(key, 1);
+    cached.add(key);
+    while (cached.size() > 100) {
+      String victim = policy.nextVictim(k -> true).get();
+      policy.onRemove(victim);
+      cached.remove(victim);
+    }
+  }
+}
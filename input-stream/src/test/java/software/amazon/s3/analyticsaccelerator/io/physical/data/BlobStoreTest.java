@@ -22,12 +22,16 @@ import static org.mockito.Mockito.when;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import software.amazon.s3.analyticsaccelerator.TestTelemetry;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
 import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
 import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.OpenRequest;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.request.Referrer;
 import software.amazon.s3.analyticsaccelerator.util.FakeObjectClient;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
@@ -88,4 +92,82 @@ public class BlobStoreTest {
     blob.read(b, 0, b.length, 0);
     assertEquals(TEST_DATA, new String(b, StandardCharsets.UTF_8));
   }
+
+  @Test
+  public void testBytesFetchedOnOpenServeLaterReads() {
+    // Given: a BlobStore over an object
+    final String TEST_DATA = "0123456789abcdef";
+    FakeObjectClient objectClient = new FakeObjectClient(TEST_DATA);
+    MetadataStore metadataStore =
+        new MetadataStore(objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    BlobStore blobStore =
+        new BlobStore(
+            metadataStore, objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    S3URI s3URI = S3URI.of("test", "test");
+
+    // When: the object is opened with a GET of its last bytes, then its tail is read
+    blobStore.open(
+        OpenRequest.builder()
+            .s3Uri(s3URI)
+            .length(6)
+            .fromEnd(true)
+            .referrer(new Referrer(OpenRequest.toHttpString(6, true), ReadMode.SYNC))
+            .build());
+    Blob blob = blobStore.get(s3URI);
+    byte[] b = new byte[4];
+    blob.read(b, 0, b.length, 12);
+
+    // Then: the read is served from the bytes fetched on open
+    assertEquals("cdef", new String(b, StandardCharsets.UTF_8));
+    assertEquals(TEST_DATA.length(), metadataStore.get(s3URI).getContentLength());
+    assertEquals(1, objectClient.getGetRequestCount().get());
+  }
+
+  @Test
+  public void testBlobKeepsTheLengthOfItsVersionWhenTheStoredMetadataChanges() {
+    // Given: a blob of a version of an object
+    final String TEST_DATA = "0123456789abcdef";
+    FakeObjectClient objectClient = new FakeObjectClient(TEST_DATA);
+    MetadataStore metadataStore =
+        new MetadataStore(objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    BlobStore blobStore =
+        new BlobStore(
+            metadataStore, objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    S3URI s3URI = S3URI.of("test", "test");
+    Blob blob =
+        blobStore.get(
+            s3URI,
+            ObjectMetadata.builder().contentLength(TEST_DATA.length()).etag("\"v1\"").build());
+
+    // When: the object is overwritten with a shorter version, then the blob is read
+    metadataStore.storeObjectMetadata(
+        s3URI, ObjectMetadata.builder().contentLength(4).etag("\"v2\"").build());
+    byte[] b = new byte[10];
+    int bytesRead = blob.read(b, 0, b.length, 6);
+
+    // Then: the blob is read to the end of its own version, without looking up the metadata
+    assertEquals(10, bytesRead);
+    assertEquals("6789abcdef", new String(b, StandardCharsets.UTF_8));
+    assertEquals(0, objectClient.getHeadRequestCount().get());
+  }
+
+  @Test
+  public void testGetIfPresentDoesNotOpenBlob() {
+    // Given: a BlobStore holding a blob of one version of an object
+    FakeObjectClient objectClient = new FakeObjectClient("test-data");
+    MetadataStore metadataStore =
+        new MetadataStore(objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    BlobStore blobStore =
+        new BlobStore(
+            metadataStore, objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    S3URI s3URI = S3URI.of("test", "test");
+    ObjectMetadata v1 = ObjectMetadata.builder().contentLength(9).etag("\"v1\"").build();
+    ObjectMetadata v2 = ObjectMetadata.builder().contentLength(9).etag("\"v2\"").build();
+    Blob blob = blobStore.get(s3URI, v1);
+
+    // When & Then: only the open version is found, and looking up another does not open it
+    assertFalse(blobStore.getIfPresent(s3URI, v2).isPresent());
+    assertEquals(Optional.of(blob), blobStore.getIfPresent(s3URI, v1));
+    assertFalse(blobStore.getIfPresent(s3URI, v2).isPresent());
+  }
 }
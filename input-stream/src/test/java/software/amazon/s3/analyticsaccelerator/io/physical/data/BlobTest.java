@@ -16,20 +16,35 @@
 package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanState.SUBMITTED;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import software.amazon.s3.analyticsaccelerator.TestTelemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.HeapBufferAllocator;
 import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan;
 import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlanExecution;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.ObjectRange;
 import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.request.ReadMode;
 import software.amazon.s3.analyticsaccelerator.util.FakeObjectClient;
@@ -41,6 +56,9 @@ import software.amazon.s3.analyticsaccelerator.util.S3URI;
 public class BlobTest {
   private static final S3URI TEST_URI = S3URI.of("foo", "bar");
   private static final String TEST_DATA = "test-data-0123456789";
+  private static final ObjectMetadata TEST_METADATA =
+      ObjectMetadata.builder().contentLength(TEST_DATA.length()).build();
+  private static final Executor EXECUTOR = ForkJoinPool.commonPool();
 
   @Test
   void testCreateBoundaries() {
@@ -48,17 +66,22 @@ public class BlobTest {
         NullPointerException.class,
         () ->
             new Blob(
-                null, mock(MetadataStore.class), mock(BlockManager.class), TestTelemetry.DEFAULT));
+                null, TEST_METADATA, mock(BlockManager.class), TestTelemetry.DEFAULT, EXECUTOR));
     assertThrows(
         NullPointerException.class,
-        () -> new Blob(TEST_URI, null, mock(BlockManager.class), TestTelemetry.DEFAULT));
+        () -> new Blob(TEST_URI, null, mock(BlockManager.class), TestTelemetry.DEFAULT, EXECUTOR));
 
     assertThrows(
         NullPointerException.class,
-        () -> new Blob(TEST_URI, mock(MetadataStore.class), null, TestTelemetry.DEFAULT));
+        () -> new Blob(TEST_URI, TEST_METADATA, null, TestTelemetry.DEFAULT, EXECUTOR));
     assertThrows(
         NullPointerException.class,
-        () -> new Blob(TEST_URI, mock(MetadataStore.class), mock(BlockManager.class), null));
+        () -> new Blob(TEST_URI, TEST_METADATA, mock(BlockManager.class), null, EXECUTOR));
+    assertThrows(
+        NullPointerException.class,
+        () ->
+            new Blob(
+                TEST_URI, TEST_METADATA, mock(BlockManager.class), TestTelemetry.DEFAULT, null));
   }
 
   @Test
@@ -127,12 +150,181 @@ public class BlobTest {
     assertThrows(IllegalArgumentException.class, () -> blob.read(b, b.length + 1, b.length, 1));
   }
 
+  @Test
+  public void testByteBufferReadReturnsCorrectBytes() {
+    // Given: test Blob
+    Blob blob = getTestBlob(TEST_DATA);
+
+    // When: reads are performed into a heap and a direct buffer
+    ByteBuffer heap = ByteBuffer.allocate(4);
+    int heapBytesRead = blob.read(heap, 0);
+    ByteBuffer direct = ByteBuffer.allocateDirect(4);
+    int directBytesRead = blob.read(direct, 5);
+
+    // Then: correct bytes are returned and both buffers are advanced
+    assertEquals(4, heapBytesRead);
+    assertEquals(4, directBytesRead);
+    assertFalse(heap.hasRemaining());
+    assertFalse(direct.hasRemaining());
+    heap.flip();
+    direct.flip();
+    assertEquals("test", StandardCharsets.UTF_8.decode(heap).toString());
+    assertEquals("data", StandardCharsets.UTF_8.decode(direct).toString());
+  }
+
+  @Test
+  public void testByteBufferReadStopsAtEndOfObject() {
+    // Given: test Blob
+    Blob blob = getTestBlob(TEST_DATA);
+
+    // When: a read asks for more bytes than remain in the object
+    ByteBuffer dst = ByteBuffer.allocateDirect(16);
+    dst.position(2);
+    int bytesRead = blob.read(dst, TEST_DATA.length() - 4);
+
+    // Then: only the remaining bytes are read, starting at the buffer's position
+    assertEquals(4, bytesRead);
+    assertEquals(6, dst.position());
+    dst.flip();
+    dst.position(2);
+    assertEquals("6789", StandardCharsets.UTF_8.decode(dst).toString());
+  }
+
+  @Test
+  public void testByteBufferReadValidatesArguments() {
+    // Given: test Blob
+    Blob blob = getTestBlob("abc");
+
+    // When & Then: read is called with illegal arguments, exceptions are thrown
+    ByteBuffer dst = ByteBuffer.allocate(4);
+
+    assertThrows(NullPointerException.class, () -> blob.read(null, 0));
+    assertThrows(IllegalArgumentException.class, () -> blob.read(dst, -1));
+    assertThrows(IllegalArgumentException.class, () -> blob.read(dst, 3));
+  }
+
+  @Test
+  public void testReadVectoredCompletesEachRange() throws Exception {
+    // Given: test Blob
+    FakeObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+    Blob blob = getTestBlob(fakeObjectClient);
+
+    // When: a vectored read of two ranges is issued, into direct buffers
+    ObjectRange first = new ObjectRange(new CompletableFuture<>(), 5, 4);
+    ObjectRange second = new ObjectRange(new CompletableFuture<>(), 0, 4);
+    ObjectRange empty = new ObjectRange(new CompletableFuture<>(), 3, 0);
+    blob.readVectored(Arrays.asList(first, second, empty), ByteBuffer::allocateDirect);
+
+    // Then: each range is completed with its own bytes, and nearby ranges share a request
+    assertEquals("data", StandardCharsets.UTF_8.decode(first.getByteBuffer().get()).toString());
+    assertEquals("test", StandardCharsets.UTF_8.decode(second.getByteBuffer().get()).toString());
+    assertEquals(0, empty.getByteBuffer().get().remaining());
+    assertEquals(1, fakeObjectClient.getGetRequestCount().get());
+  }
+
+  @Test
+  public void testReadVectoredCompletesRangeBeforeTheRestOfItsRequestArrives() throws Exception {
+    // Given: test Blob whose GETs stay in flight until completed by the test
+    ObjectClient objectClient = mock(ObjectClient.class);
+    List<ByteBuffer> destinations = new CopyOnWriteArrayList<>();
+    CompletableFuture<Integer> request = new CompletableFuture<>();
+    when(objectClient.getObject(any(GetRequest.class), any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              destinations.add(invocation.getArgument(1));
+              return request;
+            });
+    MetadataStore metadataStore =
+        new MetadataStore(objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    metadataStore.storeObjectMetadata(TEST_URI, TEST_METADATA);
+    BlockManager blockManager =
+        new BlockManager(
+            TEST_URI,
+            objectClient,
+            metadataStore,
+            new BlockCache(TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT),
+            HeapBufferAllocator.INSTANCE,
+            TestTelemetry.DEFAULT,
+            PhysicalIOConfiguration.DEFAULT);
+    Blob blob = new Blob(TEST_URI, TEST_METADATA, blockManager, TestTelemetry.DEFAULT, EXECUTOR);
+
+    // When: two nearby ranges are read, and only the bytes of the first one arrive
+    ObjectRange first = new ObjectRange(new CompletableFuture<>(), 0, 4);
+    ObjectRange second = new ObjectRange(new CompletableFuture<>(), 10, 4);
+    blob.readVectored(Arrays.asList(first, second), ByteBuffer::allocate);
+    assertEquals(1, destinations.size());
+    ByteBuffer destination = destinations.get(0);
+    synchronized (destination) {
+      destination.put(TEST_DATA.substring(0, 5).getBytes(StandardCharsets.UTF_8));
+      destination.notifyAll();
+    }
+
+    // Then: the first range completes while the request is still in flight, the second waits
+    ByteBuffer firstBytes = first.getByteBuffer().get(5, TimeUnit.SECONDS);
+    assertEquals("test", StandardCharsets.UTF_8.decode(firstBytes).toString());
+    assertFalse(request.isDone());
+    assertFalse(second.getByteBuffer().isDone());
+
+    // When: the rest of the request arrives
+    synchronized (destination) {
+      destination.put(TEST_DATA.substring(5, 14).getBytes(StandardCharsets.UTF_8));
+    }
+    request.complete(14);
+
+    // Then
+    ByteBuffer secondBytes = second.getByteBuffer().get(5, TimeUnit.SECONDS);
+    assertEquals("0123", StandardCharsets.UTF_8.decode(secondBytes).toString());
+  }
+
+  @Test
+  public void testReadVectoredValidatesArguments() {
+    // Given: test Blob
+    Blob blob = getTestBlob("abc");
+
+    // When & Then: ranges past the end of the object are rejected
+    List<ObjectRange> ranges =
+        Collections.singletonList(new ObjectRange(new CompletableFuture<>(), 2, 2));
+    assertThrows(
+        IllegalArgumentException.class, () -> blob.readVectored(ranges, ByteBuffer::allocate));
+    assertThrows(NullPointerException.class, () -> blob.readVectored(null, ByteBuffer::allocate));
+    assertThrows(NullPointerException.class, () -> blob.readVectored(ranges, null));
+
+    // When & Then: overlapping ranges, and negative offsets, are rejected
+    List<ObjectRange> overlapping =
+        Arrays.asList(
+            new ObjectRange(new CompletableFuture<>(), 1, 2),
+            new ObjectRange(new CompletableFuture<>(), 0, 2));
+    assertThrows(
+        IllegalArgumentException.class, () -> blob.readVectored(overlapping, ByteBuffer::allocate));
+    assertThrows(
+        IllegalArgumentException.class, () -> new ObjectRange(new CompletableFuture<>(), -1, 2));
+  }
+
+  @Test
+  public void testReadVectoredDoesNotReadAhead() throws Exception {
+    // Given: test Blob of an object much larger than the ranges read
+    char[] data = new char[1000];
+    Arrays.fill(data, 'x');
+    FakeObjectClient fakeObjectClient = new FakeObjectClient(new String(data));
+    Blob blob = getTestBlob(fakeObjectClient);
+
+    // When: two vectored reads of ranges far apart, within the default readahead, are issued
+    ObjectRange first = new ObjectRange(new CompletableFuture<>(), 0, 10);
+    blob.readVectored(Collections.singletonList(first), ByteBuffer::allocate);
+    first.getByteBuffer().get();
+    ObjectRange second = new ObjectRange(new CompletableFuture<>(), 900, 10);
+    blob.readVectored(Collections.singletonList(second), ByteBuffer::allocate);
+    second.getByteBuffer().get();
+
+    // Then: the first read fetched only its own range, so the second needs a request of its own
+    assertEquals(2, fakeObjectClient.getGetRequestCount().get());
+  }
+
   @Test
   public void testExecuteSubmitsCorrectRanges() {
     // Given: test blob and an IOPlan
-    MetadataStore metadataStore = mock(MetadataStore.class);
     BlockManager blockManager = mock(BlockManager.class);
-    Blob blob = new Blob(TEST_URI, metadataStore, blockManager, TestTelemetry.DEFAULT);
+    Blob blob = new Blob(TEST_URI, TEST_METADATA, blockManager, TestTelemetry.DEFAULT, EXECUTOR);
     List<Range> ranges = new LinkedList<>();
     ranges.add(new Range(0, 100));
     ranges.add(new Range(999, 1000));
@@ -143,16 +335,14 @@ public class BlobTest {
 
     // Then: correct ranges are submitted
     assertEquals(SUBMITTED, execution.getState());
-    verify(blockManager).makeRangeAvailable(0, 101, ReadMode.ASYNC);
-    verify(blockManager).makeRangeAvailable(999, 2, ReadMode.ASYNC);
+    verify(blockManager).makeRangesAvailable(ranges, ReadMode.ASYNC);
   }
 
   @Test
   public void testCloseClosesBlockManager() {
     // Given: test blob
-    MetadataStore metadataStore = mock(MetadataStore.class);
     BlockManager blockManager = mock(BlockManager.class);
-    Blob blob = new Blob(TEST_URI, metadataStore, blockManager, TestTelemetry.DEFAULT);
+    Blob blob = new Blob(TEST_URI, TEST_METADATA, blockManager, TestTelemetry.DEFAULT, EXECUTOR);
 
     // When: blob is closed
     blob.close();
@@ -162,7 +352,10 @@ public class BlobTest {
   }
 
   private Blob getTestBlob(String data) {
-    FakeObjectClient fakeObjectClient = new FakeObjectClient(data);
+    return getTestBlob(new FakeObjectClient(data));
+  }
+
+  private Blob getTestBlob(FakeObjectClient fakeObjectClient) {
     MetadataStore metadataStore =
         new MetadataStore(fakeObjectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
     BlockManager blockManager =
@@ -170,9 +363,12 @@ public class BlobTest {
             TEST_URI,
             fakeObjectClient,
             metadataStore,
+            new BlockCache(TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT),
+            HeapBufferAllocator.INSTANCE,
             TestTelemetry.DEFAULT,
             PhysicalIOConfiguration.DEFAULT);
 
-    return new Blob(TEST_URI, metadataStore, blockManager, TestTelemetry.DEFAULT);
+    return new Blob(
+        TEST_URI, metadataStore.get(TEST_URI), blockManager, TestTelemetry.DEFAULT, EXECUTOR);
   }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import software.amazon.s3.analyticsaccelerator.TestTelemetry;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.HeapBufferAllocator;
+import software.amazon.s3.analyticsaccelerator.io.physical.cache.CacheEvictionPolicy;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.util.FakeObjectClient;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class BlockCacheTest {
+  private static final S3URI TEST_URI = S3URI.of("foo", "bar");
+  private static final String TEST_DATA = "0123456789";
+  private final FakeObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(
+        NullPointerException.class,
+        () -> new BlockCache(null, mock(PhysicalIOConfiguration.class)));
+    assertThrows(NullPointerException.class, () -> new BlockCache(mock(Telemetry.class), null));
+  }
+
+  @Test
+  void testAddWithinBudgetKeepsBlocks() {
+    // Given
+    BlockCache blockCache = createBlockCache(10, CacheEvictionPolicy.LRU);
+    BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
+    Block b1 = createBlock(blockStore, 0, 4);
+    Block b2 = createBlock(blockStore, 5, 9);
+
+    // When
+    blockCache.add(Arrays.asList(b1, b2), blockStore);
+
+    // Then
+    assertEquals(10, blockCache.getUsedBytes());
+    assertTrue(blockStore.getBlock(0).isPresent());
+    assertTrue(blockStore.getBlock(5).isPresent());
+  }
+
+  @Test
+  void testLeastRecentlyUsedBlockIsEvicted() {
+    // Given: two blocks filling the cache, the first of which was accessed recently
+    BlockCache blockCache = createBlockCache(10, CacheEvictionPolicy.LRU);
+    BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
+    Block b1 = createBlock(blockStore, 0, 4);
+    Block b2 = createBlock(blockStore, 5, 9);
+    blockCache.add(Arrays.asList(b1, b2), blockStore);
+    blockCache.recordAccess(b1);
+
+    // When: a third block is added
+    BlockStore otherBlockStore = new BlockStore(S3URI.of("foo", "baz"), mock(MetadataStore.class));
+    Block b3 = createBlock(otherBlockStore, 0, 4);
+    blockCache.add(Collections.singletonList(b3), otherBlockStore);
+
+    // Then: the second block is gone
+    assertEquals(10, blockCache.getUsedBytes());
+    assertTrue(blockStore.getBlock(0).isPresent());
+    assertFalse(blockStore.getBlock(5).isPresent());
+    assertFalse(b2.tryPin());
+  }
+
+  @Test
+  void testAccessesRecordedOnOtherThreadsAreTakenIntoAccount() throws Exception {
+    // Given: two blocks filling the cache, the first of which was accessed on another thread
+    BlockCache blockCache = createBlockCache(10, CacheEvictionPolicy.LRU);
+    BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
+    Block b1 = createBlock(blockStore, 0, 4);
+    Block b2 = createBlock(blockStore, 5, 9);
+    blockCache.add(Arrays.asList(b1, b2), blockStore);
+    Thread reader = new Thread(() -> blockCache.recordAccess(b1));
+    reader.start();
+    reader.join();
+
+    // When: a third block is added
+    BlockStore otherBlockStore = new BlockStore(S3URI.of("foo", "baz"), mock(MetadataStore.class));
+    Block b3 = createBlock(otherBlockStore, 0, 4);
+    blockCache.add(Collections.singletonList(b3), otherBlockStore);
+
+    // Then: the second block is gone
+    assertTrue(blockStore.getBlock(0).isPresent());
+    assertFalse(blockStore.getBlock(5).isPresent());
+  }
+
+  @Test
+  void testPinnedBlocksAreSkipped() {
+    // Given: two blocks filling the cache, the eldest of which is pinned
+    BlockCache blockCache = createBlockCache(10, CacheEvictionPolicy.LRU);
+    BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
+    Block b1 = createBlock(blockStore, 0, 4);
+    Block b2 = createBlock(blockStore, 5, 9);
+    blockCache.add(Arrays.asList(b1, b2), blockStore);
+    assertTrue(b1.tryPin());
+
+    // When
+    BlockStore otherBlockStore = new BlockStore(S3URI.of("foo", "baz"), mock(MetadataStore.class));
+    blockCache.add(Collections.singletonList(createBlock(otherBlockStore, 0, 4)), otherBlockStore);
+
+    // Then
+    assertTrue(blockStore.getBlock(0).isPresent());
+    assertFalse(blockStore.getBlock(5).isPresent());
+  }
+
+  @Test
+  void testBlocksBeingAddedAreNotEvicted() {
+    // Given
+    BlockCache blockCache = createBlockCache(4, CacheEvictionPolicy.W_TINY_LFU);
+    BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
+    Block block = createBlock(blockStore, 0, 9);
+
+    // When: a single block larger than the budget is added
+    blockCache.add(Collections.singletonList(block), blockStore);
+
+    // Then
+    assertEquals(10, blockCache.getUsedBytes());
+    assertTrue(blockStore.getBlock(0).isPresent());
+  }
+
+  @Test
+  void testInvalidateReleasesBytes() {
+    // Given
+    BlockCache blockCache = createBlockCache(10, CacheEvictionPolicy.LRU);
+    BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
+    blockCache.add(Collections.singletonList(createBlock(blockStore, 0, 4)), blockStore);
+
+    // When
+    blockCache.invalidate(blockStore);
+
+    // Then
+    assertEquals(0, blockCache.getUsedBytes());
+  }
+
+  private BlockCache createBlockCache(long maxBytes, CacheEvictionPolicy evictionPolicy) {
+    return new BlockCache(
+        TestTelemetry.DEFAULT,
+        PhysicalIOConfiguration.builder()
+            .cacheMaxBytes(maxBytes)
+            .cacheEvictionPolicy(evictionPolicy)
+            .build());
+  }
+
+  private Block createBlock(BlockStore blockStore, long start, long end) {
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            start,
+            end,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+    blockStore.add(block);
+    return block;
+  }
+}
@@ -17,7 +17,13 @@ package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -26,16 +32,27 @@ import static software.amazon.s3.analyticsaccelerator.util.Constants.ONE_MB;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import software.amazon.s3.analyticsaccelerator.TestTelemetry;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.BufferAllocator;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.HeapBufferAllocator;
 import software.amazon.s3.analyticsaccelerator.request.GetRequest;
 import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
 import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
 import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.request.ReadMode;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
@@ -52,6 +69,8 @@ public class BlockManagerTest {
                 null,
                 mock(ObjectClient.class),
                 mock(MetadataStore.class),
+                mock(BlockCache.class),
+                mock(BufferAllocator.class),
                 mock(Telemetry.class),
                 mock(PhysicalIOConfiguration.class)));
     assertThrows(
@@ -61,6 +80,8 @@ public class BlockManagerTest {
                 mock(S3URI.class),
                 null,
                 mock(MetadataStore.class),
+                mock(BlockCache.class),
+                mock(BufferAllocator.class),
                 mock(Telemetry.class),
                 mock(PhysicalIOConfiguration.class)));
     assertThrows(
@@ -70,6 +91,8 @@ public class BlockManagerTest {
                 mock(S3URI.class),
                 mock(ObjectClient.class),
                 null,
+                mock(BlockCache.class),
+                mock(BufferAllocator.class),
                 mock(Telemetry.class),
                 mock(PhysicalIOConfiguration.class)));
     assertThrows(
@@ -79,6 +102,8 @@ public class BlockManagerTest {
                 mock(S3URI.class),
                 mock(ObjectClient.class),
                 mock(MetadataStore.class),
+                mock(BlockCache.class),
+                mock(BufferAllocator.class),
                 null,
                 mock(PhysicalIOConfiguration.class)));
     assertThrows(
@@ -88,8 +113,32 @@ public class BlockManagerTest {
                 mock(S3URI.class),
                 mock(ObjectClient.class),
                 mock(MetadataStore.class),
+                mock(BlockCache.class),
+                mock(BufferAllocator.class),
                 mock(Telemetry.class),
                 null));
+    assertThrows(
+        NullPointerException.class,
+        () ->
+            new BlockManager(
+                mock(S3URI.class),
+                mock(ObjectClient.class),
+                mock(MetadataStore.class),
+                null,
+                mock(BufferAllocator.class),
+                mock(Telemetry.class),
+                mock(PhysicalIOConfiguration.class)));
+    assertThrows(
+        NullPointerException.class,
+        () ->
+            new BlockManager(
+                mock(S3URI.class),
+                mock(ObjectClient.class),
+                mock(MetadataStore.class),
+                mock(BlockCache.class),
+                null,
+                mock(Telemetry.class),
+                mock(PhysicalIOConfiguration.class)));
   }
 
   @Test
@@ -177,6 +226,169 @@ public class BlockManagerTest {
     assertEquals(1, lastRequest.getRange().getLength());
   }
 
+  @Test
+  void testMakeRangesAvailableCoalescesNearbyRanges() {
+    // Given: BM and ten narrow ranges, 99KB apart
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager = getTestBlockManager(objectClient, 8 * ONE_MB);
+    List<Range> ranges = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      ranges.add(new Range(i * 100 * ONE_KB, i * 100 * ONE_KB + ONE_KB - 1));
+    }
+
+    // When: the ranges are made available
+    blockManager.makeRangesAvailable(ranges, ReadMode.ASYNC);
+
+    // Then: a single request covers all of them
+    ArgumentCaptor<GetRequest> requestCaptor = ArgumentCaptor.forClass(GetRequest.class);
+    verify(objectClient, times(1)).getObject(requestCaptor.capture());
+    assertEquals(0, requestCaptor.getValue().getRange().getStart());
+    assertEquals(901 * ONE_KB - 1, requestCaptor.getValue().getRange().getEnd());
+  }
+
+  @Test
+  void testMakeRangesAvailableKeepsDistantRangesApart() {
+    // Given: BM with a small max gap and ten narrow ranges, 99KB apart
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager =
+        getTestBlockManager(
+            objectClient,
+            8 * ONE_MB,
+            PhysicalIOConfiguration.builder().coalesceMaxGapBytes(16 * ONE_KB).build());
+    List<Range> ranges = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      ranges.add(new Range(i * 100 * ONE_KB, i * 100 * ONE_KB + ONE_KB - 1));
+    }
+
+    // When: the ranges are made available
+    blockManager.makeRangesAvailable(ranges, ReadMode.ASYNC);
+
+    // Then: each range is fetched by its own request
+    verify(objectClient, times(10)).getObject(any());
+  }
+
+  @Test
+  void testOverlappingRangeOnlyFetchesBytesMissingFromInFlightRequests() {
+    // Given: BM with a GET for the first 64KB still in flight
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager = getTestBlockManager(objectClient, 256 * ONE_KB);
+    when(objectClient.getObject(any(), any())).thenReturn(new CompletableFuture<>());
+    blockManager.makeRangeAvailable(0, 100, ReadMode.ASYNC);
+
+    // When: another stream asks for a range overlapping it
+    blockManager.makeRangeAvailable(32 * ONE_KB, 64 * ONE_KB, ReadMode.SYNC);
+
+    // Then: the overlap attaches to the in-flight GET and only the rest is requested
+    ArgumentCaptor<GetRequest> requestCaptor = ArgumentCaptor.forClass(GetRequest.class);
+    verify(objectClient, times(2)).getObject(requestCaptor.capture(), any());
+    assertEquals(0, requestCaptor.getAllValues().get(0).getRange().getStart());
+    assertEquals(64 * ONE_KB - 1, requestCaptor.getAllValues().get(0).getRange().getEnd());
+    assertEquals(64 * ONE_KB, requestCaptor.getAllValues().get(1).getRange().getStart());
+  }
+
+  @Test
+  void testRangeCoveredByInFlightRequestIsNotFetchedAgain() {
+    // Given: BM with a GET for the first 64KB still in flight
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager = getTestBlockManager(objectClient, 256 * ONE_KB);
+    when(objectClient.getObject(any(), any())).thenReturn(new CompletableFuture<>());
+    blockManager.makeRangeAvailable(0, 64 * ONE_KB, ReadMode.ASYNC);
+
+    // When: another stream asks for a range inside it
+    blockManager.makeRangeAvailable(ONE_KB, ONE_KB, ReadMode.SYNC);
+
+    // Then: no new request is made
+    verify(objectClient, times(1)).getObject(any(), any());
+  }
+
+  @Test
+  void testConcurrentReadersFetchEachRangeOnce() throws Exception {
+    // Given: BM over 64 blocks worth of data, and 16 threads
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager = getTestBlockManager(objectClient, 64 * 64 * ONE_KB);
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    // When: every thread pins every block, starting at a different one
+    List<Future<?>> readers = new ArrayList<>();
+    for (int t = 0; t < 16; t++) {
+      int first = t * 4;
+      readers.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < 64; i++) {
+                  long pos = ((first + i) % 64) * 64L * ONE_KB;
+                  blockManager.pinBlock(pos, 64 * ONE_KB, ReadMode.SYNC).unpin();
+                }
+              }));
+    }
+    for (Future<?> reader : readers) {
+      reader.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    // Then: no byte was requested twice
+    ArgumentCaptor<GetRequest> requestCaptor = ArgumentCaptor.forClass(GetRequest.class);
+    verify(objectClient, atLeastOnce()).getObject(requestCaptor.capture());
+    long requestedBytes =
+        requestCaptor.getAllValues().stream().mapToLong(r -> r.getRange().getLength()).sum();
+    assertEquals(64 * 64 * ONE_KB, requestedBytes);
+  }
+
+  @Test
+  void testReadAttachingToRequestsOfAnotherStreamIsCountedOnce() {
+    // Given: a stream whose read issued GETs for the first 64KB, still in flight
+    PhysicalIOConfiguration configuration = getCancellingConfiguration();
+    Telemetry telemetry = spy(TestTelemetry.DEFAULT);
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager =
+        getTestBlockManager(
+            objectClient,
+            256 * ONE_KB,
+            configuration,
+            new BlockCache(TestTelemetry.DEFAULT, configuration),
+            telemetry);
+    stubInFlightRequests(objectClient);
+    blockManager.makeRangeAvailable(0, 100, ReadMode.SYNC, new StreamContext());
+
+    // When: another stream reads a range overlapping them, then a byte inside them
+    StreamContext other = new StreamContext();
+    blockManager.makeRangeAvailable(8 * ONE_KB, 64 * ONE_KB, ReadMode.SYNC, other);
+    blockManager.makeRangeAvailable(9 * ONE_KB, 1, ReadMode.SYNC, other);
+
+    // Then: the four GETs and the 56KB they serve are counted once, for the planned read
+    verify(telemetry, times(1))
+        .measure(metricNamed("block.manager.deduplicated.requests"), eq(4.0));
+    verify(telemetry, times(1))
+        .measure(metricNamed("block.manager.deduplicated.bytes"), eq(56.0 * ONE_KB));
+  }
+
+  @Test
+  void testReadAttachingToOwnReadaheadIsNotCounted() {
+    // Given: a stream whose read issued GETs for the first 64KB, still in flight
+    PhysicalIOConfiguration configuration = getCancellingConfiguration();
+    Telemetry telemetry = spy(TestTelemetry.DEFAULT);
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager =
+        getTestBlockManager(
+            objectClient,
+            256 * ONE_KB,
+            configuration,
+            new BlockCache(TestTelemetry.DEFAULT, configuration),
+            telemetry);
+    stubInFlightRequests(objectClient);
+    StreamContext stream = new StreamContext();
+    blockManager.makeRangeAvailable(0, 100, ReadMode.SYNC, stream);
+
+    // When: the same stream reads on into its readahead
+    blockManager.makeRangeAvailable(8 * ONE_KB, 64 * ONE_KB, ReadMode.SYNC, stream);
+
+    // Then: nothing is counted as deduplicated
+    verify(telemetry, never())
+        .measure(metricNamed("block.manager.deduplicated.requests"), anyDouble());
+    verify(telemetry, never())
+        .measure(metricNamed("block.manager.deduplicated.bytes"), anyDouble());
+  }
+
   @Test
   void regressionTestSequentialPrefetchShouldNotShrinkRanges() {
     // Given: BlockManager with some blocks loaded
@@ -208,6 +420,287 @@ public class BlockManagerTest {
                             "block should have been available because it was requested before")));
   }
 
+  @Test
+  void testPinBlockFetchesAndPinsBlock() {
+    // Given
+    BlockManager blockManager = getTestBlockManager(65 * ONE_KB);
+
+    // When
+    Block block = blockManager.pinBlock(100, 10, ReadMode.SYNC);
+
+    // Then
+    assertTrue(block.contains(100));
+    assertTrue(block.isPinned());
+    assertSame(block, blockManager.getBlock(100).get());
+  }
+
+  @Test
+  void testBlocksOfOtherObjectsAreEvictedWhenCacheIsFull() {
+    // Given: a cache that fits a single 64KB block, shared by two objects
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.builder().cacheMaxBytes(64 * ONE_KB).build();
+    BlockCache blockCache = new BlockCache(TestTelemetry.DEFAULT, configuration);
+    BlockManager first =
+        getTestBlockManager(mock(ObjectClient.class), 64 * ONE_KB, configuration, blockCache);
+    BlockManager second =
+        getTestBlockManager(mock(ObjectClient.class), 64 * ONE_KB, configuration, blockCache);
+
+    // When
+    first.makePositionAvailable(0, ReadMode.SYNC);
+    second.makePositionAvailable(0, ReadMode.SYNC);
+
+    // Then
+    assertFalse(first.getBlock(0).isPresent());
+    assertTrue(second.getBlock(0).isPresent());
+    assertEquals(64 * ONE_KB, blockCache.getUsedBytes());
+  }
+
+  @Test
+  void testPinnedBlocksAreNotEvicted() {
+    // Given: a cache that fits a single 64KB block, shared by two objects
+    PhysicalIOConfiguration configuration =
+        PhysicalIOConfiguration.builder().cacheMaxBytes(64 * ONE_KB).build();
+    BlockCache blockCache = new BlockCache(TestTelemetry.DEFAULT, configuration);
+    BlockManager first =
+        getTestBlockManager(mock(ObjectClient.class), 64 * ONE_KB, configuration, blockCache);
+    BlockManager second =
+        getTestBlockManager(mock(ObjectClient.class), 64 * ONE_KB, configuration, blockCache);
+
+    // When: the first block is pinned while the second one is loaded
+    Block pinned = first.pinBlock(0, 1, ReadMode.SYNC);
+    second.makePositionAvailable(0, ReadMode.SYNC);
+
+    // Then: the cache goes over budget rather than evicting the pinned block
+    assertTrue(first.getBlock(0).isPresent());
+    assertEquals(128 * ONE_KB, blockCache.getUsedBytes());
+
+    // When: the block is unpinned and a third object is loaded
+    pinned.unpin();
+    getTestBlockManager(mock(ObjectClient.class), 64 * ONE_KB, configuration, blockCache)
+        .makePositionAvailable(0, ReadMode.SYNC);
+
+    // Then
+    assertFalse(first.getBlock(0).isPresent());
+    assertEquals(64 * ONE_KB, blockCache.getUsedBytes());
+  }
+
+  @Test
+  void testCloseReleasesCacheBytes() {
+    // Given
+    PhysicalIOConfiguration configuration = PhysicalIOConfiguration.DEFAULT;
+    BlockCache blockCache = new BlockCache(TestTelemetry.DEFAULT, configuration);
+    BlockManager blockManager =
+        getTestBlockManager(mock(ObjectClient.class), 64 * ONE_KB, configuration, blockCache);
+    blockManager.makePositionAvailable(0, ReadMode.SYNC);
+
+    // When
+    blockManager.close();
+
+    // Then
+    assertEquals(0, blockCache.getUsedBytes());
+  }
+
+  @Test
+  void testReadaheadIsCancelledWhenStreamSeeksAway() {
+    // Given: a stream whose first read prefetched three blocks beyond it, still in flight
+    PhysicalIOConfiguration configuration = getCancellingConfiguration();
+    BlockCache blockCache = new BlockCache(TestTelemetry.DEFAULT, configuration);
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager =
+        getTestBlockManager(objectClient, 2 * ONE_MB, configuration, blockCache);
+    List<CompletableFuture<Integer>> requests = stubInFlightRequests(objectClient);
+    StreamContext stream = new StreamContext();
+    blockManager.recordRead(stream, 0, 100);
+    blockManager.makeRangeAvailable(0, 100, ReadMode.SYNC, stream);
+    assertEquals(4, requests.size());
+
+    // When: the stream seeks far away
+    blockManager.recordRead(stream, ONE_MB, 100);
+
+    // Then: the readahead is cancelled, but not the block holding the bytes the stream read
+    assertFalse(requests.get(0).isCancelled());
+    assertTrue(requests.get(1).isCancelled());
+    assertTrue(requests.get(2).isCancelled());
+    assertTrue(requests.get(3).isCancelled());
+    assertTrue(blockManager.getBlock(0).isPresent());
+    assertFalse(blockManager.getBlock(16 * ONE_KB).isPresent());
+    assertEquals(16 * ONE_KB, blockCache.getUsedBytes());
+  }
+
+  @Test
+  void testReadaheadIsKeptWhileStreamReadsOn() {
+    // Given: a stream whose first read prefetched blocks beyond it, still in flight
+    PhysicalIOConfiguration configuration = getCancellingConfiguration();
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager = getTestBlockManager(objectClient, 2 * ONE_MB, configuration);
+    List<CompletableFuture<Integer>> requests = stubInFlightRequests(objectClient);
+    StreamContext stream = new StreamContext();
+    blockManager.recordRead(stream, 0, 100);
+    blockManager.makeRangeAvailable(0, 100, ReadMode.SYNC, stream);
+
+    // When: the stream carries on reading where it was
+    blockManager.recordRead(stream, 100, 100);
+
+    // Then: nothing is cancelled
+    requests.forEach(request -> assertFalse(request.isCancelled()));
+  }
+
+  @Test
+  void testPlannedPrefetchIsCancelledWhenStreamCloses() {
+    // Given: a stream that prefetched a range, still in flight
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager =
+        getTestBlockManager(objectClient, 2 * ONE_MB, getCancellingConfiguration());
+    List<CompletableFuture<Integer>> requests = stubInFlightRequests(objectClient);
+    StreamContext stream = new StreamContext();
+    blockManager.recordRead(stream, 0, 100);
+    List<Range> ranges = new ArrayList<>();
+    ranges.add(new Range(ONE_MB, ONE_MB + 100));
+    blockManager.makeRangesAvailable(ranges, ReadMode.ASYNC, stream);
+
+    // When: the stream seeks to another range, and later closes
+    blockManager.recordRead(stream, ONE_MB / 2, 100);
+    assertFalse(requests.get(0).isCancelled());
+    blockManager.closeStream(stream);
+
+    // Then: the prefetch is kept until the stream closes
+    assertTrue(requests.get(0).isCancelled());
+    assertFalse(blockManager.getBlock(ONE_MB).isPresent());
+  }
+
+  @Test
+  void testPlannedPrefetchIsCancelledWhenStreamSeeksPastIt() {
+    // Given: a stream that planned prefetches of two ranges, still in flight
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager =
+        getTestBlockManager(objectClient, 2 * ONE_MB, getCancellingConfiguration());
+    List<CompletableFuture<Integer>> requests = stubInFlightRequests(objectClient);
+    StreamContext stream = new StreamContext();
+    blockManager.recordRead(stream, 0, 100);
+    List<Range> ranges = new ArrayList<>();
+    ranges.add(new Range(ONE_MB / 4, ONE_MB / 4 + 100));
+    ranges.add(new Range(ONE_MB + ONE_MB / 2, ONE_MB + ONE_MB / 2 + 100));
+    blockManager.makeRangesAvailable(ranges, ReadMode.ASYNC, stream);
+    assertEquals(8, requests.size());
+
+    // When: the stream seeks far beyond the first range, but not the second
+    blockManager.recordRead(stream, ONE_MB, 100);
+
+    // Then: only the prefetch the stream has left behind is cancelled
+    requests.subList(0, 4).forEach(request -> assertTrue(request.isCancelled()));
+    requests.subList(4, 8).forEach(request -> assertFalse(request.isCancelled()));
+    assertFalse(blockManager.getBlock(ONE_MB / 4).isPresent());
+    assertTrue(blockManager.getBlock(ONE_MB + ONE_MB / 2).isPresent());
+  }
+
+  @Test
+  void testPrefetchNearAnotherStreamIsKept() {
+    // Given: a stream that prefetched a range, and another stream reading next to it
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager =
+        getTestBlockManager(objectClient, 2 * ONE_MB, getCancellingConfiguration());
+    List<CompletableFuture<Integer>> requests = stubInFlightRequests(objectClient);
+    StreamContext stream = new StreamContext();
+    List<Range> ranges = new ArrayList<>();
+    ranges.add(new Range(ONE_MB, ONE_MB + 100));
+    blockManager.makeRangesAvailable(ranges, ReadMode.ASYNC, stream);
+    blockManager.recordRead(new StreamContext(), ONE_MB - 100, 50);
+
+    // When: the stream that prefetched the range closes
+    blockManager.closeStream(stream);
+
+    // Then: the other stream still wants the prefetch
+    assertFalse(requests.get(0).isCancelled());
+    assertTrue(blockManager.getBlock(ONE_MB).isPresent());
+  }
+
+  @Test
+  void testBackwardScanPrefetchesPrecedingRanges() {
+    // Given: a stream reading the last three 64KB chunks of the object backwards
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager = getTestBlockManager(objectClient, 2 * ONE_MB);
+    when(objectClient.getObject(any(), any())).thenReturn(new CompletableFuture<>());
+    StreamContext stream = new StreamContext();
+    for (int i = 1; i <= 3; i++) {
+      blockManager.recordRead(stream, 2 * ONE_MB - i * 64 * ONE_KB, 64 * ONE_KB);
+    }
+
+    // When
+    blockManager.prefetchPredictedReads(stream);
+
+    // Then: the four preceding chunks are prefetched with a single request
+    ArgumentCaptor<GetRequest> requestCaptor = ArgumentCaptor.forClass(GetRequest.class);
+    verify(objectClient, times(1)).getObject(requestCaptor.capture(), any());
+    GetRequest request = requestCaptor.getValue();
+    assertEquals(ReadMode.ASYNC, request.getReferrer().getReadMode());
+    assertEquals(2 * ONE_MB - 7 * 64 * ONE_KB, request.getRange().getStart());
+    assertEquals(2 * ONE_MB - 3 * 64 * ONE_KB - 1, request.getRange().getEnd());
+  }
+
+  @Test
+  void testOnlyReadsContinuingTheStreamsOwnReadsAreSequential() {
+    // Given: a stream that read the first 64KB of the object
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager = getTestBlockManager(objectClient, 16 * ONE_MB);
+    StreamContext first = new StreamContext();
+    blockManager.recordRead(first, 0, 64 * ONE_KB);
+    blockManager.makeRangeAvailable(0, 64 * ONE_KB, ReadMode.SYNC, first);
+
+    // When: another stream reads right after it, and then carries on
+    StreamContext second = new StreamContext();
+    blockManager.recordRead(second, 64 * ONE_KB, 64 * ONE_KB);
+    blockManager.makeRangeAvailable(64 * ONE_KB, 64 * ONE_KB, ReadMode.SYNC, second);
+    blockManager.recordRead(second, 128 * ONE_KB, 64 * ONE_KB);
+    blockManager.makeRangeAvailable(128 * ONE_KB, 64 * ONE_KB, ReadMode.SYNC, second);
+
+    // Then: its first read is not sequential, but the one continuing it is
+    ArgumentCaptor<GetRequest> requestCaptor = ArgumentCaptor.forClass(GetRequest.class);
+    verify(objectClient, times(3)).getObject(requestCaptor.capture());
+    List<GetRequest> requests = requestCaptor.getAllValues();
+    assertEquals(64 * ONE_KB, requests.get(1).getRange().getStart());
+    assertEquals(64 * ONE_KB, requests.get(1).getRange().getLength());
+    assertEquals(128 * ONE_KB, requests.get(2).getRange().getStart());
+    assertTrue(requests.get(2).getRange().getLength() > 64 * ONE_KB);
+  }
+
+  @Test
+  void testFailedBlockIsRemovedAndFetchedAgain() {
+    // Given: a block whose GET fails
+    ObjectClient objectClient = mock(ObjectClient.class);
+    BlockManager blockManager = getTestBlockManager(objectClient, 64 * ONE_KB);
+    CompletableFuture<Integer> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IOException("connection reset"));
+    when(objectClient.getObject(any(), any())).thenReturn(failed);
+    blockManager.makeRangeAvailable(0, 100, ReadMode.SYNC);
+
+    // When: the range is read again
+    assertFalse(blockManager.getBlock(0).isPresent());
+    blockManager.makeRangeAvailable(0, 100, ReadMode.SYNC);
+
+    // Then: it is fetched again rather than failing on the same block
+    verify(objectClient, times(2)).getObject(any(), any());
+  }
+
+  private static PhysicalIOConfiguration getCancellingConfiguration() {
+    return PhysicalIOConfiguration.builder()
+        .maxRangeSizeBytes(16 * ONE_KB)
+        .partSizeBytes(16 * ONE_KB)
+        .prefetchCancelDistanceBytes(16 * ONE_KB)
+        .build();
+  }
+
+  private static List<CompletableFuture<Integer>> stubInFlightRequests(ObjectClient objectClient) {
+    List<CompletableFuture<Integer>> requests = new ArrayList<>();
+    when(objectClient.getObject(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<Integer> request = new CompletableFuture<>();
+              requests.add(request);
+              return request;
+            });
+    return requests;
+  }
+
   private BlockManager getTestBlockManager(int size) {
     return getTestBlockManager(mock(ObjectClient.class), size);
   }
@@ -218,7 +711,27 @@ public class BlockManagerTest {
 
   private BlockManager getTestBlockManager(
       ObjectClient objectClient, int size, PhysicalIOConfiguration configuration) {
+    return getTestBlockManager(
+        objectClient, size, configuration, new BlockCache(TestTelemetry.DEFAULT, configuration));
+  }
+
+  private BlockManager getTestBlockManager(
+      ObjectClient objectClient,
+      int size,
+      PhysicalIOConfiguration configuration,
+      BlockCache blockCache) {
+    return getTestBlockManager(
+        objectClient, size, configuration, blockCache, TestTelemetry.DEFAULT);
+  }
+
+  private BlockManager getTestBlockManager(
+      ObjectClient objectClient,
+      int size,
+      PhysicalIOConfiguration configuration,
+      BlockCache blockCache,
+      Telemetry telemetry) {
     S3URI testUri = S3URI.of("foo", "bar");
+    when(objectClient.getObject(any(), any())).thenCallRealMethod();
     when(objectClient.getObject(any()))
         .thenReturn(
             CompletableFuture.completedFuture(
@@ -227,6 +740,16 @@ public class BlockManagerTest {
     MetadataStore metadataStore = mock(MetadataStore.class);
     when(metadataStore.get(any())).thenReturn(ObjectMetadata.builder().contentLength(size).build());
     return new BlockManager(
-        testUri, objectClient, metadataStore, TestTelemetry.DEFAULT, configuration);
+        testUri,
+        objectClient,
+        metadataStore,
+        blockCache,
+        HeapBufferAllocator.INSTANCE,
+        telemetry,
+        configuration);
+  }
+
+  private static Metric metricNamed(String name) {
+    return argThat(metric -> metric != null && name.equals(metric.getName()));
   }
 }
@@ -16,17 +16,24 @@
 package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import software.amazon.s3.analyticsaccelerator.TestTelemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.HeapBufferAllocator;
+import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.request.ReadMode;
 import software.amazon.s3.analyticsaccelerator.util.FakeObjectClient;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
@@ -45,7 +52,15 @@ public class BlockStoreTest {
 
     // When: a new block is added
     blockStore.add(
-        new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 3, 5, 0, ReadMode.SYNC));
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            3,
+            5,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
 
     // Then: getBlock can retrieve the same block
     Optional<Block> b = blockStore.getBlock(4);
@@ -66,11 +81,35 @@ public class BlockStoreTest {
     BlockStore blockStore = new BlockStore(TEST_URI, metadataStore);
 
     blockStore.add(
-        new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 2, 3, 0, ReadMode.SYNC));
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            2,
+            3,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
     blockStore.add(
-        new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 5, 10, 0, ReadMode.SYNC));
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            5,
+            10,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
     blockStore.add(
-        new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 12, 15, 0, ReadMode.SYNC));
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            12,
+            15,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
 
     // When & Then: we query for the next missing byte, the result is correct
     assertEquals(OptionalLong.of(0), blockStore.findNextMissingByte(0));
@@ -93,11 +132,35 @@ public class BlockStoreTest {
     BlockStore blockStore = new BlockStore(TEST_URI, metadataStore);
 
     blockStore.add(
-        new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 2, 3, 0, ReadMode.SYNC));
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            2,
+            3,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
     blockStore.add(
-        new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 5, 10, 0, ReadMode.SYNC));
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            5,
+            10,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
     blockStore.add(
-        new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 12, 15, 0, ReadMode.SYNC));
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            12,
+            15,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
 
     // When & Then: we query for the next available byte, the result is correct
     assertEquals(OptionalLong.of(2), blockStore.findNextLoadedByte(0));
@@ -130,6 +193,8 @@ public class BlockStoreTest {
     BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
     Block b1 = mock(Block.class);
     Block b2 = mock(Block.class);
+    when(b2.getStart()).thenReturn(1L);
+    when(b2.getEnd()).thenReturn(1L);
     blockStore.add(b1);
     blockStore.add(b2);
 
@@ -140,4 +205,218 @@ public class BlockStoreTest {
     // Then: 1\ blockStore.close did not throw, 2\ b2 was closed
     verify(b2, times(1)).close();
   }
+
+  @Test
+  public void test__blockStore__pinnedBlockIsNotEvicted() {
+    // Given: BlockStore with a pinned block
+    FakeObjectClient fakeObjectClient = new FakeObjectClient("test-data");
+    BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            3,
+            5,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+    blockStore.add(block);
+    assertTrue(blockStore.pinBlock(4).isPresent());
+
+    // When: the block is evicted
+    boolean evicted = blockStore.evict(block);
+
+    // Then: it is still there
+    assertFalse(evicted);
+    assertTrue(blockStore.getBlock(4).isPresent());
+  }
+
+  @Test
+  public void test__blockStore__evictedBlockIsRemoved() {
+    // Given: BlockStore with an unpinned block
+    FakeObjectClient fakeObjectClient = new FakeObjectClient("test-data");
+    BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            3,
+            5,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+    blockStore.add(block);
+
+    // When: the block is evicted
+    boolean evicted = blockStore.evict(block);
+
+    // Then: it can no longer be found or pinned
+    assertTrue(evicted);
+    assertFalse(blockStore.getBlock(4).isPresent());
+    assertFalse(blockStore.pinBlock(4).isPresent());
+  }
+
+  @Test
+  public void test__blockStore__overlappingBlockIsRejected() {
+    // Given: BlockStore with a block
+    FakeObjectClient fakeObjectClient = new FakeObjectClient("test-data");
+    BlockStore blockStore = new BlockStore(TEST_URI, mock(MetadataStore.class));
+    blockStore.add(
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            3,
+            5,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
+
+    // When & Then: blocks overlapping it cannot be added
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            blockStore.add(
+                new Block(
+                    TEST_URI,
+                    fakeObjectClient,
+                    TestTelemetry.DEFAULT,
+                    5,
+                    6,
+                    0,
+                    ReadMode.SYNC,
+                    HeapBufferAllocator.INSTANCE)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            blockStore.add(
+                new Block(
+                    TEST_URI,
+                    fakeObjectClient,
+                    TestTelemetry.DEFAULT,
+                    0,
+                    3,
+                    0,
+                    ReadMode.SYNC,
+                    HeapBufferAllocator.INSTANCE)));
+  }
+
+  @Test
+  public void test__blockStore__adjacentBlocksAreCoveredTogether() {
+    // Given: BlockStore with adjacent blocks [2-3], [4-6], [7-8] and [10-11]
+    FakeObjectClient fakeObjectClient = new FakeObjectClient("test-data-test-data");
+    MetadataStore metadataStore =
+        new MetadataStore(fakeObjectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    BlockStore blockStore = new BlockStore(TEST_URI, metadataStore);
+    blockStore.add(
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            7,
+            8,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
+    blockStore.add(
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            2,
+            3,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
+    blockStore.add(
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            10,
+            11,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE));
+    Block middle =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            4,
+            6,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+    blockStore.add(middle);
+
+    // When & Then: the missing byte after 2 is found past all adjacent blocks
+    assertEquals(OptionalLong.of(9), blockStore.findNextMissingByte(2));
+    assertEquals(OptionalLong.of(10), blockStore.findNextLoadedByte(9));
+
+    // When: the middle block is evicted
+    assertTrue(blockStore.evict(middle));
+
+    // Then: the run is split around it
+    assertEquals(OptionalLong.of(4), blockStore.findNextMissingByte(2));
+    assertEquals(OptionalLong.of(7), blockStore.findNextLoadedByte(4));
+    assertEquals(OptionalLong.of(9), blockStore.findNextMissingByte(7));
+    assertFalse(blockStore.getBlock(5).isPresent());
+  }
+
+  @Test
+  public void test__blockStore__reservedRangeIsCoveredUntilReleased() {
+    // Given: BlockStore with a reserved range [4-7]
+    FakeObjectClient fakeObjectClient = new FakeObjectClient("test-data-test-data");
+    MetadataStore metadataStore =
+        new MetadataStore(fakeObjectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    BlockStore blockStore = new BlockStore(TEST_URI, metadataStore);
+    blockStore.reserve(new Range(4, 7));
+
+    // When & Then: the range counts as present, but has no block yet
+    assertEquals(OptionalLong.of(8), blockStore.findNextMissingByte(4));
+    assertEquals(OptionalLong.of(4), blockStore.findNextLoadedByte(0));
+    assertFalse(blockStore.getBlock(5).isPresent());
+    assertThrows(IllegalArgumentException.class, () -> blockStore.reserve(new Range(6, 9)));
+
+    // When: the reservation is released
+    blockStore.release(new Range(4, 7));
+
+    // Then: the range is missing again, and waiting on it returns immediately
+    assertEquals(OptionalLong.of(4), blockStore.findNextMissingByte(4));
+    blockStore.awaitReservation(5);
+  }
+
+  @Test
+  public void test__blockStore__blockFulfilsReservation() throws Exception {
+    // Given: BlockStore with a reserved range [4-7] and a reader waiting on it
+    FakeObjectClient fakeObjectClient = new FakeObjectClient("test-data-test-data");
+    MetadataStore metadataStore =
+        new MetadataStore(fakeObjectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    BlockStore blockStore = new BlockStore(TEST_URI, metadataStore);
+    blockStore.reserve(new Range(4, 7));
+    CompletableFuture<Void> waiter =
+        CompletableFuture.runAsync(() -> blockStore.awaitReservation(5));
+
+    // When: the block of the range is added
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            4,
+            7,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+    blockStore.add(block);
+
+    // Then: the reader is released and finds the block
+    waiter.get(5, TimeUnit.SECONDS);
+    assertEquals(Optional.of(block), blockStore.getBlock(5));
+    assertEquals(OptionalLong.of(8), blockStore.findNextMissingByte(4));
+  }
 }
+
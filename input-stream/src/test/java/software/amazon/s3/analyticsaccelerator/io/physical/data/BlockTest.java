@@ -16,11 +16,23 @@
 package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import software.amazon.s3.analyticsaccelerator.TestTelemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.DirectBufferAllocator;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.HeapBufferAllocator;
 import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
 import software.amazon.s3.analyticsaccelerator.request.ReadMode;
 import software.amazon.s3.analyticsaccelerator.util.FakeObjectClient;
@@ -45,7 +57,8 @@ public class BlockTest {
             0,
             TEST_DATA.length(),
             0,
-            ReadMode.SYNC);
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
 
     // When: bytes are requested from the block
     int r1 = block.read(0);
@@ -58,6 +71,33 @@ public class BlockTest {
     assertEquals(45, r3); // '-' = 45
   }
 
+  @Test
+  public void testReadsOfAHungFetchFailOnceTheReadTimeoutHasPassed() {
+    // Given: a Block whose fetch never completes
+    ObjectClient objectClient = mock(ObjectClient.class);
+    when(objectClient.getObject(any(), any(ByteBuffer.class)))
+        .thenReturn(new CompletableFuture<>());
+    Block block =
+        new Block(
+            TEST_URI,
+            objectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            9,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE,
+            10,
+            null);
+
+    // When & Then: reads give up on it
+    CompletionException e = assertThrows(CompletionException.class, () -> block.read(0));
+    assertInstanceOf(TimeoutException.class, e.getCause());
+    e = assertThrows(CompletionException.class, () -> block.read(new byte[4], 0, 4, 0));
+    assertInstanceOf(TimeoutException.class, e.getCause());
+    assertFalse(block.isLoaded());
+  }
+
   @Test
   public void testBufferedReadReturnsCorrectBytes() {
     // Given: a Block containing "test-data"
@@ -71,7 +111,8 @@ public class BlockTest {
             0,
             TEST_DATA.length(),
             0,
-            ReadMode.SYNC);
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
 
     // When: bytes are requested from the block
     byte[] b1 = new byte[4];
@@ -87,6 +128,83 @@ public class BlockTest {
     assertEquals("data", new String(b2, StandardCharsets.UTF_8));
   }
 
+  @Test
+  public void testByteBufferReadReturnsCorrectBytes() {
+    // Given: a heap Block and a direct Block containing "test-data"
+    final String TEST_DATA = "test-data";
+    ObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+    Block heapBlock =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            TEST_DATA.length() - 1,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+    Block directBlock =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            TEST_DATA.length() - 1,
+            0,
+            ReadMode.SYNC,
+            new DirectBufferAllocator(TestTelemetry.DEFAULT));
+
+    // When: bytes are requested into buffers of the opposite kind, the last one running off the end
+    ByteBuffer direct = ByteBuffer.allocateDirect(4);
+    int r1 = heapBlock.read(direct, 0);
+    ByteBuffer heap = ByteBuffer.allocate(8);
+    int r2 = directBlock.read(heap, 5);
+
+    // Then: they are the correct bytes, and the buffers are advanced by the bytes read
+    assertEquals(4, r1);
+    assertEquals(4, direct.position());
+    direct.flip();
+    assertEquals("test", StandardCharsets.UTF_8.decode(direct).toString());
+
+    assertEquals(4, r2);
+    assertEquals(4, heap.position());
+    heap.flip();
+    assertEquals("data", StandardCharsets.UTF_8.decode(heap).toString());
+
+    directBlock.close();
+  }
+
+  @Test
+  public void testReadViewSharesTheBytesOfTheBlock() {
+    // Given: a Block containing "test-data"
+    final String TEST_DATA = "test-data";
+    ObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            TEST_DATA.length() - 1,
+            0,
+            ReadMode.SYNC,
+            new DirectBufferAllocator(TestTelemetry.DEFAULT));
+
+    // When: views are requested, the last one running off the end
+    ByteBuffer head = block.readView(0, 4);
+    ByteBuffer tail = block.readView(5, 8);
+
+    // Then: they are read-only views of the correct bytes
+    assertTrue(head.isReadOnly());
+    assertTrue(head.isDirect());
+    assertEquals("test", StandardCharsets.UTF_8.decode(head).toString());
+    assertEquals("data", StandardCharsets.UTF_8.decode(tail).toString());
+    assertThrows(IllegalArgumentException.class, () -> block.readView(TEST_DATA.length(), 1));
+    assertThrows(IllegalArgumentException.class, () -> block.readView(0, -1));
+
+    block.close();
+  }
+
   @Test
   void testNulls() {
     final String TEST_DATA = "test-data";
@@ -101,20 +219,44 @@ public class BlockTest {
                 0,
                 TEST_DATA.length(),
                 0,
-                ReadMode.SYNC));
+                ReadMode.SYNC,
+                HeapBufferAllocator.INSTANCE));
     assertThrows(
         NullPointerException.class,
         () ->
             new Block(
-                TEST_URI, null, TestTelemetry.DEFAULT, 0, TEST_DATA.length(), 0, ReadMode.SYNC));
+                TEST_URI,
+                null,
+                TestTelemetry.DEFAULT,
+                0,
+                TEST_DATA.length(),
+                0,
+                ReadMode.SYNC,
+                HeapBufferAllocator.INSTANCE));
     assertThrows(
         NullPointerException.class,
-        () -> new Block(TEST_URI, fakeObjectClient, null, 0, TEST_DATA.length(), 0, ReadMode.SYNC));
+        () ->
+            new Block(
+                TEST_URI,
+                fakeObjectClient,
+                null,
+                0,
+                TEST_DATA.length(),
+                0,
+                ReadMode.SYNC,
+                HeapBufferAllocator.INSTANCE));
     assertThrows(
         NullPointerException.class,
         () ->
             new Block(
-                TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 0, TEST_DATA.length(), 0, null));
+                TEST_URI,
+                fakeObjectClient,
+                TestTelemetry.DEFAULT,
+                0,
+                TEST_DATA.length(),
+                0,
+                null,
+                HeapBufferAllocator.INSTANCE));
   }
 
   @Test
@@ -131,19 +273,44 @@ public class BlockTest {
                 -1,
                 TEST_DATA.length(),
                 0,
-                ReadMode.SYNC));
+                ReadMode.SYNC,
+                HeapBufferAllocator.INSTANCE));
     assertThrows(
         IllegalArgumentException.class,
         () ->
-            new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 0, -5, 0, ReadMode.SYNC));
+            new Block(
+                TEST_URI,
+                fakeObjectClient,
+                TestTelemetry.DEFAULT,
+                0,
+                -5,
+                0,
+                ReadMode.SYNC,
+                HeapBufferAllocator.INSTANCE));
     assertThrows(
         IllegalArgumentException.class,
         () ->
-            new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 20, 1, 0, ReadMode.SYNC));
+            new Block(
+                TEST_URI,
+                fakeObjectClient,
+                TestTelemetry.DEFAULT,
+                20,
+                1,
+                0,
+                ReadMode.SYNC,
+                HeapBufferAllocator.INSTANCE));
     assertThrows(
         IllegalArgumentException.class,
         () ->
-            new Block(TEST_URI, fakeObjectClient, TestTelemetry.DEFAULT, 0, 5, -1, ReadMode.SYNC));
+            new Block(
+                TEST_URI,
+                fakeObjectClient,
+                TestTelemetry.DEFAULT,
+                0,
+                5,
+                -1,
+                ReadMode.SYNC,
+                HeapBufferAllocator.INSTANCE));
     assertThrows(
         IllegalArgumentException.class,
         () ->
@@ -154,7 +321,8 @@ public class BlockTest {
                 -5,
                 0,
                 TEST_DATA.length(),
-                ReadMode.SYNC));
+                ReadMode.SYNC,
+                HeapBufferAllocator.INSTANCE));
   }
 
   @Test
@@ -170,12 +338,15 @@ public class BlockTest {
             0,
             TEST_DATA.length(),
             0,
-            ReadMode.SYNC);
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
     assertThrows(IllegalArgumentException.class, () -> block.read(-10));
     assertThrows(NullPointerException.class, () -> block.read(null, 0, 3, 1));
     assertThrows(IllegalArgumentException.class, () -> block.read(b, -5, 3, 1));
     assertThrows(IllegalArgumentException.class, () -> block.read(b, 0, -5, 1));
     assertThrows(IllegalArgumentException.class, () -> block.read(b, 10, 3, 1));
+    assertThrows(NullPointerException.class, () -> block.read(null, 1));
+    assertThrows(IllegalArgumentException.class, () -> block.read(ByteBuffer.allocate(4), -5));
   }
 
   @Test
@@ -190,7 +361,8 @@ public class BlockTest {
             0,
             TEST_DATA.length(),
             0,
-            ReadMode.SYNC);
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
     assertTrue(block.contains(0));
     assertFalse(block.contains(TEST_DATA.length() + 1));
   }
@@ -207,7 +379,8 @@ public class BlockTest {
             0,
             TEST_DATA.length(),
             0,
-            ReadMode.SYNC);
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
     assertThrows(IllegalArgumentException.class, () -> block.contains(-1));
   }
 
@@ -223,8 +396,296 @@ public class BlockTest {
             0,
             TEST_DATA.length(),
             0,
-            ReadMode.SYNC);
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
     block.close();
     block.close();
   }
+
+  @Test
+  void testPinnedBlockCannotBeEvicted() {
+    final String TEST_DATA = "test-data";
+    ObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            TEST_DATA.length(),
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+
+    assertTrue(block.tryPin());
+    assertTrue(block.isPinned());
+    assertFalse(block.tryEvict());
+
+    block.unpin();
+    assertFalse(block.isPinned());
+    assertTrue(block.tryEvict());
+    assertFalse(block.tryPin());
+  }
+
+  @Test
+  void testUnpinWithoutPinThrows() {
+    final String TEST_DATA = "test-data";
+    ObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            TEST_DATA.length(),
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+
+    assertThrows(IllegalStateException.class, block::unpin);
+  }
+
+  @Test
+  void testDirectStorageReadsCorrectBytesAndFreesOnClose() {
+    // Given: a Block containing "test-data" stored off-heap
+    final String TEST_DATA = "test-data";
+    ObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+    DirectBufferAllocator allocator = new DirectBufferAllocator(TestTelemetry.DEFAULT);
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            TEST_DATA.length() - 1,
+            0,
+            ReadMode.SYNC,
+            allocator);
+
+    // When: bytes are requested from the block
+    byte[] b1 = new byte[4];
+    int r1 = block.read(b1, 0, b1.length, 5);
+
+    // Then: they are the correct bytes, and the memory is freed when the block is closed
+    assertEquals(116, block.read(0));
+    assertEquals(4, r1);
+    assertEquals("data", new String(b1, StandardCharsets.UTF_8));
+    assertEquals(TEST_DATA.length(), allocator.getUsedBytes());
+
+    block.close();
+    assertEquals(0, allocator.getUsedBytes());
+  }
+
+  @Test
+  void testPinnedBlockIsFreedOnLastUnpin() {
+    // Given: a pinned Block stored off-heap
+    final String TEST_DATA = "test-data";
+    ObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+    DirectBufferAllocator allocator = new DirectBufferAllocator(TestTelemetry.DEFAULT);
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            TEST_DATA.length() - 1,
+            0,
+            ReadMode.SYNC,
+            allocator);
+    assertTrue(block.tryPin());
+
+    // When: the block is closed while pinned
+    block.close();
+
+    // Then: the data stays readable until the pin is released
+    assertEquals(TEST_DATA.length(), allocator.getUsedBytes());
+    assertEquals(97, block.read(TEST_DATA.length() - 1));
+
+    block.unpin();
+    assertEquals(0, allocator.getUsedBytes());
+    assertFalse(block.tryPin());
+  }
+
+  @Test
+  void testBlockCannotBeEvictedWhileLoading() {
+    // Given: a Block whose data never arrives
+    ObjectClient objectClient = mock(ObjectClient.class);
+    when(objectClient.getObject(any())).thenReturn(new CompletableFuture<>());
+    when(objectClient.getObject(any(), any())).thenCallRealMethod();
+    Block block =
+        new Block(
+            TEST_URI,
+            objectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            10,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+
+    // When & Then: the block is held by the fetch until it completes
+    assertTrue(block.isPinned());
+    assertFalse(block.tryEvict());
+
+    block.close();
+    assertFalse(block.isPinned());
+    assertFalse(block.tryPin());
+  }
+
+  @Test
+  void testClosingLoadingBlockCancelsRequestAndFreesBuffer() {
+    // Given: a Block stored off-heap whose data never arrives
+    ObjectClient objectClient = mock(ObjectClient.class);
+    CompletableFuture<Integer> request = new CompletableFuture<>();
+    when(objectClient.getObject(any(), any())).thenReturn(request);
+    DirectBufferAllocator allocator = new DirectBufferAllocator(TestTelemetry.DEFAULT);
+    Block block =
+        new Block(
+            TEST_URI, objectClient, TestTelemetry.DEFAULT, 0, 10, 0, ReadMode.SYNC, allocator);
+    assertEquals(11, allocator.getUsedBytes());
+
+    // When: the block is closed
+    block.close();
+
+    // Then: the request is cancelled and the memory freed
+    assertTrue(request.isCancelled());
+    assertEquals(0, allocator.getUsedBytes());
+  }
+
+  @Test
+  void testBlockCanOnlyBeCancelledWhileLoadingAndNotPinned() {
+    // Given: two Blocks whose data never arrives, one of them pinned by a reader
+    ObjectClient objectClient = mock(ObjectClient.class);
+    CompletableFuture<Integer> request = new CompletableFuture<>();
+    when(objectClient.getObject(any(), any()))
+        .thenReturn(request)
+        .thenReturn(new CompletableFuture<>());
+    Block block =
+        new Block(
+            TEST_URI,
+            objectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            10,
+            0,
+            ReadMode.ASYNC,
+            HeapBufferAllocator.INSTANCE);
+    Block pinned =
+        new Block(
+            TEST_URI,
+            objectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            10,
+            0,
+            ReadMode.ASYNC,
+            HeapBufferAllocator.INSTANCE);
+    assertTrue(pinned.tryPin());
+
+    // When & Then: only the unpinned block is cancelled, and closing it aborts its request
+    assertFalse(pinned.tryCancel());
+    assertTrue(block.tryCancel());
+    assertFalse(block.tryPin());
+    block.close();
+    assertTrue(request.isCancelled());
+    assertFalse(block.tryCancel());
+  }
+
+  @Test
+  void testLoadedBlockCannotBeCancelled() {
+    // Given: a loaded Block
+    final String TEST_DATA = "test-data";
+    Block block =
+        new Block(
+            TEST_URI,
+            new FakeObjectClient(TEST_DATA),
+            TestTelemetry.DEFAULT,
+            0,
+            TEST_DATA.length() - 1,
+            0,
+            ReadMode.ASYNC,
+            HeapBufferAllocator.INSTANCE);
+    block.whenLoaded().join();
+
+    // When & Then
+    assertFalse(block.tryCancel());
+  }
+
+  @Test
+  void testReadReturnsAsSoonAsItsBytesArrive() throws Exception {
+    // Given: a Block of 10 bytes whose response is still arriving
+    ObjectClient objectClient = mock(ObjectClient.class);
+    CompletableFuture<Integer> request = new CompletableFuture<>();
+    ArgumentCaptor<ByteBuffer> destination = ArgumentCaptor.forClass(ByteBuffer.class);
+    when(objectClient.getObject(any(), destination.capture())).thenReturn(request);
+    Block block =
+        new Block(
+            TEST_URI,
+            objectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            9,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+    assertTrue(block.tryPin());
+    CompletableFuture<byte[]> read =
+        CompletableFuture.supplyAsync(
+            () -> {
+              byte[] buf = new byte[4];
+              block.read(buf, 0, 4, 0);
+              return buf;
+            });
+
+    // When: the first 4 bytes arrive
+    ByteBuffer buffer = destination.getValue();
+    synchronized (buffer) {
+      buffer.put("0123".getBytes(StandardCharsets.UTF_8));
+      buffer.notifyAll();
+    }
+
+    // Then: the read completes while the block is still loading
+    assertEquals("0123", new String(read.get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+    assertFalse(block.isLoaded());
+
+    // When: bytes past those that arrived are read, they wait for the rest of the response
+    CompletableFuture<Integer> tail = CompletableFuture.supplyAsync(() -> block.read(8));
+    assertFalse(tail.isDone());
+    synchronized (buffer) {
+      buffer.put("456789".getBytes(StandardCharsets.UTF_8));
+      buffer.notifyAll();
+    }
+    request.complete(10);
+
+    // Then
+    assertEquals((int) '8', tail.get(5, TimeUnit.SECONDS));
+    assertTrue(block.isLoaded());
+    block.unpin();
+  }
+
+  @Test
+  void testPartialReadFailsWhenRequestFails() {
+    // Given: a Block whose response fails before the bytes of a read arrive
+    ObjectClient objectClient = mock(ObjectClient.class);
+    CompletableFuture<Integer> request = new CompletableFuture<>();
+    when(objectClient.getObject(any(), any())).thenReturn(request);
+    Block block =
+        new Block(
+            TEST_URI,
+            objectClient,
+            TestTelemetry.DEFAULT,
+            0,
+            9,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+    CompletableFuture<Integer> read = CompletableFuture.supplyAsync(() -> block.read(5));
+
+    // When
+    request.completeExceptionally(new IllegalStateException("connection reset"));
+
+    // Then: the waiting read fails instead of hanging
+    assertThrows(ExecutionException.class, () -> read.get(5, TimeUnit.SECONDS));
+  }
 }
+
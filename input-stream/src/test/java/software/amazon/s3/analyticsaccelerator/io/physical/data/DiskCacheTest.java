@@ -0,0 +1,276 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.s3.analyticsaccelerator.TestTelemetry;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.HeapBufferAllocator;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.request.Referrer;
+import software.amazon.s3.analyticsaccelerator.util.FakeObjectClient;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class DiskCacheTest {
+  private static final S3URI TEST_URI = S3URI.of("foo", "bar");
+  private static final String TEST_DATA = "0123456789";
+  private static final String TEST_ETAG = "\"etag-1\"";
+
+  @TempDir Path tempDir;
+  private final FakeObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+  private final MetadataStore metadataStore = mock(MetadataStore.class);
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private DiskCache diskCache;
+
+  @AfterEach
+  void tearDown() {
+    if (diskCache != null) {
+      diskCache.close();
+    }
+  }
+
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(
+        NullPointerException.class,
+        () -> new DiskCache(null, mock(Telemetry.class), mock(PhysicalIOConfiguration.class)));
+    assertThrows(
+        NullPointerException.class,
+        () -> new DiskCache(metadataStore, null, mock(PhysicalIOConfiguration.class)));
+    assertThrows(
+        NullPointerException.class,
+        () -> new DiskCache(metadataStore, mock(Telemetry.class), null));
+  }
+
+  @Test
+  void testSpilledBlockIsReadFromDisk() throws Exception {
+    // Given: a block spilled to disk
+    diskCache = createDiskCache(1024);
+    setEtag(TEST_ETAG);
+    assertTrue(diskCache.spill(createEvictedBlock(0, 9)));
+    drain();
+    assertEquals(10, diskCache.getUsedBytes());
+
+    // When: a fetch for part of it goes through the caching client
+    DiskCachingObjectClient client = new DiskCachingObjectClient(fakeObjectClient, diskCache);
+    ByteBuffer destination = ByteBuffer.allocate(4);
+    int bytesRead = client.getObject(getRequest(3, 6), destination).join();
+
+    // Then: the bytes come from disk
+    assertEquals(4, bytesRead);
+    assertEquals("3456", new String(destination.array(), StandardCharsets.UTF_8));
+    assertEquals(1, fakeObjectClient.getGetRequestCount().get());
+  }
+
+  @Test
+  void testNewVersionOfObjectMisses() throws Exception {
+    // Given: a block spilled under the first version of the object
+    diskCache = createDiskCache(1024);
+    setEtag(TEST_ETAG);
+    assertTrue(diskCache.spill(createEvictedBlock(0, 9)));
+    drain();
+
+    // When: the object changes
+    setEtag("\"etag-2\"");
+
+    // Then: the stale data is not served
+    assertFalse(diskCache.read(TEST_URI, new Range(0, 9), ByteBuffer.allocate(10)).isPresent());
+  }
+
+  @Test
+  void testUnknownVersionIsNotSpilled() {
+    // Given
+    diskCache = createDiskCache(1024);
+    setEtag(null);
+
+    // When / Then
+    assertFalse(diskCache.spill(createEvictedBlock(0, 9)));
+  }
+
+  @Test
+  void testUncachedMetadataIsNotFetched() {
+    // Given: a disk cache whose metadata store does not know the object
+    diskCache = createDiskCache(1024);
+
+    // When
+    boolean spilled = diskCache.spill(createEvictedBlock(0, 9));
+
+    // Then: the block is not spilled, and no HEAD is made to learn the version
+    assertFalse(spilled);
+    assertFalse(diskCache.read(TEST_URI, new Range(0, 9), ByteBuffer.allocate(10)).isPresent());
+    verify(metadataStore, never()).asyncGet(any(S3URI.class));
+    verify(metadataStore, never()).get(any(S3URI.class));
+  }
+
+  @Test
+  void testBlockOverlappingSpilledBlockIsNotSpilled() throws Exception {
+    // Given: a block spilled to disk
+    diskCache = createDiskCache(1024);
+    setEtag(TEST_ETAG);
+    assertTrue(diskCache.spill(createEvictedBlock(2, 5)));
+    drain();
+
+    // When: blocks overlapping it, and one next to it, are evicted
+    boolean overlappingSpilled = diskCache.spill(createEvictedBlock(0, 9));
+    boolean adjacentSpilled = diskCache.spill(createEvictedBlock(6, 9));
+    drain();
+
+    // Then: only the block next to it is spilled, and each range is served by the entry holding it
+    assertFalse(overlappingSpilled);
+    assertTrue(adjacentSpilled);
+    assertEquals(8, diskCache.getUsedBytes());
+    assertTrue(diskCache.read(TEST_URI, new Range(3, 5), ByteBuffer.allocate(3)).isPresent());
+    assertTrue(diskCache.read(TEST_URI, new Range(7, 9), ByteBuffer.allocate(3)).isPresent());
+    assertFalse(diskCache.read(TEST_URI, new Range(0, 3), ByteBuffer.allocate(4)).isPresent());
+  }
+
+  @Test
+  void testCorruptedEntryFallsBackToObjectStore() throws Exception {
+    // Given: a spilled block whose file is then corrupted
+    diskCache = createDiskCache(1024);
+    setEtag(TEST_ETAG);
+    assertTrue(diskCache.spill(createEvictedBlock(0, 9)));
+    drain();
+    try (Stream<Path> files = Files.list(diskCache.getDirectory())) {
+      Path file = files.findFirst().get();
+      Files.write(file, "xxxxxxxxxx".getBytes(StandardCharsets.UTF_8), StandardOpenOption.WRITE);
+    }
+
+    // When
+    DiskCachingObjectClient client = new DiskCachingObjectClient(fakeObjectClient, diskCache);
+    ByteBuffer destination = ByteBuffer.allocate(10);
+    int bytesRead = client.getObject(getRequest(0, 9), destination).join();
+
+    // Then: the corrupted bytes are never returned, and the entry is dropped
+    assertEquals(10, bytesRead);
+    assertEquals(TEST_DATA, new String(destination.array(), StandardCharsets.UTF_8));
+    assertEquals(2, fakeObjectClient.getGetRequestCount().get());
+    assertEquals(0, diskCache.getUsedBytes());
+  }
+
+  @Test
+  void testEntriesAreEvictedOverBudget() throws Exception {
+    // Given: a disk budget fitting one block
+    diskCache = createDiskCache(5);
+    setEtag(TEST_ETAG);
+
+    // When
+    assertTrue(diskCache.spill(createEvictedBlock(0, 4)));
+    assertTrue(diskCache.spill(createEvictedBlock(5, 9)));
+    drain();
+
+    // Then: only the last block is left
+    assertEquals(5, diskCache.getUsedBytes());
+    assertFalse(diskCache.read(TEST_URI, new Range(0, 4), ByteBuffer.allocate(5)).isPresent());
+    Optional<CompletableFuture<Integer>> hit =
+        diskCache.read(TEST_URI, new Range(5, 9), ByteBuffer.allocate(5));
+    assertTrue(hit.isPresent());
+    assertEquals(5, hit.get().join());
+  }
+
+  @Test
+  void testCloseRemovesDirectory() {
+    // Given
+    diskCache = createDiskCache(1024);
+    Path directory = diskCache.getDirectory();
+
+    // When
+    diskCache.close();
+
+    // Then
+    assertFalse(Files.exists(directory));
+  }
+
+  private DiskCache createDiskCache(long maxBytes) {
+    try {
+      return new DiskCache(
+          metadataStore,
+          TestTelemetry.DEFAULT,
+          PhysicalIOConfiguration.builder()
+              .diskCacheDirectory(tempDir.toString())
+              .diskCacheMaxBytes(maxBytes)
+              .build(),
+          executor);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void setEtag(String etag) {
+    when(metadataStore.getIfPresent(TEST_URI))
+        .thenReturn(
+            Optional.of(
+                ObjectMetadata.builder().contentLength(TEST_DATA.length()).etag(etag).build()));
+  }
+
+  private Block createEvictedBlock(long start, long end) {
+    Block block =
+        new Block(
+            TEST_URI,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            start,
+            end,
+            0,
+            ReadMode.SYNC,
+            HeapBufferAllocator.INSTANCE);
+    block.whenLoaded().join();
+    assertTrue(block.tryEvict());
+    return block;
+  }
+
+  private GetRequest getRequest(long start, long end) {
+    Range range = new Range(start, end);
+    return GetRequest.builder()
+        .s3Uri(TEST_URI)
+        .range(range)
+        .referrer(new Referrer(range.toHttpString(), ReadMode.SYNC))
+        .build();
+  }
+
+  // The executor is single threaded, so this waits for all the work submitted before
+  private void drain() throws Exception {
+    executor.submit(() -> {}).get();
+  }
+}
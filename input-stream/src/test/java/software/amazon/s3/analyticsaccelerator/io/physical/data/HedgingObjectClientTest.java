@@ -0,0 +1,214 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static software.amazon.s3.analyticsaccelerator.util.Constants.ONE_MB;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.s3.analyticsaccelerator.TestTelemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.HeapBufferAllocator;
+import software.amazon.s3.analyticsaccelerator.io.physical.buffer.PooledBufferAllocator;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.request.Referrer;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class HedgingObjectClientTest {
+  private static final S3URI TEST_URI = S3URI.of("foo", "bar");
+  private static final int WARM_UP_REQUESTS = 32;
+  private static final long WAIT_MILLIS = 5_000;
+
+  private final List<ByteBuffer> destinations = Collections.synchronizedList(new ArrayList<>());
+  private final List<CompletableFuture<Integer>> pending =
+      Collections.synchronizedList(new ArrayList<>());
+  private final ObjectClient objectClient = mock(ObjectClient.class);
+  private final PooledBufferAllocator bufferAllocator =
+      new PooledBufferAllocator(
+          HeapBufferAllocator.INSTANCE, TestTelemetry.DEFAULT, ONE_MB, ONE_MB);
+  private final HedgingObjectClient client =
+      new HedgingObjectClient(
+          objectClient,
+          bufferAllocator,
+          TestTelemetry.DEFAULT,
+          PhysicalIOConfiguration.builder().hedgingEnabled(true).hedgingBudgetRatio(1).build());
+
+  HedgingObjectClientTest() {
+    when(objectClient.getObject(any(GetRequest.class), any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<Integer> future = new CompletableFuture<>();
+              destinations.add(invocation.getArgument(1));
+              pending.add(future);
+              return future;
+            });
+  }
+
+  @AfterEach
+  void tearDown() {
+    client.close();
+  }
+
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(
+        NullPointerException.class,
+        () ->
+            new HedgingObjectClient(
+                null, bufferAllocator, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT));
+    assertThrows(
+        NullPointerException.class,
+        () ->
+            new HedgingObjectClient(
+                objectClient, null, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT));
+    assertThrows(
+        NullPointerException.class,
+        () ->
+            new HedgingObjectClient(
+                objectClient, bufferAllocator, null, PhysicalIOConfiguration.DEFAULT));
+    assertThrows(
+        NullPointerException.class,
+        () -> new HedgingObjectClient(objectClient, bufferAllocator, TestTelemetry.DEFAULT, null));
+  }
+
+  @Test
+  void testStalledReadIsHedgedAndTheHedgeWins() throws Exception {
+    // Given: a stalled read
+    warmUp();
+    ByteBuffer destination = ByteBuffer.allocate(10);
+    CompletableFuture<Integer> result = client.getObject(get(ReadMode.SYNC), destination);
+    CompletableFuture<Integer> primary = pending.get(WARM_UP_REQUESTS);
+
+    // When: its hedge is issued and completes
+    awaitRequests(WARM_UP_REQUESTS + 2);
+    ByteBuffer hedgeBuffer = destinations.get(WARM_UP_REQUESTS + 1);
+    assertNotSame(destination, hedgeBuffer);
+    hedgeBuffer.put(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+    pending.get(WARM_UP_REQUESTS + 1).complete(10);
+
+    // Then: the read gets the bytes of the hedge, the original request is cancelled, and the
+    // buffer of the hedge is given back
+    assertEquals(10, result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    assertEquals(10, destination.position());
+    assertEquals(10, destination.get(9));
+    assertTrue(primary.isCancelled());
+    assertEquals(1, bufferAllocator.getMisses());
+    assertEquals(0, bufferAllocator.getOutstandingLeases());
+  }
+
+  @Test
+  void testHedgeIsCancelledWhenTheOriginalRequestWins() throws Exception {
+    // Given: a stalled read that was hedged
+    warmUp();
+    ByteBuffer destination = ByteBuffer.allocate(10);
+    CompletableFuture<Integer> result = client.getObject(get(ReadMode.SYNC), destination);
+    awaitRequests(WARM_UP_REQUESTS + 2);
+
+    // When: the original request completes first
+    pending.get(WARM_UP_REQUESTS).complete(10);
+
+    // Then: the hedge is cancelled, and its buffer given back
+    assertEquals(10, result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    assertTrue(pending.get(WARM_UP_REQUESTS + 1).isCancelled());
+    assertEquals(0, bufferAllocator.getOutstandingLeases());
+  }
+
+  @Test
+  void testPrefetchesAndReadsReceivingBytesAreNotHedged() throws Exception {
+    // Given
+    warmUp();
+
+    // When: a prefetch stalls, and a read receives its first bytes
+    client.getObject(get(ReadMode.ASYNC), ByteBuffer.allocate(10));
+    ByteBuffer destination = ByteBuffer.allocate(10);
+    client.getObject(get(ReadMode.SYNC), destination);
+    synchronized (destination) {
+      destination.put((byte) 1);
+    }
+    Thread.sleep(100);
+
+    // Then: neither is hedged
+    assertEquals(WARM_UP_REQUESTS + 2, pending.size());
+  }
+
+  @Test
+  void testReadsAreNotHedgedWithoutBudget() throws Exception {
+    // Given: a client with no budget for hedges
+    HedgingObjectClient noBudget =
+        new HedgingObjectClient(
+            objectClient,
+            bufferAllocator,
+            TestTelemetry.DEFAULT,
+            PhysicalIOConfiguration.builder().hedgingEnabled(true).hedgingBudgetRatio(0).build());
+    try {
+      for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+        noBudget.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(10));
+        pending.get(i).complete(10);
+      }
+
+      // When: a read stalls
+      noBudget.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(10));
+      Thread.sleep(100);
+
+      // Then
+      assertEquals(WARM_UP_REQUESTS + 1, pending.size());
+    } finally {
+      noBudget.close();
+    }
+  }
+
+  private void warmUp() {
+    // Enough requests complete for the client to know their latency, and earn budget
+    for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+      client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(10));
+      pending.get(i).complete(10);
+    }
+  }
+
+  private void awaitRequests(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+    while (pending.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(count, pending.size());
+  }
+
+  private static GetRequest get(ReadMode readMode) {
+    Range range = new Range(0, 9);
+    return GetRequest.builder()
+        .s3Uri(TEST_URI)
+        .range(range)
+        .referrer(new Referrer(range.toHttpString(), readMode))
+        .build();
+  }
+}
@@ -15,6 +15,7 @@
  */
 package software.amazon.s3.analyticsaccelerator.io.physical.data;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.mock;
@@ -22,7 +23,10 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 import org.junit.jupiter.api.Test;
 import software.amazon.s3.analyticsaccelerator.TestTelemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
@@ -52,6 +56,112 @@ public class MetadataStoreTest {
     verify(objectClient, times(1)).headObject(any());
   }
 
+  @Test
+  public void test__get__hungRequestTimesOutAndIsNotCached() {
+    // Given: a MetadataStore whose first HEAD never completes
+    ObjectClient objectClient = mock(ObjectClient.class);
+    when(objectClient.headObject(any()))
+        .thenReturn(new CompletableFuture<>())
+        .thenReturn(CompletableFuture.completedFuture(mock(ObjectMetadata.class)));
+    MetadataStore metadataStore =
+        new MetadataStore(
+            objectClient,
+            TestTelemetry.DEFAULT,
+            PhysicalIOConfiguration.builder().readTimeoutMillis(10).build());
+    S3URI key = S3URI.of("foo", "bar");
+
+    // When: get(..) is called
+    CompletionException e = assertThrows(CompletionException.class, () -> metadataStore.get(key));
+
+    // Then: it times out, and the next call issues a new HEAD
+    assertInstanceOf(TimeoutException.class, e.getCause());
+    assertNotNull(metadataStore.get(key));
+    verify(objectClient, times(2)).headObject(any());
+  }
+
+  @Test
+  public void test__get__failedRequestIsNotCached() {
+    // Given: a MetadataStore whose first HEAD fails
+    ObjectClient objectClient = mock(ObjectClient.class);
+    CompletableFuture<ObjectMetadata> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException("connection reset"));
+    when(objectClient.headObject(any()))
+        .thenReturn(failed)
+        .thenReturn(CompletableFuture.completedFuture(mock(ObjectMetadata.class)));
+    MetadataStore metadataStore =
+        new MetadataStore(objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    S3URI key = S3URI.of("foo", "bar");
+
+    // When: get(..) is called
+    assertThrows(CompletionException.class, () -> metadataStore.get(key));
+
+    // Then: the next call issues a new HEAD
+    assertNotNull(metadataStore.get(key));
+    verify(objectClient, times(2)).headObject(any());
+  }
+
+  @Test
+  public void test__get__expiredMetadataIsFetchedAgain() throws InterruptedException {
+    // Given: a MetadataStore whose metadata expires after 10ms
+    ObjectClient objectClient = mock(ObjectClient.class);
+    ObjectMetadata stale = ObjectMetadata.builder().contentLength(10).etag("stale").build();
+    ObjectMetadata fresh = ObjectMetadata.builder().contentLength(20).etag("fresh").build();
+    when(objectClient.headObject(any()))
+        .thenReturn(CompletableFuture.completedFuture(stale))
+        .thenReturn(CompletableFuture.completedFuture(fresh));
+    MetadataStore metadataStore =
+        new MetadataStore(
+            objectClient,
+            TestTelemetry.DEFAULT,
+            PhysicalIOConfiguration.builder().metadataStoreTtlMillis(10).build());
+    S3URI key = S3URI.of("foo", "bar");
+    assertEquals(stale, metadataStore.get(key));
+
+    // When: the metadata is used again once it has expired
+    Thread.sleep(50);
+
+    // Then: it is fetched again
+    assertEquals(fresh, metadataStore.get(key));
+    verify(objectClient, times(2)).headObject(any());
+  }
+
+  @Test
+  public void test__storeObjectMetadata__storedMetadataIsUsedWithoutHead() {
+    // Given: a MetadataStore seeded with the metadata of an object
+    ObjectClient objectClient = mock(ObjectClient.class);
+    MetadataStore metadataStore =
+        new MetadataStore(objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    S3URI key = S3URI.of("foo", "bar");
+    ObjectMetadata metadata = ObjectMetadata.builder().contentLength(100).etag("etag").build();
+
+    // When
+    metadataStore.storeObjectMetadata(key, metadata);
+
+    // Then: the stored metadata is returned and no HEAD is issued
+    assertEquals(metadata, metadataStore.get(key));
+    verify(objectClient, times(0)).headObject(any());
+  }
+
+  @Test
+  public void test__getIfPresent__onlyReturnsFetchedMetadataWithoutHead() {
+    // Given: a MetadataStore with a HEAD in flight for one object and nothing for another
+    ObjectClient objectClient = mock(ObjectClient.class);
+    when(objectClient.headObject(any())).thenReturn(new CompletableFuture<>());
+    MetadataStore metadataStore =
+        new MetadataStore(objectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    S3URI pending = S3URI.of("foo", "pending");
+    S3URI stored = S3URI.of("foo", "stored");
+    metadataStore.asyncGet(pending);
+    ObjectMetadata metadata = ObjectMetadata.builder().contentLength(100).etag("etag").build();
+    metadataStore.storeObjectMetadata(stored, metadata);
+
+    // When & Then: only the fetched metadata is returned, and no other HEAD is issued
+    assertFalse(metadataStore.getIfPresent(pending).isPresent());
+    assertFalse(metadataStore.getIfPresent(S3URI.of("foo", "unknown")).isPresent());
+    assertEquals(Optional.of(metadata), metadataStore.getIfPresent(stored));
+    verify(objectClient, times(1)).headObject(any());
+  }
+
   @Test
   @SuppressWarnings("unchecked")
   public void test__close__closesAllElements() {
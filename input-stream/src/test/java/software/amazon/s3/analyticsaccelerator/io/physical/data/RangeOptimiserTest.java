@@ -59,4 +59,50 @@ public class RangeOptimiserTest {
     expected.add(new Range(8 * ONE_MB, 16 * ONE_MB - 1));
     assertEquals(expected, splitRanges);
   }
+
+  @Test
+  public void test__coalesceRanges__nearbyRangesAreMerged() {
+    // Given: unsorted ranges, some of them close to each other
+    RangeOptimiser rangeOptimiser =
+        new RangeOptimiser(PhysicalIOConfiguration.builder().coalesceMaxGapBytes(100).build());
+    List<Range> ranges = new LinkedList<>();
+    ranges.add(new Range(1000, 1100));
+    ranges.add(new Range(0, 100));
+    ranges.add(new Range(150, 300));
+    ranges.add(new Range(250, 400));
+    ranges.add(new Range(501, 600));
+
+    // When: coalesceRanges is called
+    List<Range> coalescedRanges = rangeOptimiser.coalesceRanges(ranges);
+
+    // Then: ranges at most 100 bytes apart are merged, the others are kept apart
+    List<Range> expected = new LinkedList<>();
+    expected.add(new Range(0, 600));
+    expected.add(new Range(1000, 1100));
+    assertEquals(expected, coalescedRanges);
+  }
+
+  @Test
+  public void test__coalesceRanges__mergedRangesAreBounded() {
+    // Given: adjacent ranges whose union is bigger than the max coalesced size
+    RangeOptimiser rangeOptimiser =
+        new RangeOptimiser(
+            PhysicalIOConfiguration.builder()
+                .coalesceMaxGapBytes(ONE_MB)
+                .coalesceMaxBytes(ONE_MB)
+                .build());
+    List<Range> ranges = new LinkedList<>();
+    ranges.add(new Range(0, ONE_MB / 2 - 1));
+    ranges.add(new Range(ONE_MB / 2, ONE_MB - 1));
+    ranges.add(new Range(ONE_MB, ONE_MB + 10));
+
+    // When: coalesceRanges is called
+    List<Range> coalescedRanges = rangeOptimiser.coalesceRanges(ranges);
+
+    // Then: ranges are only merged up to the max coalesced size
+    List<Range> expected = new LinkedList<>();
+    expected.add(new Range(0, ONE_MB - 1));
+    expected.add(new Range(ONE_MB, ONE_MB + 10));
+    assertEquals(expected, coalescedRanges);
+  }
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import software.amazon.s3.analyticsaccelerator.TestTelemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.request.Referrer;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class RequestSchedulerTest {
+  private static final S3URI URI_A = S3URI.of("foo", "a");
+  private static final S3URI URI_B = S3URI.of("foo", "b");
+
+  private final List<GetRequest> issued = new ArrayList<>();
+  private final List<CompletableFuture<Integer>> pending = new ArrayList<>();
+  private final ObjectClient objectClient = mock(ObjectClient.class);
+
+  RequestSchedulerTest() {
+    when(objectClient.getObject(any(GetRequest.class), any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<Integer> future = new CompletableFuture<>();
+              issued.add(invocation.getArgument(0));
+              pending.add(future);
+              return future;
+            });
+  }
+
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(
+        NullPointerException.class,
+        () -> new RequestScheduler(null, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT));
+    assertThrows(
+        NullPointerException.class,
+        () -> new RequestScheduler(objectClient, null, PhysicalIOConfiguration.DEFAULT));
+    assertThrows(
+        NullPointerException.class,
+        () -> new RequestScheduler(objectClient, TestTelemetry.DEFAULT, null));
+  }
+
+  @Test
+  void testIssuesImmediatelyWithinBounds() {
+    // Given: a scheduler with room for two requests
+    RequestScheduler scheduler = scheduler(2, 100);
+
+    // When: two requests are made
+    CompletableFuture<Integer> first = scheduler.getObject(get(URI_A, 0, ReadMode.ASYNC), buf());
+    scheduler.getObject(get(URI_A, 10, ReadMode.ASYNC), buf());
+
+    // Then: both are in flight, and completing one completes its result
+    assertEquals(2, issued.size());
+    assertEquals(2, scheduler.getInFlightRequests());
+    assertEquals(20, scheduler.getInFlightBytes());
+    pending.get(0).complete(10);
+    assertEquals(10, first.join());
+    assertEquals(1, scheduler.getInFlightRequests());
+  }
+
+  @Test
+  void testSyncRequestsGoBeforePrefetches() {
+    // Given: a scheduler with one request in flight and two prefetches queued
+    RequestScheduler scheduler = scheduler(1, 100);
+    scheduler.getObject(get(URI_A, 0, ReadMode.ASYNC), buf());
+    scheduler.getObject(get(URI_A, 10, ReadMode.ASYNC), buf());
+    scheduler.getObject(get(URI_A, 20, ReadMode.ASYNC), buf());
+    assertEquals(2, scheduler.getQueuedRequests());
+
+    // When: a read is queued behind them and the request in flight completes
+    scheduler.getObject(get(URI_A, 30, ReadMode.SYNC), buf());
+    pending.get(0).complete(10);
+
+    // Then: the read goes first
+    assertEquals(2, issued.size());
+    assertEquals(30, issued.get(1).getRange().getStart());
+  }
+
+  @Test
+  void testObjectsTakeTurns() {
+    // Given: a scheduler with one request in flight, and prefetches of two objects queued
+    RequestScheduler scheduler = scheduler(1, 100);
+    scheduler.getObject(get(URI_A, 0, ReadMode.ASYNC), buf());
+    scheduler.getObject(get(URI_A, 10, ReadMode.ASYNC), buf());
+    scheduler.getObject(get(URI_A, 20, ReadMode.ASYNC), buf());
+    scheduler.getObject(get(URI_B, 0, ReadMode.ASYNC), buf());
+
+    // When: requests complete one after the other
+    pending.get(0).complete(10);
+    pending.get(1).complete(10);
+    pending.get(2).complete(10);
+
+    // Then: the second object does not wait for all prefetches of the first
+    assertEquals(URI_A, issued.get(1).getS3Uri());
+    assertEquals(URI_B, issued.get(2).getS3Uri());
+    assertEquals(URI_A, issued.get(3).getS3Uri());
+  }
+
+  @Test
+  void testByteBoundIsHonoured() {
+    // Given: a scheduler with room for 15 bytes
+    RequestScheduler scheduler = scheduler(10, 15);
+
+    // When: three 10 byte requests are made
+    scheduler.getObject(get(URI_A, 0, ReadMode.ASYNC), buf());
+    scheduler.getObject(get(URI_A, 10, ReadMode.ASYNC), buf());
+    scheduler.getObject(get(URI_A, 20, ReadMode.ASYNC), buf());
+
+    // Then: only the first is in flight, as a request always goes when nothing else is
+    assertEquals(1, issued.size());
+    assertEquals(2, scheduler.getQueuedRequests());
+  }
+
+  @Test
+  void testCancelledQueuedRequestIsDropped() {
+    // Given: a scheduler with one request in flight and one queued
+    RequestScheduler scheduler = scheduler(1, 100);
+    scheduler.getObject(get(URI_A, 0, ReadMode.ASYNC), buf());
+    CompletableFuture<Integer> queued = scheduler.getObject(get(URI_A, 10, ReadMode.ASYNC), buf());
+
+    // When: the queued request is cancelled and the other completes
+    queued.cancel(false);
+    pending.get(0).complete(10);
+
+    // Then: the cancelled request is never issued
+    assertEquals(1, issued.size());
+    assertEquals(0, scheduler.getQueuedRequests());
+    assertEquals(0, scheduler.getInFlightRequests());
+  }
+
+  @Test
+  void testCancelPropagatesToIssuedRequest() {
+    // Given: a request in flight
+    RequestScheduler scheduler = scheduler(1, 100);
+    CompletableFuture<Integer> result = scheduler.getObject(get(URI_A, 0, ReadMode.SYNC), buf());
+
+    // When: its result is cancelled
+    result.cancel(false);
+
+    // Then: the request is aborted and its slot is freed
+    assertTrue(pending.get(0).isCancelled());
+    assertEquals(0, scheduler.getInFlightRequests());
+  }
+
+  @Test
+  void testCancelWhileIssuingWaitsForTheRequestAndCancelsIt() throws Exception {
+    // Given: a client that is slow to take the second request, issued when the first completes
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<CompletableFuture<Integer>> requests = new CopyOnWriteArrayList<>();
+    ObjectClient slowClient = mock(ObjectClient.class);
+    when(slowClient.getObject(any(GetRequest.class), any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<Integer> future = new CompletableFuture<>();
+              requests.add(future);
+              if (requests.size() == 2) {
+                entered.countDown();
+                release.await();
+              }
+              return future;
+            });
+    RequestScheduler scheduler =
+        new RequestScheduler(
+            slowClient,
+            TestTelemetry.DEFAULT,
+            PhysicalIOConfiguration.builder()
+                .schedulerMaxInFlightRequests(1)
+                .schedulerMaxInFlightBytes(100)
+                .build());
+    scheduler.getObject(get(URI_A, 0, ReadMode.SYNC), buf());
+    CompletableFuture<Integer> result = scheduler.getObject(get(URI_A, 10, ReadMode.SYNC), buf());
+    CompletableFuture.runAsync(() -> requests.get(0).complete(10));
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+    // When: its result is cancelled while the client is still taking it
+    CompletableFuture<Boolean> cancel = CompletableFuture.supplyAsync(() -> result.cancel(false));
+
+    // Then: the cancellation waits for the request, and aborts it before returning
+    assertThrows(TimeoutException.class, () -> cancel.get(100, TimeUnit.MILLISECONDS));
+    release.countDown();
+    assertTrue(cancel.get(5, TimeUnit.SECONDS));
+    assertTrue(requests.get(1).isCancelled());
+  }
+
+  @Test
+  void testFailurePropagatesAndFreesSlot() {
+    // Given: a request in flight and one queued
+    RequestScheduler scheduler = scheduler(1, 100);
+    CompletableFuture<Integer> result = scheduler.getObject(get(URI_A, 0, ReadMode.SYNC), buf());
+    scheduler.getObject(get(URI_A, 10, ReadMode.SYNC), buf());
+
+    // When: the request in flight fails
+    pending.get(0).completeExceptionally(new IllegalStateException("boom"));
+
+    // Then: the failure is reported and the queued request is issued
+    assertTrue(result.isCompletedExceptionally());
+    assertEquals(2, issued.size());
+  }
+
+  private RequestScheduler scheduler(int maxRequests, long maxBytes) {
+    return new RequestScheduler(
+        objectClient,
+        TestTelemetry.DEFAULT,
+        PhysicalIOConfiguration.builder()
+            .schedulerMaxInFlightRequests(maxRequests)
+            .schedulerMaxInFlightBytes(maxBytes)
+            .build());
+  }
+
+  private static GetRequest get(S3URI s3URI, long start, ReadMode readMode) {
+    Range range = new Range(start, start + 9);
+    return GetRequest.builder()
+        .s3Uri(s3URI)
+        .range(range)
+        .referrer(new Referrer(range.toHttpString(), readMode))
+        .build();
+  }
+
+  private static ByteBuffer buf() {
+    return ByteBuffer.allocate(10);
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.s3.analyticsaccelerator.TestTelemetry;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.request.Referrer;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class ResumableObjectClientTest {
+  private static final S3URI TEST_URI = S3URI.of("foo", "bar");
+  private static final long WAIT_MILLIS = 5_000;
+
+  private final List<GetRequest> issued = Collections.synchronizedList(new ArrayList<>());
+  private final List<CompletableFuture<Integer>> pending =
+      Collections.synchronizedList(new ArrayList<>());
+  private final ObjectClient objectClient = mock(ObjectClient.class);
+  private final ResumableObjectClient client =
+      new ResumableObjectClient(
+          objectClient,
+          TestTelemetry.DEFAULT,
+          PhysicalIOConfiguration.builder()
+              .blockRetryMaxAttempts(2)
+              .blockRetryBackoffMillis(0)
+              .build());
+
+  ResumableObjectClientTest() {
+    when(objectClient.getObject(any(GetRequest.class), any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<Integer> future = new CompletableFuture<>();
+              issued.add(invocation.getArgument(0));
+              pending.add(future);
+              return future;
+            });
+  }
+
+  @AfterEach
+  void tearDown() {
+    client.close();
+  }
+
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(
+        NullPointerException.class,
+        () ->
+            new ResumableObjectClient(
+                null, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT));
+    assertThrows(
+        NullPointerException.class,
+        () -> new ResumableObjectClient(objectClient, null, PhysicalIOConfiguration.DEFAULT));
+    assertThrows(
+        NullPointerException.class,
+        () -> new ResumableObjectClient(objectClient, TestTelemetry.DEFAULT, null));
+  }
+
+  @Test
+  void testFailedRequestIsResumedFromTheFirstMissingByte() throws Exception {
+    // Given: a request that fails after receiving 4 of its 10 bytes
+    ByteBuffer destination = ByteBuffer.allocate(10);
+    CompletableFuture<Integer> result = client.getObject(get(), destination);
+    synchronized (destination) {
+      destination.put(new byte[] {1, 2, 3, 4});
+    }
+    pending.get(0).completeExceptionally(new IOException("connection reset"));
+
+    // When: the rest arrives
+    awaitRequests(2);
+    synchronized (destination) {
+      destination.put(new byte[] {5, 6, 7, 8, 9, 10});
+    }
+    pending.get(1).complete(6);
+
+    // Then: only the missing bytes were requested again
+    assertEquals(10, result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    assertEquals(new Range(104, 109), issued.get(1).getRange());
+    assertEquals(issued.get(0).getReferrer(), issued.get(1).getReferrer());
+  }
+
+  @Test
+  void testRequestFailsOnceAttemptsRunOut() throws Exception {
+    // Given
+    CompletableFuture<Integer> result = client.getObject(get(), ByteBuffer.allocate(10));
+
+    // When: the request and both of its retries fail
+    for (int i = 0; i < 3; i++) {
+      awaitRequests(i + 1);
+      pending.get(i).completeExceptionally(new IOException("connection reset"));
+    }
+
+    // Then
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class, () -> result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    assertInstanceOf(IOException.class, e.getCause());
+    assertEquals(3, issued.size());
+  }
+
+  @Test
+  void testRejectedRequestFailsAtOnce() throws Exception {
+    // Given
+    CompletableFuture<Integer> result = client.getObject(get(), ByteBuffer.allocate(10));
+
+    // When: the object changed since its ETag was pinned
+    pending.get(0).completeExceptionally(s3Exception(412, "PreconditionFailed"));
+
+    // Then: it is not requested again
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class, () -> result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    assertEquals(412, ((S3Exception) e.getCause()).statusCode());
+    assertEquals(1, issued.size());
+  }
+
+  @Test
+  void testThrottledRequestFailsAtOnce() throws Exception {
+    // Given
+    CompletableFuture<Integer> result = client.getObject(get(), ByteBuffer.allocate(10));
+
+    // When: S3 asks to slow down, after the SDK retried already
+    pending.get(0).completeExceptionally(s3Exception(503, "SlowDown"));
+
+    // Then: it is not requested again, which would only add to the load
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class, () -> result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    assertEquals(503, ((S3Exception) e.getCause()).statusCode());
+    assertEquals(1, issued.size());
+  }
+
+  @Test
+  void testServerErrorIsRetried() throws Exception {
+    // Given
+    ByteBuffer destination = ByteBuffer.allocate(10);
+    CompletableFuture<Integer> result = client.getObject(get(), destination);
+
+    // When: S3 fails internally, then succeeds
+    pending.get(0).completeExceptionally(s3Exception(500, "InternalError"));
+    awaitRequests(2);
+    synchronized (destination) {
+      destination.put(new byte[10]);
+    }
+    pending.get(1).complete(10);
+
+    // Then
+    assertEquals(10, result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void testTruncatedResponseIsResumed() throws Exception {
+    // Given: a response that ends after 4 of its 10 bytes
+    ByteBuffer destination = ByteBuffer.allocate(10);
+    CompletableFuture<Integer> result = client.getObject(get(), destination);
+    synchronized (destination) {
+      destination.put(new byte[] {1, 2, 3, 4});
+    }
+    pending.get(0).complete(4);
+
+    // When: the rest arrives
+    awaitRequests(2);
+    synchronized (destination) {
+      destination.put(new byte[] {5, 6, 7, 8, 9, 10});
+    }
+    pending.get(1).complete(6);
+
+    // Then: only the missing bytes were requested again
+    assertEquals(10, result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    assertEquals(new Range(104, 109), issued.get(1).getRange());
+  }
+
+  @Test
+  void testCancelledRequestIsNotResumed() throws Exception {
+    // Given
+    CompletableFuture<Integer> result = client.getObject(get(), ByteBuffer.allocate(10));
+
+    // When
+    result.cancel(false);
+
+    // Then
+    assertTrue(pending.get(0).isCancelled());
+    Thread.sleep(100);
+    assertEquals(1, issued.size());
+  }
+
+  @Test
+  void testStragglerIsAbortedAndTheRestOfItsRangeReissued() throws Exception {
+    // Given: a watchdog that has seen enough GETs complete to know their median throughput
+    int size = 512 * 1024;
+    try (ResumableObjectClient watched =
+        new ResumableObjectClient(
+            objectClient,
+            TestTelemetry.DEFAULT,
+            PhysicalIOConfiguration.builder().stragglerThroughputRatio(0.1).build(),
+            10)) {
+      for (int i = 0; i < 8; i++) {
+        ByteBuffer destination = ByteBuffer.allocate(size);
+        CompletableFuture<Integer> result = watched.getObject(get(0, size - 1), destination);
+        synchronized (destination) {
+          destination.put(new byte[size]);
+        }
+        pending.get(i).complete(size);
+        assertEquals(size, result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+      }
+
+      // When: a GET stalls after its first byte
+      ByteBuffer destination = ByteBuffer.allocate(size);
+      CompletableFuture<Integer> result = watched.getObject(get(0, size - 1), destination);
+      synchronized (destination) {
+        destination.put((byte) 1);
+      }
+      awaitRequests(10);
+
+      // Then: it is aborted, and only the rest of its range is requested again
+      assertTrue(pending.get(8).isCancelled());
+      assertEquals(new Range(1, size - 1), issued.get(9).getRange());
+      synchronized (destination) {
+        destination.put(new byte[size - 1]);
+      }
+      pending.get(9).complete(size - 1);
+      assertEquals(size, result.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  @Test
+  void testRequestsAreNotWatchedWhenStragglerDetectionIsDisabled() throws Exception {
+    // Given
+    try (ResumableObjectClient unwatched =
+        new ResumableObjectClient(
+            objectClient,
+            TestTelemetry.DEFAULT,
+            PhysicalIOConfiguration.builder()
+                .blockRetryMaxAttempts(0)
+                .stragglerThroughputRatio(0)
+                .build(),
+            10)) {
+      // When
+      CompletableFuture<Integer> result = unwatched.getObject(get(), ByteBuffer.allocate(10));
+
+      // Then: the request is passed through as it is
+      assertSame(pending.get(0), result);
+    }
+  }
+
+  private void awaitRequests(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+    while (issued.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(count, issued.size());
+  }
+
+  private static GetRequest get() {
+    return get(100, 109);
+  }
+
+  private static GetRequest get(long start, long end) {
+    Range range = new Range(start, end);
+    return GetRequest.builder()
+        .s3Uri(TEST_URI)
+        .range(range)
+        .referrer(new Referrer(range.toHttpString(), ReadMode.SYNC))
+        .build();
+  }
+
+  private static S3Exception s3Exception(int statusCode, String message) {
+    return S3Exception.builder().statusCode(statusCode).message(message).build();
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class StreamContextTest {
+  private static final long SEEK_DISTANCE = 100;
+
+  @Test
+  void testReadsFarFromThePreviousOneAreSeeks() {
+    // Given: a stream that has read the first 10 bytes
+    StreamContext stream = new StreamContext();
+    assertFalse(stream.recordRead(0, 10, SEEK_DISTANCE));
+
+    // When & Then: reads close to where it was are not seeks, reads far from it are
+    assertFalse(stream.recordRead(50, 10, SEEK_DISTANCE));
+    assertTrue(stream.recordRead(1000, 10, SEEK_DISTANCE));
+    assertEquals(1, stream.getSeeks());
+    assertEquals(1010, stream.getPosition());
+  }
+
+  @Test
+  void testIsNear() {
+    // Given: a stream at position 1000
+    StreamContext stream = new StreamContext();
+    assertFalse(stream.isNear(0, 10, SEEK_DISTANCE));
+    stream.recordRead(990, 10, SEEK_DISTANCE);
+
+    // When & Then
+    assertTrue(stream.isNear(1050, 2000, SEEK_DISTANCE));
+    assertTrue(stream.isNear(0, 900, SEEK_DISTANCE));
+    assertFalse(stream.isNear(1101, 2000, SEEK_DISTANCE));
+    stream.close();
+    assertFalse(stream.isNear(1050, 2000, SEEK_DISTANCE));
+  }
+
+  @Test
+  void testReadaheadWindowGrowsAndStartsOverForANewRun() {
+    // Given: a stream reading sequentially
+    StreamContext stream = new StreamContext();
+    stream.recordRead(0, 10, SEEK_DISTANCE);
+    stream.recordRead(10, 10, SEEK_DISTANCE);
+
+    // When & Then: the window doubles up to the target
+    assertEquals(2, stream.nextReadaheadWindow(10, 2, 10));
+    assertEquals(4, stream.nextReadaheadWindow(10, 2, 10));
+    assertEquals(8, stream.nextReadaheadWindow(10, 2, 10));
+    assertEquals(10, stream.nextReadaheadWindow(10, 2, 10));
+
+    // When & Then: a new run of reads starts over
+    stream.recordRead(1000, 10, SEEK_DISTANCE);
+    assertEquals(2, stream.nextReadaheadWindow(1000, 2, 10));
+  }
+
+  @Test
+  void testOnlyReadsContinuingARunAreSequential() {
+    // Given: a stream that has made a single read
+    StreamContext stream = new StreamContext();
+    stream.recordRead(0, 10, SEEK_DISTANCE);
+
+    // When & Then: the first read of a run is not sequential, the following ones are
+    assertEquals(0, stream.nextSequentialGeneration(0));
+    stream.recordRead(10, 10, SEEK_DISTANCE);
+    assertEquals(1, stream.nextSequentialGeneration(10));
+    stream.recordRead(20, 10, SEEK_DISTANCE);
+    assertEquals(2, stream.nextSequentialGeneration(20));
+
+    // When & Then: a read next to data the stream did not read is not sequential
+    stream.recordRead(50, 10, SEEK_DISTANCE);
+    assertEquals(0, stream.nextSequentialGeneration(50));
+  }
+
+  @Test
+  void testInterleavedRunsAreTrackedSeparately() {
+    // Given: a stream walking two column chunks in parallel
+    StreamContext stream = new StreamContext();
+    stream.recordRead(0, 10, SEEK_DISTANCE);
+    stream.recordRead(1000, 10, SEEK_DISTANCE);
+
+    // When: both runs go on, interleaved
+    stream.recordRead(10, 10, SEEK_DISTANCE);
+    stream.recordRead(1010, 10, SEEK_DISTANCE);
+
+    // Then: both are sequential, each with its own generation
+    assertEquals(2, stream.getCursorCount());
+    assertEquals(1, stream.nextSequentialGeneration(10));
+    assertEquals(1, stream.nextSequentialGeneration(1010));
+    assertEquals(2, stream.nextSequentialGeneration(10));
+  }
+
+  @Test
+  void testLeastRecentlyUsedRunIsForgotten() {
+    // Given: a stream that has started more runs than it tracks
+    StreamContext stream = new StreamContext();
+    for (int i = 0; i <= 8; i++) {
+      stream.recordRead(i * 1000L, 10, SEEK_DISTANCE);
+    }
+
+    // When: the oldest run goes on
+    stream.recordRead(10, 10, SEEK_DISTANCE);
+
+    // Then: it is a new run
+    assertEquals(8, stream.getCursorCount());
+    assertEquals(0, stream.nextSequentialGeneration(10));
+  }
+
+  @Test
+  void testConsumerRateIsUnknownUntilTheStreamReadsAgain() {
+    // Given: a stream that has made a single read
+    StreamContext stream = new StreamContext();
+    stream.recordRead(0, 10, SEEK_DISTANCE);
+    stream.recordReadEnd();
+
+    // When & Then
+    assertEquals(Double.POSITIVE_INFINITY, stream.getConsumerBytesPerSecond());
+  }
+}
@@ -16,13 +16,18 @@
 package software.amazon.s3.analyticsaccelerator.io.physical.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 import software.amazon.s3.analyticsaccelerator.TestTelemetry;
 import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
 import software.amazon.s3.analyticsaccelerator.io.physical.data.BlobStore;
 import software.amazon.s3.analyticsaccelerator.io.physical.data.MetadataStore;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
 import software.amazon.s3.analyticsaccelerator.util.FakeObjectClient;
 import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
@@ -73,4 +78,60 @@ public class PhysicalIOImplTest {
     // Then: returned data is correct
     assertEquals(120, physicalIOImplV2.read(0)); // a
   }
+
+  @Test
+  public void test__readIntoByteBuffer_isCorrect() throws IOException {
+    // Given: physicalIOImplV2
+    final String TEST_DATA = "abcdef0123456789";
+    FakeObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+    MetadataStore metadataStore =
+        new MetadataStore(fakeObjectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    BlobStore blobStore =
+        new BlobStore(
+            metadataStore,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            PhysicalIOConfiguration.DEFAULT);
+    PhysicalIOImpl physicalIOImplV2 =
+        new PhysicalIOImpl(s3URI, metadataStore, blobStore, TestTelemetry.DEFAULT);
+
+    // When: we read into a direct buffer
+    ByteBuffer dst = ByteBuffer.allocateDirect(6);
+    int bytesRead = physicalIOImplV2.read(dst, 6);
+
+    // Then: returned data is correct
+    assertEquals(6, bytesRead);
+    dst.flip();
+    assertEquals("012345", StandardCharsets.UTF_8.decode(dst).toString());
+    assertThrows(IllegalArgumentException.class, () -> physicalIOImplV2.read(dst, -1));
+    assertThrows(
+        IllegalArgumentException.class, () -> physicalIOImplV2.read(dst, TEST_DATA.length()));
+  }
+
+  @Test
+  public void test__knownMetadata_isPinned() throws IOException {
+    // Given: physicalIOImplV2 given the metadata of the object, while the cache holds another
+    final String TEST_DATA = "abcdef0123456789";
+    FakeObjectClient fakeObjectClient = new FakeObjectClient(TEST_DATA);
+    MetadataStore metadataStore =
+        new MetadataStore(fakeObjectClient, TestTelemetry.DEFAULT, PhysicalIOConfiguration.DEFAULT);
+    BlobStore blobStore =
+        new BlobStore(
+            metadataStore,
+            fakeObjectClient,
+            TestTelemetry.DEFAULT,
+            PhysicalIOConfiguration.DEFAULT);
+    ObjectMetadata metadata =
+        ObjectMetadata.builder().contentLength(TEST_DATA.length()).etag("known").build();
+    metadataStore.storeObjectMetadata(
+        s3URI, ObjectMetadata.builder().contentLength(TEST_DATA.length()).etag("other").build());
+    PhysicalIOImpl physicalIOImplV2 =
+        new PhysicalIOImpl(s3URI, metadataStore, blobStore, TestTelemetry.DEFAULT, metadata);
+
+    // When: we read
+    // Then: the stream reads the version it was given
+    assertEquals(97, physicalIOImplV2.read(0)); // a
+    assertSame(metadata, physicalIOImplV2.metadata());
+    assertEquals(0, fakeObjectClient.getHeadRequestCount().get());
+  }
 }
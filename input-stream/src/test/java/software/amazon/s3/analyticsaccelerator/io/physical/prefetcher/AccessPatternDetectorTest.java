@@ -0,0 +1,127 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.prefetcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import software.amazon.s3.analyticsaccelerator.io.physical.plan.IOPlan;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+
+public class AccessPatternDetectorTest {
+  private static final long CONTENT_LENGTH = 10_000;
+
+  @Test
+  void testRecordReadBoundaries() {
+    AccessPatternDetector detector = new AccessPatternDetector();
+    assertThrows(IllegalArgumentException.class, () -> detector.recordRead(-1, 10));
+    assertThrows(IllegalArgumentException.class, () -> detector.recordRead(0, 0));
+  }
+
+  @Test
+  void testNoPredictionFromTooFewReads() {
+    // Given: a stream with two reads
+    AccessPatternDetector detector = new AccessPatternDetector();
+    detector.recordRead(0, 100);
+    detector.recordRead(100, 100);
+
+    // When & Then
+    assertFalse(detector.getPrediction().isPresent());
+  }
+
+  @Test
+  void testForwardSequentialIsRecognizedAndLeftToReadahead() {
+    // Given: a stream reading forwards
+    AccessPatternDetector detector = new AccessPatternDetector();
+    for (long pos = 0; pos < 500; pos += 100) {
+      detector.recordRead(pos, 100);
+    }
+
+    // When & Then
+    AccessPatternDetector.Prediction prediction = detector.getPrediction().get();
+    assertEquals(AccessPatternDetector.Pattern.FORWARD_SEQUENTIAL, prediction.getPattern());
+    assertEquals(1.0, prediction.getConfidence());
+    assertSame(IOPlan.EMPTY_PLAN, detector.planPrefetch(CONTENT_LENGTH, 4, 0.75));
+  }
+
+  @Test
+  void testBackwardScanPrefetchesPrecedingRanges() {
+    // Given: a stream reading backwards from the tail
+    AccessPatternDetector detector = new AccessPatternDetector();
+    detector.recordRead(9900, 100);
+    detector.recordRead(9800, 100);
+    detector.recordRead(9700, 100);
+
+    // When
+    IOPlan plan = detector.planPrefetch(CONTENT_LENGTH, 2, 0.75);
+
+    // Then: the two preceding ranges are prefetched, and not planned again
+    assertEquals(
+        AccessPatternDetector.Pattern.BACKWARD_SEQUENTIAL,
+        detector.getPrediction().get().getPattern());
+    List<Range> ranges = plan.getPrefetchRanges();
+    assertEquals(2, ranges.size());
+    assertEquals(new Range(9600, 9699), ranges.get(0));
+    assertEquals(new Range(9500, 9599), ranges.get(1));
+    assertSame(IOPlan.EMPTY_PLAN, detector.planPrefetch(CONTENT_LENGTH, 2, 0.75));
+
+    // When & Then: once the stream reads on, only the new range is planned
+    detector.recordRead(9600, 100);
+    ranges = detector.planPrefetch(CONTENT_LENGTH, 2, 0.75).getPrefetchRanges();
+    assertEquals(1, ranges.size());
+    assertEquals(new Range(9400, 9499), ranges.get(0));
+  }
+
+  @Test
+  void testStridedReadsPrefetchNextRecords() {
+    // Given: a stream sampling a 10 byte record every 1000 bytes
+    AccessPatternDetector detector = new AccessPatternDetector();
+    for (long pos = 0; pos <= 6000; pos += 1000) {
+      detector.recordRead(pos, 10);
+    }
+
+    // When
+    IOPlan plan = detector.planPrefetch(CONTENT_LENGTH, 4, 0.75);
+
+    // Then: the records up to the end of the object are prefetched
+    AccessPatternDetector.Prediction prediction = detector.getPrediction().get();
+    assertEquals(AccessPatternDetector.Pattern.STRIDED, prediction.getPattern());
+    assertEquals(1000, prediction.getStride());
+    List<Range> ranges = plan.getPrefetchRanges();
+    assertEquals(3, ranges.size());
+    assertEquals(new Range(7000, 7009), ranges.get(0));
+    assertEquals(new Range(9000, 9009), ranges.get(2));
+  }
+
+  @Test
+  void testPatternBelowConfidenceIsNotPrefetched() {
+    // Given: a stream whose reads are half strided, half random
+    AccessPatternDetector detector = new AccessPatternDetector();
+    detector.recordRead(5000, 10);
+    detector.recordRead(17, 10);
+    detector.recordRead(3333, 10);
+    detector.recordRead(4000, 10);
+    detector.recordRead(5000, 10);
+    detector.recordRead(6000, 10);
+
+    // When & Then
+    AccessPatternDetector.Prediction prediction = detector.getPrediction().get();
+    assertEquals(AccessPatternDetector.Pattern.STRIDED, prediction.getPattern());
+    assertEquals(0.4, prediction.getConfidence(), 0.001);
+    assertSame(IOPlan.EMPTY_PLAN, detector.planPrefetch(CONTENT_LENGTH, 4, 0.75));
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator.io.physical.prefetcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static software.amazon.s3.analyticsaccelerator.util.Constants.ONE_KB;
+import static software.amazon.s3.analyticsaccelerator.util.Constants.ONE_MB;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.junit.jupiter.api.Test;
+import software.amazon.s3.analyticsaccelerator.io.physical.PhysicalIOConfiguration;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class ReadaheadControllerTest {
+  private static final double LATENCY_SECONDS = 0.05;
+  private static final double THROUGHPUT = 50 * ONE_MB;
+
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(NullPointerException.class, () -> new ReadaheadController(null));
+    ReadaheadController controller = new ReadaheadController(PhysicalIOConfiguration.DEFAULT);
+    assertThrows(IllegalArgumentException.class, () -> controller.recordFetch(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> controller.recordFetch(1, -1));
+    assertThrows(IllegalArgumentException.class, () -> controller.getWindowBytes(0));
+  }
+
+  @Test
+  void testLatencyAndThroughputAreLearntFromFetches() {
+    // Given: a controller
+    ReadaheadController controller = new ReadaheadController(PhysicalIOConfiguration.DEFAULT);
+
+    // When: GETs of different sizes complete
+    recordFetches(controller);
+
+    // Then: the latency and throughput of the link are found
+    assertEquals(LATENCY_SECONDS, controller.getLatencySeconds(), 0.001);
+    assertEquals(THROUGHPUT, controller.getThroughputBytesPerSecond(), THROUGHPUT / 100);
+  }
+
+  @Test
+  void testFastConsumerGetsSeveralBandwidthDelayProducts() {
+    // Given: a controller that learnt the link
+    ReadaheadController controller = new ReadaheadController(PhysicalIOConfiguration.DEFAULT);
+    recordFetches(controller);
+
+    // When: a consumer as fast as can be asks for a window
+    long window = controller.getWindowBytes(Double.POSITIVE_INFINITY);
+
+    // Then: the window is four bandwidth-delay products
+    assertEquals(4 * THROUGHPUT * LATENCY_SECONDS, window, 4 * THROUGHPUT * LATENCY_SECONDS / 50);
+  }
+
+  @Test
+  void testSlowConsumerGetsSmallerWindow() {
+    // Given: a controller that learnt the link
+    ReadaheadController controller = new ReadaheadController(PhysicalIOConfiguration.DEFAULT);
+    recordFetches(controller);
+
+    // When: a consumer of 10MB/s asks for a window
+    long window = controller.getWindowBytes(10 * ONE_MB);
+
+    // Then: the window covers twice what it consumes while a window is fetched
+    double needed = 10 * ONE_MB * LATENCY_SECONDS / (1 - 10 * ONE_MB / THROUGHPUT);
+    assertEquals(2 * needed, window, needed / 25);
+    assertTrue(window < controller.getWindowBytes(Double.POSITIVE_INFINITY));
+  }
+
+  @Test
+  void testWindowIsBounded() {
+    // Given: a controller with a 1MB cap that learnt the link
+    ReadaheadController controller =
+        new ReadaheadController(
+            PhysicalIOConfiguration.builder()
+                .readaheadMaxBytes(ONE_MB)
+                .readAheadBytes(64 * ONE_KB)
+                .build());
+    recordFetches(controller);
+
+    // When & Then: the window stays within the bounds
+    assertEquals(ONE_MB, controller.getWindowBytes(Double.POSITIVE_INFINITY));
+    assertEquals(64 * ONE_KB, controller.getWindowBytes(1));
+  }
+
+  private static void recordFetches(ReadaheadController controller) {
+    for (int i = 0; i < 100; i++) {
+      long bytes = (i % 2 == 0 ? 1 : 8) * ONE_MB;
+      double seconds = LATENCY_SECONDS + bytes / THROUGHPUT;
+      controller.recordFetch(bytes, (long) (seconds * 1_000_000_000L));
+    }
+  }
+}
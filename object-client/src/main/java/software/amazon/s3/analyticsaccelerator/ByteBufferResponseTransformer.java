@@ -0,0 +1,147 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import lombok.NonNull;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * Writes the body of a GET response straight into a buffer as it arrives, on the thread delivering
+ * it, so that no thread is parked waiting on the response. Each chunk is copied while holding the
+ * monitor of the buffer, and nothing is copied once the request is done, so the owner of the buffer
+ * can safely reuse it after the request is cancelled. Waiters on the monitor are notified after
+ * each chunk.
+ *
+ * <p>A retried request starts writing again from the initial position of the buffer.
+ */
+final class ByteBufferResponseTransformer
+    implements AsyncResponseTransformer<GetObjectResponse, Integer> {
+  private final ByteBuffer destination;
+  private final int start;
+  private volatile CompletableFuture<Integer> attempt;
+  private volatile CompletableFuture<?> request;
+  private volatile GetObjectResponse response;
+
+  /**
+   * Creates a new transformer.
+   *
+   * @param destination the buffer to write to, starting at its position
+   */
+  ByteBufferResponseTransformer(@NonNull ByteBuffer destination) {
+    this.destination = destination;
+    this.start = destination.position();
+  }
+
+  /**
+   * Ties the transformer to the future of the request, so that it stops writing when the request
+   * is cancelled.
+   *
+   * @param request the future returned by the client for the request
+   */
+  void bind(CompletableFuture<?> request) {
+    this.request = request;
+  }
+
+  @Override
+  public CompletableFuture<Integer> prepare() {
+    CompletableFuture<Integer> attempt = new CompletableFuture<>();
+    synchronized (destination) {
+      destination.position(start);
+    }
+    this.attempt = attempt;
+    return attempt;
+  }
+
+  /**
+   * Returns the response of the latest attempt, whose headers describe the bytes written.
+   *
+   * @return the response, or null if none has been received yet
+   */
+  GetObjectResponse getResponse() {
+    return response;
+  }
+
+  @Override
+  public void onResponse(GetObjectResponse response) {
+    this.response = response;
+  }
+
+  @Override
+  public void onStream(SdkPublisher<ByteBuffer> publisher) {
+    publisher.subscribe(new BufferSubscriber(attempt));
+  }
+
+  @Override
+  public void exceptionOccurred(Throwable error) {
+    attempt.completeExceptionally(error);
+  }
+
+  private boolean isStopped(CompletableFuture<Integer> attempt) {
+    CompletableFuture<?> request = this.request;
+    return attempt.isDone() || (request != null && request.isDone());
+  }
+
+  /** Copies the chunks of one attempt into the destination. */
+  private final class BufferSubscriber implements Subscriber<ByteBuffer> {
+    private final CompletableFuture<Integer> attempt;
+    private Subscription subscription;
+
+    private BufferSubscriber(CompletableFuture<Integer> attempt) {
+      this.attempt = attempt;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+      synchronized (destination) {
+        if (isStopped(attempt)) {
+          subscription.cancel();
+          return;
+        }
+        // Bytes beyond the end of the buffer are dropped
+        int length = Math.min(chunk.remaining(), destination.remaining());
+        ByteBuffer bytes = chunk.duplicate();
+        bytes.limit(bytes.position() + length);
+        destination.put(bytes);
+        // Lets the owner of the buffer use the bytes before the response is complete
+        destination.notifyAll();
+      }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      attempt.completeExceptionally(error);
+    }
+
+    @Override
+    public void onComplete() {
+      synchronized (destination) {
+        attempt.complete(destination.position() - start);
+      }
+    }
+  }
+}
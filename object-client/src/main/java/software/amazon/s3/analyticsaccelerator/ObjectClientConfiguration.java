@@ -31,6 +31,12 @@ public class ObjectClientConfiguration {
   public static final String DEFAULT_USER_AGENT_PREFIX = null;
   public static final String USER_AGENT_PREFIX_KEY = "useragentprefix";
   public static final String TELEMETRY_PREFIX = "telemetry";
+  public static final int DEFAULT_RATE_LIMIT_INITIAL_REQUESTS = 64;
+  public static final String RATE_LIMIT_INITIAL_REQUESTS_KEY = "ratelimit.initial.requests";
+  public static final int DEFAULT_RATE_LIMIT_MAX_REQUESTS = 1024;
+  public static final String RATE_LIMIT_MAX_REQUESTS_KEY = "ratelimit.max.requests";
+  public static final double DEFAULT_RATE_LIMIT_BACKOFF_RATIO = 0.5;
+  public static final String RATE_LIMIT_BACKOFF_RATIO_KEY = "ratelimit.backoff.ratio";
 
   /** User Agent Prefix. {@link ObjectClientConfiguration#DEFAULT_USER_AGENT_PREFIX} by default. */
   @Builder.Default private String userAgentPrefix = DEFAULT_USER_AGENT_PREFIX;
@@ -38,6 +44,24 @@ public class ObjectClientConfiguration {
   /** Telemetry configuration */
   @Builder.Default @NonNull private TelemetryConfiguration telemetryConfiguration = TelemetryConfiguration.DEFAULT;
 
+  /**
+   * Requests in flight to a prefix that {@link RateLimitingObjectClient} starts from. {@link
+   * ObjectClientConfiguration#DEFAULT_RATE_LIMIT_INITIAL_REQUESTS} by default.
+   */
+  @Builder.Default private int rateLimitInitialRequests = DEFAULT_RATE_LIMIT_INITIAL_REQUESTS;
+
+  /**
+   * Requests in flight to a prefix that {@link RateLimitingObjectClient} grows up to. {@link
+   * ObjectClientConfiguration#DEFAULT_RATE_LIMIT_MAX_REQUESTS} by default.
+   */
+  @Builder.Default private int rateLimitMaxRequests = DEFAULT_RATE_LIMIT_MAX_REQUESTS;
+
+  /**
+   * Factor {@link RateLimitingObjectClient} cuts the requests in flight to a prefix by when it is
+   * throttled. {@link ObjectClientConfiguration#DEFAULT_RATE_LIMIT_BACKOFF_RATIO} by default.
+   */
+  @Builder.Default private double rateLimitBackoffRatio = DEFAULT_RATE_LIMIT_BACKOFF_RATIO;
+
   public static final ObjectClientConfiguration DEFAULT =
       ObjectClientConfiguration.builder().build();
 
@@ -52,6 +76,14 @@ public class ObjectClientConfiguration {
         .userAgentPrefix(configuration.getString(USER_AGENT_PREFIX_KEY, DEFAULT_USER_AGENT_PREFIX))
         .telemetryConfiguration(
             TelemetryConfiguration.fromConfiguration(configuration.map(TELEMETRY_PREFIX)))
+        .rateLimitInitialRequests(
+            configuration.getInt(
+                RATE_LIMIT_INITIAL_REQUESTS_KEY, DEFAULT_RATE_LIMIT_INITIAL_REQUESTS))
+        .rateLimitMaxRequests(
+            configuration.getInt(RATE_LIMIT_MAX_REQUESTS_KEY, DEFAULT_RATE_LIMIT_MAX_REQUESTS))
+        .rateLimitBackoffRatio(
+            configuration.getDouble(
+                RATE_LIMIT_BACKOFF_RATIO_KEY, DEFAULT_RATE_LIMIT_BACKOFF_RATIO))
         .build();
   }
 }
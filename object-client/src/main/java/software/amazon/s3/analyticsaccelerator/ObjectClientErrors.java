@@ -0,0 +1,81 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+/**
+ * Tells apart the failures of requests worth retrying from those that would fail again. S3 answers
+ * a request it rejects (4xx, such as a 412 from an ETag that no longer matches) the same way every
+ * time, and the SDK retries throttling (503 SlowDown) itself already, so only failures of the
+ * transport and other server errors are transient.
+ */
+public final class ObjectClientErrors {
+  private static final int SLOW_DOWN_STATUS_CODE = 503;
+  private static final int FIRST_SERVER_ERROR_STATUS_CODE = 500;
+
+  /** Prevent instantiation, this is meant to be a facade */
+  private ObjectClientErrors() {}
+
+  /**
+   * Returns whether the failure of a request is transient, so that the request is worth retrying:
+   * an I/O error, an SDK failure that did not get an HTTP response, or a server error other than
+   * throttling.
+   *
+   * @param error the failure, possibly wrapped by a future
+   * @return true if the request is worth retrying
+   */
+  public static boolean isRetryable(Throwable error) {
+    Throwable cause = unwrap(error);
+    if (cause instanceof IOException || cause instanceof UncheckedIOException) {
+      return true;
+    }
+    if (cause instanceof SdkServiceException) {
+      SdkServiceException serviceException = (SdkServiceException) cause;
+      return serviceException.statusCode() >= FIRST_SERVER_ERROR_STATUS_CODE
+          && !isThrottled(serviceException);
+    }
+    // Client exceptions are raised when no HTTP response was received
+    return cause instanceof SdkClientException;
+  }
+
+  /**
+   * Returns whether a request failed because S3 throttled it.
+   *
+   * @param error the failure, possibly wrapped by a future
+   * @return true if S3 asked to slow down
+   */
+  public static boolean isThrottled(Throwable error) {
+    Throwable cause = unwrap(error);
+    return cause instanceof SdkServiceException
+        && (((SdkServiceException) cause).statusCode() == SLOW_DOWN_STATUS_CODE
+            || ((SdkServiceException) cause).isThrottlingException());
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    Throwable cause = error;
+    while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+        && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    return cause;
+  }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import lombok.NonNull;
+import software.amazon.s3.analyticsaccelerator.common.Preconditions;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.ConfigurableTelemetry;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Metric;
+import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.OpenRequest;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+/**
+ * An {@link ObjectClient} adapting the requests it lets through to each prefix to what S3 accepts,
+ * so that 503 SlowDown responses slow the accelerator down instead of multiplying into retries.
+ * S3 scales request rates per prefix, so each prefix gets its own limit on the requests in flight.
+ * The limit grows by one for every limit's worth of requests that succeed, and is cut by {@link
+ * ObjectClientConfiguration#getRateLimitBackoffRatio()} on a 503 (AIMD), at most once per round of
+ * requests in flight. As requests to a prefix take about as long as each other, this limits their
+ * rate too.
+ *
+ * <p>Requests beyond the limit wait. SYNC requests, which readers are blocked on, go ahead of ASYNC
+ * prefetches, and are never dropped. ASYNC requests are shed instead: once more of them wait than
+ * the limit, the most recent ones fail with a {@link RejectedExecutionException}.
+ *
+ * <p>Nothing wraps a client in this one by default: to limit the requests of a stream factory, pass
+ * it the client wrapped in a RateLimitingObjectClient.
+ */
+@SuppressFBWarnings(
+    value = "SIC_INNER_SHOULD_BE_STATIC_ANON",
+    justification = "The map is created once per client, and fluency justifies the extra pointer")
+public class RateLimitingObjectClient implements ObjectClient {
+  private static final String METRIC_THROTTLED = "rate.limiter.throttled";
+  private static final String METRIC_SHED = "rate.limiter.shed";
+  private static final String METRIC_LIMIT = "rate.limiter.limit";
+  private static final Metric THROTTLED = Metric.builder().name(METRIC_THROTTLED).build();
+  private static final Metric SHED = Metric.builder().name(METRIC_SHED).build();
+  private static final Metric LIMIT = Metric.builder().name(METRIC_LIMIT).build();
+
+  private static final int MAX_PREFIXES = 1024;
+
+  private final ObjectClient objectClient;
+  private final Telemetry telemetry;
+  private final int initialLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final Map<String, PrefixLimiter> limiters;
+
+  /**
+   * Creates a RateLimitingObjectClient. This takes ownership of the passed client and will close it
+   * on its own close().
+   *
+   * @param objectClient the client issuing the requests
+   * @param objectClientConfiguration configuration for object client, with the limits
+   */
+  public RateLimitingObjectClient(
+      @NonNull ObjectClient objectClient,
+      @NonNull ObjectClientConfiguration objectClientConfiguration) {
+    this.initialLimit = objectClientConfiguration.getRateLimitInitialRequests();
+    this.maxLimit = objectClientConfiguration.getRateLimitMaxRequests();
+    this.backoffRatio = objectClientConfiguration.getRateLimitBackoffRatio();
+    Preconditions.checkArgument(
+        0 < initialLimit && initialLimit <= maxLimit,
+        "`rateLimitInitialRequests` must be positive and at most `rateLimitMaxRequests`");
+    Preconditions.checkArgument(
+        0 < backoffRatio && backoffRatio < 1, "`rateLimitBackoffRatio` must be in (0, 1)");
+
+    this.objectClient = objectClient;
+    this.telemetry =
+        new ConfigurableTelemetry(objectClientConfiguration.getTelemetryConfiguration());
+    this.limiters =
+        Collections.synchronizedMap(
+            new LinkedHashMap<String, PrefixLimiter>(16, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, PrefixLimiter> eldest) {
+                // Requests already waiting are still let through by the limiter they wait on
+                return size() > MAX_PREFIXES;
+              }
+            });
+  }
+
+  @Override
+  public CompletableFuture<ObjectMetadata> headObject(@NonNull HeadRequest headRequest) {
+    return getLimiter(headRequest.getS3Uri())
+        .submit(ReadMode.SYNC, () -> objectClient.headObject(headRequest));
+  }
+
+  @Override
+  public CompletableFuture<ObjectContent> getObject(@NonNull GetRequest getRequest) {
+    return getLimiter(getRequest.getS3Uri())
+        .submit(getRequest.getReferrer().getReadMode(), () -> objectClient.getObject(getRequest));
+  }
+
+  @Override
+  public CompletableFuture<Integer> getObject(
+      @NonNull GetRequest getRequest, @NonNull ByteBuffer destination) {
+    return getLimiter(getRequest.getS3Uri())
+        .submit(
+            getRequest.getReferrer().getReadMode(),
+            () -> objectClient.getObject(getRequest, destination));
+  }
+
+  @Override
+  public CompletableFuture<ObjectMetadata> getObjectAndMetadata(
+      @NonNull OpenRequest openRequest, @NonNull ByteBuffer destination) {
+    return getLimiter(openRequest.getS3Uri())
+        .submit(
+            openRequest.getReferrer().getReadMode(),
+            () -> objectClient.getObjectAndMetadata(openRequest, destination));
+  }
+
+  /** Closes the underlying client; requests still waiting are cancelled. */
+  @Override
+  public void close() throws IOException {
+    List<PrefixLimiter> closing;
+    synchronized (limiters) {
+      closing = new ArrayList<>(limiters.values());
+    }
+    closing.forEach(PrefixLimiter::cancelWaiting);
+    objectClient.close();
+  }
+
+  /**
+   * Returns the limit on the requests in flight to the prefix of an object.
+   *
+   * @param s3URI the object
+   * @return the current limit of its prefix
+   */
+  double getLimit(S3URI s3URI) {
+    return getLimiter(s3URI).getLimit();
+  }
+
+  /**
+   * Returns the prefix of an object that its requests are limited by: its bucket and the key up to
+   * its last delimiter.
+   *
+   * @param s3URI the object
+   * @return the prefix of the object
+   */
+  static String getPrefix(S3URI s3URI) {
+    String key = s3URI.getKey();
+    return s3URI.getBucket() + "/" + key.substring(0, key.lastIndexOf('/') + 1);
+  }
+
+  private PrefixLimiter getLimiter(S3URI s3URI) {
+    return limiters.computeIfAbsent(getPrefix(s3URI), prefix -> new PrefixLimiter());
+  }
+
+  /** The limit on the requests in flight to one prefix, with the requests waiting for it. */
+  private class PrefixLimiter {
+    // Guarded by this
+    private double limit = initialLimit;
+    private int inFlight;
+    // Counts the cuts; a 503 of a request issued before the last cut does not cut again
+    private long round;
+    private final Deque<Waiting<?>> waitingSync = new ArrayDeque<>();
+    private final Deque<Waiting<?>> waitingAsync = new ArrayDeque<>();
+
+    private synchronized double getLimit() {
+      return limit;
+    }
+
+    private <T> CompletableFuture<T> submit(
+        ReadMode readMode, Supplier<CompletableFuture<T>> request) {
+      Waiting<T> waiting = new Waiting<>(request);
+      List<Waiting<?>> shed = new ArrayList<>();
+      long issuedRound = -1;
+      synchronized (this) {
+        if (inFlight < limit && waitingSync.isEmpty() && waitingAsync.isEmpty()) {
+          inFlight++;
+          issuedRound = round;
+        } else if (readMode != ReadMode.ASYNC) {
+          waitingSync.addLast(waiting);
+        } else {
+          waitingAsync.addLast(waiting);
+          shedAsync(shed);
+        }
+      }
+
+      // Registered before issuing, so a cancellation always finds the request in a known state
+      waiting.result.whenComplete(
+          (value, error) -> {
+            if (waiting.result.isCancelled()) {
+              withdraw(waiting);
+              waiting.cancelIssued();
+            }
+          });
+      if (issuedRound >= 0) {
+        waiting.issue(issuedRound);
+      }
+      reject(shed);
+      return waiting.result;
+    }
+
+    private void onComplete(long issuedRound, Throwable error) {
+      List<Waiting<?>> shed = new ArrayList<>();
+      List<Waiting<?>> admitted = new ArrayList<>();
+      double cutTo = -1;
+      long currentRound;
+      synchronized (this) {
+        inFlight--;
+        if (error == null) {
+          limit = Math.min(maxLimit, limit + 1 / limit);
+        } else if (ObjectClientErrors.isThrottled(error) && issuedRound == round) {
+          limit = Math.max(1, limit * backoffRatio);
+          round++;
+          cutTo = limit;
+          shedAsync(shed);
+        }
+        currentRound = round;
+        while (inFlight < limit && !(waitingSync.isEmpty() && waitingAsync.isEmpty())) {
+          admitted.add(waitingSync.isEmpty() ? waitingAsync.pollFirst() : waitingSync.pollFirst());
+          inFlight++;
+        }
+      }
+
+      if (error != null && ObjectClientErrors.isThrottled(error)) {
+        telemetry.measure(THROTTLED, 1);
+      }
+      if (cutTo > 0) {
+        telemetry.measure(LIMIT, cutTo);
+      }
+      reject(shed);
+      for (Waiting<?> waiting : admitted) {
+        waiting.issue(currentRound);
+      }
+    }
+
+    /** Sheds the most recent ASYNC requests while more of them wait than the limit. */
+    private void shedAsync(List<Waiting<?>> shed) {
+      while (waitingAsync.size() > Math.max(1, (int) limit)) {
+        shed.add(waitingAsync.pollLast());
+      }
+    }
+
+    private void reject(List<Waiting<?>> shed) {
+      for (Waiting<?> waiting : shed) {
+        waiting.result.completeExceptionally(
+            new RejectedExecutionException("Prefetch shed while its prefix is throttled"));
+      }
+      if (!shed.isEmpty()) {
+        telemetry.measure(SHED, shed.size());
+      }
+    }
+
+    private synchronized void withdraw(Waiting<?> waiting) {
+      if (!waitingSync.remove(waiting)) {
+        waitingAsync.remove(waiting);
+      }
+    }
+
+    private void cancelWaiting() {
+      List<Waiting<?>> cancelled;
+      synchronized (this) {
+        cancelled = new ArrayList<>(waitingSync);
+        cancelled.addAll(waitingAsync);
+        waitingSync.clear();
+        waitingAsync.clear();
+      }
+      cancelled.forEach(waiting -> waiting.result.cancel(false));
+    }
+
+    /** A request, from when it is submitted to when it completes. */
+    private class Waiting<T> {
+      private final Supplier<CompletableFuture<T>> request;
+      private final CompletableFuture<T> result = new CompletableFuture<>();
+      // Guarded by this
+      private CompletableFuture<T> issued;
+      private boolean issuing;
+
+      private Waiting(Supplier<CompletableFuture<T>> request) {
+        this.request = request;
+      }
+
+      private void issue(long issuedRound) {
+        boolean cancelledWhileWaiting;
+        synchronized (this) {
+          cancelledWhileWaiting = result.isDone();
+          issuing = !cancelledWhileWaiting;
+        }
+        if (cancelledWhileWaiting) {
+          onComplete(issuedRound, new CancellationException());
+          return;
+        }
+
+        CompletableFuture<T> issued;
+        try {
+          issued = request.get();
+        } catch (RuntimeException e) {
+          issued = new CompletableFuture<>();
+          issued.completeExceptionally(e);
+        }
+
+        synchronized (this) {
+          this.issued = issued;
+          issuing = false;
+          notifyAll();
+        }
+        // A cancellation that came while the request was being issued left it to be cancelled here
+        if (result.isCancelled()) {
+          issued.cancel(true);
+        }
+        issued.whenComplete(
+            (value, error) -> {
+              onComplete(issuedRound, error);
+              if (error == null) {
+                result.complete(value);
+              } else {
+                result.completeExceptionally(error);
+              }
+            });
+      }
+
+      private void cancelIssued() {
+        CompletableFuture<T> cancelled;
+        synchronized (this) {
+          // Destinations go back to their owners once the cancellation returns, so the request
+          // being handed to the client has to be known, and cancelled, first
+          boolean interrupted = false;
+          while (issuing) {
+            try {
+              wait();
+            } catch (InterruptedException e) {
+              interrupted = true;
+            }
+          }
+          if (interrupted) {
+            Thread.currentThread().interrupt();
+          }
+          cancelled = issued;
+        }
+        if (cancelled != null) {
+          cancelled.cancel(true);
+        }
+      }
+    }
+  }
+}
@@ -15,23 +15,30 @@
  */
 package software.amazon.s3.analyticsaccelerator;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 import lombok.Getter;
 import lombok.NonNull;
 import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.ConfigurableTelemetry;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Operation;
 import software.amazon.s3.analyticsaccelerator.common.telemetry.Telemetry;
 import software.amazon.s3.analyticsaccelerator.request.*;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
 
 /** Object client, based on AWS SDK v2 */
 public class S3SdkObjectClient implements ObjectClient {
   private static final String HEADER_USER_AGENT = "User-Agent";
   private static final String HEADER_REFERER = "Referer";
+  private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
 
   @Getter @NonNull private final S3AsyncClient s3AsyncClient;
   @NonNull private final Telemetry telemetry;
@@ -131,6 +138,8 @@ public class S3SdkObjectClient implements ObjectClient {
                 headObjectResponse ->
                     ObjectMetadata.builder()
                         .contentLength(headObjectResponse.contentLength())
+                        .etag(headObjectResponse.eTag())
+                        .versionId(headObjectResponse.versionId())
                         .build()));
   }
 
@@ -142,32 +151,162 @@ public class S3SdkObjectClient implements ObjectClient {
    */
   @Override
   public CompletableFuture<ObjectContent> getObject(GetRequest getRequest) {
+    return this.telemetry.measureCritical(
+        () -> getOperation(getRequest),
+        s3AsyncClient
+            .getObject(
+                buildGetObjectRequest(getRequest), AsyncResponseTransformer.toBlockingInputStream())
+            .thenApply(
+                responseInputStream ->
+                    ObjectContent.builder().stream(responseInputStream).build()));
+  }
+
+  /**
+   * Make a getObject request to the object store, copying each chunk of the response into the
+   * destination as it arrives.
+   *
+   * @param getRequest The GET request to be sent
+   * @param destination the buffer to write the object bytes to
+   * @return the number of bytes written
+   */
+  @Override
+  public CompletableFuture<Integer> getObject(
+      GetRequest getRequest, @NonNull ByteBuffer destination) {
+    ByteBufferResponseTransformer transformer = new ByteBufferResponseTransformer(destination);
+    CompletableFuture<Integer> request =
+        s3AsyncClient.getObject(buildGetObjectRequest(getRequest), transformer);
+    transformer.bind(request);
+
+    return this.telemetry.measureCritical(() -> getOperation(getRequest), request);
+  }
+
+  /**
+   * Make a single getObject request for the first or last bytes of an object, copying each chunk of
+   * the response into the destination as it arrives, and learn the length of the object from the
+   * Content-Range header of the response.
+   *
+   * @param openRequest The request to be sent
+   * @param destination the buffer to write the object bytes to
+   * @return the metadata of the object
+   */
+  @Override
+  public CompletableFuture<ObjectMetadata> getObjectAndMetadata(
+      @NonNull OpenRequest openRequest, @NonNull ByteBuffer destination) {
+    ByteBufferResponseTransformer transformer = new ByteBufferResponseTransformer(destination);
+    CompletableFuture<Integer> request =
+        s3AsyncClient.getObject(
+            buildGetObjectRequest(
+                openRequest.getS3Uri(),
+                openRequest.toHttpString(),
+                null,
+                openRequest.getReferrer()),
+            transformer);
+    transformer.bind(request);
+
+    CompletableFuture<ObjectMetadata> metadata =
+        request
+            .handle(
+                (bytesRead, error) -> {
+                  if (error == null) {
+                    return CompletableFuture.completedFuture(
+                        toObjectMetadata(transformer.getResponse()));
+                  }
+                  // No range of an empty object can be satisfied, so its length needs a HEAD
+                  if (isRangeNotSatisfiable(error)) {
+                    return headObject(HeadRequest.builder().s3Uri(openRequest.getS3Uri()).build());
+                  }
+                  CompletableFuture<ObjectMetadata> failed = new CompletableFuture<>();
+                  failed.completeExceptionally(error);
+                  return failed;
+                })
+            .thenCompose(Function.identity());
+    metadata.whenComplete(
+        (objectMetadata, error) -> {
+          if (metadata.isCancelled()) {
+            request.cancel(false);
+          }
+        });
+
+    return this.telemetry.measureCritical(
+        () ->
+            Operation.builder()
+                .name(ObjectClientTelemetry.OPERATION_GET)
+                .attribute(ObjectClientTelemetry.uri(openRequest.getS3Uri()))
+                .build(),
+        metadata);
+  }
+
+  /**
+   * Builds the metadata of an object from the response to a ranged GET: the length of the object is
+   * the complete length in its Content-Range header, or the length of the body of a response that
+   * is not partial.
+   *
+   * @param response the response to a GET
+   * @return the metadata of the object
+   */
+  static ObjectMetadata toObjectMetadata(@NonNull GetObjectResponse response) {
+    long contentLength;
+    String contentRange = response.contentRange();
+    if (contentRange == null) {
+      contentLength = response.contentLength();
+    } else {
+      // bytes <first>-<last>/<complete length>
+      int slash = contentRange.lastIndexOf('/');
+      try {
+        contentLength = Long.parseLong(contentRange.substring(slash + 1).trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalStateException("Unexpected Content-Range: " + contentRange, e);
+      }
+    }
+
+    return ObjectMetadata.builder()
+        .contentLength(contentLength)
+        .etag(response.eTag())
+        .versionId(response.versionId())
+        .build();
+  }
+
+  private static boolean isRangeNotSatisfiable(Throwable error) {
+    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+    return cause instanceof S3Exception
+        && ((S3Exception) cause).statusCode() == HTTP_RANGE_NOT_SATISFIABLE;
+  }
+
+  private GetObjectRequest buildGetObjectRequest(GetRequest getRequest) {
+    return buildGetObjectRequest(
+        getRequest.getS3Uri(),
+        getRequest.getRange().toHttpString(),
+        getRequest.getEtag(),
+        getRequest.getReferrer());
+  }
+
+  private GetObjectRequest buildGetObjectRequest(
+      S3URI s3URI, String range, String etag, Referrer referrer) {
     GetObjectRequest.Builder builder =
-        GetObjectRequest.builder()
-            .bucket(getRequest.getS3Uri().getBucket())
-            .key(getRequest.getS3Uri().getKey());
+        GetObjectRequest.builder().bucket(s3URI.getBucket()).key(s3URI.getKey());
 
-    String range = getRequest.getRange().toHttpString();
     builder.range(range);
 
+    // Pin the GET to the version of the object the caller knows about
+    if (etag != null) {
+      builder.ifMatch(etag);
+    }
+
     builder.overrideConfiguration(
         AwsRequestOverrideConfiguration.builder()
-            .putHeader(HEADER_REFERER, getRequest.getReferrer().toString())
+            .putHeader(HEADER_REFERER, referrer.toString())
             .putHeader(HEADER_USER_AGENT, this.userAgent.getUserAgent())
             .build());
 
-    return this.telemetry.measureCritical(
-        () ->
-            Operation.builder()
-                .name(ObjectClientTelemetry.OPERATION_GET)
-                .attribute(ObjectClientTelemetry.uri(getRequest.getS3Uri()))
-                .attribute(ObjectClientTelemetry.rangeLength(getRequest.getRange()))
-                .attribute(ObjectClientTelemetry.range(getRequest.getRange()))
-                .build(),
-        s3AsyncClient
-            .getObject(builder.build(), AsyncResponseTransformer.toBlockingInputStream())
-            .thenApply(
-                responseInputStream ->
-                    ObjectContent.builder().stream(responseInputStream).build()));
+    return builder.build();
+  }
+
+  private static Operation getOperation(GetRequest getRequest) {
+    return Operation.builder()
+        .name(ObjectClientTelemetry.OPERATION_GET)
+        .attribute(ObjectClientTelemetry.uri(getRequest.getS3Uri()))
+        .attribute(ObjectClientTelemetry.rangeLength(getRequest.getRange()))
+        .attribute(ObjectClientTelemetry.range(getRequest.getRange()))
+        .build();
   }
 }
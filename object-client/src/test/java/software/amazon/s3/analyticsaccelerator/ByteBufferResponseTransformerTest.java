@@ -0,0 +1,156 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class ByteBufferResponseTransformerTest {
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(NullPointerException.class, () -> new ByteBufferResponseTransformer(null));
+  }
+
+  @Test
+  void testChunksAreWrittenIntoBuffer() {
+    // Given: a transformer writing into a buffer
+    ByteBuffer destination = ByteBuffer.allocateDirect(20);
+    ByteBufferResponseTransformer transformer = new ByteBufferResponseTransformer(destination);
+    CompletableFuture<Integer> result = transformer.prepare();
+
+    // When: the response arrives in several chunks
+    transformer.onResponse(GetObjectResponse.builder().build());
+    transformer.onStream(publisher(new AtomicBoolean(), "Hello", " ", "World"));
+
+    // Then: all chunks are written, in order
+    assertEquals(11, result.join());
+    assertEquals("Hello World", contentOf(destination));
+  }
+
+  @Test
+  void testBytesBeyondBufferAreDropped() {
+    // Given: a buffer smaller than the response
+    ByteBuffer destination = ByteBuffer.allocate(5);
+    ByteBufferResponseTransformer transformer = new ByteBufferResponseTransformer(destination);
+    CompletableFuture<Integer> result = transformer.prepare();
+
+    // When: the response arrives
+    transformer.onStream(publisher(new AtomicBoolean(), "Hello World"));
+
+    // Then: the buffer is filled up
+    assertEquals(5, result.join());
+    assertEquals("Hello", contentOf(destination));
+  }
+
+  @Test
+  void testRetryStartsOver() {
+    // Given: a first attempt that failed half way
+    ByteBuffer destination = ByteBuffer.allocate(20);
+    ByteBufferResponseTransformer transformer = new ByteBufferResponseTransformer(destination);
+    CompletableFuture<Integer> first = transformer.prepare();
+    transformer.onStream(unfinishedPublisher("Hel"));
+    transformer.exceptionOccurred(new IllegalStateException("connection reset"));
+
+    // When: the request is retried
+    CompletableFuture<Integer> second = transformer.prepare();
+    transformer.onStream(publisher(new AtomicBoolean(), "Hello"));
+
+    // Then: the second attempt overwrites the first one
+    assertThrows(CompletionException.class, first::join);
+    assertEquals(5, second.join());
+    assertEquals("Hello", contentOf(destination));
+  }
+
+  @Test
+  void testNothingIsWrittenAfterRequestIsCancelled() {
+    // Given: a transformer bound to a cancelled request
+    ByteBuffer destination = ByteBuffer.allocate(20);
+    ByteBufferResponseTransformer transformer = new ByteBufferResponseTransformer(destination);
+    transformer.prepare();
+    CompletableFuture<Integer> request = new CompletableFuture<>();
+    transformer.bind(request);
+    request.cancel(false);
+
+    // When: chunks arrive
+    AtomicBoolean cancelled = new AtomicBoolean();
+    transformer.onStream(publisher(cancelled, "Hello"));
+
+    // Then: they are dropped and the subscription is cancelled
+    assertEquals(0, destination.position());
+    assertTrue(cancelled.get());
+  }
+
+  private static String contentOf(ByteBuffer destination) {
+    ByteBuffer written = destination.duplicate();
+    written.flip();
+    byte[] bytes = new byte[written.remaining()];
+    written.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Publishes the chunks synchronously, without ever completing. */
+  private static SdkPublisher<ByteBuffer> unfinishedPublisher(String... chunks) {
+    return (Subscriber<? super ByteBuffer> subscriber) -> {
+      subscriber.onSubscribe(
+          new Subscription() {
+            @Override
+            public void request(long n) {}
+
+            @Override
+            public void cancel() {}
+          });
+      for (String chunk : chunks) {
+        subscriber.onNext(ByteBuffer.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+      }
+    };
+  }
+
+  /** Publishes the chunks synchronously, then completes unless the subscription was cancelled. */
+  private static SdkPublisher<ByteBuffer> publisher(AtomicBoolean cancelled, String... chunks) {
+    return (Subscriber<? super ByteBuffer> subscriber) -> {
+      subscriber.onSubscribe(
+          new Subscription() {
+            @Override
+            public void request(long n) {}
+
+            @Override
+            public void cancel() {
+              cancelled.set(true);
+            }
+          });
+      for (String chunk : chunks) {
+        subscriber.onNext(ByteBuffer.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+      }
+      if (!cancelled.get()) {
+        subscriber.onComplete();
+      }
+    };
+  }
+}
@@ -83,4 +83,26 @@ public class ObjectClientConfigurationTest {
         TelemetryLevel.VERBOSE.toString(),
         objectClientConfiguration.getTelemetryConfiguration().getLevel());
   }
+
+  @Test
+  void testRateLimitFromConfiguration() {
+    Map<String, String> properties = new HashMap<>();
+    properties.put(
+        "s3.connector.objectclient." + ObjectClientConfiguration.RATE_LIMIT_INITIAL_REQUESTS_KEY,
+        "16");
+    properties.put(
+        "s3.connector.objectclient." + ObjectClientConfiguration.RATE_LIMIT_MAX_REQUESTS_KEY,
+        "256");
+    properties.put(
+        "s3.connector.objectclient." + ObjectClientConfiguration.RATE_LIMIT_BACKOFF_RATIO_KEY,
+        "0.7");
+
+    ObjectClientConfiguration objectClientConfiguration =
+        ObjectClientConfiguration.fromConfiguration(
+            new ConnectorConfiguration(properties, CONFIGURATION_PREFIX).map(PROPERTY_PREFIX));
+
+    assertEquals(16, objectClientConfiguration.getRateLimitInitialRequests());
+    assertEquals(256, objectClientConfiguration.getRateLimitMaxRequests());
+    assertEquals(0.7, objectClientConfiguration.getRateLimitBackoffRatio());
+  }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+public class ObjectClientErrorsTest {
+  @Test
+  void testTransientFailuresAreRetryable() {
+    assertTrue(ObjectClientErrors.isRetryable(new IOException("connection reset")));
+    assertTrue(
+        ObjectClientErrors.isRetryable(
+            new CompletionException(SdkClientException.create("Unable to execute HTTP request"))));
+    assertTrue(ObjectClientErrors.isRetryable(s3Exception(500)));
+  }
+
+  @Test
+  void testRejectedAndThrottledRequestsAreNotRetryable() {
+    assertFalse(ObjectClientErrors.isRetryable(s3Exception(412)));
+    assertFalse(ObjectClientErrors.isRetryable(new CompletionException(s3Exception(404))));
+    assertFalse(ObjectClientErrors.isRetryable(s3Exception(503)));
+    assertFalse(ObjectClientErrors.isRetryable(new IllegalStateException("bug")));
+  }
+
+  @Test
+  void testThrottling() {
+    assertTrue(ObjectClientErrors.isThrottled(new CompletionException(s3Exception(503))));
+    assertFalse(ObjectClientErrors.isThrottled(s3Exception(500)));
+    assertFalse(ObjectClientErrors.isThrottled(new IOException("connection reset")));
+  }
+
+  private static S3Exception s3Exception(int statusCode) {
+    return S3Exception.builder().statusCode(statusCode).message("error").build();
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.Range;
+import software.amazon.s3.analyticsaccelerator.request.ReadMode;
+import software.amazon.s3.analyticsaccelerator.request.Referrer;
+import software.amazon.s3.analyticsaccelerator.util.S3URI;
+
+@SuppressFBWarnings(
+    value = "NP_NONNULL_PARAM_VIOLATION",
+    justification = "We mean to pass nulls to checks")
+public class RateLimitingObjectClientTest {
+  private static final S3URI TEST_URI = S3URI.of("bucket", "table/part=1/data.parquet");
+
+  private final List<GetRequest> issued = Collections.synchronizedList(new ArrayList<>());
+  private final List<CompletableFuture<Integer>> pending =
+      Collections.synchronizedList(new ArrayList<>());
+  private final ObjectClient objectClient = mock(ObjectClient.class);
+
+  RateLimitingObjectClientTest() {
+    when(objectClient.getObject(any(GetRequest.class), any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<Integer> future = new CompletableFuture<>();
+              issued.add(invocation.getArgument(0));
+              pending.add(future);
+              return future;
+            });
+  }
+
+  @Test
+  void testCreateBoundaries() {
+    assertThrows(
+        NullPointerException.class,
+        () -> new RateLimitingObjectClient(null, ObjectClientConfiguration.DEFAULT));
+    assertThrows(
+        NullPointerException.class, () -> new RateLimitingObjectClient(objectClient, null));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new RateLimitingObjectClient(
+                objectClient,
+                ObjectClientConfiguration.builder()
+                    .rateLimitInitialRequests(8)
+                    .rateLimitMaxRequests(4)
+                    .build()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new RateLimitingObjectClient(
+                objectClient,
+                ObjectClientConfiguration.builder().rateLimitBackoffRatio(1).build()));
+  }
+
+  @Test
+  void testRequestsAreLimitedPerPrefix() {
+    assertEquals("bucket/table/part=1/", RateLimitingObjectClient.getPrefix(TEST_URI));
+    assertEquals("bucket/", RateLimitingObjectClient.getPrefix(S3URI.of("bucket", "data.csv")));
+  }
+
+  @Test
+  void testLimitIsCutOnceWhenThrottledAndGrowsBack() {
+    // Given: a limit of 4 requests in flight, all taken
+    RateLimitingObjectClient client = createClient(4);
+    for (int i = 0; i < 4; i++) {
+      client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+    }
+
+    // When: two requests of the same round are throttled
+    pending.get(0).completeExceptionally(slowDown());
+    pending.get(1).completeExceptionally(slowDown());
+
+    // Then: the limit is cut once
+    assertEquals(2, client.getLimit(TEST_URI));
+
+    // When: the other requests succeed
+    pending.get(2).complete(1);
+    pending.get(3).complete(1);
+
+    // Then: each success grows the limit by its inverse, about one for a limit's worth of them
+    assertEquals(2 + 1 / 2.0 + 1 / 2.5, client.getLimit(TEST_URI), 1e-9);
+  }
+
+  @Test
+  void testSyncRequestsGoAheadOfAsyncOnes() {
+    // Given: a single request allowed in flight, and an ASYNC then a SYNC request waiting
+    RateLimitingObjectClient client = createClient(1);
+    client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+    CompletableFuture<Integer> prefetch =
+        client.getObject(get(ReadMode.ASYNC), ByteBuffer.allocate(1));
+    CompletableFuture<Integer> read = client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+    assertEquals(1, issued.size());
+
+    // When: the request in flight completes
+    pending.get(0).complete(1);
+
+    // Then: the SYNC request goes first
+    assertEquals(2, issued.size());
+    assertEquals(ReadMode.SYNC, issued.get(1).getReferrer().getReadMode());
+    pending.get(1).complete(1);
+    assertEquals(1, read.join());
+    assertEquals(ReadMode.ASYNC, issued.get(2).getReferrer().getReadMode());
+    pending.get(2).complete(1);
+    assertEquals(1, prefetch.join());
+  }
+
+  @Test
+  void testAsyncRequestsAreShedWhenThrottled() {
+    // Given: two requests in flight, with two ASYNC and a SYNC request waiting
+    RateLimitingObjectClient client = createClient(2);
+    client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+    client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+    CompletableFuture<Integer> first =
+        client.getObject(get(ReadMode.ASYNC), ByteBuffer.allocate(1));
+    CompletableFuture<Integer> second =
+        client.getObject(get(ReadMode.ASYNC), ByteBuffer.allocate(1));
+    CompletableFuture<Integer> read = client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+
+    // When: a third ASYNC request is submitted
+    CompletableFuture<Integer> third =
+        client.getObject(get(ReadMode.ASYNC), ByteBuffer.allocate(1));
+
+    // Then: it is shed, being beyond the limit
+    assertRejected(third);
+
+    // When: the limit is cut
+    pending.get(0).completeExceptionally(slowDown());
+
+    // Then: the most recent ASYNC request is shed
+    assertRejected(second);
+    assertFalse(first.isDone());
+
+    // When: the other request completes
+    pending.get(1).complete(1);
+
+    // Then: the SYNC request goes ahead of the remaining ASYNC one
+    assertEquals(ReadMode.SYNC, issued.get(2).getReferrer().getReadMode());
+    assertEquals(ReadMode.ASYNC, issued.get(3).getReferrer().getReadMode());
+    pending.get(2).complete(1);
+    assertEquals(1, read.join());
+  }
+
+  @Test
+  void testCancelledRequestsAreWithdrawnOrAborted() {
+    // Given: one request in flight and one waiting
+    RateLimitingObjectClient client = createClient(1);
+    CompletableFuture<Integer> inFlight =
+        client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+    CompletableFuture<Integer> waiting =
+        client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+
+    // When: both are cancelled
+    waiting.cancel(false);
+    inFlight.cancel(false);
+
+    // Then: the one in flight is aborted, and the waiting one is never issued
+    assertTrue(pending.get(0).isCancelled());
+    assertEquals(1, issued.size());
+  }
+
+  @Test
+  void testCancelWhileIssuingWaitsForTheRequestAndCancelsIt() throws Exception {
+    // Given: a client that is slow to take the second request, issued when the first completes
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<CompletableFuture<Integer>> requests = new CopyOnWriteArrayList<>();
+    ObjectClient slowClient = mock(ObjectClient.class);
+    when(slowClient.getObject(any(GetRequest.class), any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<Integer> future = new CompletableFuture<>();
+              requests.add(future);
+              if (requests.size() == 2) {
+                entered.countDown();
+                release.await();
+              }
+              return future;
+            });
+    RateLimitingObjectClient client =
+        new RateLimitingObjectClient(
+            slowClient,
+            ObjectClientConfiguration.builder()
+                .rateLimitInitialRequests(1)
+                .rateLimitMaxRequests(1)
+                .build());
+    client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+    CompletableFuture<Integer> result =
+        client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1));
+    CompletableFuture.runAsync(() -> requests.get(0).complete(1));
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+    // When: its result is cancelled while the client is still taking it
+    CompletableFuture<Boolean> cancel = CompletableFuture.supplyAsync(() -> result.cancel(false));
+
+    // Then: the cancellation waits for the request, and aborts it before returning
+    assertThrows(TimeoutException.class, () -> cancel.get(100, TimeUnit.MILLISECONDS));
+    release.countDown();
+    assertTrue(cancel.get(5, TimeUnit.SECONDS));
+    assertTrue(requests.get(1).isCancelled());
+  }
+
+  @Test
+  void testCloseClosesTheUnderlyingClient() throws Exception {
+    // Given
+    RateLimitingObjectClient client = createClient(1);
+
+    // When
+    client.close();
+
+    // Then
+    verify(objectClient).close();
+  }
+
+  @Test
+  void testLimiterKeepsThrottlingFarBelowThatOfUnlimitedRequests() throws Exception {
+    // Given: a stand-in for S3 throttling half of the requests beyond 8 in flight
+    int requests = 1000;
+    int unlimitedThrottled;
+    try (SlowDownObjectClient unlimited = new SlowDownObjectClient(8, 0.5, 1)) {
+      awaitAll(unlimited, requests);
+      unlimitedThrottled = unlimited.getThrottled();
+    }
+
+    // When: the same requests go through the limiter
+    SlowDownObjectClient limited = new SlowDownObjectClient(8, 0.5, 1);
+    try (RateLimitingObjectClient client =
+        new RateLimitingObjectClient(limited, ObjectClientConfiguration.DEFAULT)) {
+      awaitAll(client, requests);
+
+      // Then: far fewer of them are throttled, and none waited forever
+      assertEquals(requests, limited.getRequests());
+      assertTrue(
+          limited.getThrottled() < unlimitedThrottled / 2,
+          limited.getThrottled() + " throttled, against " + unlimitedThrottled);
+      assertTrue(
+          client.getLimit(TEST_URI)
+              < ObjectClientConfiguration.DEFAULT_RATE_LIMIT_INITIAL_REQUESTS);
+    }
+  }
+
+  private static void awaitAll(ObjectClient client, int count) {
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      results.add(client.getObject(get(ReadMode.SYNC), ByteBuffer.allocate(1)));
+    }
+    for (CompletableFuture<Integer> result : results) {
+      try {
+        result.join();
+      } catch (CompletionException e) {
+        assertInstanceOf(S3Exception.class, e.getCause());
+      }
+    }
+  }
+
+  private static void assertRejected(CompletableFuture<Integer> result) {
+    CompletionException e = assertThrows(CompletionException.class, result::join);
+    assertInstanceOf(RejectedExecutionException.class, e.getCause());
+  }
+
+  private RateLimitingObjectClient createClient(int limit) {
+    return new RateLimitingObjectClient(
+        objectClient,
+        ObjectClientConfiguration.builder()
+            .rateLimitInitialRequests(limit)
+            .rateLimitMaxRequests(limit)
+            .build());
+  }
+
+  private static S3Exception slowDown() {
+    return S3Exception.builder().statusCode(503).message("SlowDown").build();
+  }
+
+  private static GetRequest get(ReadMode readMode) {
+    Range range = new Range(0, 0);
+    return GetRequest.builder()
+        .s3Uri(TEST_URI)
+        .range(range)
+        .referrer(new Referrer(range.toHttpString(), readMode))
+        .build();
+  }
+}
@@ -24,22 +24,29 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.reactivestreams.Subscription;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
 import software.amazon.awssdk.http.async.AbortableInputStreamSubscriber;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.s3.analyticsaccelerator.request.GetRequest;
 import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
 import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+import software.amazon.s3.analyticsaccelerator.request.OpenRequest;
 import software.amazon.s3.analyticsaccelerator.request.Range;
 import software.amazon.s3.analyticsaccelerator.request.ReadMode;
 import software.amazon.s3.analyticsaccelerator.request.Referrer;
@@ -50,6 +57,9 @@ import software.amazon.s3.analyticsaccelerator.util.S3URI;
     justification =
         "We mean to pass nulls to checks. Also, closures cannot be made static in this case")
 public class S3SdkObjectClientTest {
+  private static final String TEST_ETAG = "\"d41d8cd98f00b204e9800998ecf8427e\"";
+  private static final String TEST_VERSION = "3HL4kqtJlcpXroDTDmJ+rmSpXd3dIbrHY";
+
   @Test
   void testForNullsInConstructor() {
     try (S3AsyncClient client = mock(S3AsyncClient.class)) {
@@ -148,7 +158,11 @@ public class S3SdkObjectClientTest {
       S3SdkObjectClient client = new S3SdkObjectClient(s3AsyncClient);
       assertEquals(
           client.headObject(HeadRequest.builder().s3Uri(S3URI.of("bucket", "key")).build()).join(),
-          ObjectMetadata.builder().contentLength(42).build());
+          ObjectMetadata.builder()
+              .contentLength(42)
+              .etag(TEST_ETAG)
+              .versionId(TEST_VERSION)
+              .build());
     }
   }
 
@@ -167,6 +181,167 @@ public class S3SdkObjectClientTest {
     }
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  void testGetObjectIsPinnedToTheEtag() {
+    try (S3AsyncClient s3AsyncClient = createMockClient()) {
+      // Given
+      S3SdkObjectClient client = new S3SdkObjectClient(s3AsyncClient);
+      GetRequest.GetRequestBuilder request =
+          GetRequest.builder()
+              .s3Uri(S3URI.of("bucket", "key"))
+              .range(new Range(0, 20))
+              .referrer(new Referrer("bytes=0-20", ReadMode.SYNC));
+
+      // When: a GET is made with and without an ETag
+      client.getObject(request.etag(TEST_ETAG).build());
+      client.getObject(request.etag(null).build());
+
+      // Then: only the first one is conditional on it
+      ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+      verify(s3AsyncClient, times(2))
+          .getObject(captor.capture(), any(AsyncResponseTransformer.class));
+      assertEquals(TEST_ETAG, captor.getAllValues().get(0).ifMatch());
+      assertNull(captor.getAllValues().get(1).ifMatch());
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testGetObjectIntoBuffer() {
+    // Given: a client whose response body arrives through the transformer
+    try (S3AsyncClient s3AsyncClient = mock(S3AsyncClient.class)) {
+      when(s3AsyncClient.getObject(
+              any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+          .thenAnswer(
+              invocation -> {
+                AsyncResponseTransformer<GetObjectResponse, Integer> transformer =
+                    invocation.getArgument(1);
+                CompletableFuture<Integer> result = transformer.prepare();
+                transformer.onResponse(GetObjectResponse.builder().build());
+                transformer.onStream(
+                    SdkPublisher.adapt(
+                        subscriber -> {
+                          subscriber.onSubscribe(mock(Subscription.class));
+                          subscriber.onNext(
+                              ByteBuffer.wrap("test-data".getBytes(StandardCharsets.UTF_8)));
+                          subscriber.onComplete();
+                        }));
+                return result;
+              });
+      S3SdkObjectClient client = new S3SdkObjectClient(s3AsyncClient);
+      ByteBuffer destination = ByteBuffer.allocate(9);
+
+      // When: the object is fetched into a buffer
+      int bytesWritten =
+          client
+              .getObject(
+                  GetRequest.builder()
+                      .s3Uri(S3URI.of("bucket", "key"))
+                      .range(new Range(0, 8))
+                      .referrer(new Referrer("bytes=0-8", ReadMode.SYNC))
+                      .build(),
+                  destination)
+              .join();
+
+      // Then: the body is written into the buffer
+      assertEquals(9, bytesWritten);
+      assertEquals("test-data", new String(destination.array(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testGetObjectAndMetadataLearnsTheLengthFromContentRange() {
+    // Given: a client answering a suffix range with the last bytes of a 1000 byte object
+    try (S3AsyncClient s3AsyncClient = mock(S3AsyncClient.class)) {
+      when(s3AsyncClient.getObject(
+              any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+          .thenAnswer(
+              invocation -> {
+                AsyncResponseTransformer<GetObjectResponse, Integer> transformer =
+                    invocation.getArgument(1);
+                CompletableFuture<Integer> result = transformer.prepare();
+                transformer.onResponse(
+                    GetObjectResponse.builder()
+                        .contentLength(9L)
+                        .contentRange("bytes 991-999/1000")
+                        .eTag(TEST_ETAG)
+                        .versionId(TEST_VERSION)
+                        .build());
+                transformer.onStream(
+                    SdkPublisher.adapt(
+                        subscriber -> {
+                          subscriber.onSubscribe(mock(Subscription.class));
+                          subscriber.onNext(
+                              ByteBuffer.wrap("test-data".getBytes(StandardCharsets.UTF_8)));
+                          subscriber.onComplete();
+                        }));
+                return result;
+              });
+      S3SdkObjectClient client = new S3SdkObjectClient(s3AsyncClient);
+      ByteBuffer destination = ByteBuffer.allocate(9);
+
+      // When: the object is opened with its last 9 bytes
+      ObjectMetadata metadata =
+          client
+              .getObjectAndMetadata(
+                  OpenRequest.builder()
+                      .s3Uri(S3URI.of("bucket", "key"))
+                      .length(9)
+                      .fromEnd(true)
+                      .referrer(new Referrer("bytes=-9", ReadMode.SYNC))
+                      .build(),
+                  destination)
+              .join();
+
+      // Then: a single suffix range GET returned both the bytes and the metadata
+      assertEquals(
+          ObjectMetadata.builder()
+              .contentLength(1000)
+              .etag(TEST_ETAG)
+              .versionId(TEST_VERSION)
+              .build(),
+          metadata);
+      assertEquals("test-data", new String(destination.array(), StandardCharsets.UTF_8));
+      ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+      verify(s3AsyncClient).getObject(captor.capture(), any(AsyncResponseTransformer.class));
+      assertEquals("bytes=-9", captor.getValue().range());
+      verify(s3AsyncClient, never()).headObject(any(HeadObjectRequest.class));
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testGetObjectAndMetadataOfAnEmptyObjectFallsBackToHead() {
+    // Given: a client rejecting ranges as unsatisfiable, as S3 does for empty objects
+    try (S3AsyncClient s3AsyncClient = createMockClient()) {
+      CompletableFuture<Integer> rejected = new CompletableFuture<>();
+      rejected.completeExceptionally(S3Exception.builder().statusCode(416).build());
+      when(s3AsyncClient.getObject(
+              any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+          .thenReturn(rejected);
+      S3SdkObjectClient client = new S3SdkObjectClient(s3AsyncClient);
+
+      // When
+      ObjectMetadata metadata =
+          client
+              .getObjectAndMetadata(
+                  OpenRequest.builder()
+                      .s3Uri(S3URI.of("bucket", "key"))
+                      .length(9)
+                      .fromEnd(false)
+                      .referrer(new Referrer("bytes=0-8", ReadMode.SYNC))
+                      .build(),
+                  ByteBuffer.allocate(9))
+              .join();
+
+      // Then: the metadata comes from a HEAD
+      assertEquals(42, metadata.getContentLength());
+      verify(s3AsyncClient).headObject(any(HeadObjectRequest.class));
+    }
+  }
+
   @Test
   void testObjectClientClose() {
     try (S3AsyncClient s3AsyncClient = createMockClient()) {
@@ -184,7 +359,11 @@ public class S3SdkObjectClientTest {
     when(s3AsyncClient.headObject(any(HeadObjectRequest.class)))
         .thenReturn(
             CompletableFuture.completedFuture(
-                HeadObjectResponse.builder().contentLength(42L).build()));
+                HeadObjectResponse.builder()
+                    .contentLength(42L)
+                    .eTag(TEST_ETAG)
+                    .versionId(TEST_VERSION)
+                    .build()));
 
     when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
         .thenReturn(
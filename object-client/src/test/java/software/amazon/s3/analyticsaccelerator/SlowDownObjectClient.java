@@ -0,0 +1,141 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.amazon.s3.analyticsaccelerator;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.s3.analyticsaccelerator.request.GetRequest;
+import software.amazon.s3.analyticsaccelerator.request.HeadRequest;
+import software.amazon.s3.analyticsaccelerator.request.ObjectClient;
+import software.amazon.s3.analyticsaccelerator.request.ObjectContent;
+import software.amazon.s3.analyticsaccelerator.request.ObjectMetadata;
+
+/**
+ * A local stand-in for S3 that throttles like it. Requests beyond {@code capacity} in flight fail
+ * with a 503 SlowDown at {@code throttleRate}, and every request completes after {@code
+ * latencyMillis}.
+ */
+public class SlowDownObjectClient implements ObjectClient {
+  private final int capacity;
+  private final double throttleRate;
+  private final long latencyMillis;
+  private final Random random = new Random(42);
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger throttled = new AtomicInteger();
+
+  /**
+   * Creates a SlowDownObjectClient.
+   *
+   * @param capacity how many requests in flight are served without throttling
+   * @param throttleRate the share of requests beyond the capacity failing with a 503
+   * @param latencyMillis how long each request takes
+   */
+  public SlowDownObjectClient(int capacity, double throttleRate, long latencyMillis) {
+    this.capacity = capacity;
+    this.throttleRate = throttleRate;
+    this.latencyMillis = latencyMillis;
+  }
+
+  @Override
+  public CompletableFuture<ObjectMetadata> headObject(HeadRequest headRequest) {
+    return respond(() -> ObjectMetadata.builder().contentLength(0).build());
+  }
+
+  @Override
+  public CompletableFuture<ObjectContent> getObject(GetRequest getRequest) {
+    return respond(
+        () -> ObjectContent.builder().stream(new ByteArrayInputStream(new byte[0])).build());
+  }
+
+  @Override
+  public CompletableFuture<Integer> getObject(GetRequest getRequest, ByteBuffer destination) {
+    return respond(() -> 0);
+  }
+
+  /**
+   * Returns the number of requests received.
+   *
+   * @return the number of requests received
+   */
+  public int getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * Returns the number of requests that failed with a 503.
+   *
+   * @return the number of requests that failed with a 503
+   */
+  public int getThrottled() {
+    return throttled.get();
+  }
+
+  /**
+   * Returns the largest number of requests that were in flight at once.
+   *
+   * @return the largest number of requests that were in flight at once
+   */
+  public int getMaxInFlight() {
+    return maxInFlight.get();
+  }
+
+  @Override
+  public void close() {
+    timer.shutdownNow();
+  }
+
+  private <T> CompletableFuture<T> respond(Supplier<T> response) {
+    requests.incrementAndGet();
+    int current = inFlight.incrementAndGet();
+    maxInFlight.accumulateAndGet(current, Math::max);
+    boolean throttle;
+    synchronized (random) {
+      throttle = current > capacity && random.nextDouble() < throttleRate;
+    }
+
+    CompletableFuture<T> result = new CompletableFuture<>();
+    timer.schedule(
+        () -> {
+          inFlight.decrementAndGet();
+          if (throttle) {
+            throttled.incrementAndGet();
+            result.completeExceptionally(
+                S3Exception.builder()
+                    .statusCode(503)
+                    .awsErrorDetails(AwsErrorDetails.builder().errorCode("SlowDown").build())
+                    .message("Please reduce your request rate.")
+                    .build());
+          } else {
+            result.complete(response.get());
+          }
+        },
+        latencyMillis,
+        TimeUnit.MILLISECONDS);
+    return result;
+  }
+}